@@ -1,21 +1,23 @@
-# Add project specific ProGuard rules here.
-# You can control the set of applied configuration files using the
-# proguardFiles setting in build.gradle.
-#
-# For more details, see
-#   http://developer.android.com/guide/developing/tools/proguard.html
+# Project specific R8 rules. The defaults come from proguard-android-optimize.txt, and Room,
+# WorkManager, Fragment, Lifecycle (AndroidViewModel), Play services, Firebase and the Facebook SDK
+# ship their own consumer rules, so only what they can't see is listed here.
 
-# If your project uses WebView with JS, uncomment the following
-# and specify the fully qualified class name to the JavaScript interface
-# class:
-#-keepclassmembers class fqcn.of.javascript.interface.for.webview {
-#   public *;
-#}
+# Readable stack traces from release crash reports
+-keepattributes SourceFile,LineNumberTable
+-renamesourcefileattribute SourceFile
 
-# Uncomment this to preserve the line number information for
-# debugging stack traces.
-#-keepattributes SourceFile,LineNumberTable
-
-# If you keep the line number information, uncomment this to
-# hide the original source file name.
-#-renamesourcefileattribute SourceFile
\ No newline at end of file
+# --- Firestore ---
+# FirestoreRideSource reads summaries with doc.toObject(Ride.class), which maps fields to bean
+# properties by name through reflection: the no-arg constructor, the getters/setters and the
+# fields (it matches @ServerTimestamp on a field to its getter by name) must keep their names,
+# and @Exclude must survive to be honoured.
+# Writes go through RideDocuments' maps, whose keys are string constants, so they need nothing.
+-keepattributes Signature,*Annotation*
+-keep class com.example.padyakol.models.Ride {
+    public <init>();
+    public *** get*();
+    public *** is*();
+    public void set*(***);
+    <fields>;
+    @com.google.firebase.firestore.Exclude *;
+}
@@ -1,9 +1,14 @@
 package com.example.padyakol;
 
 import android.Manifest;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.ServiceConnection;
 import android.content.pm.PackageManager;
-import android.location.Location;
+import android.os.Build;
 import android.os.Bundle;
+import android.os.IBinder;
 import android.os.SystemClock;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -19,61 +24,64 @@ import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 import androidx.fragment.app.Fragment;
 
-import com.example.padyakol.models.Ride;
+import com.example.padyakol.map.HeatmapTileProvider;
+import com.example.padyakol.map.RoutePolylineRenderer;
+import com.example.padyakol.route.TrackStore;
+import com.example.padyakol.tracking.RideRecorderService;
+import com.example.padyakol.tracking.TrackingSnapshot;
 import com.google.android.gms.location.FusedLocationProviderClient;
-import com.google.android.gms.location.LocationCallback;
-import com.google.android.gms.location.LocationRequest;
-import com.google.android.gms.location.LocationResult;
 import com.google.android.gms.location.LocationServices;
-import com.google.android.gms.location.Priority;
 import com.google.android.gms.maps.CameraUpdateFactory;
 import com.google.android.gms.maps.GoogleMap;
 import com.google.android.gms.maps.OnMapReadyCallback;
 import com.google.android.gms.maps.SupportMapFragment;
 import com.google.android.gms.maps.model.LatLng;
-import com.google.android.gms.maps.model.Polyline;
-import com.google.android.gms.maps.model.PolylineOptions;
+import com.google.android.gms.maps.model.TileOverlay;
+import com.google.android.gms.maps.model.TileOverlayOptions;
 import com.google.firebase.auth.FirebaseAuth;
-import com.google.firebase.firestore.FieldValue;
-import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.GeoPoint;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Locale;
 
-public class HomeFragment extends Fragment implements OnMapReadyCallback {
+public class HomeFragment extends Fragment implements OnMapReadyCallback, RideRecorderService.Listener {
 
     private GoogleMap mMap;
     private FusedLocationProviderClient fusedLocationClient;
-    private LocationCallback locationCallback;
     private static final int PERMISSION_REQUEST_CODE = 1001;
 
     // UI
     private TextView tvSessionDistance, tvCurrentSpeed;
     private Chronometer chronometer;
     private Button btnRideToggle;
+    private RoutePolylineRenderer routeRenderer;
+    private TileOverlay heatmapOverlay;
 
-    // Data
-    private boolean isTracking = false;
-    private double sessionDistanceKm = 0.0;
-    private Location lastLocation = null;
-    private List<LatLng> pathPoints = new ArrayList<>();
-    private Polyline currentPolyline;
-    private long rideStartTime = 0;
+    // The ride itself lives in RideRecorderService; this fragment only mirrors it
+    private RideRecorderService recorder;
 
     // Firebase
     private FirebaseAuth mAuth;
-    private FirebaseFirestore db;
     private String userId;
 
+    private final ServiceConnection recorderConnection = new ServiceConnection() {
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder service) {
+            recorder = ((RideRecorderService.LocalBinder) service).getService();
+            recorder.addListener(HomeFragment.this);
+            syncWithRecorder();
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            recorder = null;
+        }
+    };
+
     @Nullable
     @Override
     public View onCreateView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container, @Nullable Bundle savedInstanceState) {
         View view = inflater.inflate(R.layout.fragment_home, container, false);
 
         mAuth = FirebaseAuth.getInstance();
-        db = FirebaseFirestore.getInstance();
         if (mAuth.getCurrentUser() != null) {
             userId = mAuth.getCurrentUser().getUid();
         }
@@ -83,14 +91,6 @@ public class HomeFragment extends Fragment implements OnMapReadyCallback {
         chronometer = view.findViewById(R.id.chronometer);
         btnRideToggle = view.findViewById(R.id.btnRideToggle);
 
-        if (isTracking) {
-            btnRideToggle.setText("Finish Ride");
-            btnRideToggle.setBackgroundColor(ContextCompat.getColor(requireContext(), android.R.color.holo_red_light));
-            tvSessionDistance.setText(String.format(Locale.US, "%.2f km", sessionDistanceKm));
-            chronometer.setBase(rideStartTime);
-            chronometer.start();
-        }
-
         SupportMapFragment mapFragment = (SupportMapFragment) getChildFragmentManager().findFragmentById(R.id.map);
         if (mapFragment != null) {
             mapFragment.getMapAsync(this);
@@ -102,6 +102,24 @@ public class HomeFragment extends Fragment implements OnMapReadyCallback {
         return view;
     }
 
+    @Override
+    public void onStart() {
+        super.onStart();
+        requireContext().bindService(new Intent(requireContext(), RideRecorderService.class),
+                recorderConnection, Context.BIND_AUTO_CREATE);
+    }
+
+    @Override
+    public void onStop() {
+        super.onStop();
+        // Unbinding doesn't stop a ride: the service is started and stays in the foreground
+        if (recorder != null) {
+            recorder.removeListener(this);
+            recorder = null;
+        }
+        requireContext().unbindService(recorderConnection);
+    }
+
     // --- FIX: Manage visibility to prevent crashes with other maps ---
     @Override
     public void onHiddenChanged(boolean hidden) {
@@ -112,20 +130,19 @@ public class HomeFragment extends Fragment implements OnMapReadyCallback {
 
         if (!hidden) {
             // Returning to view
-            if (mMap != null && isTracking) {
+            if (mMap != null && isTracking()) {
                 drawRoute();
             }
         }
     }
 
-    @Override
-    public void onDestroy() {
-        super.onDestroy();
-        stopLocationUpdates();
+    private boolean isTracking() {
+        return recorder != null && recorder.isRecording();
     }
 
     private void toggleTracking() {
-        if (!isTracking) {
+        if (recorder == null) return;
+        if (!recorder.isRecording()) {
             startRide();
         } else {
             stopRide();
@@ -134,155 +151,131 @@ public class HomeFragment extends Fragment implements OnMapReadyCallback {
 
     private void startRide() {
         if (checkPermission()) {
-            isTracking = true;
-            btnRideToggle.setText("Finish Ride");
-            btnRideToggle.setBackgroundColor(ContextCompat.getColor(requireContext(), android.R.color.holo_red_light));
-
-            pathPoints.clear();
-            if (currentPolyline != null) currentPolyline.remove();
-            sessionDistanceKm = 0.0;
-            tvSessionDistance.setText("0.00 km");
-            tvCurrentSpeed.setText("0.0 km/h");
-            lastLocation = null;
-
-            rideStartTime = SystemClock.elapsedRealtime();
-            chronometer.setBase(rideStartTime);
-            chronometer.start();
-
-            startLocationUpdates();
+            // The service reports back through onRecordingChanged once it is recording
+            RideRecorderService.startRide(requireContext());
         } else {
             requestPermission();
         }
     }
 
     private void stopRide() {
-        isTracking = false;
-        stopLocationUpdates();
-        btnRideToggle.setText("Start Ride");
-        btnRideToggle.setBackgroundResource(R.drawable.bg_button_gradient);
-
-        chronometer.stop();
-        long elapsedMillis = SystemClock.elapsedRealtime() - chronometer.getBase();
-        long durationSeconds = elapsedMillis / 1000;
-
-        double hours = durationSeconds / 3600.0;
-        double avgSpeed = (hours > 0) ? (sessionDistanceKm / hours) : 0.0;
-        long dbTimestamp = System.currentTimeMillis();
+        recorder.stopRide(userId, new RideRecorderService.StopCallback() {
+            @Override
+            public void onStopped(@NonNull RideRecorderService.StopResult result) {
+                onRideStopped(result);
+            }
 
-        saveRideData(sessionDistanceKm, durationSeconds, dbTimestamp, avgSpeed, pathPoints);
+            @Override
+            public void onSaved() {
+                // The ride is on the heatmap now; tiles it didn't touch come straight back from the cache
+                if (heatmapOverlay != null) heatmapOverlay.clearTileCache();
+                if (getContext() != null)
+                    Toast.makeText(getContext(), "Ride saved to Travel Log!", Toast.LENGTH_SHORT).show();
+            }
+        });
     }
 
-    private void saveRideData(double distance, long duration, long timestamp, double avgSpeed, List<LatLng> points) {
-        if (points.isEmpty()) {
-            Toast.makeText(getContext(), "No movement detected, ride not saved.", Toast.LENGTH_SHORT).show();
-            return;
+    // Rebuilds the screen from the recorder, e.g. after the view was recreated
+    private void syncWithRecorder() {
+        boolean recording = recorder.isRecording();
+        updateToggleButton(recording);
+        if (recording) {
+            tvSessionDistance.setText(String.format(Locale.US, "%.2f km", recorder.getDistanceKm()));
+            tvCurrentSpeed.setText(String.format(Locale.US, "%.1f km/h", recorder.getSpeedKmh()));
+            chronometer.setBase(recorder.getStartElapsedRealtime());
+            chronometer.start();
+            drawRoute();
         }
+    }
 
-        List<GeoPoint> geoPoints = new ArrayList<>();
-        // Optimize: Save every 3rd point
-        for (int i = 0; i < points.size(); i++) {
-            if (i % 3 == 0) {
-                geoPoints.add(new GeoPoint(points.get(i).latitude, points.get(i).longitude));
-            }
-        }
-        if (!points.isEmpty()) {
-            LatLng last = points.get(points.size() - 1);
-            geoPoints.add(new GeoPoint(last.latitude, last.longitude));
+    @Override
+    public void onRecordingChanged(boolean recording) {
+        updateToggleButton(recording);
+        if (recording) {
+            if (routeRenderer != null) routeRenderer.clear();
+            tvSessionDistance.setText("0.00 km");
+            tvCurrentSpeed.setText("0.0 km/h");
+            chronometer.setBase(recorder.getStartElapsedRealtime());
+            chronometer.start();
+        } else {
+            chronometer.stop();
         }
-
-        Ride newRide = new Ride(distance, duration, timestamp, avgSpeed, geoPoints);
-
-        db.collection("users").document(userId).collection("rides")
-                .add(newRide)
-                .addOnSuccessListener(docRef -> {
-                    if (getContext() != null)
-                        Toast.makeText(getContext(), "Ride saved to Travel Log!", Toast.LENGTH_SHORT).show();
-                });
-
-        db.collection("users").document(userId)
-                .update("totalKmTraveled", FieldValue.increment(distance));
-
-        tvSessionDistance.setText("0.00 km");
-        tvCurrentSpeed.setText("0.0 km/h");
-        chronometer.setBase(SystemClock.elapsedRealtime());
     }
 
-    private void startLocationUpdates() {
-        LocationRequest locationRequest = new LocationRequest.Builder(Priority.PRIORITY_HIGH_ACCURACY, 3000)
-                .setMinUpdateDistanceMeters(2)
-                .build();
-
-        locationCallback = new LocationCallback() {
-            @Override
-            public void onLocationResult(@NonNull LocationResult locationResult) {
-                if (!isAdded() || locationResult == null) return;
-                for (Location location : locationResult.getLocations()) {
-                    updateTracking(location);
-                }
-            }
-        };
-
-        if (ActivityCompat.checkSelfPermission(requireContext(), Manifest.permission.ACCESS_FINE_LOCATION) == PackageManager.PERMISSION_GRANTED) {
-            fusedLocationClient.requestLocationUpdates(locationRequest, locationCallback, android.os.Looper.getMainLooper());
+    // Main thread, at most once per frame
+    @Override
+    public void onSnapshot(@NonNull TrackingSnapshot snapshot) {
+        // Update Text Views always
+        tvCurrentSpeed.setText(String.format(Locale.US, "%.1f km/h", snapshot.getSpeedKmh()));
+        tvSessionDistance.setText(String.format(Locale.US, "%.2f km", snapshot.getDistanceKm()));
+
+        // Only draw on map if fragment is visible
+        int count = snapshot.getPointCount();
+        if (snapshot.getNewPointCount() > 0 && count > 1 && !isHidden() && mMap != null) {
+            TrackStore track = recorder.getTrack();
+            mMap.animateCamera(CameraUpdateFactory.newLatLng(new LatLng(track.getLat(count - 1), track.getLng(count - 1))));
+            drawRoute();
         }
     }
 
-    private void stopLocationUpdates() {
-        if (fusedLocationClient != null && locationCallback != null) {
-            fusedLocationClient.removeLocationUpdates(locationCallback);
+    private void updateToggleButton(boolean recording) {
+        if (recording) {
+            btnRideToggle.setText("Finish Ride");
+            btnRideToggle.setBackgroundColor(ContextCompat.getColor(requireContext(), android.R.color.holo_red_light));
+        } else {
+            btnRideToggle.setText("Start Ride");
+            btnRideToggle.setBackgroundResource(R.drawable.bg_button_gradient);
         }
     }
 
-    private void updateTracking(Location location) {
-        LatLng latLng = new LatLng(location.getLatitude(), location.getLongitude());
-
-        // Update Text Views always
-        float speedKmh = (location.hasSpeed()) ? location.getSpeed() * 3.6f : 0f;
-        tvCurrentSpeed.setText(String.format(Locale.US, "%.1f km/h", speedKmh));
-
-        if (isTracking) {
-            if (lastLocation != null) {
-                double distanceInMeters = lastLocation.distanceTo(location);
-                if (distanceInMeters > 2) {
-                    sessionDistanceKm += (distanceInMeters / 1000.0);
-                    tvSessionDistance.setText(String.format(Locale.US, "%.2f km", sessionDistanceKm));
-
-                    lastLocation = location;
-                    pathPoints.add(latLng);
-
-                    // Only draw on map if fragment is visible
-                    if (!isHidden() && mMap != null) {
-                        mMap.animateCamera(CameraUpdateFactory.newLatLng(latLng));
-                        drawRoute();
-                    }
-                }
-            } else {
-                lastLocation = location;
-                pathPoints.add(latLng);
-            }
+    // The service saves the ride; the fragment may have gone away while it was finishing
+    private void onRideStopped(RideRecorderService.StopResult result) {
+        if (!isAdded() || getView() == null) return;
+        if (result == RideRecorderService.StopResult.EMPTY) {
+            Toast.makeText(requireContext(), "No movement detected, ride not saved.", Toast.LENGTH_SHORT).show();
+        } else if (result == RideRecorderService.StopResult.KEPT_FOR_RECOVERY) {
+            Toast.makeText(requireContext(), "Signed out, ride kept until you sign in again.", Toast.LENGTH_LONG).show();
         }
+
+        tvSessionDistance.setText("0.00 km");
+        tvCurrentSpeed.setText("0.0 km/h");
+        chronometer.setBase(SystemClock.elapsedRealtime());
     }
 
+    // Only appends the points the map hasn't seen yet, so this is cheap on every fix
     private void drawRoute() {
-        if (mMap == null) return;
-        if (currentPolyline != null) currentPolyline.remove();
-        PolylineOptions polylineOptions = new PolylineOptions()
-                .addAll(pathPoints)
-                .width(15f)
-                .color(ContextCompat.getColor(requireContext(), R.color.padyak_accent))
-                .geodesic(true);
-        currentPolyline = mMap.addPolyline(polylineOptions);
+        if (mMap == null || routeRenderer == null || recorder == null) return;
+        routeRenderer.syncTo(recorder.getTrack());
     }
 
     @Override
     public void onMapReady(@NonNull GoogleMap googleMap) {
         mMap = googleMap;
+        // The first frame with map tiles is what startup is measured to (see the macrobenchmark module)
+        mMap.setOnMapLoadedCallback(() -> {
+            mMap.setOnMapLoadedCallback(null);
+            if (getActivity() != null) getActivity().reportFullyDrawn();
+        });
+        routeRenderer = RoutePolylineRenderer.forMap(mMap, ContextCompat.getColor(requireContext(), R.color.padyak_accent));
+        if (userId != null) {
+            // Below the live route; tiles are served from the on-device pyramid off the UI thread
+            heatmapOverlay = mMap.addTileOverlay(new TileOverlayOptions()
+                    .tileProvider(new HeatmapTileProvider(requireContext(), userId,
+                            ContextCompat.getColor(requireContext(), R.color.padyak_accent),
+                            ContextCompat.getColor(requireContext(), R.color.heatmap_hot)))
+                    .zIndex(-1f)
+                    .fadeIn(false));
+        }
+        if (isTracking()) {
+            drawRoute();
+        }
+
         if (checkPermission()) {
             if (ActivityCompat.checkSelfPermission(requireContext(), Manifest.permission.ACCESS_FINE_LOCATION) == PackageManager.PERMISSION_GRANTED) {
                 mMap.setMyLocationEnabled(true);
 
                 fusedLocationClient.getLastLocation().addOnSuccessListener(location -> {
-                    if (location != null && !isTracking) {
+                    if (location != null && !isTracking()) {
                         mMap.moveCamera(CameraUpdateFactory.newLatLngZoom(
                                 new LatLng(location.getLatitude(), location.getLongitude()), 16f));
                     }
@@ -296,6 +289,11 @@ public class HomeFragment extends Fragment implements OnMapReadyCallback {
     }
 
     private void requestPermission() {
-        requestPermissions(new String[]{Manifest.permission.ACCESS_FINE_LOCATION}, PERMISSION_REQUEST_CODE);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+            // The recording notification needs this from Android 13 on
+            requestPermissions(new String[]{Manifest.permission.ACCESS_FINE_LOCATION, Manifest.permission.POST_NOTIFICATIONS}, PERMISSION_REQUEST_CODE);
+        } else {
+            requestPermissions(new String[]{Manifest.permission.ACCESS_FINE_LOCATION}, PERMISSION_REQUEST_CODE);
+        }
     }
-}
\ No newline at end of file
+}
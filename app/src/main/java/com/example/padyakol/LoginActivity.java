@@ -67,11 +67,19 @@ public class LoginActivity extends AppCompatActivity {
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
-        setContentView(R.layout.activity_login);
 
         // Initialize Firebase Auth
         mAuth = FirebaseAuth.getInstance();
 
+        // This is the launcher, so every cold start comes through here. A signed-in user goes straight
+        // on, without inflating the form or setting up the Google and Facebook clients.
+        if (mAuth.getCurrentUser() != null) {
+            navigateToMain();
+            return;
+        }
+
+        setContentView(R.layout.activity_login);
+
         // Initialize Views
         etEmail = findViewById(R.id.etEmail);
         etPassword = findViewById(R.id.etPassword);
@@ -1,22 +1,31 @@
 package com.example.padyakol;
 
+import android.content.ComponentName;
 import android.content.Intent;
+import android.content.ServiceConnection;
 import android.os.Bundle;
+import android.os.IBinder;
 import android.view.View;
 import android.widget.ImageButton;
 import android.widget.PopupMenu;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.fragment.app.Fragment;
 import androidx.fragment.app.FragmentManager;
 import androidx.fragment.app.FragmentTransaction;
 
+import java.io.File;
+
+import com.example.padyakol.data.RideRepository;
+import com.example.padyakol.tracking.RideJournal;
+import com.example.padyakol.tracking.RideRecorderService;
 import com.google.android.material.bottomnavigation.BottomNavigationView;
 import com.google.firebase.auth.FirebaseAuth;
 
-public class MainActivity extends AppCompatActivity {
+public class MainActivity extends AppCompatActivity implements RideRecorderService.Listener {
 
     private BottomNavigationView bottomNavigationView;
     private TextView tvPageTitle;
@@ -30,12 +39,31 @@ public class MainActivity extends AppCompatActivity {
     // Firebase
     private FirebaseAuth mAuth;
 
+    // Recorder (bound only to show recording state in the navigation bar)
+    private RideRecorderService recorder;
+    private boolean recorderBound = false;
+    private boolean recoveryOffered = false;
+
+    private final ServiceConnection recorderConnection = new ServiceConnection() {
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder service) {
+            recorder = ((RideRecorderService.LocalBinder) service).getService();
+            recorder.addListener(MainActivity.this);
+            onRecordingChanged(recorder.isRecording());
+            checkForUnfinishedRide();
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            recorder = null;
+        }
+    };
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
-        setContentView(R.layout.activity_main);
 
-        // 1. Auth Check
+        // 1. Auth Check (before inflating, so a signed-out start doesn't pay for the map layout)
         mAuth = FirebaseAuth.getInstance();
         if (mAuth.getCurrentUser() == null) {
             startActivity(new Intent(this, LoginActivity.class));
@@ -43,20 +71,30 @@ public class MainActivity extends AppCompatActivity {
             return;
         }
 
+        setContentView(R.layout.activity_main);
+
         // 2. Init Views
         bottomNavigationView = findViewById(R.id.bottom_navigation);
         tvPageTitle = findViewById(R.id.tvPageTitle);
         btnSettings = findViewById(R.id.btnSettings);
 
-        // 3. Init Fragments
-        homeFragment = new HomeFragment();
-        travelLogFragment = new TravelLogFragment();
+        // 3. Init Fragments. Only Home is needed for the first frame; the travel log is created the
+        // first time its tab is opened. After a recreation the fragment manager already has them.
+        FragmentManager fm = getSupportFragmentManager();
+        homeFragment = (HomeFragment) fm.findFragmentByTag("HOME");
+        travelLogFragment = (TravelLogFragment) fm.findFragmentByTag("LOG");
 
         // 4. Default Load Home
-        FragmentManager fm = getSupportFragmentManager();
-        fm.beginTransaction().add(R.id.fragment_container, homeFragment, "HOME").commit();
+        if (homeFragment == null) {
+            homeFragment = new HomeFragment();
+            fm.beginTransaction().add(R.id.fragment_container, homeFragment, "HOME").commit();
+        }
         activeFragment = homeFragment;
         tvPageTitle.setText("Ride Dashboard");
+        if (travelLogFragment != null && !travelLogFragment.isHidden()) {
+            activeFragment = travelLogFragment;
+            tvPageTitle.setText("My Travel Log");
+        }
 
         // 5. Navigation Listener
         bottomNavigationView.setOnItemSelectedListener(item -> {
@@ -66,6 +104,7 @@ public class MainActivity extends AppCompatActivity {
                 tvPageTitle.setText("Ride Dashboard");
                 return true;
             } else if (id == R.id.nav_log) {
+                if (travelLogFragment == null) travelLogFragment = new TravelLogFragment();
                 switchFragment(travelLogFragment, "LOG");
                 tvPageTitle.setText("My Travel Log");
                 return true;
@@ -78,6 +117,57 @@ public class MainActivity extends AppCompatActivity {
 
         // 6. Settings Listener
         btnSettings.setOnClickListener(this::showSettingsMenu);
+
+        // 7. Ride Recorder
+        recorderBound = bindService(new Intent(this, RideRecorderService.class), recorderConnection, BIND_AUTO_CREATE);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (recorder != null) {
+            recorder.removeListener(this);
+            recorder = null;
+        }
+        if (recorderBound) {
+            unbindService(recorderConnection);
+            recorderBound = false;
+        }
+    }
+
+    // A journal left behind while nothing is recording or saving it means the app died mid-ride
+    private void checkForUnfinishedRide() {
+        if (recoveryOffered || recorder == null || recorder.isRecording() || recorder.isFinishing()) return;
+        File journalFile = RideRecorderService.journalFile(this);
+        if (!RideJournal.exists(journalFile) || RideRepository.getInstance(this).isSaving(journalFile)) return;
+        recoveryOffered = true;
+
+        new AlertDialog.Builder(this)
+                .setTitle("Unfinished ride")
+                .setMessage("Your last ride was interrupted. Do you want to continue it or save it as it is?")
+                .setCancelable(false)
+                .setPositiveButton("Resume", (dialog, which) -> {
+                    RideRecorderService.resumeRide(this);
+                    navigateToHome();
+                })
+                .setNeutralButton("Save", (dialog, which) -> {
+                    if (mAuth.getCurrentUser() == null) return;
+                    RideRepository.getInstance(this).saveRecoveredRide(mAuth.getCurrentUser().getUid(), journalFile, () ->
+                            Toast.makeText(this, "Ride saved to Travel Log!", Toast.LENGTH_SHORT).show());
+                })
+                .setNegativeButton("Discard", (dialog, which) -> RideJournal.delete(journalFile))
+                .show();
+    }
+
+    // Badge on the Route tab while a ride is being recorded, so it is visible from any screen
+    @Override
+    public void onRecordingChanged(boolean recording) {
+        if (bottomNavigationView == null) return;
+        if (recording) {
+            bottomNavigationView.getOrCreateBadge(R.id.nav_route).setVisible(true);
+        } else {
+            bottomNavigationView.removeBadge(R.id.nav_route);
+        }
     }
 
     private void switchFragment(Fragment targetFragment, String tag) {
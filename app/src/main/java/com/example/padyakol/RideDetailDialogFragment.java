@@ -1,71 +1,72 @@
 package com.example.padyakol;
 
 import android.app.Dialog;
+import android.content.Context;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.view.Window;
+import android.widget.EditText;
 import android.widget.ImageButton;
 import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.appcompat.app.AlertDialog;
 import androidx.fragment.app.DialogFragment;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.Observer;
 
-import com.example.padyakol.models.Ride;
+import com.example.padyakol.adapters.RideRowText;
+import com.example.padyakol.data.RideCache;
+import com.example.padyakol.data.RideRepository;
+import com.example.padyakol.data.SegmentEffortEntity;
+import com.example.padyakol.data.SegmentEntity;
 import com.google.android.gms.maps.CameraUpdateFactory;
 import com.google.android.gms.maps.GoogleMap;
 import com.google.android.gms.maps.MapView;
 import com.google.android.gms.maps.OnMapReadyCallback;
 import com.google.android.gms.maps.model.LatLng;
 import com.google.android.gms.maps.model.LatLngBounds;
-import com.google.android.gms.maps.model.PolylineOptions;
-import com.google.firebase.firestore.GeoPoint;
+import com.google.firebase.auth.FirebaseAuth;
+import com.example.padyakol.map.RouteLodRenderer;
+import com.example.padyakol.models.Ride;
+import com.example.padyakol.route.GeoMath;
+import com.example.padyakol.route.Route;
+import com.example.padyakol.route.RoutePyramid;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class RideDetailDialogFragment extends DialogFragment implements OnMapReadyCallback {
 
     private MapView mapView;
     private GoogleMap googleMap;
 
-    // Data passed via arguments
-    private double distance;
-    private double speed;
-    private long duration;
-    // Changed to double[] for better performance and stability
-    private double[] latArray;
-    private double[] lngArray;
+    // Only the ride id travels in the arguments; the ride itself comes from RideCache
+    private static final String ARG_RIDE_ID = "rideId";
+    private String rideId;
+    private RideCache.Entry ride;
+    private TextView tvDist, tvSpeed, tvAnalytics;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private RoutePyramid pyramid;
+    private LatLngBounds routeBounds;
+    // Route index of the start long-pressed while marking a new segment, -1 when not marking
+    private int segmentStart = -1;
+    private boolean markingSegment;
 
-    public static RideDetailDialogFragment newInstance(Ride ride) {
+    // The ride should already be in RideCache (the travel log loads it before opening the dialog)
+    public static RideDetailDialogFragment newInstance(String rideId) {
         RideDetailDialogFragment fragment = new RideDetailDialogFragment();
         Bundle args = new Bundle();
-        // Use safe getters if available, otherwise handle nulls manually
-        args.putDouble("distance", ride.getDistanceKm());
-        args.putDouble("speed", ride.getAvgSpeedKmh());
-        args.putLong("duration", ride.getDurationSeconds());
-
-        // Convert List<GeoPoint> to double[] (primitive arrays)
-        // This avoids Serializable overhead and prevents crashes with large data
-        if (ride.getRoutePoints() != null && !ride.getRoutePoints().isEmpty()) {
-            int size = ride.getRoutePoints().size();
-            double[] lats = new double[size];
-            double[] lngs = new double[size];
-
-            for (int i = 0; i < size; i++) {
-                GeoPoint gp = ride.getRoutePoints().get(i);
-                if (gp != null) {
-                    lats[i] = gp.getLatitude();
-                    lngs[i] = gp.getLongitude();
-                }
-            }
-            args.putDoubleArray("lats", lats);
-            args.putDoubleArray("lngs", lngs);
-        }
-
+        args.putString(ARG_RIDE_ID, rideId);
         fragment.setArguments(args);
         return fragment;
     }
@@ -75,12 +76,198 @@ public class RideDetailDialogFragment extends DialogFragment implements OnMapRea
         super.onCreate(savedInstanceState);
         setStyle(DialogFragment.STYLE_NORMAL, android.R.style.Theme_Material_Light_NoActionBar_Fullscreen);
         if (getArguments() != null) {
-            distance = getArguments().getDouble("distance", 0.0);
-            speed = getArguments().getDouble("speed", 0.0);
-            duration = getArguments().getLong("duration", 0);
-            latArray = getArguments().getDoubleArray("lats");
-            lngArray = getArguments().getDoubleArray("lngs");
+            rideId = getArguments().getString(ARG_RIDE_ID);
+        }
+        if (rideId == null) return;
+
+        RideCache.Entry cached = RideCache.getInstance(requireContext()).get(rideId);
+        if (cached != null) {
+            showRide(cached);
+        } else if (FirebaseAuth.getInstance().getCurrentUser() != null) {
+            // Evicted, or the dialog was restored after the process died: read it back from storage
+            RideRepository.getInstance(requireContext()).loadRide(
+                    FirebaseAuth.getInstance().getCurrentUser().getUid(), rideId, entry -> {
+                        if (entry != null && isAdded()) showRide(entry);
+                    });
+        }
+    }
+
+    private void showRide(RideCache.Entry entry) {
+        ride = entry;
+        bindStats();
+        prepareRoute(entry);
+    }
+
+    private void bindStats() {
+        if (ride == null || tvDist == null) return;
+        tvDist.setText(String.format("%.2f km", ride.getRide().getDistanceKm()));
+        tvSpeed.setText(String.format("%.1f km/h", ride.getRide().getAvgSpeedKmh()));
+
+        // Stored with the ride when it was recorded, so nothing here looks at the route
+        Ride summary = ride.getRide();
+        if (summary.getMovingSeconds() > 0) {
+            StringBuilder text = new StringBuilder(String.format(Locale.US, "Max %.1f km/h  ·  Moving %s at %.1f km/h",
+                    summary.getMaxSpeedKmh(), formatDuration(summary.getMovingSeconds()), summary.getMovingAvgSpeedKmh()));
+            int[] splits = summary.getSplits();
+            if (splits.length > 0) {
+                int fastest = Integer.MAX_VALUE;
+                for (int split : splits) fastest = Math.min(fastest, split);
+                text.append("  ·  Best km ").append(formatDuration(fastest));
+            }
+            tvAnalytics.setText(text);
+            tvAnalytics.setVisibility(View.VISIBLE);
+        } else {
+            tvAnalytics.setVisibility(View.GONE);
+        }
+    }
+
+    private void confirmDelete() {
+        if (rideId == null || FirebaseAuth.getInstance().getCurrentUser() == null) return;
+        String userId = FirebaseAuth.getInstance().getCurrentUser().getUid();
+        new AlertDialog.Builder(requireContext())
+                .setTitle("Delete ride")
+                .setMessage("This ride will be removed from your Travel Log and your totals.")
+                .setPositiveButton("Delete", (dialog, which) -> {
+                    // Application context, so the toast still shows once the dialog is gone
+                    Context appContext = requireContext().getApplicationContext();
+                    RideRepository.getInstance(appContext).deleteRide(userId, rideId, () ->
+                            Toast.makeText(appContext, "Ride deleted", Toast.LENGTH_SHORT).show());
+                    dismiss();
+                })
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    // --- Segments ---
+
+    // The rider's segments, and marking a new one on this ride's route
+    private void showSegments() {
+        if (FirebaseAuth.getInstance().getCurrentUser() == null) return;
+        String userId = FirebaseAuth.getInstance().getCurrentUser().getUid();
+        observeOnce(RideRepository.getInstance(requireContext()).observeSegments(userId), segments -> {
+            if (!isAdded()) return;
+            String[] items = new String[segments.size() + 1];
+            for (int i = 0; i < segments.size(); i++) {
+                SegmentEntity segment = segments.get(i);
+                items[i] = String.format(Locale.US, "%s  ·  %.2f km", segment.name, segment.distanceMeters / 1000.0);
+            }
+            items[segments.size()] = "New segment from this ride";
+            new AlertDialog.Builder(requireContext())
+                    .setTitle("Segments")
+                    .setItems(items, (dialog, which) -> {
+                        if (which < segments.size()) {
+                            showLeaderboard(segments.get(which));
+                        } else {
+                            startMarkingSegment();
+                        }
+                    })
+                    .show();
+        });
+    }
+
+    private void startMarkingSegment() {
+        Route route = ride != null ? ride.getRoute() : null;
+        if (googleMap == null || route == null || !route.hasTimes()) {
+            Toast.makeText(requireContext(), "This ride has no timed route to mark a segment on.", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        markingSegment = true;
+        segmentStart = -1;
+        Toast.makeText(requireContext(), "Long-press the start of the segment on the route.", Toast.LENGTH_SHORT).show();
+        googleMap.setOnMapLongClickListener(point -> {
+            if (!markingSegment) return;
+            int index = nearestRoutePoint(route, point);
+            if (segmentStart < 0) {
+                segmentStart = index;
+                Toast.makeText(requireContext(), "Now long-press its finish.", Toast.LENGTH_SHORT).show();
+                return;
+            }
+            markingSegment = false;
+            // In the order this ride went, whichever end was pressed first
+            nameSegment(Math.min(segmentStart, index), Math.max(segmentStart, index));
+        });
+    }
+
+    private static int nearestRoutePoint(Route route, LatLng point) {
+        double metersPerDegLng = GeoMath.metersPerDegreeLng(point.latitude);
+        int nearest = 0;
+        double nearestSq = Double.MAX_VALUE;
+        for (int i = 0; i < route.size(); i++) {
+            double dx = (route.getLng(i) - point.longitude) * metersPerDegLng;
+            double dy = (route.getLat(i) - point.latitude) * GeoMath.METERS_PER_DEGREE;
+            double d = dx * dx + dy * dy;
+            if (d < nearestSq) {
+                nearestSq = d;
+                nearest = i;
+            }
         }
+        return nearest;
+    }
+
+    private void nameSegment(int fromIndex, int toIndex) {
+        if (FirebaseAuth.getInstance().getCurrentUser() == null) return;
+        String userId = FirebaseAuth.getInstance().getCurrentUser().getUid();
+        EditText input = new EditText(requireContext());
+        input.setHint("Segment name");
+        new AlertDialog.Builder(requireContext())
+                .setTitle("New segment")
+                .setView(input)
+                .setPositiveButton("Save", (dialog, which) -> {
+                    String name = input.getText().toString().trim();
+                    if (name.isEmpty()) name = "Segment";
+                    RideRepository.getInstance(requireContext()).createSegment(userId, name, rideId, fromIndex, toIndex, segment -> {
+                        if (!isAdded()) return;
+                        if (segment == null) {
+                            Toast.makeText(requireContext(), "Pick two different points on the route.", Toast.LENGTH_SHORT).show();
+                        } else {
+                            showLeaderboard(segment);
+                        }
+                    });
+                })
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    private void showLeaderboard(SegmentEntity segment) {
+        observeOnce(RideRepository.getInstance(requireContext()).observeLeaderboard(segment.segmentId, 10), efforts -> {
+            if (!isAdded()) return;
+            RideRowText text = new RideRowText();
+            StringBuilder board = new StringBuilder();
+            for (int i = 0; i < efforts.size(); i++) {
+                SegmentEffortEntity effort = efforts.get(i);
+                if (i > 0) board.append('\n');
+                board.append(i + 1).append(".  ").append(formatDuration(effort.elapsedSeconds))
+                        .append("  ·  ").append(text.date(effort.startedAt));
+            }
+            if (efforts.isEmpty()) board.append("No rides have covered this segment yet.");
+            new AlertDialog.Builder(requireContext())
+                    .setTitle(segment.name)
+                    .setMessage(board)
+                    .setPositiveButton("OK", null)
+                    .setNegativeButton("Delete segment", (dialog, which) ->
+                            RideRepository.getInstance(requireContext()).deleteSegment(segment.segmentId))
+                    .show();
+        });
+    }
+
+    // A snapshot for a dialog, rather than a list kept up to date
+    private <T> void observeOnce(LiveData<T> data, Observer<T> observer) {
+        data.observe(this, new Observer<T>() {
+            @Override
+            public void onChanged(T value) {
+                data.removeObserver(this);
+                observer.onChanged(value);
+            }
+        });
+    }
+
+    private static String formatDuration(long seconds) {
+        long hours = seconds / 3600;
+        long minutes = (seconds % 3600) / 60;
+        long secs = seconds % 60;
+        return hours > 0
+                ? String.format(Locale.US, "%d:%02d:%02d", hours, minutes, secs)
+                : String.format(Locale.US, "%d:%02d", minutes, secs);
     }
 
     @Nullable
@@ -93,13 +280,16 @@ public class RideDetailDialogFragment extends DialogFragment implements OnMapRea
         tvTitle.setText("Ride Summary");
         ImageButton btnClose = view.findViewById(R.id.btnCloseDetail);
         btnClose.setOnClickListener(v -> dismiss());
+        ImageButton btnDelete = view.findViewById(R.id.btnDeleteRide);
+        btnDelete.setOnClickListener(v -> confirmDelete());
+        ImageButton btnSegments = view.findViewById(R.id.btnSegments);
+        btnSegments.setOnClickListener(v -> showSegments());
 
         // Setup Stats
-        TextView tvDist = view.findViewById(R.id.tvDetailDistance);
-        TextView tvSpeed = view.findViewById(R.id.tvDetailSpeed);
-
-        tvDist.setText(String.format("%.2f km", distance));
-        tvSpeed.setText(String.format("%.1f km/h", speed));
+        tvDist = view.findViewById(R.id.tvDetailDistance);
+        tvSpeed = view.findViewById(R.id.tvDetailSpeed);
+        tvAnalytics = view.findViewById(R.id.tvDetailAnalytics);
+        bindStats();
 
         // Setup Map safely
         mapView = view.findViewById(R.id.mapViewDetail);
@@ -114,44 +304,46 @@ public class RideDetailDialogFragment extends DialogFragment implements OnMapRea
     @Override
     public void onMapReady(@NonNull GoogleMap map) {
         googleMap = map;
-        if (latArray != null && lngArray != null && latArray.length > 0) {
-            drawRoute();
+        drawRoute();
+    }
+
+    // The pyramid is kept with the cached ride, so only the first open builds it (off the main thread)
+    private void prepareRoute(RideCache.Entry entry) {
+        if (entry.getRoute() == null || entry.getRoute().isEmpty()) return;
+        if (entry.isPrepared()) {
+            showPyramid(entry.getPyramid(), entry.getBounds());
+            return;
         }
+        executor.execute(() -> {
+            RoutePyramid built = entry.getPyramid();
+            double[] bounds = entry.getBounds();
+            mainHandler.post(() -> {
+                if (isAdded()) showPyramid(built, bounds);
+            });
+        });
+    }
+
+    private void showPyramid(@Nullable RoutePyramid built, @Nullable double[] bounds) {
+        if (built == null) return;
+        pyramid = built;
+        routeBounds = new LatLngBounds(new LatLng(bounds[0], bounds[1]), new LatLng(bounds[2], bounds[3]));
+        drawRoute();
     }
 
     private void drawRoute() {
         try {
-            if (googleMap == null || latArray == null || latArray.length == 0) return;
-
-            PolylineOptions options = new PolylineOptions()
-                    .width(15)
-                    .color(0xFF2196F3) // Padyak Accent Blue
-                    .geodesic(true);
-
-            LatLngBounds.Builder builder = new LatLngBounds.Builder();
-            boolean hasPoints = false;
-
-            for (int i = 0; i < latArray.length; i++) {
-                // simple check to avoid 0,0 if something went wrong during conversion
-                if (latArray[i] != 0 || lngArray[i] != 0) {
-                    LatLng point = new LatLng(latArray[i], lngArray[i]);
-                    options.add(point);
-                    builder.include(point);
-                    hasPoints = true;
-                }
-            }
+            if (googleMap == null || pyramid == null) return;
+
+            // Only the level that fits the zoom, and only near the screen, is on the map at a time
+            RouteLodRenderer renderer = new RouteLodRenderer(googleMap, pyramid, 0xFF2196F3, 15); // Padyak Accent Blue
+            googleMap.setOnCameraIdleListener(renderer);
 
-            if (hasPoints) {
-                googleMap.addPolyline(options);
-                try {
-                    LatLngBounds bounds = builder.build();
-                    // Add padding to edges
-                    googleMap.moveCamera(CameraUpdateFactory.newLatLngBounds(bounds, 100));
-                } catch (IllegalStateException e) {
-                    // Fallback if bounds fail (e.g. all points were identical)
-                    googleMap.moveCamera(CameraUpdateFactory.newLatLngZoom(
-                            new LatLng(latArray[0], lngArray[0]), 15f));
-                }
+            try {
+                // Add padding to edges
+                googleMap.moveCamera(CameraUpdateFactory.newLatLngBounds(routeBounds, 100));
+            } catch (IllegalStateException e) {
+                // Fallback if bounds fail (e.g. all points were identical)
+                googleMap.moveCamera(CameraUpdateFactory.newLatLngZoom(routeBounds.getCenter(), 15f));
             }
         } catch (Exception e) {
             e.printStackTrace();
@@ -169,7 +361,7 @@ public class RideDetailDialogFragment extends DialogFragment implements OnMapRea
     @Override
     public void onStop() { super.onStop(); if(mapView!=null) mapView.onStop(); }
     @Override
-    public void onDestroy() { super.onDestroy(); if(mapView!=null) mapView.onDestroy(); }
+    public void onDestroy() { super.onDestroy(); executor.shutdownNow(); if(mapView!=null) mapView.onDestroy(); }
     @Override
     public void onLowMemory() { super.onLowMemory(); if(mapView!=null) mapView.onLowMemory(); }
     @Override
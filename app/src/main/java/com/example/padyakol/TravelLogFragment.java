@@ -1,42 +1,82 @@
 package com.example.padyakol;
 
+import android.net.Uri;
 import android.os.Bundle;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.Button;
+import android.widget.ImageButton;
 import android.widget.ProgressBar;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.appcompat.app.AlertDialog;
+import androidx.core.view.OneShotPreDrawListener;
 import androidx.fragment.app.Fragment;
+import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
+import androidx.tracing.Trace;
 
 import com.example.padyakol.adapters.TravelLogAdapter;
+import com.example.padyakol.data.RideExporter;
+import com.example.padyakol.data.RideImporter;
+import com.example.padyakol.data.RideRepository;
 import com.example.padyakol.models.Ride;
+import com.example.padyakol.transfer.TrackFormat;
 import com.google.firebase.auth.FirebaseAuth;
-import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.Query;
 
-import java.util.ArrayList;
+import java.time.LocalDate;
 import java.util.List;
 
 public class TravelLogFragment extends Fragment {
 
+    private static final int PREFETCH_DISTANCE = 10;
+    // Trace section from creating the view to the first frame with rides in it, read by TravelLogBenchmark
+    static final String FIRST_PAINT_SECTION = "TravelLogFirstPaint";
+    private static final String STATE_EXPORT_FORMAT = "exportFormat";
+    // Other apps label GPX and TCX files inconsistently, often as plain XML or binary
+    private static final String[] IMPORT_TYPES = {TrackFormat.GPX.mimeType, TrackFormat.TCX.mimeType,
+            "application/xml", "text/xml", "application/octet-stream"};
+
     private RecyclerView recyclerView;
     private ProgressBar progressBar;
     private TextView tvEmptyState;
     private Button btnBackToMap;
     private TravelLogAdapter adapter;
-    private List<Ride> rideList;
 
-    private FirebaseFirestore db;
+    private RideRepository repository;
+    private TravelLogViewModel viewModel;
     private FirebaseAuth mAuth;
 
+    // Kept across the picker, which may outlive the process
+    private TrackFormat exportFormat = TrackFormat.GPX;
+
+    private final ActivityResultLauncher<String[]> importPicker = registerForActivityResult(
+            new ActivityResultContracts.OpenMultipleDocuments(), this::importTracks);
+    private final ActivityResultLauncher<String> exportPicker = registerForActivityResult(
+            new ActivityResultContracts.CreateDocument("application/zip"), this::exportTracks);
+
+    @Override
+    public void onCreate(@Nullable Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        if (savedInstanceState != null) {
+            exportFormat = TrackFormat.valueOf(savedInstanceState.getString(STATE_EXPORT_FORMAT, TrackFormat.GPX.name()));
+        }
+    }
+
+    @Override
+    public void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putString(STATE_EXPORT_FORMAT, exportFormat.name());
+    }
+
     @Nullable
     @Override
     public View onCreateView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container, @Nullable Bundle savedInstanceState) {
@@ -49,41 +89,17 @@ public class TravelLogFragment extends Fragment {
 
         // Setup Recycler
         recyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
-        rideList = new ArrayList<>();
 
         // --- ADAPTER SETUP WITH CLICK LISTENER ---
-        adapter = new TravelLogAdapter(requireContext(), rideList, ride -> {
-            // This code runs when a user clicks a log card
-            try {
-                if (ride == null) {
-                    return; // Fail silently if data is null
-                }
+        adapter = new TravelLogAdapter(requireContext(), this::openRide);
 
-                if (ride.getRoutePoints() != null && !ride.getRoutePoints().isEmpty()) {
-                    // Double check we have at least one valid point
-                    if (ride.getRoutePoints().get(0) != null) {
-                        try {
-                            RideDetailDialogFragment dialog = RideDetailDialogFragment.newInstance(ride);
-                            dialog.show(getChildFragmentManager(), "RideDetail");
-                        } catch (Exception e) {
-                            Log.e("TravelLog", "Error showing dialog", e);
-                            Toast.makeText(getContext(), "Could not open map details.", Toast.LENGTH_SHORT).show();
-                        }
-                    } else {
-                        Toast.makeText(getContext(), "Ride data is incomplete.", Toast.LENGTH_SHORT).show();
-                    }
-                } else {
-                    Toast.makeText(getContext(), "No map data available for this ride.", Toast.LENGTH_SHORT).show();
-                }
-            } catch (Exception e) {
-                Log.e("TravelLog", "Critical error in click listener", e);
-            }
-        });
+        adapter.setOnNearEndListener(PREFETCH_DISTANCE, this::loadNextPage);
 
         recyclerView.setAdapter(adapter);
 
-        // Firebase
-        db = FirebaseFirestore.getInstance();
+        // Data (local database, kept in step with Firestore by the view model's listener)
+        repository = RideRepository.getInstance(requireContext());
+        viewModel = new ViewModelProvider(this).get(TravelLogViewModel.class);
         mAuth = FirebaseAuth.getInstance();
 
         // Button Listener: Go back to map
@@ -93,59 +109,111 @@ public class TravelLogFragment extends Fragment {
             }
         });
 
-        loadTravelLogs();
+        ImageButton btnTransfer = view.findViewById(R.id.btnTransfer);
+        btnTransfer.setOnClickListener(v -> showTransferOptions());
 
-        return view;
-    }
+        observeTravelLogs();
 
-    @Override
-    public void onHiddenChanged(boolean hidden) {
-        super.onHiddenChanged(hidden);
-        if (!hidden) {
-            loadTravelLogs();
-        }
+        return view;
     }
 
-    private void loadTravelLogs() {
+    private void observeTravelLogs() {
         if (mAuth.getCurrentUser() == null) return;
         String userId = mAuth.getCurrentUser().getUid();
 
-        // Only show progress if list is empty
-        if (rideList.isEmpty()) {
-            progressBar.setVisibility(View.VISIBLE);
+        // Only show progress until the first read from disk
+        progressBar.setVisibility(View.VISIBLE);
+        Trace.beginAsyncSection(FIRST_PAINT_SECTION, 0);
+        boolean[] painted = {false};
+
+        // Switching back to this tab re-renders from the view model; nothing is queried again
+        viewModel.getRows(userId).observe(getViewLifecycleOwner(), rows -> {
+            progressBar.setVisibility(View.GONE);
+            // Each emission is a fresh list, so it can be handed to the differ as is
+            adapter.submitList(rows, () -> {
+                if (painted[0]) return;
+                painted[0] = true;
+                OneShotPreDrawListener.add(recyclerView, () -> Trace.endAsyncSection(FIRST_PAINT_SECTION, 0));
+            });
+            tvEmptyState.setVisibility(rows.isEmpty() ? View.VISIBLE : View.GONE);
+        });
+    }
+
+    // This code runs when a user clicks a log card. The list only holds summaries, so the ride is
+    // loaded into RideCache first and the dialog only gets its id.
+    private void openRide(Ride ride) {
+        if (ride == null || ride.getRideId() == null || mAuth.getCurrentUser() == null) {
+            return; // Fail silently if data is null
         }
 
-        db.collection("users").document(userId).collection("rides")
-                .orderBy("timestamp", Query.Direction.DESCENDING)
-                .get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
-                    if (!isAdded()) return;
-
-                    progressBar.setVisibility(View.GONE);
-                    rideList.clear();
-
-                    if (!queryDocumentSnapshots.isEmpty()) {
-                        try {
-                            List<Ride> rides = queryDocumentSnapshots.toObjects(Ride.class);
-                            rideList.addAll(rides);
-                            adapter.notifyDataSetChanged();
-                            tvEmptyState.setVisibility(View.GONE);
-                        } catch (Exception e) {
-                            // This protects against data type mismatches in Firestore
-                            Log.e("TravelLog", "Error parsing ride data", e);
-                            if (rideList.isEmpty()) {
-                                tvEmptyState.setText("Error loading ride history.");
-                                tvEmptyState.setVisibility(View.VISIBLE);
+        repository.loadRide(mAuth.getCurrentUser().getUid(), ride.getRideId(), entry -> {
+            if (!isAdded()) return;
+            try {
+                if (entry == null) {
+                    Toast.makeText(getContext(), "No map data available for this ride.", Toast.LENGTH_SHORT).show();
+                } else if (entry.getRoute().isEmpty()) {
+                    Toast.makeText(getContext(), "Ride data is incomplete.", Toast.LENGTH_SHORT).show();
+                } else {
+                    RideDetailDialogFragment dialog = RideDetailDialogFragment.newInstance(ride.getRideId());
+                    dialog.show(getChildFragmentManager(), "RideDetail");
+                }
+            } catch (Exception e) {
+                Log.e("TravelLog", "Error showing dialog", e);
+                Toast.makeText(getContext(), "Could not open map details.", Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+
+    // --- GPX/TCX import and export ---
+
+    private void showTransferOptions() {
+        new AlertDialog.Builder(requireContext())
+                .setTitle("Ride files")
+                .setItems(new String[]{"Import GPX or TCX files", "Export all rides as GPX", "Export all rides as TCX"},
+                        (dialog, which) -> {
+                            if (which == 0) {
+                                importPicker.launch(IMPORT_TYPES);
+                            } else {
+                                exportFormat = which == 1 ? TrackFormat.GPX : TrackFormat.TCX;
+                                exportPicker.launch("padyakol-rides-" + LocalDate.now() + "-" + exportFormat.extension + ".zip");
                             }
-                        }
-                    } else {
-                        tvEmptyState.setVisibility(View.VISIBLE);
-                    }
-                })
-                .addOnFailureListener(e -> {
-                    if (!isAdded()) return;
-                    progressBar.setVisibility(View.GONE);
-                    Log.e("TravelLog", "Firestore Error", e);
-                });
+                        })
+                .show();
+    }
+
+    private void importTracks(List<Uri> uris) {
+        if (uris == null || uris.isEmpty() || mAuth.getCurrentUser() == null) return;
+        Toast.makeText(getContext(), "Importing " + uris.size() + " files...", Toast.LENGTH_SHORT).show();
+        // The list refreshes itself from the database as the rides land
+        repository.importTracks(mAuth.getCurrentUser().getUid(), uris, this::onImported);
+    }
+
+    private void onImported(RideImporter.Result result) {
+        if (!isAdded()) return;
+        StringBuilder message = new StringBuilder("Imported " + result.imported + " rides");
+        if (result.duplicates > 0) message.append(", ").append(result.duplicates).append(" already in your log");
+        if (!result.failed.isEmpty()) message.append(", ").append(result.failed.size()).append(" unreadable");
+        Toast.makeText(getContext(), message, Toast.LENGTH_LONG).show();
+    }
+
+    private void exportTracks(Uri target) {
+        if (target == null || mAuth.getCurrentUser() == null) return;
+        repository.exportTracks(mAuth.getCurrentUser().getUid(), target, exportFormat, this::onExported);
+    }
+
+    private void onExported(@Nullable RideExporter.Result result) {
+        if (!isAdded()) return;
+        if (result == null) {
+            Toast.makeText(getContext(), "Could not write the export file.", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        String message = "Exported " + result.exported + " rides";
+        if (result.missing > 0) message += ", " + result.missing + " without a route";
+        Toast.makeText(getContext(), message, Toast.LENGTH_LONG).show();
+    }
+
+    private void loadNextPage() {
+        // Posted because this is called from inside onBindViewHolder
+        recyclerView.post(viewModel::loadNextPage);
     }
-}
\ No newline at end of file
+}
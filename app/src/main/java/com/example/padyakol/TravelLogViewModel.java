@@ -0,0 +1,73 @@
+package com.example.padyakol;
+
+import android.app.Application;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MediatorLiveData;
+import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.Transformations;
+
+import com.example.padyakol.adapters.RideRow;
+import com.example.padyakol.adapters.RideRowFactory;
+import com.example.padyakol.data.RemoteRideSource;
+import com.example.padyakol.data.RideRepository;
+import com.example.padyakol.models.Ride;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * State behind the travel log. Outlives the fragment's view, tab switches and rotation, and holds
+ * the one Firestore listener that keeps the local rides current while the log is around.
+ */
+public class TravelLogViewModel extends AndroidViewModel {
+
+    // Rides are read from disk a page at a time, so opening the log costs the same for any history length
+    static final int PAGE_SIZE = 30;
+
+    private final RideRepository repository;
+
+    // How many of the newest rides are loaded; grows by a page when the list nears its end
+    private final MutableLiveData<Integer> loadLimit = new MutableLiveData<>(PAGE_SIZE);
+    private MediatorLiveData<List<RideRow>> rows;
+    // Builds display rows off the main thread; one thread, so the factory's formatters are never shared
+    private final ExecutorService rowExecutor = Executors.newSingleThreadExecutor();
+    private final RideRowFactory rowFactory = new RideRowFactory();
+    private RemoteRideSource.Registration liveSync;
+    private int loadedCount = 0;
+
+    public TravelLogViewModel(@NonNull Application application) {
+        super(application);
+        repository = RideRepository.getInstance(application);
+    }
+
+    public LiveData<List<RideRow>> getRows(@NonNull String userId) {
+        if (rows == null) {
+            rows = new MediatorLiveData<>();
+            LiveData<List<Ride>> rides = Transformations.switchMap(loadLimit,
+                    limit -> repository.observeRides(userId, limit));
+            rows.addSource(rides, loaded -> {
+                loadedCount = loaded.size();
+                rowExecutor.execute(() -> rows.postValue(rowFactory.toRows(loaded)));
+            });
+            liveSync = repository.startLiveSync(userId);
+        }
+        return rows;
+    }
+
+    // Main thread. Only grows once the previous page has arrived, and not past the end of the history.
+    public void loadNextPage() {
+        int limit = loadLimit.getValue();
+        if (loadedCount < limit) return;
+        loadLimit.setValue(limit + PAGE_SIZE);
+    }
+
+    @Override
+    protected void onCleared() {
+        if (liveSync != null) liveSync.remove();
+        rowExecutor.shutdown();
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.padyakol.adapters;
+
+import androidx.annotation.NonNull;
+
+import com.example.padyakol.models.Ride;
+
+/**
+ * Everything one travel log row shows, formatted ahead of time by {@link RideRowFactory}
+ * so binding a row is only setText calls.
+ */
+public final class RideRow {
+
+    private final Ride ride;
+    final String date;
+    final String time;
+    final String distance;
+    final String duration;
+    final String speed;
+
+    RideRow(Ride ride, String date, String time, String distance, String duration, String speed) {
+        this.ride = ride;
+        this.date = date;
+        this.time = time;
+        this.distance = distance;
+        this.duration = duration;
+        this.speed = speed;
+    }
+
+    @NonNull
+    public Ride getRide() {
+        return ride;
+    }
+
+    public String getRideId() {
+        return ride.getRideId();
+    }
+
+    // Rows that read the same need no rebind, whatever else changed on the ride
+    boolean looksLike(RideRow other) {
+        return date.equals(other.date)
+                && time.equals(other.time)
+                && distance.equals(other.distance)
+                && duration.equals(other.duration)
+                && speed.equals(other.speed);
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.padyakol.adapters;
+
+import androidx.annotation.WorkerThread;
+
+import com.example.padyakol.models.Ride;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Turns rides into {@link RideRow}s on a background thread. Rows are cached by rideId, so a ride
+ * is formatted once and later list updates only format what is new or changed.
+ * Keeps one {@link RideRowText}, so an instance must only be used from one thread.
+ */
+public class RideRowFactory {
+
+    // A few pages more than fits on screen; older rows are cheap to rebuild
+    private static final int MAX_CACHED_ROWS = 500;
+
+    private final RideRowText text = new RideRowText();
+
+    private final Map<String, RideRow> cache = new LinkedHashMap<String, RideRow>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, RideRow> eldest) {
+            return size() > MAX_CACHED_ROWS;
+        }
+    };
+
+    @WorkerThread
+    public List<RideRow> toRows(List<Ride> rides) {
+        List<RideRow> rows = new ArrayList<>(rides.size());
+        for (Ride ride : rides) {
+            rows.add(toRow(ride));
+        }
+        return rows;
+    }
+
+    @WorkerThread
+    public RideRow toRow(Ride ride) {
+        String rideId = ride.getRideId();
+        RideRow cached = rideId != null ? cache.get(rideId) : null;
+        if (cached != null && sameStats(cached.getRide(), ride)) {
+            return cached;
+        }
+
+        RideRow row = new RideRow(ride, text.date(ride.getTimestamp()), text.time(ride.getTimestamp()),
+                text.distance(ride.getDistanceKm()), text.duration(ride.getDurationSeconds()),
+                text.speed(ride.getAvgSpeedKmh()));
+        if (rideId != null) cache.put(rideId, row);
+        return row;
+    }
+
+    private static boolean sameStats(Ride a, Ride b) {
+        return a.getTimestamp() == b.getTimestamp()
+                && a.getDurationSeconds() == b.getDurationSeconds()
+                && a.getDistanceKm() == b.getDistanceKm()
+                && a.getAvgSpeedKmh() == b.getAvgSpeedKmh();
+    }
+}
@@ -1,87 +1,112 @@
 package com.example.padyakol.adapters;
 
 import android.content.Context;
-import android.text.format.DateFormat;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.ImageView;
 import android.widget.TextView;
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.padyakol.R;
+import com.example.padyakol.map.RouteThumbnails;
 import com.example.padyakol.models.Ride;
 
-import java.util.Calendar;
-import java.util.List;
-import java.util.Locale;
+import java.util.Objects;
 
-public class TravelLogAdapter extends RecyclerView.Adapter<TravelLogAdapter.RideViewHolder> {
+// Rows are diffed on a background thread (ListAdapter/AsyncListDiffer), so only rides that changed are rebound
+public class TravelLogAdapter extends ListAdapter<RideRow, TravelLogAdapter.RideViewHolder> {
 
-    private List<Ride> rideList;
     private Context context;
     private OnRideClickListener listener;
+    private final RouteThumbnails thumbnails;
+
+    // Paging: asks for more rides once a row this close to the end gets bound
+    private OnNearEndListener nearEndListener;
+    private int prefetchDistance;
 
     // Interface for click handling
     public interface OnRideClickListener {
         void onRideClick(Ride ride);
     }
 
-    public TravelLogAdapter(Context context, List<Ride> rideList, OnRideClickListener listener) {
+    public interface OnNearEndListener {
+        void onNearEnd();
+    }
+
+    // Same ride = same rideId; same contents = same text on screen
+    static final DiffUtil.ItemCallback<RideRow> DIFF_CALLBACK = new DiffUtil.ItemCallback<RideRow>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull RideRow oldRow, @NonNull RideRow newRow) {
+            return Objects.equals(oldRow.getRideId(), newRow.getRideId());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull RideRow oldRow, @NonNull RideRow newRow) {
+            // Unchanged rides come back from the factory's cache as the same instance
+            return oldRow == newRow || oldRow.looksLike(newRow);
+        }
+    };
+
+    public TravelLogAdapter(Context context, OnRideClickListener listener) {
+        super(DIFF_CALLBACK);
         this.context = context;
-        this.rideList = rideList;
         this.listener = listener;
+        this.thumbnails = RouteThumbnails.getInstance(context);
+    }
+
+    // RecyclerView binds rows slightly ahead of the scroll, so the next page is usually on screen in time
+    public void setOnNearEndListener(int prefetchDistance, OnNearEndListener listener) {
+        this.prefetchDistance = prefetchDistance;
+        this.nearEndListener = listener;
     }
 
     @NonNull
     @Override
     public RideViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
         View view = LayoutInflater.from(context).inflate(R.layout.item_travel_log, parent, false);
-        return new RideViewHolder(view);
+        RideViewHolder holder = new RideViewHolder(view);
+
+        // --- Click Listener ---
+        // Set once per holder; rows can move without being rebound, so the ride is looked up at click time
+        view.setOnClickListener(v -> {
+            int current = holder.getBindingAdapterPosition();
+            if (listener != null && current != RecyclerView.NO_POSITION) {
+                listener.onRideClick(getItem(current).getRide());
+            }
+        });
+        return holder;
     }
 
     @Override
     public void onBindViewHolder(@NonNull RideViewHolder holder, int position) {
-        Ride ride = rideList.get(position);
-
-        // --- Date & Time ---
-        Calendar cal = Calendar.getInstance(Locale.ENGLISH);
-        cal.setTimeInMillis(ride.getTimestamp());
-        String dateString = DateFormat.format("MMM dd, yyyy", cal).toString();
-        String timeString = DateFormat.format("hh:mm a", cal).toString();
-
-        holder.tvDate.setText(dateString);
-        holder.tvTime.setText(timeString);
-
-        // --- Stats ---
-        holder.tvDistance.setText(String.format(Locale.US, "%.2f km", ride.getDistanceKm()));
-        holder.tvAvgSpeed.setText(String.format(Locale.US, "%.1f", ride.getAvgSpeedKmh())); // Removed km/h for space
-
-        long hours = ride.getDurationSeconds() / 3600;
-        long minutes = (ride.getDurationSeconds() % 3600) / 60;
-        String durationStr;
-        if (hours > 0) {
-            durationStr = String.format(Locale.US, "%dh %02dm", hours, minutes);
-        } else {
-            durationStr = String.format(Locale.US, "%d mins", minutes);
+        RideRow row = getItem(position);
+
+        if (nearEndListener != null && position >= getItemCount() - prefetchDistance) {
+            nearEndListener.onNearEnd();
         }
-        holder.tvDuration.setText(durationStr);
 
-        // --- Click Listener ---
-        holder.itemView.setOnClickListener(v -> {
-            if (listener != null) {
-                listener.onRideClick(ride);
-            }
-        });
+        // Everything was formatted off the main thread by RideRowFactory
+        holder.tvDate.setText(row.date);
+        holder.tvTime.setText(row.time);
+        holder.tvDistance.setText(row.distance);
+        holder.tvAvgSpeed.setText(row.speed);
+        holder.tvDuration.setText(row.duration);
+        // Memory hit or placeholder; anything slower happens off the main thread
+        thumbnails.load(row.getRideId(), holder.ivRoute, R.drawable.ic_history);
     }
 
     @Override
-    public int getItemCount() {
-        return rideList.size();
+    public void onViewRecycled(@NonNull RideViewHolder holder) {
+        thumbnails.cancel(holder.ivRoute);
     }
 
     public static class RideViewHolder extends RecyclerView.ViewHolder {
         TextView tvDate, tvTime, tvDistance, tvDuration, tvAvgSpeed;
+        ImageView ivRoute;
 
         public RideViewHolder(@NonNull View itemView) {
             super(itemView);
@@ -90,6 +115,7 @@ public class TravelLogAdapter extends RecyclerView.Adapter<TravelLogAdapter.Ride
             tvDistance = itemView.findViewById(R.id.tvLogDistance);
             tvDuration = itemView.findViewById(R.id.tvLogDuration);
             tvAvgSpeed = itemView.findViewById(R.id.tvLogSpeed);
+            ivRoute = itemView.findViewById(R.id.ivLogRoute);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,245 @@
+package com.example.padyakol.data;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.annotation.NonNull;
+import androidx.room.Database;
+import androidx.room.Room;
+import androidx.room.RoomDatabase;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteStatement;
+
+import com.example.padyakol.route.Route;
+import com.example.padyakol.route.RouteCodec;
+import com.example.padyakol.route.TileGrid;
+
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Map;
+
+@Database(entities = {RideEntity.class, RouteEntity.class, StatsBucketEntity.class, StatsRecordEntity.class,
+        RideCellEntity.class, SegmentEntity.class, SegmentCellEntity.class, SegmentEffortEntity.class,
+        HeatTileEntity.class, RideDeletionEntity.class}, version = 9, exportSchema = false)
+public abstract class AppDatabase extends RoomDatabase {
+
+    private static volatile AppDatabase instance;
+
+    public abstract RideDao rideDao();
+
+    public abstract SegmentDao segmentDao();
+
+    // Moves routes out of the rides table. SQLite before 3.35 can't drop a column, so the table is rebuilt.
+    static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `ride_routes` (`rideId` TEXT NOT NULL, "
+                    + "`routeData` BLOB NOT NULL, PRIMARY KEY(`rideId`))");
+            db.execSQL("INSERT INTO ride_routes (rideId, routeData) "
+                    + "SELECT rideId, routeData FROM rides WHERE routeData IS NOT NULL");
+
+            db.execSQL("CREATE TABLE IF NOT EXISTS `rides_new` (`rideId` TEXT NOT NULL, `userId` TEXT NOT NULL, "
+                    + "`distanceKm` REAL NOT NULL, `durationSeconds` INTEGER NOT NULL, `timestamp` INTEGER NOT NULL, "
+                    + "`avgSpeedKmh` REAL NOT NULL, `updatedAt` INTEGER NOT NULL, `syncState` INTEGER NOT NULL, "
+                    + "PRIMARY KEY(`rideId`))");
+            db.execSQL("INSERT INTO rides_new (rideId, userId, distanceKm, durationSeconds, timestamp, avgSpeedKmh, updatedAt, syncState) "
+                    + "SELECT rideId, userId, distanceKm, durationSeconds, timestamp, avgSpeedKmh, updatedAt, syncState FROM rides");
+            db.execSQL("DROP TABLE rides");
+            db.execSQL("ALTER TABLE rides_new RENAME TO rides");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_rides_userId_timestamp` ON `rides` (`userId`, `timestamp`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_rides_userId_syncState` ON `rides` (`userId`, `syncState`)");
+        }
+    };
+
+    // Adds the stats tables and fills them from the rides already stored, in one pass
+    static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `stats_buckets` (`userId` TEXT NOT NULL, `bucketKey` TEXT NOT NULL, "
+                    + "`rideCount` INTEGER NOT NULL, `distanceKm` REAL NOT NULL, `durationSeconds` INTEGER NOT NULL, "
+                    + "PRIMARY KEY(`userId`, `bucketKey`))");
+            db.execSQL("CREATE TABLE IF NOT EXISTS `stats_records` (`userId` TEXT NOT NULL, `kind` TEXT NOT NULL, "
+                    + "`rideId` TEXT NOT NULL, `value` REAL NOT NULL, PRIMARY KEY(`userId`, `kind`))");
+
+            Map<String, StatsBucketEntity> buckets = new HashMap<>();
+            Map<String, StatsRecordEntity> records = new HashMap<>();
+            ZoneId zone = ZoneId.systemDefault();
+            try (Cursor cursor = db.query("SELECT rideId, userId, distanceKm, durationSeconds, timestamp, avgSpeedKmh "
+                    + "FROM rides ORDER BY timestamp, rideId")) {
+                while (cursor.moveToNext()) {
+                    RideEntity ride = new RideEntity();
+                    ride.rideId = cursor.getString(0);
+                    ride.userId = cursor.getString(1);
+                    ride.distanceKm = cursor.getDouble(2);
+                    ride.durationSeconds = cursor.getLong(3);
+                    ride.timestamp = cursor.getLong(4);
+                    ride.avgSpeedKmh = cursor.getDouble(5);
+                    RideStats.accumulate(buckets, records, ride, zone);
+                }
+            }
+            for (StatsBucketEntity bucket : buckets.values()) {
+                db.execSQL("INSERT INTO stats_buckets (userId, bucketKey, rideCount, distanceKm, durationSeconds) VALUES (?, ?, ?, ?, ?)",
+                        new Object[]{bucket.userId, bucket.bucketKey, bucket.rideCount, bucket.distanceKm, bucket.durationSeconds});
+            }
+            for (StatsRecordEntity record : records.values()) {
+                db.execSQL("INSERT INTO stats_records (userId, kind, rideId, value) VALUES (?, ?, ?, ?)",
+                        new Object[]{record.userId, record.kind, record.rideId, record.value});
+            }
+        }
+    };
+
+    // Recording analytics; older rides keep the defaults
+    static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE rides ADD COLUMN `maxSpeedKmh` REAL NOT NULL DEFAULT 0");
+            db.execSQL("ALTER TABLE rides ADD COLUMN `movingSeconds` INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("ALTER TABLE rides ADD COLUMN `splitSeconds` BLOB");
+            db.execSQL("ALTER TABLE rides ADD COLUMN `speedHistogram` BLOB");
+        }
+    };
+
+    // Adds the spatial index and fills it from the routes on the device. Rides whose route was never
+    // downloaded are indexed when it is, or from the cells their summary carries.
+    static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `ride_cells` (`cellId` INTEGER NOT NULL, `rideId` TEXT NOT NULL, "
+                    + "PRIMARY KEY(`cellId`, `rideId`))");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_ride_cells_rideId` ON `ride_cells` (`rideId`)");
+
+            SupportSQLiteStatement insert = db.compileStatement("INSERT OR IGNORE INTO ride_cells (cellId, rideId) VALUES (?, ?)");
+            try (Cursor cursor = db.query("SELECT rideId, routeData FROM ride_routes")) {
+                while (cursor.moveToNext()) {
+                    String rideId = cursor.getString(0);
+                    Route route = RouteCodec.decode(cursor.getBlob(1));
+                    for (long cell : TileGrid.cellsAlong(route.lats(), route.lngs(), route.size())) {
+                        insert.bindLong(1, cell);
+                        insert.bindString(2, rideId);
+                        insert.executeInsert();
+                        insert.clearBindings();
+                    }
+                }
+            }
+        }
+    };
+
+    // Segments start out empty; efforts on past rides are found when a segment is created
+    static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `segments` (`segmentId` TEXT NOT NULL, `userId` TEXT NOT NULL, "
+                    + "`name` TEXT NOT NULL, `distanceMeters` REAL NOT NULL, `routeData` BLOB NOT NULL, "
+                    + "`createdAt` INTEGER NOT NULL, PRIMARY KEY(`segmentId`))");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_segments_userId` ON `segments` (`userId`)");
+            db.execSQL("CREATE TABLE IF NOT EXISTS `segment_cells` (`cellId` INTEGER NOT NULL, `segmentId` TEXT NOT NULL, "
+                    + "`endpoint` INTEGER NOT NULL, PRIMARY KEY(`cellId`, `segmentId`, `endpoint`))");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_segment_cells_segmentId` ON `segment_cells` (`segmentId`)");
+            db.execSQL("CREATE TABLE IF NOT EXISTS `segment_efforts` (`segmentId` TEXT NOT NULL, `rideId` TEXT NOT NULL, "
+                    + "`startedAt` INTEGER NOT NULL, `elapsedSeconds` INTEGER NOT NULL, PRIMARY KEY(`segmentId`, `rideId`))");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_segment_efforts_segmentId_elapsedSeconds` "
+                    + "ON `segment_efforts` (`segmentId`, `elapsedSeconds`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_segment_efforts_rideId` ON `segment_efforts` (`rideId`)");
+        }
+    };
+
+    // Builds the heatmap from the routes on the device, one route at a time so memory stays flat
+    static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `heat_tiles` (`userId` TEXT NOT NULL, `zoom` INTEGER NOT NULL, "
+                    + "`x` INTEGER NOT NULL, `y` INTEGER NOT NULL, `bins` BLOB NOT NULL, `version` INTEGER NOT NULL, "
+                    + "PRIMARY KEY(`userId`, `zoom`, `x`, `y`))");
+
+            HeatmapStore store = new MigrationHeatmapStore(db);
+            try (Cursor cursor = db.query("SELECT r.userId, rr.routeData FROM ride_routes rr "
+                    + "JOIN rides r ON r.rideId = rr.rideId")) {
+                while (cursor.moveToNext()) {
+                    RideHeat.apply(store, cursor.getString(0), cursor.getBlob(1), 1);
+                }
+            }
+        }
+    };
+
+    // Pins each ride to the day its stats were counted on, in the zone they were counted in
+    static final Migration MIGRATION_7_8 = new Migration(7, 8) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE rides ADD COLUMN `localDate` TEXT");
+
+            ZoneId zone = ZoneId.systemDefault();
+            SupportSQLiteStatement update = db.compileStatement("UPDATE rides SET localDate = ? WHERE rideId = ?");
+            try (Cursor cursor = db.query("SELECT rideId, timestamp FROM rides")) {
+                while (cursor.moveToNext()) {
+                    RideEntity ride = new RideEntity();
+                    ride.timestamp = cursor.getLong(1);
+                    RideStats.pinDay(null, ride, zone);
+                    update.bindString(1, ride.localDate);
+                    update.bindString(2, cursor.getString(0));
+                    update.executeUpdateDelete();
+                    update.clearBindings();
+                }
+            }
+        }
+    };
+
+    // Queue of deletes for the server
+    static final Migration MIGRATION_8_9 = new Migration(8, 9) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `ride_deletions` (`rideId` TEXT NOT NULL, `userId` TEXT NOT NULL, "
+                    + "PRIMARY KEY(`rideId`))");
+        }
+    };
+
+    // HeatmapStore over the raw database, for the migration that runs before the DAOs exist
+    private static final class MigrationHeatmapStore implements HeatmapStore {
+        private final SupportSQLiteDatabase db;
+
+        MigrationHeatmapStore(SupportSQLiteDatabase db) {
+            this.db = db;
+        }
+
+        @Override
+        public HeatTileEntity getHeatTile(String userId, int zoom, int x, int y) {
+            try (Cursor cursor = db.query("SELECT bins, version FROM heat_tiles WHERE userId = ? AND zoom = ? AND x = ? AND y = ?",
+                    new Object[]{userId, zoom, x, y})) {
+                if (!cursor.moveToFirst()) return null;
+                HeatTileEntity tile = new HeatTileEntity();
+                tile.userId = userId;
+                tile.zoom = zoom;
+                tile.x = x;
+                tile.y = y;
+                tile.bins = cursor.getBlob(0);
+                tile.version = cursor.getInt(1);
+                return tile;
+            }
+        }
+
+        @Override
+        public void putHeatTile(HeatTileEntity tile) {
+            db.execSQL("INSERT OR REPLACE INTO heat_tiles (userId, zoom, x, y, bins, version) VALUES (?, ?, ?, ?, ?, ?)",
+                    new Object[]{tile.userId, tile.zoom, tile.x, tile.y, tile.bins, tile.version});
+        }
+
+        @Override
+        public void deleteHeatTile(String userId, int zoom, int x, int y) {
+            db.execSQL("DELETE FROM heat_tiles WHERE userId = ? AND zoom = ? AND x = ? AND y = ?",
+                    new Object[]{userId, zoom, x, y});
+        }
+    }
+
+    public static AppDatabase getInstance(Context context) {
+        if (instance == null) {
+            synchronized (AppDatabase.class) {
+                if (instance == null) {
+                    instance = Room.databaseBuilder(context.getApplicationContext(), AppDatabase.class, "padyakol.db")
+                            .addMigrations(MIGRATION_1_2, MIGRATION_2_3, MIGRATION_3_4, MIGRATION_4_5, MIGRATION_5_6, MIGRATION_6_7, MIGRATION_7_8, MIGRATION_8_9)
+                            .build();
+                }
+            }
+        }
+        return instance;
+    }
+}
@@ -0,0 +1,202 @@
+package com.example.padyakol.data;
+
+import android.util.Log;
+
+import com.example.padyakol.models.Ride;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.Blob;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.MetadataChanges;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.Source;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+public class FirestoreRideSource implements RemoteRideSource {
+
+    private static final String TAG = "FirestoreRideSource";
+
+    private final FirebaseFirestore db;
+
+    public FirestoreRideSource(FirebaseFirestore db) {
+        this.db = db;
+    }
+
+    private CollectionReference rides(String userId) {
+        return db.collection("users").document(userId).collection(RideDocuments.RIDES);
+    }
+
+    private CollectionReference routes(String userId) {
+        return db.collection("users").document(userId).collection(RideDocuments.ROUTES);
+    }
+
+    private DocumentReference statsSummary(String userId) {
+        return db.collection("users").document(userId).collection(RideDocuments.STATS).document(RideDocuments.STATS_SUMMARY);
+    }
+
+    @Override
+    public void push(String userId, List<Ride> rides, List<StatsRecordEntity> records) throws Exception {
+        // Rides carry the day they were pinned to; this only places rides stored before pinning
+        ZoneId zone = ZoneId.systemDefault();
+        DocumentReference user = db.collection("users").document(userId);
+        Tasks.await(db.runTransaction(transaction -> {
+            // Reads have to come first. A ride that already exists was committed by an earlier attempt
+            // whose reply never arrived, so it isn't written or counted again.
+            List<Ride> added = new ArrayList<>(rides.size());
+            for (Ride ride : rides) {
+                if (!transaction.get(rides(userId).document(ride.getRideId())).exists()) added.add(ride);
+            }
+
+            double addedKm = 0.0;
+            for (Ride ride : added) {
+                if (ride.getRouteData() != null) {
+                    transaction.set(routes(userId).document(ride.getRideId()),
+                            RideDocuments.route(ride.getRouteData().toBytes()));
+                }
+                transaction.set(rides(userId).document(ride.getRideId()), RideDocuments.summary(ride));
+                addedKm += ride.getDistanceKm();
+            }
+            if (!added.isEmpty()) transaction.update(user, "totalKmTraveled", FieldValue.increment(addedKm));
+            transaction.set(statsSummary(userId), RideDocuments.stats(added, records, zone), SetOptions.merge());
+            return null;
+        }));
+    }
+
+    @Override
+    public void delete(String userId, List<String> rideIds, List<StatsRecordEntity> records) throws Exception {
+        ZoneId zone = ZoneId.systemDefault();
+        DocumentReference user = db.collection("users").document(userId);
+        Tasks.await(db.runTransaction(transaction -> {
+            // Reads first again: the rides still there, with the stats they were counted with, and the
+            // bucket counts, so buckets left empty are removed rather than kept at zero
+            List<Ride> removed = new ArrayList<>(rideIds.size());
+            for (String rideId : rideIds) {
+                DocumentSnapshot doc = transaction.get(rides(userId).document(rideId));
+                if (!doc.exists()) continue;
+                Ride ride = doc.toObject(Ride.class);
+                ride.setRideId(rideId);
+                removed.add(ride);
+            }
+            DocumentSnapshot summary = transaction.get(statsSummary(userId));
+
+            double removedKm = 0.0;
+            for (Ride ride : removed) {
+                transaction.delete(rides(userId).document(ride.getRideId()));
+                transaction.delete(routes(userId).document(ride.getRideId()));
+                removedKm += ride.getDistanceKm();
+            }
+            if (!removed.isEmpty()) transaction.update(user, "totalKmTraveled", FieldValue.increment(-removedKm));
+            transaction.set(statsSummary(userId), RideDocuments.statsRemoval(removed,
+                    RideDocuments.bucketCounts(summary.getData()), records, zone), SetOptions.merge());
+            return null;
+        }));
+    }
+
+    @Override
+    public byte[] fetchRoute(String userId, String rideId) throws Exception {
+        DocumentSnapshot doc = Tasks.await(routes(userId).document(rideId).get());
+        Blob routeData = doc.getBlob(RideDocuments.ROUTE_DATA);
+        return routeData != null ? routeData.toBytes() : null;
+    }
+
+    @Override
+    public void splitLegacyRoute(String userId, String rideId, byte[] routeData) throws Exception {
+        // One commit, so the route is never missing from both documents
+        WriteBatch batch = db.batch();
+        batch.set(routes(userId).document(rideId), RideDocuments.route(routeData));
+        batch.update(rides(userId).document(rideId), RideDocuments.stripEmbeddedRoute());
+        Tasks.await(batch.commit());
+    }
+
+    @Override
+    public RidePager pullChangedSince(String userId, long sinceMillis, int pageSize) {
+        Query query;
+        if (sinceMillis > 0) {
+            query = rides(userId).whereGreaterThan(RideDocuments.UPDATED_AT, new Date(sinceMillis))
+                    .orderBy(RideDocuments.UPDATED_AT);
+        } else {
+            // Ordered by id rather than updatedAt so documents written before that field existed are included
+            query = rides(userId).orderBy(FieldPath.documentId());
+        }
+        return new SnapshotPager(query.limit(pageSize), pageSize);
+    }
+
+    @Override
+    public Registration listenForChanges(String userId, long sinceMillis, Executor executor, ChangeListener listener) {
+        ListenerRegistration registration = rides(userId)
+                .whereGreaterThan(RideDocuments.UPDATED_AT, new Date(sinceMillis))
+                .addSnapshotListener(executor, MetadataChanges.EXCLUDE, (snapshot, error) -> {
+                    if (error != null) {
+                        Log.w(TAG, "Ride listener failed", error);
+                        return;
+                    }
+                    if (snapshot == null) return;
+
+                    // Only the documents that changed since the last snapshot, not the whole result set
+                    List<Ride> changed = new ArrayList<>();
+                    List<String> removed = new ArrayList<>();
+                    for (DocumentChange change : snapshot.getDocumentChanges()) {
+                        DocumentSnapshot doc = change.getDocument();
+                        if (change.getType() == DocumentChange.Type.REMOVED) {
+                            removed.add(doc.getId());
+                        } else if (!doc.getMetadata().hasPendingWrites()) {
+                            // Our own uploads are skipped until the server has stamped them
+                            Ride ride = doc.toObject(Ride.class);
+                            ride.setRideId(doc.getId());
+                            changed.add(ride);
+                        }
+                    }
+                    if (!changed.isEmpty() || !removed.isEmpty()) {
+                        listener.onChanges(changed, removed, !snapshot.getMetadata().isFromCache());
+                    }
+                });
+        return registration::remove;
+    }
+
+    // Each page starts after the last document of the previous one, so nothing is read twice
+    private static class SnapshotPager implements RidePager {
+
+        private final Query query;
+        private final int pageSize;
+        private DocumentSnapshot lastSnapshot;
+        private boolean done;
+
+        SnapshotPager(Query query, int pageSize) {
+            this.query = query;
+            this.pageSize = pageSize;
+        }
+
+        @Override
+        public List<Ride> nextPage() throws Exception {
+            if (done) return Collections.emptyList();
+
+            Query page = lastSnapshot == null ? query : query.startAfter(lastSnapshot);
+            List<DocumentSnapshot> docs = Tasks.await(page.get(Source.SERVER)).getDocuments();
+            done = docs.size() < pageSize;
+            if (!docs.isEmpty()) lastSnapshot = docs.get(docs.size() - 1);
+
+            List<Ride> result = new ArrayList<>(docs.size());
+            for (DocumentSnapshot doc : docs) {
+                Ride ride = doc.toObject(Ride.class);
+                if (ride == null) continue;
+                ride.setRideId(doc.getId());
+                result.add(ride);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.padyakol.data;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+
+/**
+ * One tile of a user's ride heatmap, see {@link com.example.padyakol.route.HeatGrid}.
+ * A tile is deleted once its last ride is.
+ */
+@Entity(tableName = "heat_tiles", primaryKeys = {"userId", "zoom", "x", "y"})
+public class HeatTileEntity {
+
+    @NonNull
+    public String userId = "";
+
+    public int zoom;
+    public int x;
+    public int y;
+
+    // HeatGrid.pack counts
+    @NonNull
+    public byte[] bins = new byte[0];
+
+    // Bumped on every change to the bins
+    public int version;
+}
@@ -0,0 +1,21 @@
+package com.example.padyakol.data;
+
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+/**
+ * Reads and writes {@link RideHeat} needs. Part of {@link RideDao}, so the heatmap changes in the
+ * same transaction as the routes it is built from.
+ */
+public interface HeatmapStore {
+
+    @Query("SELECT * FROM heat_tiles WHERE userId = :userId AND zoom = :zoom AND x = :x AND y = :y")
+    HeatTileEntity getHeatTile(String userId, int zoom, int x, int y);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void putHeatTile(HeatTileEntity tile);
+
+    @Query("DELETE FROM heat_tiles WHERE userId = :userId AND zoom = :zoom AND x = :x AND y = :y")
+    void deleteHeatTile(String userId, int zoom, int x, int y);
+}
@@ -0,0 +1,50 @@
+package com.example.padyakol.data;
+
+import com.example.padyakol.models.Ride;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * The server side of ride sync. Calls block, so they only run on the sync worker's thread.
+ * Production uses {@link FirestoreRideSource}; tests use an in-memory fake.
+ */
+public interface RemoteRideSource {
+
+    // Writes the rides (summary and route) under their own ids, adds them to the user's total and stats
+    // buckets, and replaces the stats records, all in one atomic commit. Rides already on the server are
+    // left alone, so replaying a push whose reply was lost doesn't count them twice.
+    void push(String userId, List<Ride> rides, List<StatsRecordEntity> records) throws Exception;
+
+    // Deletes the rides (summary and route), takes them out of the user's total and stats buckets, and
+    // replaces the stats records, all in one atomic commit. Rides no longer on the server are skipped,
+    // so replaying a delete whose reply was lost doesn't subtract them twice.
+    void delete(String userId, List<String> rideIds, List<StatsRecordEntity> records) throws Exception;
+
+    // Rides written on the server after the given server time (0 = everything), a page at a time.
+    // Summaries only, except documents written before the route split, which still embed their route.
+    RidePager pullChangedSince(String userId, long sinceMillis, int pageSize);
+
+    // RouteCodec bytes for one ride, or null if it has none
+    byte[] fetchRoute(String userId, String rideId) throws Exception;
+
+    // Moves the route of a pre-split document into its own document
+    void splitLegacyRoute(String userId, String rideId, byte[] routeData) throws Exception;
+
+    // Delivers changes to rides written after the given server time on the executor until removed.
+    // The first delivery may come from the local cache; later ones only carry what changed.
+    Registration listenForChanges(String userId, long sinceMillis, Executor executor, ChangeListener listener);
+
+    interface ChangeListener {
+        void onChanges(List<Ride> changed, List<String> removedIds, boolean fromServer);
+    }
+
+    interface Registration {
+        void remove();
+    }
+
+    interface RidePager {
+        // The next page in server order; empty once everything has been read
+        List<Ride> nextPage() throws Exception;
+    }
+}
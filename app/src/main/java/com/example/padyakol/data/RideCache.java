@@ -0,0 +1,150 @@
+package com.example.padyakol.data;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.padyakol.models.Ride;
+import com.example.padyakol.route.Route;
+import com.example.padyakol.route.RoutePyramid;
+import com.example.padyakol.route.RouteSimplifier;
+
+/**
+ * Process-wide cache of opened rides (summary, decoded route and its pyramid) keyed by rideId, so screens hand
+ * each other ids instead of route arrays. Bounded by route size and emptied when the system asks
+ * for memory back; a miss falls back to {@link RideRepository#loadRide}.
+ */
+public class RideCache implements ComponentCallbacks2 {
+
+    public static final class Entry {
+        private final Ride ride;
+        private final Route route;
+        // Drawing data for the detail map, built the first time the ride is shown and kept from then on
+        private boolean prepared;
+        private RoutePyramid pyramid;
+        private double[] bounds;
+
+        Entry(Ride ride, Route route) {
+            this.ride = ride;
+            this.route = route;
+        }
+
+        public Ride getRide() { return ride; }
+        public Route getRoute() { return route; }
+
+        // Whether getPyramid() would return straight away
+        public synchronized boolean isPrepared() { return prepared; }
+
+        // Null when the route has no usable points. Builds on the first call, so call it off the main thread.
+        @Nullable
+        public synchronized RoutePyramid getPyramid() {
+            prepare();
+            return pyramid;
+        }
+
+        // {south, west, north, east} of the route, or null with the pyramid
+        @Nullable
+        public synchronized double[] getBounds() {
+            prepare();
+            return bounds;
+        }
+
+        private void prepare() {
+            if (prepared) return;
+            prepared = true;
+            int size = route.size();
+            double[] lats = route.lats();
+            double[] lngs = route.lngs();
+            // Drops 0,0 points left behind by a bad conversion
+            double[] cleanLats = new double[size];
+            double[] cleanLngs = new double[size];
+            double minLat = 90, maxLat = -90, minLng = 180, maxLng = -180;
+            int n = 0;
+            for (int i = 0; i < size; i++) {
+                if (lats[i] != 0 || lngs[i] != 0) {
+                    cleanLats[n] = lats[i];
+                    cleanLngs[n] = lngs[i];
+                    minLat = Math.min(minLat, lats[i]);
+                    maxLat = Math.max(maxLat, lats[i]);
+                    minLng = Math.min(minLng, lngs[i]);
+                    maxLng = Math.max(maxLng, lngs[i]);
+                    n++;
+                }
+            }
+            if (n == 0) return;
+            pyramid = RoutePyramid.build(new Route(cleanLats, cleanLngs, null, n),
+                    2 * RouteSimplifier.DEFAULT_TOLERANCE_METERS);
+            bounds = new double[]{minLat, minLng, maxLat, maxLng};
+        }
+    }
+
+    private static RideCache instance;
+
+    private final LruCache<String, Entry> entries;
+
+    private RideCache(long maxBytes) {
+        entries = new LruCache<String, Entry>((int) maxBytes) {
+            @Override
+            protected int sizeOf(String key, Entry entry) {
+                return sizeInBytes(entry.route);
+            }
+        };
+    }
+
+    public static synchronized RideCache getInstance(Context context) {
+        if (instance == null) {
+            // A handful of long rides; a 2 h route simplified to ~2k points is ~50 KB
+            instance = new RideCache(Math.min(Runtime.getRuntime().maxMemory() / 16, 16L * 1024 * 1024));
+            context.getApplicationContext().registerComponentCallbacks(instance);
+        }
+        return instance;
+    }
+
+    // Counts the pyramid whether or not it has been built yet, so an entry's size never changes:
+    // level 0 copies the route and the coarser levels together stay under the same again
+    static int sizeInBytes(Route route) {
+        int perPoint = route.hasTimes() ? 24 : 16;
+        return 256 + route.size() * (perPoint + 32);
+    }
+
+    @Nullable
+    public Entry get(String rideId) {
+        return entries.get(rideId);
+    }
+
+    public Entry put(@NonNull String rideId, @NonNull Ride ride, @NonNull Route route) {
+        Entry entry = new Entry(ride, route);
+        entries.put(rideId, entry);
+        return entry;
+    }
+
+    public void remove(String rideId) {
+        entries.remove(rideId);
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_BACKGROUND) {
+            // Next in line to be killed; everything here can be reloaded from disk
+            entries.evictAll();
+        } else if (level == TRIM_MEMORY_RUNNING_CRITICAL) {
+            entries.trimToSize(entries.maxSize() / 4);
+        } else if (level == TRIM_MEMORY_RUNNING_LOW) {
+            entries.trimToSize(entries.maxSize() / 2);
+        }
+        // TRIM_MEMORY_UI_HIDDEN only means the UI went away; the rides are still wanted when it comes back
+    }
+
+    @Override
+    public void onLowMemory() {
+        entries.evictAll();
+    }
+
+    @Override
+    public void onConfigurationChanged(@NonNull Configuration newConfig) {
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.padyakol.data;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Index;
+
+/**
+ * One {@link com.example.padyakol.route.TileGrid} cell a ride passes through. The primary key
+ * orders rows by cell, so an area query is a few range scans; the rideId index serves deletes.
+ */
+@Entity(tableName = "ride_cells", primaryKeys = {"cellId", "rideId"},
+        indices = {@Index(value = {"rideId"})})
+public class RideCellEntity {
+
+    public long cellId;
+
+    @NonNull
+    public String rideId = "";
+
+    public RideCellEntity() {
+    }
+
+    public RideCellEntity(long cellId, @NonNull String rideId) {
+        this.cellId = cellId;
+        this.rideId = rideId;
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.padyakol.data;
+
+import androidx.lifecycle.LiveData;
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+import androidx.room.Transaction;
+
+import com.example.padyakol.route.TileGrid;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+@Dao
+public interface RideDao extends StatsStore, HeatmapStore {
+
+    // Newest first; the list grows the limit as the user scrolls, served by the (userId, timestamp) index
+    @Query("SELECT * FROM rides WHERE userId = :userId ORDER BY timestamp DESC, rideId DESC LIMIT :limit")
+    LiveData<List<RideEntity>> observeRides(String userId, int limit);
+
+    @Query("SELECT * FROM rides WHERE rideId = :rideId")
+    RideEntity getRide(String rideId);
+
+    // Oldest first, from just after (afterTimestamp, afterRideId): walks every ride a page at a time off the index
+    @Query("SELECT * FROM rides WHERE userId = :userId AND (timestamp > :afterTimestamp "
+            + "OR (timestamp = :afterTimestamp AND rideId > :afterRideId)) ORDER BY timestamp, rideId LIMIT :limit")
+    List<RideEntity> getRidesAfter(String userId, long afterTimestamp, String afterRideId, int limit);
+
+    @Query("SELECT * FROM rides WHERE userId = :userId AND syncState = " + RideEntity.PENDING_UPLOAD)
+    List<RideEntity> getPendingUploads(String userId);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void upsert(RideEntity ride);
+
+    @Query("SELECT * FROM ride_routes WHERE rideId = :rideId")
+    RouteEntity getRoute(String rideId);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void upsertRoute(RouteEntity route);
+
+    // A new ride and its route become visible together, already counted in the stats, indexed and on the heatmap
+    @Transaction
+    default void insertRide(RideEntity ride, RouteEntity route, long[] cells) {
+        RideEntity before = getRide(ride.rideId);
+        ZoneId zone = ZoneId.systemDefault();
+        RideStats.pinDay(before, ride, zone);
+        upsert(ride);
+        storeRoute(ride.userId, route);
+        indexRide(ride.rideId, cells);
+        RideStats.apply(this, before, ride, zone);
+    }
+
+    // A batch of imported rides in one transaction, instead of one per ride
+    @Transaction
+    default void insertRides(List<RideEntity> rides, List<RouteEntity> routes, List<long[]> cells) {
+        for (int i = 0; i < rides.size(); i++) {
+            insertRide(rides.get(i), routes.get(i), cells.get(i));
+        }
+    }
+
+    // Saves a route that arrived after its summary; the heatmap counts each route once
+    @Transaction
+    default void storeRoute(String userId, RouteEntity route) {
+        boolean known = getRoute(route.rideId) != null;
+        upsertRoute(route);
+        if (!known) RideHeat.apply(this, userId, route.routeData, 1);
+    }
+
+    // Writes a summary and moves the stats by the difference from the old row
+    @Transaction
+    default void saveSummary(RideEntity ride) {
+        RideEntity before = getRide(ride.rideId);
+        ZoneId zone = ZoneId.systemDefault();
+        RideStats.pinDay(before, ride, zone);
+        upsert(ride);
+        RideStats.apply(this, before, ride, zone);
+    }
+
+    @Query("DELETE FROM rides WHERE rideId = :rideId")
+    void deleteSummary(String rideId);
+
+    @Query("DELETE FROM ride_routes WHERE rideId = :rideId")
+    void deleteRoute(String rideId);
+
+    @Query("DELETE FROM segment_efforts WHERE rideId = :rideId")
+    void deleteEfforts(String rideId);
+
+    @Transaction
+    default void deleteRide(String rideId) {
+        RideEntity before = getRide(rideId);
+        RouteEntity route = getRoute(rideId);
+        if (before != null && route != null) RideHeat.apply(this, before.userId, route.routeData, -1);
+        deleteSummary(rideId);
+        deleteRoute(rideId);
+        deleteCells(rideId);
+        deleteEfforts(rideId);
+        if (before != null) RideStats.apply(this, before, null, ZoneId.systemDefault());
+    }
+
+    // --- Deletes waiting for the server ---
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void queueDeletion(RideDeletionEntity deletion);
+
+    @Query("SELECT rideId FROM ride_deletions WHERE userId = :userId")
+    List<String> getPendingDeletions(String userId);
+
+    @Query("SELECT EXISTS(SELECT 1 FROM ride_deletions WHERE rideId = :rideId)")
+    boolean isDeletionPending(String rideId);
+
+    @Query("DELETE FROM ride_deletions WHERE rideId IN (:rideIds)")
+    void clearDeletions(List<String> rideIds);
+
+    // The rider deleted the ride: gone from the device at once, and queued for the server
+    @Transaction
+    default void removeRide(String userId, String rideId) {
+        deleteRide(rideId);
+        queueDeletion(new RideDeletionEntity(rideId, userId));
+    }
+
+    // A dashboard's whole range in one query, e.g. "d:2024-03-01" to "d:2024-03-31"
+    @Query("SELECT * FROM stats_buckets WHERE userId = :userId AND bucketKey BETWEEN :fromKey AND :toKey ORDER BY bucketKey")
+    LiveData<List<StatsBucketEntity>> observeBuckets(String userId, String fromKey, String toKey);
+
+    @Query("SELECT * FROM stats_records WHERE userId = :userId")
+    LiveData<List<StatsRecordEntity>> observeRecords(String userId);
+
+    // --- Spatial index ---
+
+    @Query("SELECT cellId FROM ride_cells WHERE rideId = :rideId ORDER BY cellId")
+    List<Long> getCells(String rideId);
+
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    void insertCells(List<RideCellEntity> cells);
+
+    @Query("DELETE FROM ride_cells WHERE rideId = :rideId")
+    void deleteCells(String rideId);
+
+    // One row of an area query: a contiguous run of cell ids, read straight off the primary key
+    @Query("SELECT c.* FROM ride_cells c JOIN rides r ON r.rideId = c.rideId "
+            + "WHERE c.cellId BETWEEN :fromCell AND :toCell AND r.userId = :userId")
+    List<RideCellEntity> getCellsInRange(String userId, long fromCell, long toCell);
+
+    // Replaces the cells recorded for a ride
+    @Transaction
+    default void indexRide(String rideId, long[] cells) {
+        deleteCells(rideId);
+        List<RideCellEntity> rows = new ArrayList<>(cells.length);
+        for (long cell : cells) {
+            rows.add(new RideCellEntity(cell, rideId));
+        }
+        insertCells(rows);
+    }
+
+    // Rides passing through a cell that overlaps the box, so precise to about a cell (~600 m)
+    @Transaction
+    default List<String> findRidesInBox(String userId, double south, double west, double north, double east) {
+        long[] ranges = TileGrid.rowRanges(south, west, north, east);
+        Set<String> rideIds = new LinkedHashSet<>();
+        for (int i = 0; i < ranges.length; i += 2) {
+            for (RideCellEntity cell : getCellsInRange(userId, ranges[i], ranges[i + 1])) {
+                rideIds.add(cell.rideId);
+            }
+        }
+        return new ArrayList<>(rideIds);
+    }
+
+    // Rides passing through a cell that comes within the radius of the point
+    @Transaction
+    default List<String> findRidesNear(String userId, double lat, double lng, double radiusMeters) {
+        double[] box = TileGrid.circleBounds(lat, lng, radiusMeters);
+        long[] ranges = TileGrid.rowRanges(box[0], box[1], box[2], box[3]);
+        Set<String> rideIds = new LinkedHashSet<>();
+        for (int i = 0; i < ranges.length; i += 2) {
+            for (RideCellEntity cell : getCellsInRange(userId, ranges[i], ranges[i + 1])) {
+                // The box's corners are further away than the radius
+                if (!rideIds.contains(cell.rideId) && TileGrid.cellTouchesCircle(cell.cellId, lat, lng, radiusMeters)) {
+                    rideIds.add(cell.rideId);
+                }
+            }
+        }
+        return new ArrayList<>(rideIds);
+    }
+
+    @Query("UPDATE rides SET syncState = " + RideEntity.SYNCED + " WHERE rideId IN (:rideIds)")
+    void markSynced(List<String> rideIds);
+}
@@ -0,0 +1,28 @@
+package com.example.padyakol.data;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/**
+ * A ride deleted on the device whose server copy hasn't been removed yet. Like pending uploads,
+ * the rows are the sync's write queue and outlive the process.
+ */
+@Entity(tableName = "ride_deletions")
+public class RideDeletionEntity {
+
+    @PrimaryKey
+    @NonNull
+    public String rideId = "";
+
+    @NonNull
+    public String userId = "";
+
+    public RideDeletionEntity() {
+    }
+
+    public RideDeletionEntity(@NonNull String rideId, @NonNull String userId) {
+        this.rideId = rideId;
+        this.userId = userId;
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.padyakol.data;
+
+import com.example.padyakol.models.Ride;
+import com.google.firebase.firestore.Blob;
+import com.google.firebase.firestore.FieldValue;
+
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Firestore layout for rides. {@code users/{uid}/rides/{rideId}} holds only the stats the travel
+ * log shows; the route lives in {@code users/{uid}/routes/{rideId}} and is read when a ride is opened.
+ * {@code users/{uid}/stats/summary} holds the {@link RideStats} buckets and records, so a dashboard
+ * is one read.
+ */
+final class RideDocuments {
+
+    static final String RIDES = "rides";
+    static final String ROUTES = "routes";
+    static final String STATS = "stats";
+    static final String STATS_SUMMARY = "summary";
+
+    static final String DISTANCE_KM = "distanceKm";
+    static final String DURATION_SECONDS = "durationSeconds";
+    static final String TIMESTAMP = "timestamp";
+    static final String AVG_SPEED_KMH = "avgSpeedKmh";
+    static final String MAX_SPEED_KMH = "maxSpeedKmh";
+    static final String MOVING_SECONDS = "movingSeconds";
+    static final String SPLIT_SECONDS = "splitSeconds";
+    static final String SPEED_HISTOGRAM = "speedHistogram";
+    static final String CELLS = "cells";
+    static final String LOCAL_DATE = "localDate";
+    static final String UPDATED_AT = "updatedAt";
+    static final String ROUTE_DATA = "routeData";
+    // Pre-split documents embedded the route in the summary under one of these
+    static final String LEGACY_ROUTE_POINTS = "routePoints";
+
+    static final String BUCKETS = "buckets";
+    static final String RECORDS = "records";
+    static final String RIDE_COUNT = "rideCount";
+    static final String RIDE_ID = "rideId";
+    static final String VALUE = "value";
+
+    private RideDocuments() {
+    }
+
+    static Map<String, Object> summary(Ride ride) {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put(DISTANCE_KM, ride.getDistanceKm());
+        fields.put(DURATION_SECONDS, ride.getDurationSeconds());
+        fields.put(TIMESTAMP, ride.getTimestamp());
+        fields.put(AVG_SPEED_KMH, ride.getAvgSpeedKmh());
+        fields.put(MAX_SPEED_KMH, ride.getMaxSpeedKmh());
+        fields.put(MOVING_SECONDS, ride.getMovingSeconds());
+        if (ride.getSplitSeconds() != null) fields.put(SPLIT_SECONDS, ride.getSplitSeconds());
+        if (ride.getSpeedHistogram() != null) fields.put(SPEED_HISTOGRAM, ride.getSpeedHistogram());
+        if (ride.getCells() != null) fields.put(CELLS, ride.getCells());
+        if (ride.getLocalDate() != null) fields.put(LOCAL_DATE, ride.getLocalDate());
+        fields.put(UPDATED_AT, FieldValue.serverTimestamp());
+        return fields;
+    }
+
+    static Map<String, Object> route(byte[] routeData) {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put(ROUTE_DATA, Blob.fromBytes(routeData));
+        return fields;
+    }
+
+    // Update applied to a pre-split summary once its route has been copied to routes/{rideId}
+    static Map<String, Object> stripEmbeddedRoute() {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put(ROUTE_DATA, FieldValue.delete());
+        fields.put(LEGACY_ROUTE_POINTS, FieldValue.delete());
+        fields.put(UPDATED_AT, FieldValue.serverTimestamp());
+        return fields;
+    }
+
+    // Merged into the stats summary: adds the rides to their buckets without reading the document,
+    // and replaces the records, which can't be incremented, with the device's own. Kinds the device
+    // has no record for any more are deleted, since a merge would otherwise leave them in place.
+    static Map<String, Object> stats(List<Ride> added, List<StatsRecordEntity> records, ZoneId zone) {
+        Map<String, Object> buckets = new HashMap<>();
+        for (StatsBucketEntity delta : bucketDeltas(added, zone)) {
+            buckets.put(delta.bucketKey, increments(delta, 1));
+        }
+        return statsFields(buckets, records);
+    }
+
+    // Merged into the stats summary when rides are deleted: takes them out of their buckets and
+    // replaces the records like stats(). rideCounts are the summary's bucket counts, read in the
+    // same transaction, so a bucket left with no rides is deleted as it is on the device.
+    static Map<String, Object> statsRemoval(List<Ride> removed, Map<String, Long> rideCounts,
+                                            List<StatsRecordEntity> records, ZoneId zone) {
+        Map<String, Object> buckets = new HashMap<>();
+        for (StatsBucketEntity delta : bucketDeltas(removed, zone)) {
+            Long count = rideCounts.get(delta.bucketKey);
+            if (count == null || count <= delta.rideCount) {
+                buckets.put(delta.bucketKey, FieldValue.delete());
+            } else {
+                buckets.put(delta.bucketKey, increments(delta, -1));
+            }
+        }
+        return statsFields(buckets, records);
+    }
+
+    // The summary's rideCount per bucket
+    static Map<String, Long> bucketCounts(Map<String, Object> summary) {
+        Map<String, Long> counts = new HashMap<>();
+        Object buckets = summary != null ? summary.get(BUCKETS) : null;
+        if (!(buckets instanceof Map)) return counts;
+        for (Map.Entry<?, ?> entry : ((Map<?, ?>) buckets).entrySet()) {
+            if (!(entry.getValue() instanceof Map)) continue;
+            Object count = ((Map<?, ?>) entry.getValue()).get(RIDE_COUNT);
+            if (count instanceof Number) counts.put((String) entry.getKey(), ((Number) count).longValue());
+        }
+        return counts;
+    }
+
+    // Summed first, since rides from the same day share a bucket
+    private static Collection<StatsBucketEntity> bucketDeltas(List<Ride> rides, ZoneId zone) {
+        Map<String, StatsBucketEntity> deltas = new HashMap<>();
+        for (Ride ride : rides) {
+            // The same buckets the ride was counted in on the device
+            for (String key : RideStats.bucketKeys(ride.getLocalDate(), ride.getTimestamp(), zone)) {
+                StatsBucketEntity delta = deltas.get(key);
+                if (delta == null) {
+                    delta = new StatsBucketEntity("", key);
+                    deltas.put(key, delta);
+                }
+                delta.rideCount++;
+                delta.distanceKm += ride.getDistanceKm();
+                delta.durationSeconds += ride.getDurationSeconds();
+            }
+        }
+        return deltas.values();
+    }
+
+    private static Map<String, Object> increments(StatsBucketEntity delta, int sign) {
+        Map<String, Object> bucket = new HashMap<>();
+        bucket.put(RIDE_COUNT, FieldValue.increment(sign * delta.rideCount));
+        bucket.put(DISTANCE_KM, FieldValue.increment(sign * delta.distanceKm));
+        bucket.put(DURATION_SECONDS, FieldValue.increment(sign * delta.durationSeconds));
+        return bucket;
+    }
+
+    private static Map<String, Object> statsFields(Map<String, Object> buckets, List<StatsRecordEntity> records) {
+        Map<String, Object> byKind = new HashMap<>();
+        for (StatsRecordEntity record : records) {
+            Map<String, Object> entry = new HashMap<>();
+            entry.put(RIDE_ID, record.rideId);
+            entry.put(VALUE, record.value);
+            byKind.put(record.kind, entry);
+        }
+        for (String kind : RideStats.RECORD_KINDS) {
+            if (!byKind.containsKey(kind)) byKind.put(kind, FieldValue.delete());
+        }
+
+        Map<String, Object> fields = new HashMap<>();
+        fields.put(BUCKETS, buckets);
+        fields.put(RECORDS, byKind);
+        return fields;
+    }
+}
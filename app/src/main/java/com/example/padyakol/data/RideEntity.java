@@ -0,0 +1,85 @@
+package com.example.padyakol.data;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+import com.example.padyakol.models.Ride;
+import com.google.firebase.firestore.Blob;
+
+/**
+ * Local copy of a ride's summary. The local database is the source of truth for the travel log;
+ * Firestore is kept in step by {@link RideSyncWorker}. The route is stored in {@link RouteEntity}.
+ */
+@Entity(tableName = "rides",
+        indices = {@Index(value = {"userId", "timestamp"}), @Index(value = {"userId", "syncState"})})
+public class RideEntity {
+
+    public static final int SYNCED = 0;
+    public static final int PENDING_UPLOAD = 1;
+
+    // Generated on the device and reused as the Firestore document id
+    @PrimaryKey
+    @NonNull
+    public String rideId = "";
+
+    @NonNull
+    public String userId = "";
+
+    public double distanceKm;
+    public long durationSeconds;
+    public long timestamp;
+    public double avgSpeedKmh;
+
+    // ISO date the ride counts towards in the stats, e.g. "2024-03-05"; see RideStats.pinDay
+    @Nullable
+    public String localDate;
+
+    // From RideAnalytics; 0 and null for rides recorded before it existed
+    @ColumnInfo(defaultValue = "0")
+    public double maxSpeedKmh;
+    @ColumnInfo(defaultValue = "0")
+    public long movingSeconds;
+    // RideAnalytics.pack()ed, a few hundred bytes at most
+    @Nullable
+    public byte[] splitSeconds;
+    @Nullable
+    public byte[] speedHistogram;
+
+    // Server time of the last synced write, 0 while it only exists locally
+    public long updatedAt;
+
+    public int syncState;
+
+    public Ride toRide() {
+        Ride ride = new Ride(distanceKm, durationSeconds, timestamp, avgSpeedKmh, null);
+        ride.setRideId(rideId);
+        ride.setMaxSpeedKmh(maxSpeedKmh);
+        ride.setMovingSeconds(movingSeconds);
+        if (splitSeconds != null) ride.setSplitSeconds(Blob.fromBytes(splitSeconds));
+        if (speedHistogram != null) ride.setSpeedHistogram(Blob.fromBytes(speedHistogram));
+        ride.setLocalDate(localDate);
+        return ride;
+    }
+
+    public static RideEntity fromRide(@NonNull String userId, @NonNull Ride ride, int syncState) {
+        RideEntity entity = new RideEntity();
+        entity.rideId = ride.getRideId();
+        entity.userId = userId;
+        entity.distanceKm = ride.getDistanceKm();
+        entity.durationSeconds = ride.getDurationSeconds();
+        entity.timestamp = ride.getTimestamp();
+        entity.avgSpeedKmh = ride.getAvgSpeedKmh();
+        entity.maxSpeedKmh = ride.getMaxSpeedKmh();
+        entity.movingSeconds = ride.getMovingSeconds();
+        entity.splitSeconds = ride.getSplitSeconds() != null ? ride.getSplitSeconds().toBytes() : null;
+        entity.speedHistogram = ride.getSpeedHistogram() != null ? ride.getSpeedHistogram().toBytes() : null;
+        entity.localDate = ride.getLocalDate();
+        entity.updatedAt = ride.getUpdatedAt() != null ? ride.getUpdatedAt().getTime() : 0L;
+        entity.syncState = syncState;
+        return entity;
+    }
+}
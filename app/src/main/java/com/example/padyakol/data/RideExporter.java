@@ -0,0 +1,113 @@
+package com.example.padyakol.data;
+
+import com.example.padyakol.route.Route;
+import com.example.padyakol.route.RouteCodec;
+import com.example.padyakol.transfer.TrackFormat;
+import com.example.padyakol.transfer.TrackWriter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes all of a user's rides into one zip, a GPX or TCX file per ride, oldest first.
+ *
+ * Rides are read a page at a time and each is written straight into the zip, so only one route is
+ * in memory however many rides there are. Routes that were never downloaded to the device are
+ * fetched once and kept, as opening the ride would.
+ */
+public class RideExporter {
+
+    static final int PAGE_SIZE = 100;
+
+    private static final DateTimeFormatter FILE_DATE = DateTimeFormatter.ofPattern("yyyyMMdd-HHmm");
+    private static final DateTimeFormatter NAME_DATE = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    public static final class Result {
+        public final int exported;
+        // Rides whose route couldn't be read or fetched
+        public final int missing;
+
+        Result(int exported, int missing) {
+            this.exported = exported;
+            this.missing = missing;
+        }
+    }
+
+    private final RideDao rideDao;
+    private final RemoteRideSource remote;
+
+    public RideExporter(RideDao rideDao, RemoteRideSource remote) {
+        this.rideDao = rideDao;
+        this.remote = remote;
+    }
+
+    // Blocks until the zip is complete; out is finished but left open for the caller to close
+    public Result exportAll(String userId, TrackFormat format, OutputStream out, ZoneId zone) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(out);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(zip, StandardCharsets.UTF_8), 16 * 1024);
+        int exported = 0;
+        int missing = 0;
+
+        long afterTimestamp = Long.MIN_VALUE;
+        String afterRideId = "";
+        List<RideEntity> page;
+        do {
+            page = rideDao.getRidesAfter(userId, afterTimestamp, afterRideId, PAGE_SIZE);
+            for (RideEntity ride : page) {
+                Route route = loadRoute(userId, ride.rideId);
+                if (route == null || route.size() < 2) {
+                    missing++;
+                    continue;
+                }
+                // The summary's timestamp is when the ride finished
+                long startTime = route.hasTimes() ? route.getTime(0) : ride.timestamp - ride.durationSeconds * 1000L;
+                String name = "Ride " + NAME_DATE.format(Instant.ofEpochMilli(startTime).atZone(zone));
+                zip.putNextEntry(new ZipEntry(fileName(ride, startTime, zone, format)));
+                TrackWriter.write(writer, format, name, startTime, ride.durationSeconds, ride.distanceKm * 1000.0, route);
+                writer.flush();
+                zip.closeEntry();
+                exported++;
+            }
+            if (!page.isEmpty()) {
+                RideEntity last = page.get(page.size() - 1);
+                afterTimestamp = last.timestamp;
+                afterRideId = last.rideId;
+            }
+        } while (page.size() == PAGE_SIZE);
+
+        zip.finish();
+        return new Result(exported, missing);
+    }
+
+    private Route loadRoute(String userId, String rideId) {
+        try {
+            RouteEntity local = rideDao.getRoute(rideId);
+            if (local == null) {
+                byte[] routeData = remote.fetchRoute(userId, rideId);
+                if (routeData == null) return null;
+                local = new RouteEntity(rideId, routeData);
+                rideDao.storeRoute(userId, local);
+            }
+            return RouteCodec.decode(local.routeData);
+        } catch (Exception e) {
+            // Offline or a corrupt blob: the ride is left out rather than failing the whole export
+            return null;
+        }
+    }
+
+    // Sorts by date in a file manager; the id keeps two rides started in the same minute apart
+    static String fileName(RideEntity ride, long startTime, ZoneId zone, TrackFormat format) {
+        String id = ride.rideId.length() > 8 ? ride.rideId.substring(0, 8) : ride.rideId;
+        return "ride-" + FILE_DATE.format(Instant.ofEpochMilli(startTime).atZone(zone)) + "-" + id + "." + format.extension;
+    }
+}
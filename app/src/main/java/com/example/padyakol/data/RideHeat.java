@@ -0,0 +1,50 @@
+package com.example.padyakol.data;
+
+import com.example.padyakol.route.HeatGrid;
+import com.example.padyakol.route.Route;
+import com.example.padyakol.route.RouteCodec;
+
+/**
+ * Keeps the heatmap tiles in step with the routes on the device: each route is added once when it
+ * is stored and taken out again when its ride is deleted, touching only the tiles it crosses.
+ */
+public final class RideHeat {
+
+    private RideHeat() {
+    }
+
+    // Stored route bytes; a route that doesn't decode is left off rather than failing the ride's transaction
+    static void apply(HeatmapStore store, String userId, byte[] routeData, int delta) {
+        Route route;
+        try {
+            route = RouteCodec.decode(routeData);
+        } catch (IllegalArgumentException e) {
+            return;
+        }
+        apply(store, userId, route, delta);
+    }
+
+    // delta is 1 to add the route, -1 to remove it
+    static void apply(HeatmapStore store, String userId, Route route, int delta) {
+        if (route.isEmpty()) return;
+        for (HeatGrid.TileBins tile : HeatGrid.binsAlong(route.lats(), route.lngs(), route.size())) {
+            HeatTileEntity row = store.getHeatTile(userId, tile.zoom, tile.x, tile.y);
+            if (row == null) {
+                if (delta < 0) continue;
+                row = new HeatTileEntity();
+                row.userId = userId;
+                row.zoom = tile.zoom;
+                row.x = tile.x;
+                row.y = tile.y;
+            }
+            int[] counts = HeatGrid.unpack(row.bins);
+            if (!HeatGrid.add(counts, tile.bins, delta)) {
+                store.deleteHeatTile(userId, tile.zoom, tile.x, tile.y);
+                continue;
+            }
+            row.bins = HeatGrid.pack(counts);
+            row.version++;
+            store.putHeatTile(row);
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package com.example.padyakol.data;
+
+import com.example.padyakol.route.GeoMath;
+import com.example.padyakol.route.RouteCodec;
+import com.example.padyakol.route.RouteSimplifier;
+import com.example.padyakol.route.TileGrid;
+import com.example.padyakol.tracking.RideAnalytics;
+import com.example.padyakol.transfer.TrackReader;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Turns GPX and TCX files into rides, each track of a file becoming one ride.
+ *
+ * Points go straight from the parser through a streaming simplifier into the route encoding, the
+ * cell index and RideAnalytics, so a file takes the same working memory however long its track;
+ * what is kept is the encoded route, as for a recorded ride. Files are parsed on the given pool, a
+ * bounded number ahead of the commits, and committed BATCH_SIZE rides per transaction.
+ *
+ * A ride's id is derived from its track, so importing the same file again skips it.
+ */
+public class RideImporter {
+
+    static final int BATCH_SIZE = 50;
+
+    public interface Source {
+        String getName();
+
+        InputStream open() throws IOException;
+    }
+
+    /** A parsed ride as it is committed. */
+    public static final class Imported {
+        public final RideEntity ride;
+        public final RouteEntity route;
+        public final long[] cells;
+
+        Imported(RideEntity ride, RouteEntity route, long[] cells) {
+            this.ride = ride;
+            this.route = route;
+            this.cells = cells;
+        }
+    }
+
+    public interface BatchListener {
+        // On the importing thread, once the batch is in the database
+        void onCommitted(List<Imported> rides);
+    }
+
+    public static final class Result {
+        public final int imported;
+        // Already on the device, from an earlier import
+        public final int duplicates;
+        // Names of the files that couldn't be read or held no track
+        public final List<String> failed;
+
+        Result(int imported, int duplicates, List<String> failed) {
+            this.imported = imported;
+            this.duplicates = duplicates;
+            this.failed = failed;
+        }
+    }
+
+    private final RideDao rideDao;
+    private final Supplier<XmlPullParser> parsers;
+    private final ExecutorService parsePool;
+    private final int maxInFlight;
+
+    /**
+     * @param parsers     a new parser per file; they are not thread safe
+     * @param maxInFlight files parsed ahead of the commits, which bounds the parsed rides held at once
+     */
+    public RideImporter(RideDao rideDao, Supplier<XmlPullParser> parsers, ExecutorService parsePool, int maxInFlight) {
+        this.rideDao = rideDao;
+        this.parsers = parsers;
+        this.parsePool = parsePool;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Imports the files in order, blocking until done; run it off the main thread. A file that
+     * fails is counted and the rest carry on. Rides without timestamps are dated importedAt.
+     */
+    public Result importAll(String userId, List<? extends Source> sources, long importedAt,
+                            BatchListener listener) throws InterruptedException {
+        ArrayDeque<Future<List<Imported>>> inFlight = new ArrayDeque<>();
+        int submitted = 0;
+        int completed = 0;
+        int imported = 0;
+        int duplicates = 0;
+        List<String> failed = new ArrayList<>();
+        List<Imported> batch = new ArrayList<>(BATCH_SIZE);
+        Set<String> batchIds = new HashSet<>();
+
+        try {
+            while (completed < sources.size()) {
+                while (submitted < sources.size() && inFlight.size() < maxInFlight) {
+                    Source source = sources.get(submitted++);
+                    inFlight.add(parsePool.submit(() -> parse(userId, source, importedAt)));
+                }
+
+                Source source = sources.get(completed++);
+                Future<List<Imported>> next = inFlight.poll();
+                List<Imported> rides;
+                try {
+                    rides = next.get();
+                } catch (ExecutionException e) {
+                    failed.add(source.getName());
+                    continue;
+                } catch (InterruptedException e) {
+                    next.cancel(true);
+                    throw e;
+                }
+                if (rides.isEmpty()) failed.add(source.getName());
+
+                for (Imported ride : rides) {
+                    // Earlier batches are committed, so the table and this batch cover everything seen
+                    if (batchIds.contains(ride.ride.rideId) || rideDao.getRide(ride.ride.rideId) != null) {
+                        duplicates++;
+                        continue;
+                    }
+                    batch.add(ride);
+                    batchIds.add(ride.ride.rideId);
+                    if (batch.size() == BATCH_SIZE) {
+                        imported += commit(batch, listener);
+                        batchIds.clear();
+                    }
+                }
+            }
+        } finally {
+            // Interrupted or failed part way: the files still being parsed aren't wanted
+            for (Future<List<Imported>> pending : inFlight) pending.cancel(true);
+        }
+        imported += commit(batch, listener);
+        return new Result(imported, duplicates, failed);
+    }
+
+    private int commit(List<Imported> batch, BatchListener listener) {
+        if (batch.isEmpty()) return 0;
+        List<RideEntity> rides = new ArrayList<>(batch.size());
+        List<RouteEntity> routes = new ArrayList<>(batch.size());
+        List<long[]> cells = new ArrayList<>(batch.size());
+        for (Imported ride : batch) {
+            rides.add(ride.ride);
+            routes.add(ride.route);
+            cells.add(ride.cells);
+        }
+        rideDao.insertRides(rides, routes, cells);
+        int count = batch.size();
+        if (listener != null) listener.onCommitted(new ArrayList<>(batch));
+        batch.clear();
+        return count;
+    }
+
+    List<Imported> parse(String userId, Source source, long importedAt) throws IOException, XmlPullParserException {
+        TrackBuilder builder = new TrackBuilder(userId, importedAt);
+        try (InputStream in = new BufferedInputStream(source.open(), 64 * 1024)) {
+            XmlPullParser parser = parsers.get();
+            parser.setInput(in, null);
+            TrackReader.read(parser, builder);
+        }
+        return builder.rides;
+    }
+
+    // Builds one ride per track as its points arrive
+    private static final class TrackBuilder implements TrackReader.Listener {
+        final List<Imported> rides = new ArrayList<>(1);
+        private final String userId;
+        private final long importedAt;
+
+        private RouteSimplifier.Streaming simplifier;
+        private RouteCodec.Builder route;
+        private TileGrid.CellCollector cells;
+        private RideAnalytics analytics;
+        private boolean hasTimes;
+        private int count;
+        private double firstLat, firstLng, lastLat, lastLng;
+        private long startTime, lastTime;
+        private double distanceMeters;
+
+        TrackBuilder(String userId, long importedAt) {
+            this.userId = userId;
+            this.importedAt = importedAt;
+        }
+
+        @Override
+        public void onTrackStart() {
+            simplifier = new RouteSimplifier.Streaming(RouteSimplifier.DEFAULT_TOLERANCE_METERS, this::keep);
+            route = null;
+            cells = new TileGrid.CellCollector();
+            analytics = new RideAnalytics();
+            count = 0;
+            distanceMeters = 0;
+        }
+
+        @Override
+        public void onPoint(double lat, double lng, long time) {
+            if (count == 0) {
+                // A track either has timestamps or it doesn't; the first point decides
+                hasTimes = time != TrackReader.NO_TIME;
+                route = new RouteCodec.Builder(hasTimes);
+                firstLat = lat;
+                firstLng = lng;
+                startTime = time;
+            } else {
+                distanceMeters += GeoMath.distanceMeters(lastLat, lastLng, lat, lng);
+            }
+            if (hasTimes) {
+                // A point missing its time is taken to be at the previous one's
+                if (time == TrackReader.NO_TIME) time = lastTime;
+                analytics.onFix(time, distanceMeters / 1000.0);
+                lastTime = time;
+            }
+            lastLat = lat;
+            lastLng = lng;
+            count++;
+            simplifier.add(lat, lng, time);
+        }
+
+        // Points the simplifier keeps; the cells follow the stored route, as for a recorded ride
+        private void keep(double lat, double lng, long time) {
+            route.add(lat, lng, time);
+            cells.add(lat, lng);
+        }
+
+        @Override
+        public void onTrackEnd() {
+            simplifier.finish();
+            if (route == null || route.size() < 2) return;
+
+            RideEntity ride = new RideEntity();
+            String key = userId + "|" + startTime + "|" + firstLat + "|" + firstLng + "|" + count;
+            ride.rideId = UUID.nameUUIDFromBytes(key.getBytes(StandardCharsets.UTF_8)).toString();
+            ride.userId = userId;
+            ride.distanceKm = distanceMeters / 1000.0;
+            ride.durationSeconds = hasTimes ? Math.max(0L, (lastTime - startTime) / 1000L) : 0L;
+            ride.timestamp = hasTimes ? lastTime : importedAt;
+            ride.avgSpeedKmh = ride.durationSeconds > 0 ? ride.distanceKm / (ride.durationSeconds / 3600.0) : 0.0;
+            if (hasTimes) {
+                ride.maxSpeedKmh = analytics.getMaxSpeedKmh();
+                ride.movingSeconds = analytics.getMovingSeconds();
+                ride.splitSeconds = RideAnalytics.pack(analytics.getSplitSeconds());
+                ride.speedHistogram = RideAnalytics.pack(analytics.getSpeedHistogram());
+            }
+            ride.syncState = RideEntity.PENDING_UPLOAD;
+
+            rides.add(new Imported(ride, new RouteEntity(ride.rideId, route.build()), cells.cells()));
+            route = null;
+        }
+    }
+}
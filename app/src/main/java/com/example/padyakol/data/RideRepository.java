@@ -0,0 +1,444 @@
+package com.example.padyakol.data;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.Xml;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.Transformations;
+
+import com.example.padyakol.models.Ride;
+import com.example.padyakol.route.Route;
+import com.example.padyakol.route.RouteCodec;
+import com.example.padyakol.route.RouteSimplifier;
+import com.example.padyakol.route.TileGrid;
+import com.example.padyakol.route.TrackStore;
+import com.example.padyakol.tracking.RecordedRide;
+import com.example.padyakol.tracking.RideAnalytics;
+import com.example.padyakol.tracking.RideJournal;
+import com.example.padyakol.transfer.TrackFormat;
+import com.google.firebase.firestore.FirebaseFirestore;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Single entry point for ride data. Rides are written to the local database first and
+ * uploaded by {@link RideSyncWorker}, so saving and browsing work without a connection.
+ */
+public class RideRepository {
+
+    private static final String TAG = "RideRepository";
+    // Track files parsed at once during an import, and how far parsing may run ahead of the database
+    private static final int IMPORT_THREADS = 2;
+    private static final int IMPORT_AHEAD = 8;
+    private static RideRepository instance;
+
+    private final Context appContext;
+    private final RideDao rideDao;
+    private final RemoteRideSource remote;
+    private final RideCache rideCache;
+    private final SegmentDao segmentDao;
+    private final SegmentEfforts segmentEfforts;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Route simplification can take a while on long rides, so it never runs on the main thread
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    // Imports and exports can run for minutes, so they don't queue in front of saves
+    private final ExecutorService transferExecutor = Executors.newSingleThreadExecutor();
+    // Journals whose ride is queued or being written, by path; cleared once it is saved or has failed
+    private final Set<String> savingJournals = ConcurrentHashMap.newKeySet();
+
+    private RideRepository(Context context) {
+        appContext = context.getApplicationContext();
+        rideDao = AppDatabase.getInstance(appContext).rideDao();
+        remote = new FirestoreRideSource(FirebaseFirestore.getInstance());
+        rideCache = RideCache.getInstance(appContext);
+        segmentDao = AppDatabase.getInstance(appContext).segmentDao();
+        segmentEfforts = new SegmentEfforts(segmentDao, rideDao);
+    }
+
+    public static synchronized RideRepository getInstance(Context context) {
+        if (instance == null) {
+            instance = new RideRepository(context);
+        }
+        return instance;
+    }
+
+    // The newest `limit` rides, straight from disk; updates whenever a save or a sync changes the table
+    public LiveData<List<Ride>> observeRides(@NonNull String userId, int limit) {
+        return Transformations.map(rideDao.observeRides(userId, limit), entities -> {
+            List<Ride> rides = new ArrayList<>(entities.size());
+            for (RideEntity entity : entities) {
+                rides.add(entity.toRide());
+            }
+            return rides;
+        });
+    }
+
+    // Totals per period for a key range from RideStats, e.g. every day of a month; no per-ride reads
+    public LiveData<List<StatsBucketEntity>> observeStats(@NonNull String userId, @NonNull String fromKey, @NonNull String toKey) {
+        return rideDao.observeBuckets(userId, fromKey, toKey);
+    }
+
+    public LiveData<List<StatsRecordEntity>> observeRecords(@NonNull String userId) {
+        return rideDao.observeRecords(userId);
+    }
+
+    public interface RideIdsCallback {
+        // Main thread
+        void onRides(@NonNull List<String> rideIds);
+    }
+
+    // Rides that passed within radiusMeters of a point, from the on-device cell index
+    public void findRidesNear(@NonNull String userId, double lat, double lng, double radiusMeters,
+                              @NonNull RideIdsCallback callback) {
+        executor.execute(() -> {
+            List<String> rideIds = rideDao.findRidesNear(userId, lat, lng, radiusMeters);
+            mainHandler.post(() -> callback.onRides(rideIds));
+        });
+    }
+
+    // Rides that passed through a map area
+    public void findRidesInBox(@NonNull String userId, double south, double west, double north, double east,
+                               @NonNull RideIdsCallback callback) {
+        executor.execute(() -> {
+            List<String> rideIds = rideDao.findRidesInBox(userId, south, west, north, east);
+            mainHandler.post(() -> callback.onRides(rideIds));
+        });
+    }
+
+    // --- Segments ---
+
+    public LiveData<List<SegmentEntity>> observeSegments(@NonNull String userId) {
+        return segmentDao.observeSegments(userId);
+    }
+
+    // The segment's fastest efforts, best first
+    public LiveData<List<SegmentEffortEntity>> observeLeaderboard(@NonNull String segmentId, int limit) {
+        return segmentDao.observeLeaderboard(segmentId, limit);
+    }
+
+    public interface SegmentCallback {
+        // Main thread; null when the ride's route isn't on the device or the range is empty
+        void onSegment(@Nullable SegmentEntity segment);
+    }
+
+    /**
+     * Marks points fromIndex..toIndex of a ride's stored route as a segment, and times every ride on
+     * the device that covered it. Future rides are matched as they're saved.
+     */
+    public void createSegment(@NonNull String userId, @NonNull String name, @NonNull String rideId,
+                              int fromIndex, int toIndex, @NonNull SegmentCallback callback) {
+        executor.execute(() -> {
+            SegmentEntity segment = null;
+            RouteEntity local = rideDao.getRoute(rideId);
+            Route route = local != null ? RouteCodec.decode(local.routeData) : null;
+            if (route != null && fromIndex >= 0 && fromIndex < toIndex && toIndex < route.size()) {
+                Route path = SegmentEfforts.slice(route, fromIndex, toIndex);
+                segment = segmentEfforts.createSegment(userId, name, path, System.currentTimeMillis());
+            }
+            SegmentEntity result = segment;
+            mainHandler.post(() -> callback.onSegment(result));
+        });
+    }
+
+    public void deleteSegment(@NonNull String segmentId) {
+        executor.execute(() -> segmentEfforts.deleteSegment(segmentId));
+    }
+
+    // --- Import and export ---
+
+    public interface ImportCallback {
+        // Main thread
+        void onImported(@NonNull RideImporter.Result result);
+    }
+
+    /**
+     * Imports GPX and TCX files picked by the user as rides. They are stored and synced like
+     * recorded rides and matched against the user's segments; files already imported are skipped.
+     */
+    public void importTracks(@NonNull String userId, @NonNull List<Uri> uris, @NonNull ImportCallback callback) {
+        transferExecutor.execute(() -> {
+            ContentResolver resolver = appContext.getContentResolver();
+            List<RideImporter.Source> sources = new ArrayList<>(uris.size());
+            for (Uri uri : uris) {
+                sources.add(new UriSource(resolver, uri));
+            }
+            ExecutorService parsePool = Executors.newFixedThreadPool(IMPORT_THREADS);
+            RideImporter importer = new RideImporter(rideDao, Xml::newPullParser, parsePool, IMPORT_AHEAD);
+            RideImporter.Result result;
+            try {
+                result = importer.importAll(userId, sources, System.currentTimeMillis(), rides ->
+                        // On the repository thread, like the matching of recorded rides
+                        executor.execute(() -> {
+                            for (RideImporter.Imported ride : rides) {
+                                segmentEfforts.matchRide(userId, ride.ride.rideId,
+                                        RouteCodec.decode(ride.route.routeData), ride.cells);
+                            }
+                        }));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                parsePool.shutdown();
+            }
+            if (result.imported > 0) RideSyncWorker.enqueue(appContext);
+            mainHandler.post(() -> callback.onImported(result));
+        });
+    }
+
+    public interface ExportCallback {
+        // Main thread; null when the file couldn't be written
+        void onExported(@Nullable RideExporter.Result result);
+    }
+
+    // Writes every ride of the user as a zip of GPX or TCX files to a document the user picked
+    public void exportTracks(@NonNull String userId, @NonNull Uri target, @NonNull TrackFormat format,
+                             @NonNull ExportCallback callback) {
+        transferExecutor.execute(() -> {
+            RideExporter.Result result = null;
+            try {
+                OutputStream stream = appContext.getContentResolver().openOutputStream(target);
+                if (stream == null) throw new IOException("Could not open " + target);
+                try (OutputStream out = new BufferedOutputStream(stream, 64 * 1024)) {
+                    result = new RideExporter(rideDao, remote).exportAll(userId, format, out, ZoneId.systemDefault());
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "Could not export rides", e);
+            }
+            RideExporter.Result exported = result;
+            mainHandler.post(() -> callback.onExported(exported));
+        });
+    }
+
+    private static final class UriSource implements RideImporter.Source {
+        private final ContentResolver resolver;
+        private final Uri uri;
+
+        UriSource(ContentResolver resolver, Uri uri) {
+            this.resolver = resolver;
+            this.uri = uri;
+        }
+
+        @Override
+        public String getName() {
+            String name = uri.getLastPathSegment();
+            return name != null ? name : uri.toString();
+        }
+
+        @Override
+        public InputStream open() throws IOException {
+            InputStream in = resolver.openInputStream(uri);
+            if (in == null) throw new IOException("Could not open " + uri);
+            return in;
+        }
+    }
+
+    public interface RideCallback {
+        // Main thread; null when the ride or its route couldn't be found or fetched
+        void onRide(@Nullable RideCache.Entry entry);
+    }
+
+    /**
+     * A ride with its route, from the shared cache when possible. Routes aren't part of the list,
+     * so on a miss they are read from disk, or once from Firestore.
+     */
+    public void loadRide(@NonNull String userId, @NonNull String rideId, @NonNull RideCallback callback) {
+        RideCache.Entry cached = rideCache.get(rideId);
+        if (cached != null) {
+            callback.onRide(cached);
+            return;
+        }
+        executor.execute(() -> {
+            RideCache.Entry entry = null;
+            try {
+                RideEntity summary = rideDao.getRide(rideId);
+                RouteEntity local = rideDao.getRoute(rideId);
+                boolean fetched = false;
+                if (summary != null && local == null) {
+                    byte[] routeData = remote.fetchRoute(userId, rideId);
+                    if (routeData != null) {
+                        local = new RouteEntity(rideId, routeData);
+                        rideDao.storeRoute(userId, local);
+                        fetched = true;
+                    }
+                }
+                if (summary != null && local != null) {
+                    Route route = RouteCodec.decode(local.routeData);
+                    // Rides synced before summaries carried their cells are indexed once their route is here
+                    long[] cells = RideSyncer.toArray(rideDao.getCells(rideId));
+                    if (cells.length == 0) {
+                        cells = TileGrid.cellsAlong(route.lats(), route.lngs(), route.size());
+                        rideDao.indexRide(rideId, cells);
+                    }
+                    // Segments couldn't be matched against a route that wasn't on the device
+                    if (fetched) segmentEfforts.matchRide(userId, rideId, route, cells);
+                    entry = rideCache.put(rideId, summary.toRide(), route);
+                }
+            } catch (Exception e) {
+                Log.w(TAG, "Could not load ride " + rideId, e);
+            }
+            RideCache.Entry result = entry;
+            mainHandler.post(() -> callback.onRide(result));
+        });
+    }
+
+    /**
+     * Keeps the local database in step with Firestore while the returned registration is held.
+     * Only document changes are applied, so a screen showing the list costs no reads beyond them.
+     */
+    public RemoteRideSource.Registration startLiveSync(@NonNull String userId) {
+        long since = RideSyncWorker.getLastPull(appContext, userId);
+        if (since == 0L) {
+            // The listener can't see documents that predate updatedAt, so the first full pull is still needed
+            requestSync();
+        }
+        RideSyncer syncer = new RideSyncer(rideDao, remote);
+        return remote.listenForChanges(userId, since, executor, (changed, removedIds, fromServer) -> {
+            long newest = 0L;
+            try {
+                for (Ride ride : changed) {
+                    newest = Math.max(newest, syncer.applyRemote(userId, ride));
+                }
+                for (String rideId : removedIds) {
+                    syncer.applyRemoteRemoval(rideId);
+                }
+            } catch (Exception e) {
+                Log.w(TAG, "Could not apply remote ride changes", e);
+                return;
+            }
+            // Cached snapshots can be stale, so only server data moves the pull position
+            if (fromServer) RideSyncWorker.advanceLastPull(appContext, userId, newest);
+        });
+    }
+
+    // Pushes anything pending and pulls remote changes in the background
+    public void requestSync() {
+        RideSyncWorker.enqueue(appContext);
+    }
+
+    /**
+     * Deletes a ride from the device and queues its removal from the server, where the summary and
+     * total are lowered with it on the next sync. onDeleted runs on the main thread.
+     */
+    public void deleteRide(@NonNull String userId, @NonNull String rideId, @Nullable Runnable onDeleted) {
+        executor.execute(() -> {
+            rideDao.removeRide(userId, rideId);
+            rideCache.remove(rideId);
+            RideSyncWorker.enqueue(appContext);
+            if (onDeleted != null) mainHandler.post(onDeleted);
+        });
+    }
+
+    // onSaved runs on the main thread once the ride is stored on the device
+    public void saveRecordedRide(@NonNull String userId, @NonNull RecordedRide ride, @Nullable Runnable onSaved) {
+        File journalFile = ride.getJournalFile();
+        if (journalFile != null) savingJournals.add(journalFile.getAbsolutePath());
+        executor.execute(() -> {
+            try {
+                writeRide(userId, ride, onSaved);
+            } finally {
+                if (journalFile != null) savingJournals.remove(journalFile.getAbsolutePath());
+            }
+        });
+    }
+
+    // Saves the unfinished ride left in the journal without resuming it
+    public void saveRecoveredRide(@NonNull String userId, @NonNull File journalFile, @Nullable Runnable onSaved) {
+        // Already on its way to the database
+        if (!savingJournals.add(journalFile.getAbsolutePath())) return;
+        executor.execute(() -> {
+            try {
+                RideJournal.Recovered recovered;
+                try {
+                    recovered = RideJournal.replay(journalFile);
+                } catch (IOException e) {
+                    Log.e(TAG, "Could not read ride journal", e);
+                    return;
+                }
+                if (recovered == null || recovered.getTrack().isEmpty()) {
+                    RideJournal.delete(journalFile);
+                    return;
+                }
+                writeRide(userId, RecordedRide.fromJournal(recovered, journalFile), onSaved);
+            } finally {
+                savingJournals.remove(journalFile.getAbsolutePath());
+            }
+        });
+    }
+
+    /**
+     * Whether the ride in this journal has been handed over for saving and isn't in the database yet.
+     * Such a journal isn't abandoned, so it mustn't be offered for recovery.
+     */
+    public boolean isSaving(@NonNull File journalFile) {
+        return savingJournals.contains(journalFile.getAbsolutePath());
+    }
+
+    private void writeRide(String userId, RecordedRide ride, @Nullable Runnable onSaved) {
+        // Named after its journal, so a journal that outlived its save (the process died in between)
+        // recovers as the same ride rather than a second copy
+        String key = userId + "|" + ride.getStartTime();
+        String rideId = UUID.nameUUIDFromBytes(key.getBytes(StandardCharsets.UTF_8)).toString();
+        if (rideDao.getRide(rideId) != null) {
+            ride.deleteJournal();
+            if (onSaved != null) mainHandler.post(onSaved);
+            return;
+        }
+
+        TrackStore track = ride.getTrack();
+
+        // The finished track is read-only, so it is simplified in place without copying
+        int[] kept = RouteSimplifier.simplify(track.lats(), track.lngs(), track.size(), RouteSimplifier.DEFAULT_TOLERANCE_METERS);
+
+        RideEntity entity = new RideEntity();
+        entity.rideId = rideId;
+        entity.userId = userId;
+        entity.distanceKm = ride.getDistanceKm();
+        entity.durationSeconds = ride.getDurationSeconds();
+        entity.timestamp = ride.getFinishedAt();
+        entity.avgSpeedKmh = ride.getAvgSpeedKmh();
+        RideAnalytics analytics = ride.getAnalytics();
+        entity.maxSpeedKmh = analytics.getMaxSpeedKmh();
+        entity.movingSeconds = analytics.getMovingSeconds();
+        entity.splitSeconds = RideAnalytics.pack(analytics.getSplitSeconds());
+        entity.speedHistogram = RideAnalytics.pack(analytics.getSpeedHistogram());
+        entity.syncState = RideEntity.PENDING_UPLOAD;
+        double[] keptLats = new double[kept.length];
+        double[] keptLngs = new double[kept.length];
+        for (int i = 0; i < kept.length; i++) {
+            keptLats[i] = track.getLat(kept[i]);
+            keptLngs[i] = track.getLng(kept[i]);
+        }
+        byte[] routeData = RouteCodec.encodeSelected(track, kept);
+        long[] cells = TileGrid.cellsAlong(keptLats, keptLngs, kept.length);
+        rideDao.insertRide(entity, new RouteEntity(entity.rideId, routeData), cells);
+
+        // The database now holds the ride, so the journal is no longer needed
+        ride.deleteJournal();
+        RideSyncWorker.enqueue(appContext);
+
+        // Against the route as stored, so a ride matches the same way now and after a reinstall
+        segmentEfforts.matchRide(userId, entity.rideId, RouteCodec.decode(routeData), cells);
+
+        if (onSaved != null) mainHandler.post(onSaved);
+    }
+}
@@ -0,0 +1,200 @@
+package com.example.padyakol.data;
+
+import androidx.annotation.Nullable;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.IsoFields;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Aggregate ride statistics, maintained incrementally instead of summed over the history.
+ *
+ * Each ride counts towards four buckets, keyed so that a period sorts and range-queries as text:
+ * {@code d:2024-03-05}, {@code w:2024-W10} (ISO week), {@code m:2024-03} and {@code all}.
+ * Personal records are kept per kind together with the ride holding them. A ride's day is fixed
+ * when it is first stored ({@link RideEntity#localDate}), so a change of time zone can't move it
+ * to other buckets.
+ */
+public final class RideStats {
+
+    public static final String ALL_TIME = "all";
+
+    public static final String LONGEST_DISTANCE = "longestDistance";
+    public static final String FASTEST_AVG_SPEED = "fastestAvgSpeed";
+    public static final String LONGEST_DURATION = "longestDuration";
+
+    static final String[] RECORD_KINDS = {LONGEST_DISTANCE, FASTEST_AVG_SPEED, LONGEST_DURATION};
+
+    private RideStats() {
+    }
+
+    public static String dayKey(long timestamp, ZoneId zone) {
+        return dayKey(toDate(timestamp, zone));
+    }
+
+    private static String dayKey(LocalDate date) {
+        return String.format(Locale.US, "d:%04d-%02d-%02d", date.getYear(), date.getMonthValue(), date.getDayOfMonth());
+    }
+
+    public static String weekKey(long timestamp, ZoneId zone) {
+        return weekKey(toDate(timestamp, zone));
+    }
+
+    private static String weekKey(LocalDate date) {
+        return String.format(Locale.US, "w:%04d-W%02d",
+                date.get(IsoFields.WEEK_BASED_YEAR), date.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR));
+    }
+
+    public static String monthKey(long timestamp, ZoneId zone) {
+        return monthKey(toDate(timestamp, zone));
+    }
+
+    private static String monthKey(LocalDate date) {
+        return String.format(Locale.US, "m:%04d-%02d", date.getYear(), date.getMonthValue());
+    }
+
+    // The buckets a ride finished at this time counts towards
+    static String[] bucketKeys(long timestamp, ZoneId zone) {
+        return bucketKeys(toDate(timestamp, zone));
+    }
+
+    private static String[] bucketKeys(LocalDate date) {
+        return new String[]{dayKey(date), weekKey(date), monthKey(date), ALL_TIME};
+    }
+
+    // A ride's buckets, from the day it was pinned to; rides from before pinning fall back to the zone
+    static String[] bucketKeys(@Nullable String localDate, long timestamp, ZoneId zone) {
+        return localDate != null ? bucketKeys(LocalDate.parse(localDate)) : bucketKeys(timestamp, zone);
+    }
+
+    private static String[] bucketKeys(RideEntity ride, ZoneId zone) {
+        return bucketKeys(ride.localDate, ride.timestamp, zone);
+    }
+
+    /**
+     * Sets the day a ride row counts towards before it is written: kept from the stored row while
+     * the timestamp is unchanged, else the one the ride arrived with (a pulled ride carries the day
+     * the recording device pinned), otherwise taken in the given zone.
+     */
+    public static void pinDay(@Nullable RideEntity before, RideEntity after, ZoneId zone) {
+        if (before != null && before.localDate != null && before.timestamp == after.timestamp) {
+            after.localDate = before.localDate;
+        } else if (after.localDate == null) {
+            after.localDate = toDate(after.timestamp, zone).toString();
+        }
+    }
+
+    private static LocalDate toDate(long timestamp, ZoneId zone) {
+        return Instant.ofEpochMilli(timestamp).atZone(zone).toLocalDate();
+    }
+
+    static double valueOf(String kind, RideEntity ride) {
+        switch (kind) {
+            case LONGEST_DISTANCE:
+                return ride.distanceKm;
+            case FASTEST_AVG_SPEED:
+                return ride.avgSpeedKmh;
+            case LONGEST_DURATION:
+                return ride.durationSeconds;
+            default:
+                throw new IllegalArgumentException("Unknown record " + kind);
+        }
+    }
+
+    /**
+     * Adjusts the stored aggregates for one ride row that was just written or removed, within the
+     * same transaction. Touches four buckets and three records however long the history is; only
+     * removing or lowering the ride that holds a record needs a query to find the next best.
+     *
+     * @param before the row as it was, or null for a new ride
+     * @param after  the row as it is now, or null once removed; see {@link #pinDay}
+     */
+    public static void apply(StatsStore store, @Nullable RideEntity before, @Nullable RideEntity after, ZoneId zone) {
+        if (before != null && after != null && sameStats(before, after)) return;
+
+        if (before != null) addToBuckets(store, before, -1, zone);
+        if (after != null) addToBuckets(store, after, 1, zone);
+
+        String userId = after != null ? after.userId : before.userId;
+        for (String kind : RECORD_KINDS) {
+            StatsRecordEntity record = store.getRecord(userId, kind);
+            if (before != null && record != null && record.rideId.equals(before.rideId)) {
+                // The holder changed, so the record may have gone down; the rows already reflect the change
+                RideEntity best = findBest(store, userId, kind);
+                if (best == null) {
+                    store.deleteRecord(userId, kind);
+                } else {
+                    store.putRecord(new StatsRecordEntity(userId, kind, best.rideId, valueOf(kind, best)));
+                }
+            } else if (after != null && (record == null || valueOf(kind, after) > record.value)) {
+                store.putRecord(new StatsRecordEntity(userId, kind, after.rideId, valueOf(kind, after)));
+            }
+        }
+    }
+
+    private static void addToBuckets(StatsStore store, RideEntity ride, int sign, ZoneId zone) {
+        for (String key : bucketKeys(ride, zone)) {
+            StatsBucketEntity bucket = store.getBucket(ride.userId, key);
+            if (bucket == null) bucket = new StatsBucketEntity(ride.userId, key);
+            bucket.rideCount += sign;
+            bucket.distanceKm += sign * ride.distanceKm;
+            bucket.durationSeconds += sign * ride.durationSeconds;
+            // Dropping empty buckets also clears any rounding left over from adding and subtracting
+            if (bucket.rideCount <= 0) {
+                store.deleteBucket(ride.userId, key);
+            } else {
+                store.putBucket(bucket);
+            }
+        }
+    }
+
+    @Nullable
+    private static RideEntity findBest(StatsStore store, String userId, String kind) {
+        switch (kind) {
+            case LONGEST_DISTANCE:
+                return store.findLongestRide(userId);
+            case FASTEST_AVG_SPEED:
+                return store.findFastestRide(userId);
+            case LONGEST_DURATION:
+                return store.findLongestDurationRide(userId);
+            default:
+                throw new IllegalArgumentException("Unknown record " + kind);
+        }
+    }
+
+    // Pulling a ride back after its own upload only changes updatedAt and syncState
+    private static boolean sameStats(RideEntity a, RideEntity b) {
+        return a.timestamp == b.timestamp
+                && a.distanceKm == b.distanceKm
+                && a.durationSeconds == b.durationSeconds
+                && a.avgSpeedKmh == b.avgSpeedKmh;
+    }
+
+    /**
+     * Folds one ride into in-memory aggregates, for building them from scratch in a single pass.
+     * Maps are keyed by {@code userId + "/" + key}; rides must come oldest first so ties match
+     * {@link #apply}.
+     */
+    static void accumulate(Map<String, StatsBucketEntity> buckets, Map<String, StatsRecordEntity> records,
+                           RideEntity ride, ZoneId zone) {
+        for (String key : bucketKeys(ride, zone)) {
+            StatsBucketEntity bucket = buckets.get(ride.userId + "/" + key);
+            if (bucket == null) {
+                bucket = new StatsBucketEntity(ride.userId, key);
+                buckets.put(ride.userId + "/" + key, bucket);
+            }
+            bucket.rideCount++;
+            bucket.distanceKm += ride.distanceKm;
+            bucket.durationSeconds += ride.durationSeconds;
+        }
+        for (String kind : RECORD_KINDS) {
+            StatsRecordEntity record = records.get(ride.userId + "/" + kind);
+            if (record == null || valueOf(kind, ride) > record.value) {
+                records.put(ride.userId + "/" + kind, new StatsRecordEntity(ride.userId, kind, ride.rideId, valueOf(kind, ride)));
+            }
+        }
+    }
+}
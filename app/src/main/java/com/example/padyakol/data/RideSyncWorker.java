@@ -0,0 +1,85 @@
+package com.example.padyakol.data;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.firestore.FirebaseFirestore;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pushes pending rides and pulls remote changes whenever there is a network.
+ * Failed runs are retried by WorkManager with exponential backoff.
+ */
+public class RideSyncWorker extends Worker {
+
+    private static final String TAG = "RideSyncWorker";
+    private static final String WORK_NAME = "ride_sync";
+    private static final String PREFS = "ride_sync";
+    private static final String KEY_LAST_PULL = "last_pull_";
+
+    public RideSyncWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    public static void enqueue(Context context) {
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(RideSyncWorker.class)
+                .setConstraints(new Constraints.Builder()
+                        .setRequiredNetworkType(NetworkType.CONNECTED)
+                        .build())
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, 30, TimeUnit.SECONDS)
+                .build();
+        // Appending guarantees a save made during a running sync still gets its own pass
+        WorkManager.getInstance(context)
+                .enqueueUniqueWork(WORK_NAME, ExistingWorkPolicy.APPEND_OR_REPLACE, request);
+    }
+
+    // Newest server time already stored locally, 0 before the first full pull
+    static long getLastPull(Context context, String userId) {
+        return prefs(context).getLong(KEY_LAST_PULL + userId, 0L);
+    }
+
+    // Both this worker and the live listener move it; it only ever moves forward
+    static synchronized void advanceLastPull(Context context, String userId, long millis) {
+        SharedPreferences prefs = prefs(context);
+        if (millis > prefs.getLong(KEY_LAST_PULL + userId, 0L)) {
+            prefs.edit().putLong(KEY_LAST_PULL + userId, millis).apply();
+        }
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+        if (user == null) return Result.success();
+        String userId = user.getUid();
+
+        Context context = getApplicationContext();
+        RideSyncer syncer = new RideSyncer(AppDatabase.getInstance(context).rideDao(),
+                new FirestoreRideSource(FirebaseFirestore.getInstance()));
+        try {
+            advanceLastPull(context, userId, syncer.sync(userId, getLastPull(context, userId)));
+            return Result.success();
+        } catch (Exception e) {
+            Log.w(TAG, "Ride sync failed, will retry", e);
+            return Result.retry();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.padyakol.data;
+
+import com.example.padyakol.models.Ride;
+import com.example.padyakol.route.Route;
+import com.example.padyakol.route.TileGrid;
+import com.google.firebase.firestore.Blob;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One sync pass: push rides that only exist locally, then pull what changed on the server.
+ * Plain blocking code so it can be tested against a fake remote.
+ */
+public class RideSyncer {
+
+    // Large enough to keep round trips down, small enough that a long history never sits in memory at once
+    static final int PULL_PAGE_SIZE = 50;
+    // Two writes per ride keeps a batch far below Firestore's 500 writes per commit, and the routes
+    // well below its 10 MB request limit
+    static final int PUSH_BATCH_SIZE = 50;
+
+    private final RideDao dao;
+    private final RemoteRideSource remote;
+
+    public RideSyncer(RideDao dao, RemoteRideSource remote) {
+        this.dao = dao;
+        this.remote = remote;
+    }
+
+    /**
+     * @param lastPullMillis newest server time seen by the previous pull, 0 for a full pull
+     * @return the value to pass next time
+     */
+    public long sync(String userId, long lastPullMillis) throws Exception {
+        // Pending rows are the write queue: they outlive the process, and a failed run leaves them for
+        // WorkManager's next attempt. Each batch is one atomic commit, so a backlog built up offline
+        // goes out in a few round trips.
+        List<RideEntity> pending = dao.getPendingUploads(userId);
+        for (int start = 0; start < pending.size(); start += PUSH_BATCH_SIZE) {
+            List<RideEntity> batch = pending.subList(start, Math.min(start + PUSH_BATCH_SIZE, pending.size()));
+            List<Ride> rides = new ArrayList<>(batch.size());
+            List<String> rideIds = new ArrayList<>(batch.size());
+            for (RideEntity entity : batch) {
+                Ride ride = entity.toRide();
+                RouteEntity route = dao.getRoute(entity.rideId);
+                if (route != null) ride.setRouteData(Blob.fromBytes(route.routeData));
+                long[] cells = toArray(dao.getCells(entity.rideId));
+                if (cells.length > 0) ride.setCells(Blob.fromBytes(TileGrid.pack(cells)));
+                rides.add(ride);
+                rideIds.add(entity.rideId);
+            }
+            remote.push(userId, rides, dao.getRecords(userId));
+            dao.markSynced(rideIds);
+        }
+
+        // Before the pull, so a deleted ride isn't pulled back
+        List<String> deletions = dao.getPendingDeletions(userId);
+        for (int start = 0; start < deletions.size(); start += PUSH_BATCH_SIZE) {
+            List<String> batch = new ArrayList<>(deletions.subList(start, Math.min(start + PUSH_BATCH_SIZE, deletions.size())));
+            remote.delete(userId, batch, dao.getRecords(userId));
+            dao.clearDeletions(batch);
+        }
+
+        long newest = lastPullMillis;
+        RemoteRideSource.RidePager pager = remote.pullChangedSince(userId, lastPullMillis, PULL_PAGE_SIZE);
+        List<Ride> page;
+        // Each page is written out before the next is fetched
+        while (!(page = pager.nextPage()).isEmpty()) {
+            for (Ride ride : page) {
+                newest = Math.max(newest, applyRemote(userId, ride));
+            }
+        }
+        return newest;
+    }
+
+    /**
+     * Stores one ride read from the server, from a pull or a live listener.
+     * @return its server update time, or 0 if it was skipped
+     */
+    public long applyRemote(String userId, Ride ride) throws Exception {
+        RideEntity local = dao.getRide(ride.getRideId());
+        // Never let the server copy overwrite an edit that hasn't been uploaded yet, or bring back a deleted ride
+        if (local != null && local.syncState == RideEntity.PENDING_UPLOAD) return 0L;
+        if (dao.isDeletionPending(ride.getRideId())) return 0L;
+
+        RideEntity entity = RideEntity.fromRide(userId, ride, RideEntity.SYNCED);
+        dao.saveSummary(entity);
+        // A ride's geometry never changes, so one set of cells is enough
+        boolean indexed = local != null && !dao.getCells(entity.rideId).isEmpty();
+        if (!indexed && ride.getCells() != null) {
+            dao.indexRide(entity.rideId, TileGrid.unpack(ride.getCells().toBytes()));
+            indexed = true;
+        }
+
+        // Documents from before the route split carry their route; keep it and migrate the document
+        RouteEntity embedded = RouteEntity.fromRide(ride);
+        if (embedded != null) {
+            dao.storeRoute(userId, embedded);
+            if (!indexed) {
+                Route route = ride.getRoute();
+                dao.indexRide(entity.rideId, TileGrid.cellsAlong(route.lats(), route.lngs(), route.size()));
+            }
+            remote.splitLegacyRoute(userId, embedded.rideId, embedded.routeData);
+        }
+        return entity.updatedAt;
+    }
+
+    static long[] toArray(List<Long> values) {
+        long[] array = new long[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+
+    // A ride deleted on the server, unless this device still has an upload pending for it
+    public void applyRemoteRemoval(String rideId) {
+        RideEntity local = dao.getRide(rideId);
+        if (local != null && local.syncState == RideEntity.PENDING_UPLOAD) return;
+        dao.deleteRide(rideId);
+    }
+}
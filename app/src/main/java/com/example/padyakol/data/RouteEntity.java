@@ -0,0 +1,48 @@
+package com.example.padyakol.data;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+import com.example.padyakol.models.Ride;
+import com.example.padyakol.route.Route;
+import com.example.padyakol.route.RouteCodec;
+
+/**
+ * Geometry of one ride, kept apart from {@link RideEntity} so list queries never load route bytes.
+ * May be missing for synced rides until the route is first opened.
+ */
+@Entity(tableName = "ride_routes")
+public class RouteEntity {
+
+    @PrimaryKey
+    @NonNull
+    public String rideId = "";
+
+    // RouteCodec bytes
+    @NonNull
+    public byte[] routeData = new byte[0];
+
+    public RouteEntity() {
+    }
+
+    public RouteEntity(@NonNull String rideId, @NonNull byte[] routeData) {
+        this.rideId = rideId;
+        this.routeData = routeData;
+    }
+
+    // The route carried by a ride object, or null. Legacy GeoPoint routes are encoded on the way in.
+    @Nullable
+    public static RouteEntity fromRide(@NonNull Ride ride) {
+        if (ride.getRouteData() != null) {
+            return new RouteEntity(ride.getRideId(), ride.getRouteData().toBytes());
+        }
+        if (ride.hasRoute()) {
+            Route route = ride.getRoute();
+            return new RouteEntity(ride.getRideId(),
+                    RouteCodec.encode(route.lats(), route.lngs(), route.times(), route.size()));
+        }
+        return null;
+    }
+}
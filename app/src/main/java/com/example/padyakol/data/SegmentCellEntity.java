@@ -0,0 +1,32 @@
+package com.example.padyakol.data;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Index;
+
+/**
+ * A {@link com.example.padyakol.route.TileGrid} cell near a segment's start or finish.
+ */
+@Entity(tableName = "segment_cells", primaryKeys = {"cellId", "segmentId", "endpoint"},
+        indices = {@Index(value = {"segmentId"})})
+public class SegmentCellEntity {
+
+    public static final int START = 0;
+    public static final int FINISH = 1;
+
+    public long cellId;
+
+    @NonNull
+    public String segmentId = "";
+
+    public int endpoint;
+
+    public SegmentCellEntity() {
+    }
+
+    public SegmentCellEntity(long cellId, @NonNull String segmentId, int endpoint) {
+        this.cellId = cellId;
+        this.segmentId = segmentId;
+        this.endpoint = endpoint;
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.padyakol.data;
+
+import androidx.lifecycle.LiveData;
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+import androidx.room.Transaction;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Dao
+public interface SegmentDao {
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void upsertSegment(SegmentEntity segment);
+
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    void insertSegmentCells(List<SegmentCellEntity> cells);
+
+    // A segment becomes matchable together with its endpoint cells
+    @Transaction
+    default void insertSegment(SegmentEntity segment, long[] startCells, long[] finishCells) {
+        upsertSegment(segment);
+        List<SegmentCellEntity> rows = new ArrayList<>(startCells.length + finishCells.length);
+        for (long cell : startCells) {
+            rows.add(new SegmentCellEntity(cell, segment.segmentId, SegmentCellEntity.START));
+        }
+        for (long cell : finishCells) {
+            rows.add(new SegmentCellEntity(cell, segment.segmentId, SegmentCellEntity.FINISH));
+        }
+        insertSegmentCells(rows);
+    }
+
+    @Query("SELECT * FROM segments WHERE userId = :userId ORDER BY name")
+    LiveData<List<SegmentEntity>> observeSegments(String userId);
+
+    @Query("SELECT * FROM segments WHERE segmentId IN (:segmentIds)")
+    List<SegmentEntity> getSegments(List<String> segmentIds);
+
+    // Endpoint cells among the given ones; callers keep the list well under SQLite's 999 arguments
+    @Query("SELECT sc.* FROM segment_cells sc JOIN segments s ON s.segmentId = sc.segmentId "
+            + "WHERE sc.cellId IN (:cellIds) AND s.userId = :userId")
+    List<SegmentCellEntity> getEndpointCells(String userId, List<Long> cellIds);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void upsertEffort(SegmentEffortEntity effort);
+
+    // Fastest first, read in order off the (segmentId, elapsedSeconds) index
+    @Query("SELECT * FROM segment_efforts WHERE segmentId = :segmentId ORDER BY elapsedSeconds, startedAt LIMIT :limit")
+    LiveData<List<SegmentEffortEntity>> observeLeaderboard(String segmentId, int limit);
+
+    @Query("DELETE FROM segments WHERE segmentId = :segmentId")
+    void deleteSegmentRow(String segmentId);
+
+    @Query("DELETE FROM segment_cells WHERE segmentId = :segmentId")
+    void deleteSegmentCells(String segmentId);
+
+    @Query("DELETE FROM segment_efforts WHERE segmentId = :segmentId")
+    void deleteSegmentEfforts(String segmentId);
+
+    @Transaction
+    default void deleteSegment(String segmentId) {
+        deleteSegmentEfforts(segmentId);
+        deleteSegmentCells(segmentId);
+        deleteSegmentRow(segmentId);
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.padyakol.data;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Index;
+
+/**
+ * A ride's best time on a segment. The (segmentId, elapsedSeconds) index serves the leaderboard.
+ */
+@Entity(tableName = "segment_efforts", primaryKeys = {"segmentId", "rideId"},
+        indices = {@Index(value = {"segmentId", "elapsedSeconds"}), @Index(value = {"rideId"})})
+public class SegmentEffortEntity {
+
+    @NonNull
+    public String segmentId = "";
+
+    @NonNull
+    public String rideId = "";
+
+    public long startedAt;
+    public long elapsedSeconds;
+
+    public SegmentEffortEntity() {
+    }
+
+    public SegmentEffortEntity(@NonNull String segmentId, @NonNull String rideId, long startedAt, long elapsedSeconds) {
+        this.segmentId = segmentId;
+        this.rideId = rideId;
+        this.startedAt = startedAt;
+        this.elapsedSeconds = elapsedSeconds;
+    }
+}
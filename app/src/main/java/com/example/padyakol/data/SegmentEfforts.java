@@ -0,0 +1,144 @@
+package com.example.padyakol.data;
+
+import com.example.padyakol.route.Route;
+import com.example.padyakol.route.RouteCodec;
+import com.example.padyakol.route.SegmentMatcher;
+import com.example.padyakol.route.TileGrid;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Keeps segment efforts up to date as rides and segments are added. Both directions prune through
+ * the cell index first: a ride is only matched against segments it passed both ends of, and a new
+ * segment only against rides that did. {@link SegmentMatcher} runs on what is left.
+ *
+ * Blocking, and not thread safe; the repository calls it from its executor.
+ */
+public class SegmentEfforts {
+
+    // SQLite allows 999 arguments; a long ride can pass through more cells than that
+    static final int MAX_QUERY_CELLS = 500;
+
+    private final SegmentDao segmentDao;
+    private final RideDao rideDao;
+    // Built on first use; segments never change once created
+    private final Map<String, SegmentMatcher> matchers = new HashMap<>();
+
+    public SegmentEfforts(SegmentDao segmentDao, RideDao rideDao) {
+        this.segmentDao = segmentDao;
+        this.rideDao = rideDao;
+    }
+
+    /**
+     * Records the ride's best time on every segment it covered.
+     * @param route the ride's stored route, with timestamps
+     * @param rideCells the ride's cells as indexed, sorted
+     * @return how many segments it matched
+     */
+    public int matchRide(String userId, String rideId, Route route, long[] rideCells) {
+        if (!route.hasTimes() || rideCells.length == 0) return 0;
+
+        // Bit 1 << endpoint for each end of a segment the ride came near
+        Map<String, Integer> endsHit = new HashMap<>();
+        for (int from = 0; from < rideCells.length; from += MAX_QUERY_CELLS) {
+            List<Long> chunk = new ArrayList<>(MAX_QUERY_CELLS);
+            for (int i = from; i < Math.min(rideCells.length, from + MAX_QUERY_CELLS); i++) {
+                chunk.add(rideCells[i]);
+            }
+            for (SegmentCellEntity cell : segmentDao.getEndpointCells(userId, chunk)) {
+                endsHit.merge(cell.segmentId, 1 << cell.endpoint, (a, b) -> a | b);
+            }
+        }
+        List<String> candidates = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : endsHit.entrySet()) {
+            if (entry.getValue() == 3) candidates.add(entry.getKey());
+        }
+        if (candidates.isEmpty()) return 0;
+
+        int matched = 0;
+        loadMatchers(candidates);
+        for (String segmentId : candidates) {
+            // Deleted since its cells were read
+            if (!matchers.containsKey(segmentId)) continue;
+            SegmentMatcher.Effort effort = match(segmentId, route);
+            if (effort != null) {
+                segmentDao.upsertEffort(toEntity(segmentId, rideId, effort));
+                matched++;
+            }
+        }
+        return matched;
+    }
+
+    /**
+     * Saves a new segment and finds its efforts on the rides already on the device. Rides whose
+     * route hasn't been downloaded are matched when it is.
+     */
+    public SegmentEntity createSegment(String userId, String name, Route path, long createdAt) {
+        SegmentMatcher matcher = new SegmentMatcher(path);
+        int last = path.size() - 1;
+
+        SegmentEntity segment = new SegmentEntity();
+        segment.segmentId = UUID.randomUUID().toString();
+        segment.userId = userId;
+        segment.name = name;
+        segment.distanceMeters = matcher.getLengthMeters();
+        // Only the shape is kept; the ride's times on it are an effort
+        segment.routeData = RouteCodec.encode(path.lats(), path.lngs(), null, path.size());
+        segment.createdAt = createdAt;
+        segmentDao.insertSegment(segment,
+                TileGrid.cellsNear(path.getLat(0), path.getLng(0), SegmentMatcher.ENDPOINT_RADIUS_METERS),
+                TileGrid.cellsNear(path.getLat(last), path.getLng(last), SegmentMatcher.ENDPOINT_RADIUS_METERS));
+        matchers.put(segment.segmentId, matcher);
+
+        Set<String> candidates = new LinkedHashSet<>(rideDao.findRidesNear(userId,
+                path.getLat(0), path.getLng(0), SegmentMatcher.ENDPOINT_RADIUS_METERS));
+        candidates.retainAll(rideDao.findRidesNear(userId,
+                path.getLat(last), path.getLng(last), SegmentMatcher.ENDPOINT_RADIUS_METERS));
+        for (String rideId : candidates) {
+            RouteEntity local = rideDao.getRoute(rideId);
+            if (local == null) continue;
+            SegmentMatcher.Effort effort = match(segment.segmentId, RouteCodec.decode(local.routeData));
+            if (effort != null) segmentDao.upsertEffort(toEntity(segment.segmentId, rideId, effort));
+        }
+        return segment;
+    }
+
+    public void deleteSegment(String segmentId) {
+        segmentDao.deleteSegment(segmentId);
+        matchers.remove(segmentId);
+    }
+
+    // Part of a stored route, e.g. the stretch of a ride the rider picked as a segment
+    public static Route slice(Route route, int from, int to) {
+        long[] times = route.hasTimes() ? Arrays.copyOfRange(route.times(), from, to + 1) : null;
+        return new Route(Arrays.copyOfRange(route.lats(), from, to + 1),
+                Arrays.copyOfRange(route.lngs(), from, to + 1), times, to - from + 1);
+    }
+
+    private void loadMatchers(List<String> segmentIds) {
+        List<String> missing = new ArrayList<>();
+        for (String segmentId : segmentIds) {
+            if (!matchers.containsKey(segmentId)) missing.add(segmentId);
+        }
+        if (missing.isEmpty()) return;
+        for (SegmentEntity segment : segmentDao.getSegments(missing)) {
+            matchers.put(segment.segmentId, new SegmentMatcher(RouteCodec.decode(segment.routeData)));
+        }
+    }
+
+    private SegmentMatcher.Effort match(String segmentId, Route route) {
+        return matchers.get(segmentId).match(route);
+    }
+
+    private static SegmentEffortEntity toEntity(String segmentId, String rideId, SegmentMatcher.Effort effort) {
+        return new SegmentEffortEntity(segmentId, rideId, effort.getStartTime(),
+                Math.round(effort.getElapsedMillis() / 1000.0));
+    }
+}
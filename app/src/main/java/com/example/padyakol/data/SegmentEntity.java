@@ -0,0 +1,33 @@
+package com.example.padyakol.data;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * A stretch of road the rider marked to compare times on. Its start and finish are indexed in
+ * {@link SegmentCellEntity} so a new ride only has to be matched against segments it passed both
+ * ends of.
+ */
+@Entity(tableName = "segments", indices = {@Index(value = {"userId"})})
+public class SegmentEntity {
+
+    @PrimaryKey
+    @NonNull
+    public String segmentId = "";
+
+    @NonNull
+    public String userId = "";
+
+    @NonNull
+    public String name = "";
+
+    public double distanceMeters;
+
+    // RouteCodec bytes, without timestamps
+    @NonNull
+    public byte[] routeData = new byte[0];
+
+    public long createdAt;
+}
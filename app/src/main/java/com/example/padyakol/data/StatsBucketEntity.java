@@ -0,0 +1,30 @@
+package com.example.padyakol.data;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+
+/**
+ * Running totals for one period: a day, an ISO week, a month, or all time. The key says which,
+ * see {@link RideStats}. Kept up to date by {@link RideDao} whenever a ride row changes.
+ */
+@Entity(tableName = "stats_buckets", primaryKeys = {"userId", "bucketKey"})
+public class StatsBucketEntity {
+
+    @NonNull
+    public String userId = "";
+
+    @NonNull
+    public String bucketKey = "";
+
+    public int rideCount;
+    public double distanceKm;
+    public long durationSeconds;
+
+    public StatsBucketEntity() {
+    }
+
+    public StatsBucketEntity(@NonNull String userId, @NonNull String bucketKey) {
+        this.userId = userId;
+        this.bucketKey = bucketKey;
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.padyakol.data;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+
+/**
+ * The ride holding one personal record, e.g. the longest distance. One row per user and kind,
+ * see {@link RideStats} for the kinds.
+ */
+@Entity(tableName = "stats_records", primaryKeys = {"userId", "kind"})
+public class StatsRecordEntity {
+
+    @NonNull
+    public String userId = "";
+
+    @NonNull
+    public String kind = "";
+
+    @NonNull
+    public String rideId = "";
+
+    public double value;
+
+    public StatsRecordEntity() {
+    }
+
+    public StatsRecordEntity(@NonNull String userId, @NonNull String kind, @NonNull String rideId, double value) {
+        this.userId = userId;
+        this.kind = kind;
+        this.rideId = rideId;
+        this.value = value;
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.padyakol.data;
+
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import java.util.List;
+
+/**
+ * Reads and writes {@link RideStats} needs. Part of {@link RideDao}, so the aggregates change
+ * in the same transaction as the ride rows.
+ */
+public interface StatsStore {
+
+    @Query("SELECT * FROM stats_buckets WHERE userId = :userId AND bucketKey = :bucketKey")
+    StatsBucketEntity getBucket(String userId, String bucketKey);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void putBucket(StatsBucketEntity bucket);
+
+    @Query("DELETE FROM stats_buckets WHERE userId = :userId AND bucketKey = :bucketKey")
+    void deleteBucket(String userId, String bucketKey);
+
+    @Query("SELECT * FROM stats_records WHERE userId = :userId AND kind = :kind")
+    StatsRecordEntity getRecord(String userId, String kind);
+
+    @Query("SELECT * FROM stats_records WHERE userId = :userId")
+    List<StatsRecordEntity> getRecords(String userId);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void putRecord(StatsRecordEntity record);
+
+    @Query("DELETE FROM stats_records WHERE userId = :userId AND kind = :kind")
+    void deleteRecord(String userId, String kind);
+
+    // Only needed when the ride holding a record is removed or lowered, so these scan the user's rides
+    // rather than paying for three more indices on every insert. Ties go to the earlier ride.
+    @Query("SELECT * FROM rides WHERE userId = :userId ORDER BY distanceKm DESC, timestamp ASC LIMIT 1")
+    RideEntity findLongestRide(String userId);
+
+    @Query("SELECT * FROM rides WHERE userId = :userId ORDER BY avgSpeedKmh DESC, timestamp ASC LIMIT 1")
+    RideEntity findFastestRide(String userId);
+
+    @Query("SELECT * FROM rides WHERE userId = :userId ORDER BY durationSeconds DESC, timestamp ASC LIMIT 1")
+    RideEntity findLongestDurationRide(String userId);
+}
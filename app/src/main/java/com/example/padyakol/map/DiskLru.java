@@ -0,0 +1,69 @@
+package com.example.padyakol.map;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Least-recently-used order of the files in a cache directory, so the cache can be kept under a
+ * file count without listing the directory on every write. The directory is listed once, on first
+ * use, oldest first; from then on reads and writes only move a name in memory. Reads also touch the
+ * file, so the order is still right after a restart.
+ */
+final class DiskLru {
+
+    private final File dir;
+    private final int maxFiles;
+    // Access order: the eldest entry is the least recently used file
+    private LinkedHashMap<String, Boolean> names;
+
+    DiskLru(File dir, int maxFiles) {
+        this.dir = dir;
+        this.maxFiles = maxFiles;
+    }
+
+    // A cached file was served
+    synchronized void touch(File file) {
+        load();
+        if (names.get(file.getName()) != null) {
+            //noinspection ResultOfMethodCallIgnored
+            file.setLastModified(System.currentTimeMillis());
+        }
+    }
+
+    // A file was written; the least recently used ones go once there are too many
+    synchronized void added(File file) {
+        load();
+        names.put(file.getName(), Boolean.TRUE);
+        Iterator<String> eldest = names.keySet().iterator();
+        while (names.size() > maxFiles && eldest.hasNext()) {
+            //noinspection ResultOfMethodCallIgnored
+            new File(dir, eldest.next()).delete();
+            eldest.remove();
+        }
+    }
+
+    synchronized int size() {
+        load();
+        return names.size();
+    }
+
+    private void load() {
+        if (names != null) return;
+        names = new LinkedHashMap<>(16, 0.75f, true);
+        File[] files = dir.listFiles();
+        if (files == null) return;
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (File file : files) {
+            // Left behind by a write that never finished
+            if (file.getName().endsWith(".tmp")) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            } else {
+                names.put(file.getName(), Boolean.TRUE);
+            }
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.padyakol.map;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.util.Log;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+import com.example.padyakol.data.AppDatabase;
+import com.example.padyakol.data.HeatTileEntity;
+import com.example.padyakol.data.HeatmapStore;
+import com.example.padyakol.route.HeatGrid;
+import com.google.android.gms.maps.model.Tile;
+import com.google.android.gms.maps.model.TileProvider;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * The user's ride heatmap for a {@link com.google.android.gms.maps.model.TileOverlay}.
+ *
+ * Tiles come from the density pyramid kept by RideHeat, so nothing walks the routes here. A map
+ * tile costs one primary-key read; its PNG is then taken from memory or disk, and only drawn when
+ * the stored tile changed since. Cached PNGs are kept with the bins they were drawn from and
+ * checked against them, so each map tile has one file that is redrawn in place. Maps calls getTile
+ * on its own background threads, so none of this runs on the UI thread. Call clearTileCache on the
+ * overlay after a ride is saved.
+ */
+public class HeatmapTileProvider implements TileProvider {
+
+    private static final String TAG = "HeatmapTileProvider";
+    private static final String DIR = "heat_tiles";
+    // Mostly sparse PNGs of a few KB
+    private static final int MAX_DISK_FILES = 3000;
+
+    // Shared by every provider, as a new one is made each time the map is
+    private static DiskLru diskIndex;
+
+    private final HeatmapStore store;
+    private final String userId;
+    private final File diskDir;
+    private final int coolColor;
+    private final int hotColor;
+    private final DiskLru disk;
+    private final LruCache<String, CachedTile> memory;
+
+    private static final class CachedTile {
+        final byte[] bins;
+        final Tile tile;
+
+        CachedTile(byte[] bins, Tile tile) {
+            this.bins = bins;
+            this.tile = tile;
+        }
+    }
+
+    public HeatmapTileProvider(@NonNull Context context, @NonNull String userId, int coolColor, int hotColor) {
+        Context appContext = context.getApplicationContext();
+        store = AppDatabase.getInstance(appContext).rideDao();
+        this.userId = userId;
+        diskDir = new File(appContext.getCacheDir(), DIR);
+        disk = diskIndex(diskDir);
+        this.coolColor = coolColor;
+        this.hotColor = hotColor;
+        // Counted in KB of cached data
+        memory = new LruCache<String, CachedTile>(4 * 1024) {
+            @Override
+            protected int sizeOf(String key, CachedTile cached) {
+                return Math.max(1, (cached.bins.length + cached.tile.data.length) / 1024);
+            }
+        };
+    }
+
+    private static synchronized DiskLru diskIndex(File dir) {
+        if (diskIndex == null) diskIndex = new DiskLru(dir, MAX_DISK_FILES);
+        return diskIndex;
+    }
+
+    @WorkerThread
+    @Override
+    public Tile getTile(int x, int y, int zoom) {
+        int[] source = HeatGrid.sourceTile(zoom, x, y);
+        if (source == null) return NO_TILE;
+        HeatTileEntity stored = store.getHeatTile(userId, source[0], source[1], source[2]);
+        if (stored == null || stored.bins.length == 0) return NO_TILE;
+
+        // The bins change whenever a ride through the tile is added or removed
+        String key = userId + "_" + zoom + "_" + x + "_" + y;
+        CachedTile cached = memory.get(key);
+        if (cached != null && Arrays.equals(cached.bins, stored.bins)) return cached.tile;
+
+        File file = new File(diskDir, key + ".tile");
+        byte[] png = readFromDisk(file, stored.bins);
+        if (png == null) {
+            png = draw(stored, zoom, x, y);
+            writeToDisk(file, stored.bins, png);
+        }
+        Tile tile = new Tile(HeatGrid.TILE_PX, HeatGrid.TILE_PX, png);
+        memory.put(key, new CachedTile(stored.bins, tile));
+        return tile;
+    }
+
+    private byte[] draw(HeatTileEntity stored, int zoom, int x, int y) {
+        int[] pixels = HeatGrid.render(HeatGrid.unpack(stored.bins), zoom, x, y, coolColor, hotColor);
+        Bitmap bitmap = Bitmap.createBitmap(pixels, HeatGrid.TILE_PX, HeatGrid.TILE_PX, Bitmap.Config.ARGB_8888);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        bitmap.compress(Bitmap.CompressFormat.PNG, 100, out);
+        bitmap.recycle();
+        return out.toByteArray();
+    }
+
+    // The file is the bins' length, the bins, then the PNG; null unless it was drawn from these bins
+    private byte[] readFromDisk(File file, byte[] bins) {
+        if (!file.exists()) return null;
+        byte[] data;
+        try {
+            data = Files.readAllBytes(file.toPath());
+        } catch (IOException e) {
+            Log.w(TAG, "Could not read cached tile", e);
+            return null;
+        }
+        int start = 4 + bins.length;
+        if (data.length <= start || ByteBuffer.wrap(data).getInt() != bins.length) return null;
+        for (int i = 0; i < bins.length; i++) {
+            if (data[4 + i] != bins[i]) return null;
+        }
+        disk.touch(file);
+        return Arrays.copyOfRange(data, start, data.length);
+    }
+
+    private void writeToDisk(File file, byte[] bins, byte[] png) {
+        if (!diskDir.exists() && !diskDir.mkdirs()) return;
+        // Write then rename, so a half-written file is never served
+        File temp = new File(diskDir, file.getName() + "." + Thread.currentThread().getId() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            out.write(ByteBuffer.allocate(4).putInt(bins.length).array());
+            out.write(bins);
+            out.write(png);
+        } catch (IOException e) {
+            Log.w(TAG, "Could not cache tile", e);
+            temp.delete();
+            return;
+        }
+        if (temp.renameTo(file)) {
+            disk.added(file);
+        } else {
+            temp.delete();
+        }
+    }
+}
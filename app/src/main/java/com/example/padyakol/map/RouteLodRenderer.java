@@ -0,0 +1,84 @@
+package com.example.padyakol.map;
+
+import com.example.padyakol.route.RoutePyramid;
+import com.google.android.gms.maps.GoogleMap;
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.LatLngBounds;
+import com.google.android.gms.maps.model.Polyline;
+import com.google.android.gms.maps.model.PolylineOptions;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Draws a finished route from a {@link RoutePyramid}: the level that matches the camera zoom,
+ * clipped to a margin around the screen. Redrawn on camera idle only when the level changes or
+ * the camera leaves the drawn area, so the vertex count follows the screen rather than the ride.
+ */
+public class RouteLodRenderer implements GoogleMap.OnCameraIdleListener {
+
+    private final GoogleMap map;
+    private final RoutePyramid pyramid;
+    private final int color;
+    private final float width;
+
+    private final List<Polyline> polylines = new ArrayList<>();
+    private int drawnLevel = -1;
+    private LatLngBounds drawnArea;
+
+    public RouteLodRenderer(GoogleMap map, RoutePyramid pyramid, int color, float width) {
+        this.map = map;
+        this.pyramid = pyramid;
+        this.color = color;
+        this.width = width;
+    }
+
+    @Override
+    public void onCameraIdle() {
+        LatLngBounds visible = map.getProjection().getVisibleRegion().latLngBounds;
+        float zoom = map.getCameraPosition().zoom;
+        int level = pyramid.levelFor(RoutePyramid.metersPerDp(zoom, visible.getCenter().latitude));
+
+        if (level == drawnLevel && drawnArea != null
+                && drawnArea.contains(visible.northeast) && drawnArea.contains(visible.southwest)) {
+            return;
+        }
+        draw(level, expand(visible));
+    }
+
+    public void clear() {
+        for (Polyline polyline : polylines) polyline.remove();
+        polylines.clear();
+        drawnLevel = -1;
+        drawnArea = null;
+    }
+
+    private void draw(int level, LatLngBounds area) {
+        clear();
+        double[] lats = pyramid.lats(level);
+        double[] lngs = pyramid.lngs(level);
+        for (int[] run : pyramid.visibleRuns(level,
+                area.southwest.latitude, area.southwest.longitude, area.northeast.latitude, area.northeast.longitude)) {
+            List<LatLng> points = new ArrayList<>(run[1] - run[0] + 1);
+            for (int i = run[0]; i <= run[1]; i++) {
+                points.add(new LatLng(lats[i], lngs[i]));
+            }
+            polylines.add(map.addPolyline(new PolylineOptions()
+                    .addAll(points)
+                    .width(width)
+                    .color(color)
+                    .geodesic(true)));
+        }
+        drawnLevel = level;
+        drawnArea = area;
+    }
+
+    // Half a screen of margin on each side, so small pans don't redraw
+    private static LatLngBounds expand(LatLngBounds bounds) {
+        double latPad = (bounds.northeast.latitude - bounds.southwest.latitude) / 2;
+        double lngPad = (bounds.northeast.longitude - bounds.southwest.longitude) / 2;
+        return new LatLngBounds(
+                new LatLng(Math.max(-90, bounds.southwest.latitude - latPad), bounds.southwest.longitude - lngPad),
+                new LatLng(Math.min(90, bounds.northeast.latitude + latPad), bounds.northeast.longitude + lngPad));
+    }
+}
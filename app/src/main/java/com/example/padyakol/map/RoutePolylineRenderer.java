@@ -0,0 +1,127 @@
+package com.example.padyakol.map;
+
+import com.example.padyakol.route.TrackStore;
+import com.google.android.gms.maps.GoogleMap;
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.Polyline;
+import com.google.android.gms.maps.model.PolylineOptions;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Draws a growing route as a chain of fixed-size polyline chunks.
+ * Full chunks are frozen and never touched again; only the tail chunk is re-uploaded
+ * when a point is appended, so the cost of an update does not grow with the ride.
+ */
+public class RoutePolylineRenderer {
+
+    public static final int DEFAULT_CHUNK_SIZE = 128;
+
+    // Where chunks end up. The map implementation is below; tests use a fake.
+    public interface Surface {
+        Chunk addChunk(List<LatLng> points);
+    }
+
+    public interface Chunk {
+        void setPoints(List<LatLng> points);
+        void remove();
+    }
+
+    private final Surface surface;
+    private final int chunkSize;
+
+    private final List<Chunk> frozenChunks = new ArrayList<>();
+    private final List<LatLng> tailPoints = new ArrayList<>();
+    private Chunk tailChunk;
+    private int renderedCount = 0;
+
+    public RoutePolylineRenderer(Surface surface, int chunkSize) {
+        if (chunkSize < 2) throw new IllegalArgumentException("chunkSize must be at least 2");
+        this.surface = surface;
+        this.chunkSize = chunkSize;
+    }
+
+    public static RoutePolylineRenderer forMap(GoogleMap map, int color) {
+        return new RoutePolylineRenderer(new MapSurface(map, color), DEFAULT_CHUNK_SIZE);
+    }
+
+    // Number of route points already on the map
+    public int getRenderedCount() {
+        return renderedCount;
+    }
+
+    public void append(LatLng point) {
+        tailPoints.add(point);
+        renderedCount++;
+
+        if (tailChunk == null) {
+            tailChunk = surface.addChunk(tailPoints);
+        } else {
+            tailChunk.setPoints(tailPoints);
+        }
+
+        if (tailPoints.size() >= chunkSize) {
+            // Freeze the full chunk. The next one starts at its last point so the line stays joined.
+            frozenChunks.add(tailChunk);
+            tailChunk = null;
+            LatLng joint = tailPoints.get(tailPoints.size() - 1);
+            tailPoints.clear();
+            tailPoints.add(joint);
+        }
+    }
+
+    // Draws whatever part of the path is not on the map yet (e.g. points recorded while hidden)
+    public void syncTo(TrackStore track) {
+        int size = track.size();
+        if (size < renderedCount) {
+            clear();
+        }
+        for (int i = renderedCount; i < size; i++) {
+            append(new LatLng(track.getLat(i), track.getLng(i)));
+        }
+    }
+
+    public void clear() {
+        for (Chunk chunk : frozenChunks) {
+            chunk.remove();
+        }
+        frozenChunks.clear();
+        if (tailChunk != null) {
+            tailChunk.remove();
+            tailChunk = null;
+        }
+        tailPoints.clear();
+        renderedCount = 0;
+    }
+
+    private static class MapSurface implements Surface {
+        private final GoogleMap map;
+        private final int color;
+
+        MapSurface(GoogleMap map, int color) {
+            this.map = map;
+            this.color = color;
+        }
+
+        @Override
+        public Chunk addChunk(List<LatLng> points) {
+            Polyline polyline = map.addPolyline(new PolylineOptions()
+                    .addAll(points)
+                    .width(15f)
+                    .color(color)
+                    .geodesic(true));
+            return new Chunk() {
+                @Override
+                public void setPoints(List<LatLng> points) {
+                    polyline.setPoints(points);
+                }
+
+                @Override
+                public void remove() {
+                    polyline.remove();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.example.padyakol.map;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+import android.util.LruCache;
+import android.widget.ImageView;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.example.padyakol.data.AppDatabase;
+import com.example.padyakol.data.RideDao;
+import com.example.padyakol.data.RouteEntity;
+import com.example.padyakol.route.Route;
+import com.example.padyakol.route.RouteCodec;
+import com.example.padyakol.route.RouteSketch;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Small route sketches for the travel log rows. Looked up in memory on bind; misses are read from
+ * disk or drawn from the stored route on a background thread, so binding never waits on either.
+ * Only routes already on the device are drawn: fetching geometry for every row would undo the
+ * summary/route split, so rides whose route hasn't been opened yet keep the placeholder.
+ */
+public class RouteThumbnails {
+
+    private static final String TAG = "RouteThumbnails";
+    private static final String DIR = "route_thumbs";
+    // Plenty for a long history of ~3 KB PNGs
+    private static final int MAX_DISK_FILES = 1000;
+
+    private static RouteThumbnails instance;
+
+    private final RideDao rideDao;
+    private final File diskDir;
+    private final DiskLru diskIndex;
+    private final int sizePx;
+    private final float strokePx;
+    private final LruCache<String, Bitmap> memory;
+    private final ExecutorService executor = Executors.newFixedThreadPool(2, runnable -> new Thread(() -> {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+        runnable.run();
+    }, "RouteThumbnails"));
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // What each view is waiting for, so a recycled row drops the load it no longer needs
+    private final Map<ImageView, Future<?>> pending = new WeakHashMap<>();
+
+    private RouteThumbnails(Context context) {
+        Context appContext = context.getApplicationContext();
+        rideDao = AppDatabase.getInstance(appContext).rideDao();
+        diskDir = new File(appContext.getCacheDir(), DIR);
+        diskIndex = new DiskLru(diskDir, MAX_DISK_FILES);
+        float density = appContext.getResources().getDisplayMetrics().density;
+        sizePx = Math.round(40 * density);
+        strokePx = 2 * density;
+
+        // Counted in KB; a thumbnail is a few tens of KB, so this holds a few hundred rows
+        int maxKb = (int) Math.min(Runtime.getRuntime().maxMemory() / 1024 / 32, 8 * 1024);
+        memory = new LruCache<String, Bitmap>(maxKb) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getByteCount() / 1024;
+            }
+        };
+    }
+
+    public static synchronized RouteThumbnails getInstance(Context context) {
+        if (instance == null) {
+            instance = new RouteThumbnails(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Shows the ride's thumbnail in the view, or the placeholder until it is ready.
+     * A view that is rebound to another ride in the meantime is left alone.
+     */
+    @MainThread
+    public void load(String rideId, ImageView target, int placeholderRes) {
+        cancel(target);
+        target.setTag(rideId);
+
+        Bitmap cached = rideId != null ? memory.get(rideId) : null;
+        if (cached != null) {
+            target.setImageBitmap(cached);
+            return;
+        }
+        target.setImageResource(placeholderRes);
+        if (rideId == null) return;
+
+        pending.put(target, executor.submit(() -> {
+            Bitmap bitmap = loadInBackground(rideId);
+            if (bitmap == null) return;
+            memory.put(rideId, bitmap);
+            mainHandler.post(() -> {
+                if (rideId.equals(target.getTag())) target.setImageBitmap(bitmap);
+            });
+        }));
+    }
+
+    @MainThread
+    public void cancel(ImageView target) {
+        Future<?> task = pending.remove(target);
+        if (task != null) task.cancel(false);
+    }
+
+    @WorkerThread
+    @Nullable
+    private Bitmap loadInBackground(String rideId) {
+        File file = new File(diskDir, rideId + "_" + sizePx + ".png");
+        if (file.exists()) {
+            Bitmap bitmap = BitmapFactory.decodeFile(file.getPath());
+            if (bitmap != null) {
+                diskIndex.touch(file);
+                return bitmap;
+            }
+        }
+
+        RouteEntity stored = rideDao.getRoute(rideId);
+        if (stored == null) return null;
+        Route route;
+        try {
+            route = RouteCodec.decode(stored.routeData);
+        } catch (IllegalArgumentException e) {
+            Log.w(TAG, "Bad route data for " + rideId, e);
+            return null;
+        }
+        if (route.size() < 2) return null;
+
+        Bitmap bitmap = draw(route);
+        writeToDisk(file, bitmap);
+        return bitmap;
+    }
+
+    // One opaque colour on transparent; the row's ImageView tint colours it like the placeholder icon
+    private Bitmap draw(Route route) {
+        float[] xy = RouteSketch.project(route.lats(), route.lngs(), route.size(),
+                sizePx, sizePx, strokePx, strokePx / 2);
+
+        Path path = new Path();
+        path.moveTo(xy[0], xy[1]);
+        for (int i = 2; i < xy.length; i += 2) {
+            path.lineTo(xy[i], xy[i + 1]);
+        }
+
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setColor(Color.BLACK);
+        paint.setStyle(Paint.Style.STROKE);
+        paint.setStrokeWidth(strokePx);
+        paint.setStrokeCap(Paint.Cap.ROUND);
+        paint.setStrokeJoin(Paint.Join.ROUND);
+
+        Bitmap bitmap = Bitmap.createBitmap(sizePx, sizePx, Bitmap.Config.ARGB_8888);
+        new Canvas(bitmap).drawPath(path, paint);
+        return bitmap;
+    }
+
+    private void writeToDisk(File file, Bitmap bitmap) {
+        if (!diskDir.exists() && !diskDir.mkdirs()) return;
+        // Write then rename, so a half-written file is never decoded
+        File temp = new File(diskDir, file.getName() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            bitmap.compress(Bitmap.CompressFormat.PNG, 100, out);
+        } catch (IOException e) {
+            Log.w(TAG, "Could not cache thumbnail", e);
+            temp.delete();
+            return;
+        }
+        if (temp.renameTo(file)) {
+            diskIndex.added(file);
+        } else {
+            temp.delete();
+        }
+    }
+}
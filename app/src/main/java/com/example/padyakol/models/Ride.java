@@ -1,6 +1,13 @@
 package com.example.padyakol.models;
 
+import com.example.padyakol.route.Route;
+import com.example.padyakol.route.RouteCodec;
+import com.example.padyakol.tracking.RideAnalytics;
+import com.google.firebase.firestore.Blob;
+import com.google.firebase.firestore.Exclude;
 import com.google.firebase.firestore.GeoPoint;
+import com.google.firebase.firestore.ServerTimestamp;
+import java.util.Date;
 import java.util.List;
 
 public class Ride {
@@ -11,18 +18,37 @@ public class Ride {
     private Long durationSeconds;
     private Long timestamp;
     private Double avgSpeedKmh;
+    // Worked out while recording (see RideAnalytics); missing on rides saved before that
+    private Double maxSpeedKmh;
+    private Long movingSeconds;
+    // RideAnalytics.pack()ed seconds per kilometre, and seconds moving per 5 km/h speed band
+    private Blob splitSeconds;
+    private Blob speedHistogram;
+    // TileGrid.pack()ed cells the route passes through, so other devices can index the ride without its route
+    private Blob cells;
+    // ISO date the ride counts towards in the stats (see RideStats.pinDay); missing on older rides
+    private String localDate;
+    // Set by the server on every write; drives the delta pull in RideSyncer
+    @ServerTimestamp
+    private Date updatedAt;
+
+    // Route encoded with RouteCodec. Kept as raw bytes until someone actually needs the geometry.
+    // Summary documents no longer carry it (routes live in their own collection); older ones still do.
+    private Blob routeData;
+    // Only set when reading documents saved before routeData existed
     private List<GeoPoint> routePoints;
+    private Route decodedRoute;
 
     public Ride() {
         // Empty constructor needed for Firestore
     }
 
-    public Ride(Double distanceKm, Long durationSeconds, Long timestamp, Double avgSpeedKmh, List<GeoPoint> routePoints) {
+    public Ride(Double distanceKm, Long durationSeconds, Long timestamp, Double avgSpeedKmh, Blob routeData) {
         this.distanceKm = distanceKm;
         this.durationSeconds = durationSeconds;
         this.timestamp = timestamp;
         this.avgSpeedKmh = avgSpeedKmh;
-        this.routePoints = routePoints;
+        this.routeData = routeData;
     }
 
     // Getters and Setters
@@ -46,12 +72,87 @@ public class Ride {
         return avgSpeedKmh != null ? avgSpeedKmh : 0.0;
     }
 
-    public List<GeoPoint> getRoutePoints() { return routePoints; }
+    public double getMaxSpeedKmh() {
+        return maxSpeedKmh != null ? maxSpeedKmh : 0.0;
+    }
+
+    public long getMovingSeconds() {
+        return movingSeconds != null ? movingSeconds : 0L;
+    }
+
+    public Blob getSplitSeconds() { return splitSeconds; }
+    public Blob getSpeedHistogram() { return speedHistogram; }
+    public Blob getCells() { return cells; }
+    public String getLocalDate() { return localDate; }
+
+    public Blob getRouteData() { return routeData; }
+    public Date getUpdatedAt() { return updatedAt; }
+
+    // --- Analytics (not mapped to Firestore) ---
+    // Average over the time actually spent moving, or 0 if that wasn't recorded
+    @Exclude
+    public double getMovingAvgSpeedKmh() {
+        long seconds = getMovingSeconds();
+        return seconds > 0 ? getDistanceKm() / (seconds / 3600.0) : 0.0;
+    }
+
+    @Exclude
+    public int[] getSplits() {
+        return splitSeconds != null ? RideAnalytics.unpack(splitSeconds.toBytes()) : new int[0];
+    }
+
+    @Exclude
+    public int[] getSpeedHistogramSeconds() {
+        return speedHistogram != null ? RideAnalytics.unpack(speedHistogram.toBytes()) : new int[0];
+    }
+
+    // --- Route access (not mapped to Firestore) ---
+    @Exclude
+    public boolean hasRoute() {
+        return routeData != null || (routePoints != null && !routePoints.isEmpty());
+    }
+
+    // Decodes on first use. Legacy GeoPoint documents are converted the same way.
+    @Exclude
+    public Route getRoute() {
+        if (decodedRoute == null) {
+            if (routeData != null) {
+                decodedRoute = RouteCodec.decode(routeData.toBytes());
+            } else {
+                decodedRoute = fromGeoPoints(routePoints);
+            }
+        }
+        return decodedRoute;
+    }
+
+    private static Route fromGeoPoints(List<GeoPoint> points) {
+        int size = points != null ? points.size() : 0;
+        double[] lats = new double[size];
+        double[] lngs = new double[size];
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            GeoPoint gp = points.get(i);
+            if (gp != null) {
+                lats[n] = gp.getLatitude();
+                lngs[n] = gp.getLongitude();
+                n++;
+            }
+        }
+        return new Route(lats, lngs, null, n);
+    }
 
     // --- Setters (Used by Firestore) ---
     public void setDistanceKm(Double distanceKm) { this.distanceKm = distanceKm; }
     public void setDurationSeconds(Long durationSeconds) { this.durationSeconds = durationSeconds; }
     public void setTimestamp(Long timestamp) { this.timestamp = timestamp; }
     public void setAvgSpeedKmh(Double avgSpeedKmh) { this.avgSpeedKmh = avgSpeedKmh; }
-    public void setRoutePoints(List<GeoPoint> routePoints) { this.routePoints = routePoints; }
-}
\ No newline at end of file
+    public void setMaxSpeedKmh(Double maxSpeedKmh) { this.maxSpeedKmh = maxSpeedKmh; }
+    public void setMovingSeconds(Long movingSeconds) { this.movingSeconds = movingSeconds; }
+    public void setSplitSeconds(Blob splitSeconds) { this.splitSeconds = splitSeconds; }
+    public void setSpeedHistogram(Blob speedHistogram) { this.speedHistogram = speedHistogram; }
+    public void setCells(Blob cells) { this.cells = cells; }
+    public void setLocalDate(String localDate) { this.localDate = localDate; }
+    public void setUpdatedAt(Date updatedAt) { this.updatedAt = updatedAt; }
+    public void setRouteData(Blob routeData) { this.routeData = routeData; this.decodedRoute = null; }
+    public void setRoutePoints(List<GeoPoint> routePoints) { this.routePoints = routePoints; this.decodedRoute = null; }
+}
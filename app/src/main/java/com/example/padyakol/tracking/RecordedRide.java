@@ -0,0 +1,59 @@
+package com.example.padyakol.tracking;
+
+import androidx.annotation.Nullable;
+
+import com.example.padyakol.route.TrackStore;
+
+import java.io.File;
+
+/**
+ * Result of a finished recording, handed to whoever saves it.
+ */
+public final class RecordedRide {
+
+    private final long startTime;
+    private final double distanceKm;
+    private final long durationSeconds;
+    private final long finishedAt;
+    private final TrackStore track;
+    private final RideAnalytics analytics;
+    private final File journalFile;
+
+    RecordedRide(long startTime, double distanceKm, long durationSeconds, long finishedAt, TrackStore track,
+                 RideAnalytics analytics, @Nullable File journalFile) {
+        this.startTime = startTime;
+        this.distanceKm = distanceKm;
+        this.durationSeconds = durationSeconds;
+        this.finishedAt = finishedAt;
+        this.track = track;
+        this.analytics = analytics;
+        this.journalFile = journalFile;
+    }
+
+    // A ride rebuilt from the journal of a session that never finished
+    public static RecordedRide fromJournal(RideJournal.Recovered recovered, File journalFile) {
+        long durationSeconds = Math.max(0, recovered.getEndTime() - recovered.getStartTime()) / 1000;
+        return new RecordedRide(recovered.getStartTime(), recovered.getDistanceKm(), durationSeconds, recovered.getEndTime(),
+                recovered.getTrack(), recovered.getAnalytics(), journalFile);
+    }
+
+    // The journal's start time, the same whether the ride finished normally or was recovered
+    public long getStartTime() { return startTime; }
+    public double getDistanceKm() { return distanceKm; }
+    public long getDurationSeconds() { return durationSeconds; }
+    public long getFinishedAt() { return finishedAt; }
+    // No longer written to once the ride is finished
+    public TrackStore getTrack() { return track; }
+    public RideAnalytics getAnalytics() { return analytics; }
+    @Nullable public File getJournalFile() { return journalFile; }
+
+    // Call once the ride is safely handed to storage; until then the journal is the only copy
+    public void deleteJournal() {
+        if (journalFile != null) RideJournal.delete(journalFile);
+    }
+
+    public double getAvgSpeedKmh() {
+        double hours = durationSeconds / 3600.0;
+        return (hours > 0) ? (distanceKm / hours) : 0.0;
+    }
+}
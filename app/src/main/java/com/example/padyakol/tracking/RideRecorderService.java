@@ -0,0 +1,330 @@
+package com.example.padyakol.tracking;
+
+import android.Manifest;
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.content.pm.ServiceInfo;
+import android.location.Location;
+import android.os.Binder;
+import android.os.Build;
+import android.os.IBinder;
+import android.os.SystemClock;
+import android.view.Choreographer;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.app.ActivityCompat;
+import androidx.core.app.NotificationCompat;
+import androidx.core.app.ServiceCompat;
+import androidx.core.content.ContextCompat;
+
+import com.example.padyakol.MainActivity;
+import com.example.padyakol.R;
+import com.example.padyakol.data.RideRepository;
+import com.example.padyakol.route.TrackStore;
+import com.google.android.gms.location.FusedLocationProviderClient;
+import com.google.android.gms.location.LocationCallback;
+import com.google.android.gms.location.LocationRequest;
+import com.google.android.gms.location.LocationResult;
+import com.google.android.gms.location.LocationServices;
+import com.google.android.gms.location.Priority;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Foreground service that owns the ride recording pipeline.
+ *
+ * The ride survives the UI being hidden, destroyed or recreated and keeps recording with the
+ * screen off. Screens bind to it and register a {@link Listener}; everything on the public API
+ * is main-thread only.
+ */
+public class RideRecorderService extends Service {
+
+    public interface Listener {
+        default void onRecordingChanged(boolean recording) {}
+        default void onSnapshot(@NonNull TrackingSnapshot snapshot) {}
+    }
+
+    // What became of a stopped ride
+    public enum StopResult {
+        SAVING,
+        // No fix was recorded
+        EMPTY,
+        // Signed out mid-ride: the journal stays behind and is offered for recovery on the next sign-in
+        KEPT_FOR_RECOVERY
+    }
+
+    public interface StopCallback {
+        // Main thread, once recording has stopped
+        void onStopped(@NonNull StopResult result);
+
+        // Main thread, once the ride is in the database
+        default void onSaved() {}
+    }
+
+    private static final String ACTION_START = "com.example.padyakol.action.START_RIDE";
+    private static final String ACTION_RESUME = "com.example.padyakol.action.RESUME_RIDE";
+    private static final String JOURNAL_FILE = "ride_journal.bin";
+    private static final String CHANNEL_ID = "ride_recording";
+    private static final int NOTIFICATION_ID = 42;
+    private static final long NOTIFICATION_INTERVAL_MS = 5_000;
+
+    public class LocalBinder extends Binder {
+        public RideRecorderService getService() {
+            return RideRecorderService.this;
+        }
+    }
+
+    private final IBinder binder = new LocalBinder();
+    private final List<Listener> listeners = new ArrayList<>();
+
+    private FusedLocationProviderClient fusedLocationClient;
+    private LocationCallback locationCallback;
+    private TrackingEngine trackingEngine;
+
+    // Session state, mirrored from the tracking thread's snapshots
+    private boolean recording = false;
+    // Between stopRide and the ride being handed to the repository, the journal is still the only copy
+    private boolean finishing = false;
+    private long startElapsedRealtime = 0;
+    // Wall-clock start as written in the journal; it names the ride
+    private long rideStartTime = 0;
+    private double distanceKm = 0.0;
+    private float speedKmh = 0f;
+    private long lastNotificationUpdate = 0;
+
+    // The UI listeners get the latest snapshot once per display frame. With the screen off frames
+    // stop and it waits, while the session state and notification above keep up with every fix.
+    private final Choreographer.FrameCallback listenerFrame = frameTimeNanos -> deliverToListeners();
+    private TrackingSnapshot listenerPending;
+    private int listenerPendingNewPoints = 0;
+    private boolean listenerFrameScheduled = false;
+
+    public static void startRide(Context context) {
+        Intent intent = new Intent(context, RideRecorderService.class).setAction(ACTION_START);
+        ContextCompat.startForegroundService(context, intent);
+    }
+
+    // Picks up the unfinished ride left in the journal
+    public static void resumeRide(Context context) {
+        Intent intent = new Intent(context, RideRecorderService.class).setAction(ACTION_RESUME);
+        ContextCompat.startForegroundService(context, intent);
+    }
+
+    public static File journalFile(Context context) {
+        return new File(context.getFilesDir(), JOURNAL_FILE);
+    }
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        fusedLocationClient = LocationServices.getFusedLocationProviderClient(this);
+        trackingEngine = new TrackingEngine();
+        trackingEngine.setListener(this::applySnapshot);
+        locationCallback = new LocationCallback() {
+            @Override
+            public void onLocationResult(@NonNull LocationResult locationResult) {
+                // Runs on the tracking thread
+                for (Location location : locationResult.getLocations()) {
+                    trackingEngine.onLocation(location);
+                }
+            }
+        };
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        if (intent != null && ACTION_START.equals(intent.getAction())) {
+            beginRecording(false);
+        } else if (intent != null && ACTION_RESUME.equals(intent.getAction())) {
+            beginRecording(true);
+        } else if (!recording) {
+            stopSelf(startId);
+        }
+        return START_NOT_STICKY;
+    }
+
+    @Nullable
+    @Override
+    public IBinder onBind(Intent intent) {
+        return binder;
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        fusedLocationClient.removeLocationUpdates(locationCallback);
+        trackingEngine.quit();
+        Choreographer.getInstance().removeFrameCallback(listenerFrame);
+        listeners.clear();
+    }
+
+    // --- Public API (main thread) ---
+
+    public void addListener(Listener listener) {
+        if (!listeners.contains(listener)) listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public boolean isRecording() { return recording; }
+    public boolean isFinishing() { return finishing; }
+    public long getStartElapsedRealtime() { return startElapsedRealtime; }
+    public double getDistanceKm() { return distanceKm; }
+    public float getSpeedKmh() { return speedKmh; }
+
+    // Fixes accepted so far in this session. Read only up to the last snapshot's point count.
+    public TrackStore getTrack() { return trackingEngine.getTrack(); }
+
+    /**
+     * Stops recording and saves the ride for the user. The service hands the ride to the repository
+     * itself, so it is saved even if the screen that asked goes away while the ride is finishing.
+     */
+    public void stopRide(@Nullable String userId, @NonNull StopCallback callback) {
+        if (!recording) return;
+        recording = false;
+        finishing = true;
+        fusedLocationClient.removeLocationUpdates(locationCallback);
+        long durationSeconds = (SystemClock.elapsedRealtime() - startElapsedRealtime) / 1000;
+        long finishedAt = System.currentTimeMillis();
+
+        // Wait for the fixes still in flight on the tracking thread before handing the ride over
+        trackingEngine.stop(() -> {
+            RecordedRide ride = new RecordedRide(rideStartTime, distanceKm, durationSeconds, finishedAt,
+                    trackingEngine.getTrack(), trackingEngine.getAnalytics(), journalFile(this));
+            ServiceCompat.stopForeground(this, ServiceCompat.STOP_FOREGROUND_REMOVE);
+            stopSelf();
+            StopResult result;
+            if (ride.getTrack().isEmpty()) {
+                ride.deleteJournal();
+                result = StopResult.EMPTY;
+            } else if (userId != null) {
+                RideRepository.getInstance(getApplicationContext()).saveRecordedRide(userId, ride, callback::onSaved);
+                result = StopResult.SAVING;
+            } else {
+                result = StopResult.KEPT_FOR_RECOVERY;
+            }
+            finishing = false;
+            flushListeners();
+            for (Listener listener : new ArrayList<>(listeners)) {
+                listener.onRecordingChanged(false);
+            }
+            callback.onStopped(result);
+        });
+    }
+
+    // --- Recording ---
+
+    private void beginRecording(boolean resume) {
+        if (recording) return;
+        if (ActivityCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION) != PackageManager.PERMISSION_GRANTED) {
+            stopSelf();
+            return;
+        }
+
+        recording = true;
+        startElapsedRealtime = SystemClock.elapsedRealtime();
+        long startTime = System.currentTimeMillis();
+        rideStartTime = startTime;
+        distanceKm = 0.0;
+        speedKmh = 0f;
+
+        int type = Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q ? ServiceInfo.FOREGROUND_SERVICE_TYPE_LOCATION : 0;
+        ServiceCompat.startForeground(this, NOTIFICATION_ID, buildNotification(), type);
+
+        LocationRequest locationRequest = new LocationRequest.Builder(Priority.PRIORITY_HIGH_ACCURACY, 3000)
+                .setMinUpdateDistanceMeters(2)
+                .build();
+        if (resume) {
+            trackingEngine.resume(journalFile(this), resumedStart -> {
+                // Count the time the ride was interrupted, as the journal's start time does
+                startElapsedRealtime -= Math.max(0, startTime - resumedStart);
+                rideStartTime = resumedStart;
+                notifyRecordingStarted();
+            });
+        } else {
+            trackingEngine.start(journalFile(this), startTime);
+        }
+        fusedLocationClient.requestLocationUpdates(locationRequest, locationCallback, trackingEngine.getLooper());
+
+        if (!resume) {
+            notifyRecordingStarted();
+        }
+    }
+
+    private void notifyRecordingStarted() {
+        for (Listener listener : new ArrayList<>(listeners)) {
+            listener.onRecordingChanged(true);
+        }
+    }
+
+    private void applySnapshot(TrackingSnapshot snapshot) {
+        distanceKm = snapshot.getDistanceKm();
+        speedKmh = snapshot.getSpeedKmh();
+
+        listenerPending = snapshot;
+        listenerPendingNewPoints += snapshot.getNewPointCount();
+        if (!listenerFrameScheduled) {
+            listenerFrameScheduled = true;
+            Choreographer.getInstance().postFrameCallback(listenerFrame);
+        }
+
+        long now = SystemClock.elapsedRealtime();
+        if (recording && now - lastNotificationUpdate >= NOTIFICATION_INTERVAL_MS) {
+            lastNotificationUpdate = now;
+            NotificationManager manager = getSystemService(NotificationManager.class);
+            manager.notify(NOTIFICATION_ID, buildNotification());
+        }
+    }
+
+    // Snapshots that arrived since the last frame are merged, so no new point goes unreported
+    private void deliverToListeners() {
+        listenerFrameScheduled = false;
+        if (listenerPending == null) return;
+        TrackingSnapshot snapshot = new TrackingSnapshot(listenerPending.getDistanceKm(), listenerPending.getSpeedKmh(),
+                listenerPending.getPointCount(), listenerPendingNewPoints);
+        listenerPending = null;
+        listenerPendingNewPoints = 0;
+        for (Listener listener : new ArrayList<>(listeners)) {
+            listener.onSnapshot(snapshot);
+        }
+    }
+
+    // Hands over a snapshot still waiting for a frame straight away, e.g. before the ride stops
+    private void flushListeners() {
+        Choreographer.getInstance().removeFrameCallback(listenerFrame);
+        deliverToListeners();
+    }
+
+    private Notification buildNotification() {
+        NotificationManager manager = getSystemService(NotificationManager.class);
+        if (manager.getNotificationChannel(CHANNEL_ID) == null) {
+            manager.createNotificationChannel(new NotificationChannel(
+                    CHANNEL_ID, "Ride recording", NotificationManager.IMPORTANCE_LOW));
+        }
+
+        PendingIntent contentIntent = PendingIntent.getActivity(this, 0,
+                new Intent(this, MainActivity.class).setFlags(Intent.FLAG_ACTIVITY_SINGLE_TOP),
+                PendingIntent.FLAG_IMMUTABLE);
+
+        return new NotificationCompat.Builder(this, CHANNEL_ID)
+                .setSmallIcon(R.drawable.ic_explore)
+                .setContentTitle("Recording ride")
+                .setContentText(String.format(Locale.US, "%.2f km", distanceKm))
+                .setContentIntent(contentIntent)
+                .setOngoing(true)
+                .setOnlyAlertOnce(true)
+                .build();
+    }
+}
@@ -0,0 +1,253 @@
+package com.example.padyakol.tracking;
+
+import android.location.Location;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.example.padyakol.route.TrackStore;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Processes location fixes on a dedicated thread and publishes snapshots to the main thread.
+ *
+ * Fixes are handled on the engine's own looper (pass {@link #getLooper()} to
+ * requestLocationUpdates). Results are coalesced into a single pending delivery on the main
+ * thread, so a burst of fixes never queues up work there. Delivery doesn't wait for display
+ * frames, which stop with the screen off; pacing the UI is up to the listener.
+ *
+ * Accepted fixes go straight into a {@link TrackStore}, written only by the tracking thread.
+ * The UI reads it up to the point count of the last snapshot it received. Each fix is also
+ * written to a {@link RideJournal} so the ride can be recovered if the process dies, and fed to
+ * {@link RideAnalytics} so the ride's splits and speeds are ready the moment it stops.
+ */
+public class TrackingEngine {
+
+    public interface Listener {
+        void onSnapshot(@NonNull TrackingSnapshot snapshot);
+    }
+
+    public interface ResumeCallback {
+        void onResumed(long startTime);
+    }
+
+    private static final String TAG = "TrackingEngine";
+
+    // Fixes closer than this to the last accepted one are treated as GPS jitter
+    private static final double MIN_STEP_METERS = 2.0;
+
+    private final HandlerThread thread;
+    private final Handler worker;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable deliverTask = this::deliverPending;
+
+    // Main thread only
+    private Listener listener;
+
+    // Written by the tracking thread; a fresh store per ride
+    private volatile TrackStore track = new TrackStore();
+    private volatile RideAnalytics analytics = new RideAnalytics();
+
+    // Tracking thread only
+    private boolean recording = false;
+    private final DistanceAccumulator distance = new DistanceAccumulator(MIN_STEP_METERS);
+    private RideJournal journal;
+
+    // Shared between the two threads, guarded by lock
+    private final Object lock = new Object();
+    private int pendingNewPoints = 0;
+    private double pendingDistanceKm = 0.0;
+    private float pendingSpeedKmh = 0f;
+    private boolean dirty = false;
+    private boolean deliveryScheduled = false;
+
+    public TrackingEngine() {
+        thread = new HandlerThread("RideTracking", Process.THREAD_PRIORITY_DEFAULT);
+        thread.start();
+        worker = new Handler(thread.getLooper());
+    }
+
+    public Looper getLooper() {
+        return thread.getLooper();
+    }
+
+    // Main thread
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public TrackStore getTrack() {
+        return track;
+    }
+
+    // Complete once stop() has called back
+    public RideAnalytics getAnalytics() {
+        return analytics;
+    }
+
+    public void start(@NonNull File journalFile, long startTime) {
+        // The previous ride's store may still be saving, so it is replaced rather than cleared
+        TrackStore fresh = new TrackStore();
+        track = fresh;
+        analytics = new RideAnalytics();
+        worker.post(() -> {
+            recording = true;
+            distance.reset();
+            synchronized (lock) {
+                pendingNewPoints = 0;
+                pendingDistanceKm = 0.0;
+                pendingSpeedKmh = 0f;
+                dirty = false;
+            }
+            try {
+                journal = RideJournal.create(journalFile, startTime);
+            } catch (IOException e) {
+                // Recording matters more than crash safety; carry on without a journal
+                Log.e(TAG, "Could not create ride journal", e);
+                journal = null;
+            }
+        });
+    }
+
+    // Continues the ride left behind in the journal, e.g. after the process was killed
+    public void resume(@NonNull File journalFile, @NonNull ResumeCallback callback) {
+        worker.post(() -> {
+            RideJournal.Recovered recovered = null;
+            try {
+                recovered = RideJournal.replay(journalFile);
+            } catch (IOException e) {
+                Log.e(TAG, "Could not replay ride journal", e);
+            }
+
+            long startTime;
+            recording = true;
+            distance.reset();
+            try {
+                if (recovered != null) {
+                    startTime = recovered.getStartTime();
+                    track = recovered.getTrack();
+                    analytics = recovered.getAnalytics();
+                    if (!track.isEmpty()) {
+                        int last = track.size() - 1;
+                        distance.restore(track.getLat(last), track.getLng(last), recovered.getDistanceKm());
+                    }
+                    journal = RideJournal.reopen(journalFile, recovered);
+                } else {
+                    startTime = System.currentTimeMillis();
+                    track = new TrackStore();
+                    analytics = new RideAnalytics();
+                    journal = RideJournal.create(journalFile, startTime);
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "Could not reopen ride journal", e);
+                startTime = recovered != null ? recovered.getStartTime() : System.currentTimeMillis();
+                journal = null;
+            }
+
+            synchronized (lock) {
+                pendingNewPoints = track.size();
+                pendingDistanceKm = distance.getDistanceKm();
+                pendingSpeedKmh = 0f;
+                dirty = true;
+            }
+            long resumedStart = startTime;
+            mainHandler.post(() -> {
+                callback.onResumed(resumedStart);
+                deliverPending();
+            });
+        });
+    }
+
+    // Stops accepting fixes, flushes everything still pending to the listener, then runs onStopped
+    public void stop(@NonNull Runnable onStopped) {
+        worker.post(() -> {
+            recording = false;
+            closeJournal();
+            mainHandler.post(() -> {
+                deliverPending();
+                onStopped.run();
+            });
+        });
+    }
+
+    public void quit() {
+        worker.removeCallbacksAndMessages(null);
+        // The journal stays on disk so an unfinished ride can still be recovered
+        worker.post(this::closeJournal);
+        thread.quitSafely();
+        mainHandler.removeCallbacksAndMessages(null);
+        listener = null;
+    }
+
+    // Called on the tracking thread by the LocationCallback
+    public void onLocation(@NonNull Location location) {
+        if (!recording) return;
+
+        float speedKmh = location.hasSpeed() ? location.getSpeed() * 3.6f : 0f;
+        boolean accepted = distance.offer(location.getLatitude(), location.getLongitude());
+        double distanceKm = distance.getDistanceKm();
+        if (accepted) {
+            track.append(location.getLatitude(), location.getLongitude(), location.getTime(),
+                    location.getSpeed(), location.getAccuracy());
+            analytics.onFix(location.getTime(), distanceKm);
+            writeJournal(location, distanceKm);
+        }
+
+        boolean schedule;
+        synchronized (lock) {
+            if (accepted) pendingNewPoints++;
+            pendingDistanceKm = distanceKm;
+            pendingSpeedKmh = speedKmh;
+            dirty = true;
+            schedule = !deliveryScheduled;
+            deliveryScheduled = true;
+        }
+        if (schedule) {
+            mainHandler.post(deliverTask);
+        }
+    }
+
+    // Tracking thread
+    private void writeJournal(Location location, double distanceKm) {
+        if (journal == null) return;
+        try {
+            journal.append(location.getLatitude(), location.getLongitude(), location.getTime(),
+                    location.getSpeed(), location.getAccuracy(), distanceKm);
+        } catch (IOException e) {
+            Log.e(TAG, "Ride journal write failed, continuing without it", e);
+            closeJournal();
+        }
+    }
+
+    // Tracking thread
+    private void closeJournal() {
+        if (journal == null) return;
+        try {
+            journal.close();
+        } catch (IOException e) {
+            Log.e(TAG, "Could not close ride journal", e);
+        }
+        journal = null;
+    }
+
+    // Main thread
+    private void deliverPending() {
+        TrackingSnapshot snapshot;
+        synchronized (lock) {
+            deliveryScheduled = false;
+            if (!dirty) return;
+            snapshot = new TrackingSnapshot(pendingDistanceKm, pendingSpeedKmh, track.size(), pendingNewPoints);
+            pendingNewPoints = 0;
+            dirty = false;
+        }
+        if (listener != null) {
+            listener.onSnapshot(snapshot);
+        }
+    }
+}
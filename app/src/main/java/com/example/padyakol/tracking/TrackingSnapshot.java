@@ -0,0 +1,28 @@
+package com.example.padyakol.tracking;
+
+/**
+ * Immutable view of the tracking state handed from the tracking thread to the UI.
+ * The points themselves stay in the engine's TrackStore; {@code pointCount} says how many of
+ * them are visible to the UI as of this snapshot.
+ */
+public final class TrackingSnapshot {
+
+    private final double distanceKm;
+    private final float speedKmh;
+    private final int pointCount;
+    private final int newPointCount;
+
+    TrackingSnapshot(double distanceKm, float speedKmh, int pointCount, int newPointCount) {
+        this.distanceKm = distanceKm;
+        this.speedKmh = speedKmh;
+        this.pointCount = pointCount;
+        this.newPointCount = newPointCount;
+    }
+
+    public double getDistanceKm() { return distanceKm; }
+    public float getSpeedKmh() { return speedKmh; }
+    public int getPointCount() { return pointCount; }
+
+    // Points accepted since the previous snapshot
+    public int getNewPointCount() { return newPointCount; }
+}
@@ -0,0 +1,122 @@
+package com.example.padyakol.adapters;
+
+import com.example.padyakol.models.Ride;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+public class RideRowFactoryTest {
+
+    private static Ride ride(String id, double km, long seconds, long timestamp) {
+        Ride ride = new Ride(km, seconds, timestamp, km / (seconds / 3600.0), null);
+        ride.setRideId(id);
+        return ride;
+    }
+
+    private static List<Ride> history(int n) {
+        List<Ride> rides = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            rides.add(ride("ride-" + i, 5 + i % 40, 900 + i * 37L % 9000, 1_700_000_000_000L - i * 86_400_000L));
+        }
+        return rides;
+    }
+
+    @Test
+    public void formatsLikeTheOldBindCode() {
+        Calendar cal = Calendar.getInstance(Locale.ENGLISH);
+        cal.set(2024, Calendar.MARCH, 5, 17, 4, 0);
+        RideRow row = new RideRowFactory().toRow(ride("a", 12.345, 3 * 3600 + 7 * 60, cal.getTimeInMillis()));
+
+        assertEquals("Mar 05, 2024", row.date);
+        assertEquals("05:04 PM", row.time);
+        assertEquals("12.35 km", row.distance);
+        assertEquals("3h 07m", row.duration);
+        assertEquals("4.0", row.speed);
+
+        RideRow shortRide = new RideRowFactory().toRow(ride("b", 2.0, 25 * 60, cal.getTimeInMillis()));
+        assertEquals("25 mins", shortRide.duration);
+    }
+
+    @Test
+    public void unchangedRidesComeBackFromTheCache() {
+        RideRowFactory factory = new RideRowFactory();
+        List<RideRow> first = factory.toRows(history(50));
+        // A fresh query returns fresh Ride objects with the same data
+        List<RideRow> second = factory.toRows(history(50));
+
+        for (int i = 0; i < first.size(); i++) {
+            assertSame(first.get(i), second.get(i));
+        }
+    }
+
+    @Test
+    public void changedRideIsReformatted() {
+        RideRowFactory factory = new RideRowFactory();
+        RideRow before = factory.toRow(ride("a", 10.0, 3600, 1_700_000_000_000L));
+        RideRow after = factory.toRow(ride("a", 11.0, 3600, 1_700_000_000_000L));
+
+        assertNotSame(before, after);
+        assertEquals("11.00 km", after.distance);
+        assertFalse(before.looksLike(after));
+    }
+
+    // What a fling through 2,000 rows allocates on the main thread (RideRowBenchmark has the timings).
+    // Before: Calendar, two date formats and three String.format calls per bind. After: five field reads.
+    @Test
+    public void bindPathNoLongerAllocates() {
+        List<Ride> rides = history(2_000);
+        List<RideRow> rows = new RideRowFactory().toRows(rides);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+
+        // Warm up both paths
+        long sink = formatPerBind(rides) + readRows(rows);
+
+        long a0 = threads.getThreadAllocatedBytes(thread);
+        sink += formatPerBind(rides);
+        long a1 = threads.getThreadAllocatedBytes(thread);
+        sink += readRows(rows);
+        long a2 = threads.getThreadAllocatedBytes(thread);
+
+        long beforeBytes = a1 - a0;
+        long afterBytes = a2 - a1;
+        // Keeps the work from being optimised away
+        assertTrue(sink > 0);
+        assertTrue("Format-per-bind should allocate heavily", beforeBytes > rides.size() * 500L);
+        assertTrue("Precomputed binds should allocate (almost) nothing", afterBytes < 16 * 1024);
+    }
+
+    private static long formatPerBind(List<Ride> rides) {
+        long chars = 0;
+        for (Ride ride : rides) {
+            Calendar cal = Calendar.getInstance(Locale.ENGLISH);
+            cal.setTimeInMillis(ride.getTimestamp());
+            SimpleDateFormat dateFormat = new SimpleDateFormat("MMM dd, yyyy", Locale.ENGLISH);
+            SimpleDateFormat timeFormat = new SimpleDateFormat("hh:mm a", Locale.ENGLISH);
+            chars += dateFormat.format(cal.getTime()).length();
+            chars += timeFormat.format(cal.getTime()).length();
+            chars += String.format(Locale.US, "%.2f km", ride.getDistanceKm()).length();
+            chars += String.format(Locale.US, "%.1f", ride.getAvgSpeedKmh()).length();
+            chars += String.format(Locale.US, "%d mins", ride.getDurationSeconds() / 60).length();
+        }
+        return chars;
+    }
+
+    private static long readRows(List<RideRow> rows) {
+        long chars = 0;
+        for (int i = 0; i < rows.size(); i++) {
+            RideRow row = rows.get(i);
+            chars += row.date.length() + row.time.length() + row.distance.length()
+                    + row.duration.length() + row.speed.length();
+        }
+        return chars;
+    }
+}
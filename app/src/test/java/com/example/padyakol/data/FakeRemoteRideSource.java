@@ -0,0 +1,149 @@
+package com.example.padyakol.data;
+
+import com.example.padyakol.models.Ride;
+import com.google.firebase.firestore.Blob;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+// In-memory server: stamps writes with a fake clock, like serverTimestamp() would
+class FakeRemoteRideSource implements RemoteRideSource {
+
+    final Map<String, Ride> docs = new LinkedHashMap<>();
+    final Map<String, byte[]> routes = new LinkedHashMap<>();
+    double totalKm = 0.0;
+    long clock = 1_000L;
+    int pushCalls = 0;
+    boolean failNextPush = false;
+    boolean failNextDelete = false;
+    // The commit goes through but the reply is lost, so the client sees a failure
+    boolean loseNextAck = false;
+    int largestPush = 0;
+    Runnable beforePull;
+    int pagesRead = 0;
+    int largestPage = 0;
+    final Map<String, StatsRecordEntity> records = new LinkedHashMap<>();
+
+    void putRemote(String rideId, double distanceKm) {
+        Ride ride = new Ride(distanceKm, 600L, clock, 12.0, null);
+        ride.setRideId(rideId);
+        ride.setUpdatedAt(new Date(++clock));
+        docs.put(rideId, ride);
+    }
+
+    // All or nothing, and rides that already exist are skipped, like the Firestore transaction
+    @Override
+    public void push(String userId, List<Ride> rides, List<StatsRecordEntity> records) throws Exception {
+        pushCalls++;
+        largestPush = Math.max(largestPush, rides.size());
+        if (failNextPush) {
+            failNextPush = false;
+            throw new Exception("offline");
+        }
+        for (Ride ride : rides) {
+            if (docs.containsKey(ride.getRideId())) continue;
+            if (ride.getRouteData() != null) routes.put(ride.getRideId(), ride.getRouteData().toBytes());
+            Ride summary = summaryOf(ride);
+            summary.setUpdatedAt(new Date(++clock));
+            docs.put(ride.getRideId(), summary);
+            totalKm += ride.getDistanceKm();
+        }
+        replaceRecords(records);
+        if (loseNextAck) {
+            loseNextAck = false;
+            throw new Exception("connection reset");
+        }
+    }
+
+    // Like push: all or nothing, and rides already gone are skipped
+    @Override
+    public void delete(String userId, List<String> rideIds, List<StatsRecordEntity> records) throws Exception {
+        if (failNextDelete) {
+            failNextDelete = false;
+            throw new Exception("offline");
+        }
+        for (String rideId : rideIds) {
+            Ride ride = docs.remove(rideId);
+            if (ride == null) continue;
+            routes.remove(rideId);
+            totalKm -= ride.getDistanceKm();
+        }
+        replaceRecords(records);
+    }
+
+    // Kinds missing from the device's records are deleted, as RideDocuments writes them
+    private void replaceRecords(List<StatsRecordEntity> records) {
+        this.records.clear();
+        for (StatsRecordEntity record : records) {
+            this.records.put(record.kind, record);
+        }
+    }
+
+    // A document written before the route split, with the route embedded in the summary
+    void putLegacyRemote(String rideId, byte[] routeData) {
+        Ride ride = new Ride(2.0, 600L, clock, 12.0, Blob.fromBytes(routeData));
+        ride.setRideId(rideId);
+        ride.setUpdatedAt(new Date(++clock));
+        docs.put(rideId, ride);
+    }
+
+    private static Ride summaryOf(Ride ride) {
+        Ride summary = new Ride(ride.getDistanceKm(), ride.getDurationSeconds(), ride.getTimestamp(),
+                ride.getAvgSpeedKmh(), null);
+        summary.setRideId(ride.getRideId());
+        summary.setMaxSpeedKmh(ride.getMaxSpeedKmh());
+        summary.setMovingSeconds(ride.getMovingSeconds());
+        summary.setSplitSeconds(ride.getSplitSeconds());
+        summary.setSpeedHistogram(ride.getSpeedHistogram());
+        summary.setCells(ride.getCells());
+        summary.setLocalDate(ride.getLocalDate());
+        return summary;
+    }
+
+    @Override
+    public byte[] fetchRoute(String userId, String rideId) {
+        return routes.get(rideId);
+    }
+
+    @Override
+    public void splitLegacyRoute(String userId, String rideId, byte[] routeData) {
+        routes.put(rideId, routeData);
+        Ride summary = summaryOf(docs.get(rideId));
+        summary.setUpdatedAt(new Date(++clock));
+        docs.put(rideId, summary);
+    }
+
+    @Override
+    public Registration listenForChanges(String userId, long sinceMillis, Executor executor, ChangeListener listener) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public RidePager pullChangedSince(String userId, long sinceMillis, int pageSize) {
+        if (beforePull != null) beforePull.run();
+        List<Ride> changed = new ArrayList<>();
+        for (Ride ride : docs.values()) {
+            if (ride.getUpdatedAt().getTime() > sinceMillis) changed.add(ride);
+        }
+        changed.sort(Comparator.comparingLong(ride -> ride.getUpdatedAt().getTime()));
+
+        return new RidePager() {
+            private int next = 0;
+
+            @Override
+            public List<Ride> nextPage() {
+                pagesRead++;
+                int end = Math.min(next + pageSize, changed.size());
+                List<Ride> page = new ArrayList<>(changed.subList(next, end));
+                largestPage = Math.max(largestPage, page.size());
+                next = end;
+                return page;
+            }
+        };
+    }
+}
@@ -0,0 +1,260 @@
+package com.example.padyakol.data;
+
+import androidx.lifecycle.LiveData;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+// In-memory stand-in for the Room DAO
+class FakeRideDao implements RideDao {
+
+    final Map<String, RideEntity> rows = new LinkedHashMap<>();
+    final Map<String, RouteEntity> routes = new LinkedHashMap<>();
+    final Map<String, StatsBucketEntity> buckets = new LinkedHashMap<>();
+    final Map<String, StatsRecordEntity> records = new LinkedHashMap<>();
+    // Sorted by cell then ride, like the primary key
+    final TreeSet<String> cells = new TreeSet<>();
+    int rangeQueries = 0;
+    int routeReads = 0;
+    final Map<String, HeatTileEntity> heatTiles = new LinkedHashMap<>();
+    // rideId to userId
+    final Map<String, String> deletions = new LinkedHashMap<>();
+    // Where segment efforts live, when a test has segments
+    FakeSegmentDao segments;
+
+    @Override
+    public LiveData<List<RideEntity>> observeRides(String userId, int limit) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public RideEntity getRide(String rideId) {
+        return rows.get(rideId);
+    }
+
+    @Override
+    public List<RideEntity> getRidesAfter(String userId, long afterTimestamp, String afterRideId, int limit) {
+        List<RideEntity> result = new ArrayList<>();
+        for (RideEntity entity : rows.values()) {
+            if (!entity.userId.equals(userId)) continue;
+            if (entity.timestamp > afterTimestamp
+                    || (entity.timestamp == afterTimestamp && entity.rideId.compareTo(afterRideId) > 0)) {
+                result.add(entity);
+            }
+        }
+        result.sort(Comparator.<RideEntity>comparingLong(r -> r.timestamp).thenComparing(r -> r.rideId));
+        return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+
+    @Override
+    public List<RideEntity> getPendingUploads(String userId) {
+        List<RideEntity> result = new ArrayList<>();
+        for (RideEntity entity : rows.values()) {
+            if (entity.userId.equals(userId) && entity.syncState == RideEntity.PENDING_UPLOAD) {
+                result.add(entity);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void upsert(RideEntity ride) {
+        rows.put(ride.rideId, ride);
+    }
+
+    @Override
+    public RouteEntity getRoute(String rideId) {
+        routeReads++;
+        return routes.get(rideId);
+    }
+
+    @Override
+    public void upsertRoute(RouteEntity route) {
+        routes.put(route.rideId, route);
+    }
+
+    @Override
+    public void deleteSummary(String rideId) {
+        rows.remove(rideId);
+    }
+
+    @Override
+    public void deleteRoute(String rideId) {
+        routes.remove(rideId);
+    }
+
+    @Override
+    public void deleteEfforts(String rideId) {
+        if (segments != null) segments.efforts.values().removeIf(effort -> effort.rideId.equals(rideId));
+    }
+
+    @Override
+    public void queueDeletion(RideDeletionEntity deletion) {
+        deletions.put(deletion.rideId, deletion.userId);
+    }
+
+    @Override
+    public List<String> getPendingDeletions(String userId) {
+        List<String> result = new ArrayList<>();
+        for (Map.Entry<String, String> deletion : deletions.entrySet()) {
+            if (deletion.getValue().equals(userId)) result.add(deletion.getKey());
+        }
+        return result;
+    }
+
+    @Override
+    public boolean isDeletionPending(String rideId) {
+        return deletions.containsKey(rideId);
+    }
+
+    @Override
+    public void clearDeletions(List<String> rideIds) {
+        deletions.keySet().removeAll(rideIds);
+    }
+
+    @Override
+    public void markSynced(List<String> rideIds) {
+        for (String rideId : rideIds) {
+            RideEntity entity = rows.get(rideId);
+            if (entity != null) entity.syncState = RideEntity.SYNCED;
+        }
+    }
+
+    @Override
+    public LiveData<List<StatsBucketEntity>> observeBuckets(String userId, String fromKey, String toKey) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public LiveData<List<StatsRecordEntity>> observeRecords(String userId) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public StatsBucketEntity getBucket(String userId, String bucketKey) {
+        return buckets.get(userId + "/" + bucketKey);
+    }
+
+    @Override
+    public void putBucket(StatsBucketEntity bucket) {
+        buckets.put(bucket.userId + "/" + bucket.bucketKey, bucket);
+    }
+
+    @Override
+    public void deleteBucket(String userId, String bucketKey) {
+        buckets.remove(userId + "/" + bucketKey);
+    }
+
+    @Override
+    public StatsRecordEntity getRecord(String userId, String kind) {
+        return records.get(userId + "/" + kind);
+    }
+
+    @Override
+    public List<StatsRecordEntity> getRecords(String userId) {
+        List<StatsRecordEntity> result = new ArrayList<>();
+        for (StatsRecordEntity record : records.values()) {
+            if (record.userId.equals(userId)) result.add(record);
+        }
+        return result;
+    }
+
+    @Override
+    public void putRecord(StatsRecordEntity record) {
+        records.put(record.userId + "/" + record.kind, record);
+    }
+
+    @Override
+    public void deleteRecord(String userId, String kind) {
+        records.remove(userId + "/" + kind);
+    }
+
+    @Override
+    public RideEntity findLongestRide(String userId) {
+        return best(userId, Comparator.comparingDouble(r -> r.distanceKm));
+    }
+
+    @Override
+    public RideEntity findFastestRide(String userId) {
+        return best(userId, Comparator.comparingDouble(r -> r.avgSpeedKmh));
+    }
+
+    @Override
+    public RideEntity findLongestDurationRide(String userId) {
+        return best(userId, Comparator.comparingLong(r -> r.durationSeconds));
+    }
+
+    // Highest value first, earliest ride on ties, like the ORDER BY in StatsStore
+    private RideEntity best(String userId, Comparator<RideEntity> byValue) {
+        RideEntity best = null;
+        for (RideEntity ride : rows.values()) {
+            if (!ride.userId.equals(userId)) continue;
+            if (best == null) {
+                best = ride;
+                continue;
+            }
+            int cmp = byValue.compare(ride, best);
+            if (cmp > 0 || (cmp == 0 && ride.timestamp < best.timestamp)) best = ride;
+        }
+        return best;
+    }
+
+    @Override
+    public HeatTileEntity getHeatTile(String userId, int zoom, int x, int y) {
+        return heatTiles.get(userId + "/" + zoom + "/" + x + "/" + y);
+    }
+
+    @Override
+    public void putHeatTile(HeatTileEntity tile) {
+        heatTiles.put(tile.userId + "/" + tile.zoom + "/" + tile.x + "/" + tile.y, tile);
+    }
+
+    @Override
+    public void deleteHeatTile(String userId, int zoom, int x, int y) {
+        heatTiles.remove(userId + "/" + zoom + "/" + x + "/" + y);
+    }
+
+    private static String cellKey(long cellId, String rideId) {
+        return String.format("%012d/%s", cellId, rideId);
+    }
+
+    @Override
+    public List<Long> getCells(String rideId) {
+        List<Long> result = new ArrayList<>();
+        for (String key : cells) {
+            String[] parts = key.split("/");
+            if (parts[1].equals(rideId)) result.add(Long.parseLong(parts[0]));
+        }
+        return result;
+    }
+
+    @Override
+    public void insertCells(List<RideCellEntity> cells) {
+        for (RideCellEntity cell : cells) {
+            this.cells.add(cellKey(cell.cellId, cell.rideId));
+        }
+    }
+
+    @Override
+    public void deleteCells(String rideId) {
+        cells.removeIf(key -> key.endsWith("/" + rideId));
+    }
+
+    @Override
+    public List<RideCellEntity> getCellsInRange(String userId, long fromCell, long toCell) {
+        rangeQueries++;
+        List<RideCellEntity> result = new ArrayList<>();
+        for (String key : cells.subSet(cellKey(fromCell, ""), true, cellKey(toCell + 1, ""), false)) {
+            String[] parts = key.split("/");
+            RideEntity ride = rows.get(parts[1]);
+            if (ride != null && ride.userId.equals(userId)) {
+                result.add(new RideCellEntity(Long.parseLong(parts[0]), parts[1]));
+            }
+        }
+        return result;
+    }
+}
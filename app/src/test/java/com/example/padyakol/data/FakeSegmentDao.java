@@ -0,0 +1,100 @@
+package com.example.padyakol.data;
+
+import androidx.lifecycle.LiveData;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// In-memory stand-in for the segment DAO
+class FakeSegmentDao implements SegmentDao {
+
+    final Map<String, SegmentEntity> segments = new LinkedHashMap<>();
+    // Endpoint rows by cell, like the primary key's leading column
+    final Map<Long, List<SegmentCellEntity>> cells = new HashMap<>();
+    final Map<String, SegmentEffortEntity> efforts = new LinkedHashMap<>();
+    int cellQueries = 0;
+    // Segments read back by id, i.e. matchers SegmentEfforts had to build
+    int segmentsLoaded = 0;
+
+    @Override
+    public void upsertSegment(SegmentEntity segment) {
+        segments.put(segment.segmentId, segment);
+    }
+
+    @Override
+    public void insertSegmentCells(List<SegmentCellEntity> rows) {
+        for (SegmentCellEntity row : rows) {
+            cells.computeIfAbsent(row.cellId, cell -> new ArrayList<>()).add(row);
+        }
+    }
+
+    @Override
+    public LiveData<List<SegmentEntity>> observeSegments(String userId) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public List<SegmentEntity> getSegments(List<String> segmentIds) {
+        List<SegmentEntity> result = new ArrayList<>();
+        for (String segmentId : segmentIds) {
+            SegmentEntity segment = segments.get(segmentId);
+            if (segment != null) result.add(segment);
+        }
+        segmentsLoaded += result.size();
+        return result;
+    }
+
+    @Override
+    public List<SegmentCellEntity> getEndpointCells(String userId, List<Long> cellIds) {
+        if (cellIds.size() > 999) throw new IllegalArgumentException("Too many SQL variables");
+        cellQueries++;
+        List<SegmentCellEntity> result = new ArrayList<>();
+        for (long cellId : cellIds) {
+            for (SegmentCellEntity row : cells.getOrDefault(cellId, new ArrayList<>())) {
+                if (segments.get(row.segmentId).userId.equals(userId)) result.add(row);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void upsertEffort(SegmentEffortEntity effort) {
+        efforts.put(effort.segmentId + "/" + effort.rideId, effort);
+    }
+
+    @Override
+    public LiveData<List<SegmentEffortEntity>> observeLeaderboard(String segmentId, int limit) {
+        throw new UnsupportedOperationException();
+    }
+
+    // What observeLeaderboard would emit
+    List<SegmentEffortEntity> leaderboard(String segmentId) {
+        List<SegmentEffortEntity> result = new ArrayList<>();
+        for (SegmentEffortEntity effort : efforts.values()) {
+            if (effort.segmentId.equals(segmentId)) result.add(effort);
+        }
+        result.sort(Comparator.<SegmentEffortEntity>comparingLong(e -> e.elapsedSeconds).thenComparingLong(e -> e.startedAt));
+        return result;
+    }
+
+    @Override
+    public void deleteSegmentRow(String segmentId) {
+        segments.remove(segmentId);
+    }
+
+    @Override
+    public void deleteSegmentCells(String segmentId) {
+        for (List<SegmentCellEntity> rows : cells.values()) {
+            rows.removeIf(row -> row.segmentId.equals(segmentId));
+        }
+    }
+
+    @Override
+    public void deleteSegmentEfforts(String segmentId) {
+        efforts.values().removeIf(effort -> effort.segmentId.equals(segmentId));
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.padyakol.data;
+
+import com.example.padyakol.models.Ride;
+import com.example.padyakol.route.RouteCodec;
+import com.example.padyakol.route.RouteSimplifier;
+import com.example.padyakol.route.RouteSimplifierTest;
+import com.google.firebase.firestore.Blob;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.GeoPoint;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Bytes read by one page of the travel log, before and after splitting routes out of the summary.
+ * Sizes follow Firestore's documented storage-size rules, which track what a query downloads.
+ */
+public class RideDocumentSizeTest {
+
+    private static final int PAGE = RideSyncer.PULL_PAGE_SIZE;
+    private static final String RIDE_PATH = "users/0123456789abcdefghijklmnop12/rides/0f8fad5b-d9cb-469f-a165-70867728950e";
+
+    // An hour of riding at one fix per second
+    private static final double[][] ROUTE = RouteSimplifierTest.cityRide(3600, 7L);
+
+    private static Map<String, Object> stats() {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("distanceKm", 18.4);
+        fields.put("durationSeconds", 3600L);
+        fields.put("timestamp", 1_700_000_000_000L);
+        fields.put("avgSpeedKmh", 18.4);
+        return fields;
+    }
+
+    private static Map<String, Object> geoPointDocument() {
+        List<GeoPoint> points = new ArrayList<>();
+        for (int i = 0; i < ROUTE[0].length; i++) {
+            points.add(new GeoPoint(ROUTE[0][i], ROUTE[1][i]));
+        }
+        Map<String, Object> fields = stats();
+        fields.put("routePoints", points);
+        return fields;
+    }
+
+    private static Map<String, Object> embeddedBlobDocument() {
+        int[] kept = RouteSimplifier.simplify(ROUTE[0], ROUTE[1], ROUTE[0].length, RouteSimplifier.DEFAULT_TOLERANCE_METERS);
+        Map<String, Object> fields = stats();
+        fields.put("routeData", Blob.fromBytes(RouteCodec.encodeSelected(ROUTE[0], ROUTE[1], null, kept)));
+        fields.put("updatedAt", FieldValue.serverTimestamp());
+        return fields;
+    }
+
+    private static Map<String, Object> summaryDocument() {
+        Ride ride = new Ride(18.4, 3600L, 1_700_000_000_000L, 18.4, null);
+        return RideDocuments.summary(ride);
+    }
+
+    @Test
+    public void summaryPageIsAFractionOfEmbeddedRoutes() {
+        long geoPoints = PAGE * documentSize(RIDE_PATH, geoPointDocument());
+        long embedded = PAGE * documentSize(RIDE_PATH, embeddedBlobDocument());
+        long summaries = PAGE * documentSize(RIDE_PATH, summaryDocument());
+
+        assertTrue("A summary is a few hundred bytes", summaries / PAGE < 300);
+        // Simplified blobs are already small, so the gain over them is a few times; over GeoPoints it is 100x+
+        assertTrue("Summaries should be a fraction of embedded blobs", summaries * 4 < embedded);
+        assertTrue(summaries * 100 < geoPoints);
+    }
+
+    @Test
+    public void summaryCarriesNoGeometry() {
+        Map<String, Object> summary = summaryDocument();
+        assertFalse(summary.containsKey(RideDocuments.ROUTE_DATA));
+        assertFalse(summary.containsKey(RideDocuments.LEGACY_ROUTE_POINTS));
+    }
+
+    // https://firebase.google.com/docs/firestore/storage-size
+    private static long documentSize(String path, Map<String, Object> fields) {
+        long size = 32;
+        for (String segment : path.split("/")) {
+            size += stringSize(segment);
+        }
+        for (Map.Entry<String, Object> field : fields.entrySet()) {
+            size += stringSize(field.getKey()) + valueSize(field.getValue());
+        }
+        return size;
+    }
+
+    private static long stringSize(String s) {
+        return s.getBytes(StandardCharsets.UTF_8).length + 1;
+    }
+
+    private static long valueSize(Object value) {
+        if (value instanceof String) return stringSize((String) value);
+        if (value instanceof Blob) return ((Blob) value).toBytes().length;
+        if (value instanceof GeoPoint) return 16;
+        if (value instanceof List) {
+            long size = 0;
+            for (Object element : (List<?>) value) {
+                size += valueSize(element);
+            }
+            return size;
+        }
+        // Numbers, booleans and timestamps
+        return 8;
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.padyakol.data;
+
+import com.example.padyakol.route.HeatGrid;
+import com.example.padyakol.route.Route;
+import com.example.padyakol.route.RouteCodec;
+import com.example.padyakol.route.TestRoutes;
+import com.example.padyakol.route.TileGrid;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RideHeatTest {
+
+    private static final String USER = "user-1";
+    private static final double[][] ROAD = {{0, 0}, {1000, 0}, {1000, 800}, {2000, 800}};
+
+    private FakeRideDao dao;
+
+    @Before
+    public void setUp() {
+        dao = new FakeRideDao();
+    }
+
+    private static RouteEntity routeOf(String rideId, Route route) {
+        return new RouteEntity(rideId, RouteCodec.encode(route.lats(), route.lngs(), route.times(), route.size()));
+    }
+
+    private void insert(String rideId, Route route) {
+        RideEntity entity = new RideEntity();
+        entity.rideId = rideId;
+        entity.userId = USER;
+        dao.insertRide(entity, routeOf(rideId, route), TileGrid.cellsAlong(route.lats(), route.lngs(), route.size()));
+    }
+
+    // The count in the most detailed bin under the road's first point
+    private int countAtStart(Route route) {
+        HeatGrid.TileBins first = null;
+        for (HeatGrid.TileBins tile : HeatGrid.binsAlong(route.lats(), route.lngs(), 1)) {
+            if (tile.zoom == HeatGrid.MAX_ZOOM) first = tile;
+        }
+        HeatTileEntity stored = dao.getHeatTile(USER, first.zoom, first.x, first.y);
+        return stored == null ? 0 : HeatGrid.unpack(stored.bins)[first.bins[0]];
+    }
+
+    @Test
+    public void ridesAddUpAndDeletingTakesThemOut() {
+        Route road = TestRoutes.ride(ROAD, 20.0, 0L, 0.0, 1L);
+        insert("a", road);
+        insert("b", road);
+        assertEquals(2, countAtStart(road));
+
+        dao.deleteRide("a");
+        assertEquals(1, countAtStart(road));
+
+        dao.deleteRide("b");
+        assertTrue(dao.heatTiles.isEmpty());
+    }
+
+    @Test
+    public void aTileLeftWithOtherRidesIsKept() {
+        Route road = TestRoutes.ride(ROAD, 20.0, 0L, 0.0, 1L);
+        Route detour = TestRoutes.ride(new double[][]{{5000, 5000}, {5000, 8000}}, 20.0, 0L, 0.0, 1L);
+        insert("a", road);
+        insert("b", detour);
+        int before = dao.heatTiles.size();
+
+        dao.deleteRide("a");
+        assertTrue(dao.heatTiles.size() < before);
+        assertEquals(0, countAtStart(road));
+        assertEquals(1, countAtStart(detour));
+        for (HeatTileEntity tile : dao.heatTiles.values()) {
+            assertTrue(tile.bins.length > 0);
+        }
+    }
+
+    @Test
+    public void aRouteDownloadedLaterCountsOnce() {
+        Route road = TestRoutes.ride(ROAD, 20.0, 0L, 0.0, 1L);
+        RideEntity summary = new RideEntity();
+        summary.rideId = "remote";
+        summary.userId = USER;
+        dao.saveSummary(summary);
+        assertEquals(0, countAtStart(road));
+
+        dao.storeRoute(USER, routeOf("remote", road));
+        dao.storeRoute(USER, routeOf("remote", road));
+
+        assertEquals(1, countAtStart(road));
+    }
+
+    // A save costs a read and write per tile the ride crosses, however long the history
+    @Test
+    public void savingARideOnlyTouchesItsOwnTiles() {
+        Random random = new Random(8);
+        for (int i = 0; i < 300; i++) {
+            double x = (random.nextDouble() - 0.5) * 30_000;
+            double y = (random.nextDouble() - 0.5) * 30_000;
+            insert("past" + i, TestRoutes.ride(new double[][]{{x, y}, {x + 4_000, y + 2_000}}, 20.0, 0L, 5.0, i));
+        }
+        int tilesBefore = dao.heatTiles.size();
+
+        Route ride = TestRoutes.ride(ROAD, 20.0, 0L, 5.0, 99L);
+        List<HeatGrid.TileBins> touched = HeatGrid.binsAlong(ride.lats(), ride.lngs(), ride.size());
+        insert("new", ride);
+
+        assertTrue(dao.heatTiles.size() - tilesBefore <= touched.size());
+        assertTrue(touched.size() < tilesBefore / 10);
+    }
+}
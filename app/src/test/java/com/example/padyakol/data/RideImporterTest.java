@@ -0,0 +1,265 @@
+package com.example.padyakol.data;
+
+import com.example.padyakol.route.GeoMath;
+import com.example.padyakol.route.Route;
+import com.example.padyakol.route.RouteCodec;
+import com.example.padyakol.route.RouteSimplifier;
+import com.example.padyakol.route.TestRoutes;
+import com.example.padyakol.route.TileGrid;
+import com.example.padyakol.transfer.TrackFormat;
+import com.example.padyakol.transfer.TrackWriter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.kxml2.io.KXmlParser;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.Assert.*;
+
+public class RideImporterTest {
+
+    private static final String USER = "user-1";
+    private static final long START = 1_735_000_000_000L;
+    private static final double[][] ROAD = {{0, 0}, {3000, 0}, {3000, 2000}, {6000, 2500}};
+
+    private FakeRideDao dao;
+    private ExecutorService pool;
+    private RideImporter importer;
+    private final List<Integer> batches = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        dao = new FakeRideDao();
+        pool = Executors.newFixedThreadPool(2);
+        importer = new RideImporter(dao, KXmlParser::new, pool, 4);
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    private static final class Source implements RideImporter.Source {
+        final String name;
+        final byte[] data;
+
+        Source(String name, byte[] data) {
+            this.name = name;
+            this.data = data;
+        }
+
+        Source(String name, String xml) {
+            this(name, xml.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public InputStream open() {
+            return new ByteArrayInputStream(data);
+        }
+    }
+
+    private static String gpx(Route route) throws IOException {
+        StringWriter out = new StringWriter();
+        TrackWriter.writeGpx(out, "Test", route.getTime(0), route);
+        return out.toString();
+    }
+
+    private RideImporter.Result importAll(List<? extends RideImporter.Source> sources) throws InterruptedException {
+        return importer.importAll(USER, sources, START, rides -> batches.add(rides.size()));
+    }
+
+    @Test
+    public void aTrackIsStoredLikeARecordedRide() throws Exception {
+        Route raw = TestRoutes.ride(ROAD, 20.0, START, 3.0, 1L);
+
+        RideImporter.Result result = importAll(List.of(new Source("ride.gpx", gpx(raw))));
+
+        assertEquals(1, result.imported);
+        RideEntity ride = dao.rows.values().iterator().next();
+        assertEquals(RideEntity.PENDING_UPLOAD, ride.syncState);
+        assertEquals(raw.getTime(raw.size() - 1), ride.timestamp);
+        assertEquals((raw.getTime(raw.size() - 1) - START) / 1000, ride.durationSeconds);
+        // 8.04 km of road, a little more with the noise
+        assertEquals(8.1, ride.distanceKm, 0.15);
+        assertEquals(20.0, ride.avgSpeedKmh, 1.0);
+        assertTrue(ride.maxSpeedKmh > 15);
+        assertNotNull(ride.splitSeconds);
+
+        // Simplified within the usual tolerance, plus the 1e-5 degree quantization of the file
+        Route stored = RouteCodec.decode(dao.getRoute(ride.rideId).routeData);
+        assertTrue(stored.size() < raw.size() / 3);
+        assertEquals(raw.getTime(0), stored.getTime(0));
+        for (int i = 0; i < raw.size(); i++) {
+            assertTrue(distanceToRoute(raw.getLat(i), raw.getLng(i), stored) < RouteSimplifier.DEFAULT_TOLERANCE_METERS + 1.5);
+        }
+        long[] expectedCells = TileGrid.cellsAlong(stored.lats(), stored.lngs(), stored.size());
+        assertArrayEquals(expectedCells, RideSyncer.toArray(dao.getCells(ride.rideId)));
+    }
+
+    @Test
+    public void importingAgainSkipsRidesAlreadyOnTheDevice() throws Exception {
+        String a = gpx(TestRoutes.ride(ROAD, 20.0, START, 3.0, 1L));
+        String b = gpx(TestRoutes.ride(ROAD, 25.0, START + 86_400_000L, 3.0, 2L));
+
+        assertEquals(2, importAll(List.of(new Source("a.gpx", a), new Source("b.gpx", b))).imported);
+        RideImporter.Result again = importAll(List.of(new Source("b.gpx", b), new Source("a copy.gpx", a), new Source("a.gpx", a)));
+
+        assertEquals(0, again.imported);
+        assertEquals(3, again.duplicates);
+        assertEquals(2, dao.rows.size());
+    }
+
+    @Test
+    public void badFilesAreReportedWithoutStoppingTheImport() throws Exception {
+        String good = gpx(TestRoutes.ride(ROAD, 20.0, START, 3.0, 1L));
+        List<Source> sources = List.of(
+                new Source("notes.txt", "shopping list"),
+                new Source("truncated.gpx", good.substring(0, good.length() / 2)),
+                new Source("empty.gpx", "<gpx version=\"1.1\"><trk><trkseg/></trk></gpx>"),
+                new Source("good.gpx", good));
+
+        RideImporter.Result result = importAll(sources);
+
+        assertEquals(1, result.imported);
+        assertEquals(List.of("notes.txt", "truncated.gpx", "empty.gpx"), result.failed);
+    }
+
+    @Test
+    public void ridesAreCommittedInBatches() throws Exception {
+        List<Source> sources = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            double[][] road = {{i * 100.0, 0}, {i * 100.0 + 500, 300}};
+            sources.add(new Source(i + ".gpx", gpx(TestRoutes.ride(road, 20.0, START + i * 3_600_000L, 3.0, i))));
+        }
+
+        RideImporter.Result result = importAll(sources);
+
+        assertEquals(120, result.imported);
+        assertEquals(List.of(50, 50, 20), batches);
+        assertEquals(120, dao.rows.size());
+    }
+
+    @Test
+    public void interruptingTheImportCancelsTheFilesStillParsing() throws Exception {
+        CountDownLatch never = new CountDownLatch(1);
+        AtomicInteger opened = new AtomicInteger();
+        List<RideImporter.Source> sources = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            String name = i + ".gpx";
+            sources.add(new RideImporter.Source() {
+                @Override
+                public String getName() {
+                    return name;
+                }
+
+                // Stands in for a slow file: only returns once the parse is cancelled
+                @Override
+                public InputStream open() throws IOException {
+                    opened.incrementAndGet();
+                    try {
+                        never.await();
+                    } catch (InterruptedException e) {
+                        throw new IOException(e);
+                    }
+                    return new ByteArrayInputStream(new byte[0]);
+                }
+            });
+        }
+
+        Thread.currentThread().interrupt();
+        try {
+            importAll(sources);
+            fail();
+        } catch (InterruptedException expected) {
+        }
+
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+        // Two threads; the files queued behind them never started
+        assertTrue(opened.get() <= 2);
+        assertTrue(dao.rows.isEmpty());
+    }
+
+    @Test
+    public void exportedRidesImportBackTheSame() throws Exception {
+        for (int i = 0; i < RideExporter.PAGE_SIZE + 5; i++) {
+            double[][] road = {{i * 100.0, 0}, {i * 100.0 + 2000, 800}};
+            // Two rides per hour: the paging has to break ties on the id
+            String xml = gpx(TestRoutes.ride(road, 20.0, START + i / 2 * 3_600_000L, 3.0, i));
+            importAll(List.of(new Source(i + ".gpx", xml)));
+        }
+        FakeRemoteRideSource remote = new FakeRemoteRideSource();
+
+        for (TrackFormat format : TrackFormat.values()) {
+            ByteArrayOutputStream zip = new ByteArrayOutputStream();
+            RideExporter.Result exported = new RideExporter(dao, remote).exportAll(USER, format, zip, ZoneOffset.UTC);
+            assertEquals(dao.rows.size(), exported.exported);
+
+            FakeRideDao copy = new FakeRideDao();
+            RideImporter reimporter = new RideImporter(copy, KXmlParser::new, pool, 4);
+            List<Source> entries = new ArrayList<>();
+            try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(zip.toByteArray()))) {
+                for (ZipEntry entry = in.getNextEntry(); entry != null; entry = in.getNextEntry()) {
+                    assertTrue(entry.getName().endsWith("." + format.extension));
+                    entries.add(new Source(entry.getName(), in.readAllBytes()));
+                }
+            }
+            assertEquals(dao.rows.size(), reimporter.importAll(USER, entries, START, null).imported);
+
+            for (RideEntity original : dao.rows.values()) {
+                Route route = RouteCodec.decode(dao.getRoute(original.rideId).routeData);
+                RideEntity match = null;
+                for (RideEntity candidate : copy.rows.values()) {
+                    Route start = RouteCodec.decode(copy.getRoute(candidate.rideId).routeData);
+                    if (candidate.timestamp == original.timestamp && candidate.durationSeconds == original.durationSeconds
+                            && Math.abs(candidate.distanceKm - original.distanceKm) < 0.05
+                            && start.getLat(0) == route.getLat(0) && start.getLng(0) == route.getLng(0)) {
+                        match = candidate;
+                    }
+                }
+                assertNotNull(match);
+                // Simplifying the stored route again stays within the tolerance of it
+                Route again = RouteCodec.decode(copy.getRoute(match.rideId).routeData);
+                assertTrue(again.size() <= route.size());
+                for (int i = 0; i < route.size(); i++) {
+                    assertTrue(distanceToRoute(route.getLat(i), route.getLng(i), again) < RouteSimplifier.DEFAULT_TOLERANCE_METERS + 1.5);
+                }
+            }
+        }
+    }
+
+    private static double distanceToRoute(double lat, double lng, Route route) {
+        double best = Double.MAX_VALUE;
+        double mPerLng = GeoMath.metersPerDegreeLng(lat);
+        for (int i = 1; i < route.size(); i++) {
+            double ax = (route.getLng(i - 1) - lng) * mPerLng, ay = (route.getLat(i - 1) - lat) * GeoMath.METERS_PER_DEGREE;
+            double bx = (route.getLng(i) - lng) * mPerLng, by = (route.getLat(i) - lat) * GeoMath.METERS_PER_DEGREE;
+            double dx = bx - ax, dy = by - ay;
+            double t = Math.max(0, Math.min(1, -(ax * dx + ay * dy) / (dx * dx + dy * dy)));
+            best = Math.min(best, Math.hypot(ax + t * dx, ay + t * dy));
+        }
+        return best;
+    }
+}
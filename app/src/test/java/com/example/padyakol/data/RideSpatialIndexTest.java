@@ -0,0 +1,87 @@
+package com.example.padyakol.data;
+
+import com.example.padyakol.route.TileGrid;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RideSpatialIndexTest {
+
+    private static final String USER = "user-1";
+
+    private FakeRideDao dao;
+
+    @Before
+    public void setUp() {
+        dao = new FakeRideDao();
+    }
+
+    // A straight ride between two points
+    private void ride(String id, String userId, double lat0, double lng0, double lat1, double lng1) {
+        RideEntity entity = new RideEntity();
+        entity.rideId = id;
+        entity.userId = userId;
+        dao.insertRide(entity, new RouteEntity(id, new byte[0]),
+                TileGrid.cellsAlong(new double[]{lat0, lat1}, new double[]{lng0, lng1}, 2));
+    }
+
+    @Test
+    public void findsRidesPassingThroughAnArea() {
+        // Along EDSA, across the bay, and through Quezon City
+        ride("edsa", USER, 14.53, 121.00, 14.65, 121.03);
+        ride("bay", USER, 14.50, 120.90, 14.60, 120.95);
+        ride("qc", USER, 14.63, 121.03, 14.68, 121.08);
+
+        assertEquals(Collections.singletonList("edsa"), dao.findRidesNear(USER, 14.59, 121.015, 300));
+        assertEquals(new HashSet<>(Arrays.asList("edsa", "qc")),
+                new HashSet<>(dao.findRidesInBox(USER, 14.62, 121.02, 14.66, 121.05)));
+        assertTrue(dao.findRidesNear(USER, 14.40, 121.20, 500).isEmpty());
+    }
+
+    @Test
+    public void otherUsersRidesAreIgnored() {
+        ride("mine", USER, 14.55, 121.0, 14.56, 121.0);
+        ride("theirs", "user-2", 14.55, 121.0, 14.56, 121.0);
+
+        assertEquals(Collections.singletonList("mine"), dao.findRidesNear(USER, 14.555, 121.0, 100));
+    }
+
+    @Test
+    public void deletingARideRemovesItsCells() {
+        ride("a", USER, 14.55, 121.0, 14.56, 121.0);
+        dao.deleteRide("a");
+
+        assertTrue(dao.getCells("a").isEmpty());
+        assertTrue(dao.findRidesNear(USER, 14.555, 121.0, 100).isEmpty());
+    }
+
+    @Test
+    public void radiusQueryReadsOnlyTheRowsItCovers() {
+        Random random = new Random(3);
+        for (int i = 0; i < 2_000; i++) {
+            double lat = 14.3 + random.nextDouble() * 0.5;
+            double lng = 120.8 + random.nextDouble() * 0.5;
+            ride("r" + i, USER, lat, lng, lat + (random.nextDouble() - 0.5) * 0.05, lng + (random.nextDouble() - 0.5) * 0.05);
+        }
+
+        List<String> near = dao.findRidesNear(USER, 14.55, 121.05, 1_000);
+
+        // A 2 km circle spans four or five rows of ~600 m cells
+        assertTrue(dao.rangeQueries <= 5);
+        for (String rideId : near) {
+            boolean touches = false;
+            for (long cell : dao.getCells(rideId)) {
+                touches |= TileGrid.cellTouchesCircle(cell, 14.55, 121.05, 1_000);
+            }
+            assertTrue(touches);
+        }
+    }
+}
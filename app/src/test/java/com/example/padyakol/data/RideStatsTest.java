@@ -0,0 +1,196 @@
+package com.example.padyakol.data;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class RideStatsTest {
+
+    private static final String USER = "user-1";
+    private static final ZoneId MANILA = ZoneId.of("Asia/Manila");
+
+    private FakeRideDao dao;
+
+    @Before
+    public void setUp() {
+        dao = new FakeRideDao();
+    }
+
+    private static long at(int year, int month, int day, int hour) {
+        return ZonedDateTime.of(year, month, day, hour, 0, 0, 0, MANILA).toInstant().toEpochMilli();
+    }
+
+    private static RideEntity ride(String id, long timestamp, double km, long seconds) {
+        RideEntity ride = new RideEntity();
+        ride.rideId = id;
+        ride.userId = USER;
+        ride.timestamp = timestamp;
+        ride.distanceKm = km;
+        ride.durationSeconds = seconds;
+        ride.avgSpeedKmh = km / (seconds / 3600.0);
+        return ride;
+    }
+
+    // What RideDao's transactions do, with a fixed zone
+    private void save(RideEntity ride) {
+        save(ride, MANILA);
+    }
+
+    private void save(RideEntity ride, ZoneId zone) {
+        RideEntity before = dao.getRide(ride.rideId);
+        RideStats.pinDay(before, ride, zone);
+        dao.upsert(ride);
+        RideStats.apply(dao, before, ride, zone);
+    }
+
+    private void delete(String rideId) {
+        delete(rideId, MANILA);
+    }
+
+    private void delete(String rideId, ZoneId zone) {
+        RideEntity before = dao.getRide(rideId);
+        dao.deleteSummary(rideId);
+        RideStats.apply(dao, before, null, zone);
+    }
+
+    @Test
+    public void keysSortAsTextAndUseIsoWeeks() {
+        // Late evening in Manila is still the previous day in UTC
+        long newYearsEve = at(2024, 12, 31, 23);
+        assertEquals("d:2024-12-31", RideStats.dayKey(newYearsEve, MANILA));
+        assertEquals("m:2024-12", RideStats.monthKey(newYearsEve, MANILA));
+        // Dec 31 2024 is a Tuesday, so it belongs to the first ISO week of 2025
+        assertEquals("w:2025-W01", RideStats.weekKey(newYearsEve, MANILA));
+        assertEquals("d:2025-01-01", RideStats.dayKey(at(2025, 1, 1, 7), MANILA));
+        assertTrue(RideStats.dayKey(at(2024, 3, 9, 8), MANILA).compareTo(RideStats.dayKey(at(2024, 3, 10, 8), MANILA)) < 0);
+    }
+
+    @Test
+    public void savingARideUpdatesEachOfItsBuckets() {
+        save(ride("a", at(2024, 3, 5, 7), 10.0, 1800));
+        save(ride("b", at(2024, 3, 5, 18), 5.0, 900));
+        save(ride("c", at(2024, 3, 20, 7), 20.0, 3600));
+
+        StatsBucketEntity day = dao.getBucket(USER, "d:2024-03-05");
+        assertEquals(2, day.rideCount);
+        assertEquals(15.0, day.distanceKm, 1e-9);
+        assertEquals(2700L, day.durationSeconds);
+
+        assertEquals(3, dao.getBucket(USER, "m:2024-03").rideCount);
+        assertEquals(35.0, dao.getBucket(USER, RideStats.ALL_TIME).distanceKm, 1e-9);
+        assertEquals(2, dao.getBucket(USER, RideStats.weekKey(at(2024, 3, 5, 7), MANILA)).rideCount);
+    }
+
+    @Test
+    public void deletingARideSubtractsItAndDropsEmptyBuckets() {
+        save(ride("a", at(2024, 3, 5, 7), 10.0, 1800));
+        save(ride("b", at(2024, 3, 6, 7), 5.0, 900));
+
+        delete("a");
+
+        assertNull(dao.getBucket(USER, "d:2024-03-05"));
+        assertEquals(1, dao.getBucket(USER, "m:2024-03").rideCount);
+        assertEquals(5.0, dao.getBucket(USER, RideStats.ALL_TIME).distanceKm, 1e-9);
+    }
+
+    @Test
+    public void aRideLeavesTheBucketsItWasAddedToAfterTheZoneChanges() {
+        ZoneId london = ZoneId.of("Europe/London");
+        // Early morning in Manila is still the previous evening in London
+        save(ride("a", at(2024, 3, 5, 7), 10.0, 1800));
+        assertEquals("2024-03-05", dao.getRide("a").localDate);
+
+        // A pull of the same ride keeps its day
+        RideEntity echoed = ride("a", at(2024, 3, 5, 7), 10.0, 1800);
+        echoed.updatedAt = 5_000L;
+        save(echoed, london);
+        assertEquals("2024-03-05", dao.getRide("a").localDate);
+
+        delete("a", london);
+
+        assertNull(dao.getBucket(USER, "d:2024-03-05"));
+        assertNull(dao.getBucket(USER, "d:2024-03-04"));
+        assertNull(dao.getBucket(USER, RideStats.ALL_TIME));
+    }
+
+    @Test
+    public void recordsFallBackToTheNextBestWhenTheHolderIsRemoved() {
+        save(ride("short", at(2024, 3, 5, 7), 10.0, 3600));
+        save(ride("long", at(2024, 3, 6, 7), 40.0, 7200));
+        assertEquals("long", dao.getRecord(USER, RideStats.LONGEST_DISTANCE).rideId);
+        assertEquals("long", dao.getRecord(USER, RideStats.LONGEST_DURATION).rideId);
+
+        delete("long");
+
+        StatsRecordEntity longest = dao.getRecord(USER, RideStats.LONGEST_DISTANCE);
+        assertEquals("short", longest.rideId);
+        assertEquals(10.0, longest.value, 1e-9);
+
+        delete("short");
+        assertNull(dao.getRecord(USER, RideStats.LONGEST_DISTANCE));
+        assertNull(dao.getBucket(USER, RideStats.ALL_TIME));
+    }
+
+    @Test
+    public void recordHolderThatShrinksIsRecomputed() {
+        save(ride("a", at(2024, 3, 5, 7), 30.0, 3600));
+        save(ride("b", at(2024, 3, 6, 7), 20.0, 3600));
+
+        save(ride("a", at(2024, 3, 5, 7), 15.0, 3600));
+
+        assertEquals("b", dao.getRecord(USER, RideStats.LONGEST_DISTANCE).rideId);
+        assertEquals(35.0, dao.getBucket(USER, RideStats.ALL_TIME).distanceKm, 1e-9);
+        assertEquals(2, dao.getBucket(USER, RideStats.ALL_TIME).rideCount);
+    }
+
+    @Test
+    public void reSavingUnchangedStatsTouchesNothing() {
+        RideEntity first = ride("a", at(2024, 3, 5, 7), 10.0, 1800);
+        save(first);
+        StatsBucketEntity allTime = dao.getBucket(USER, RideStats.ALL_TIME);
+
+        // What a pull sees after the ride's own upload: same stats, new server time
+        RideEntity echoed = ride("a", first.timestamp, 10.0, 1800);
+        echoed.updatedAt = 5_000L;
+        echoed.syncState = RideEntity.SYNCED;
+        save(echoed);
+
+        assertSame(allTime, dao.getBucket(USER, RideStats.ALL_TIME));
+        assertEquals(1, allTime.rideCount);
+    }
+
+    @Test
+    public void rebuildingInOnePassMatchesIncrementalUpdates() {
+        RideEntity[] rides = {
+                ride("a", at(2024, 1, 1, 7), 12.0, 2400),
+                ride("b", at(2024, 1, 1, 17), 12.0, 1800),
+                ride("c", at(2024, 2, 14, 6), 12.0, 5400),
+                ride("d", at(2024, 12, 31, 20), 8.0, 1500),
+        };
+        Map<String, StatsBucketEntity> buckets = new HashMap<>();
+        Map<String, StatsRecordEntity> records = new HashMap<>();
+        for (RideEntity ride : rides) {
+            save(ride);
+            RideStats.accumulate(buckets, records, ride, MANILA);
+        }
+
+        assertEquals(dao.buckets.keySet(), buckets.keySet());
+        for (Map.Entry<String, StatsBucketEntity> entry : buckets.entrySet()) {
+            StatsBucketEntity incremental = dao.buckets.get(entry.getKey());
+            assertEquals(incremental.rideCount, entry.getValue().rideCount);
+            assertEquals(incremental.distanceKm, entry.getValue().distanceKm, 1e-9);
+            assertEquals(incremental.durationSeconds, entry.getValue().durationSeconds);
+        }
+        for (String kind : RideStats.RECORD_KINDS) {
+            assertEquals(dao.getRecord(USER, kind).rideId, records.get(USER + "/" + kind).rideId);
+        }
+        // All three share the longest distance; the earliest keeps the record
+        assertEquals("a", records.get(USER + "/" + RideStats.LONGEST_DISTANCE).rideId);
+    }
+}
@@ -0,0 +1,315 @@
+package com.example.padyakol.data;
+
+import com.example.padyakol.route.Route;
+import com.example.padyakol.route.RouteCodec;
+import com.example.padyakol.route.TileGrid;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RideSyncerTest {
+
+    private static final String USER = "user-1";
+    private static final byte[] ROUTE = RouteCodec.encode(new double[]{14.6, 14.61}, new double[]{121.0, 121.01}, null, 2);
+
+    private FakeRideDao dao;
+    private FakeRemoteRideSource remote;
+    private RideSyncer syncer;
+
+    @Before
+    public void setUp() {
+        dao = new FakeRideDao();
+        remote = new FakeRemoteRideSource();
+        syncer = new RideSyncer(dao, remote);
+    }
+
+    private RideEntity localRide(String id, double km) {
+        RideEntity entity = new RideEntity();
+        entity.rideId = id;
+        entity.userId = USER;
+        entity.distanceKm = km;
+        entity.timestamp = 500L;
+        entity.syncState = RideEntity.PENDING_UPLOAD;
+        Route route = RouteCodec.decode(ROUTE);
+        dao.insertRide(entity, new RouteEntity(id, ROUTE), TileGrid.cellsAlong(route.lats(), route.lngs(), route.size()));
+        return entity;
+    }
+
+    @Test
+    public void pushesPendingRidesUnderTheirLocalId() throws Exception {
+        localRide("a", 5.0);
+        localRide("b", 7.5);
+
+        syncer.sync(USER, 0L);
+
+        assertTrue(remote.docs.containsKey("a"));
+        assertTrue(remote.docs.containsKey("b"));
+        assertEquals(12.5, remote.totalKm, 1e-9);
+        assertEquals(RideEntity.SYNCED, dao.getRide("a").syncState);
+        assertTrue(dao.getPendingUploads(USER).isEmpty());
+    }
+
+    @Test
+    public void aRideKeepsItsStatsDayOnTheServerAndOtherDevices() throws Exception {
+        // Pinned to a day other than its timestamp's in this zone, as when recorded elsewhere
+        localRide("a", 5.0).localDate = "1999-12-31";
+        syncer.sync(USER, 0L);
+        assertEquals("1999-12-31", remote.docs.get("a").getLocalDate());
+
+        // Another device, in another zone, pulls it
+        FakeRideDao other = new FakeRideDao();
+        new RideSyncer(other, remote).sync(USER, 0L);
+        assertEquals("1999-12-31", other.getRide("a").localDate);
+        assertEquals(1, other.getBucket(USER, "d:1999-12-31").rideCount);
+    }
+
+    @Test
+    public void aDeletedRideLeavesTheServerOnTheNextSync() throws Exception {
+        localRide("a", 5.0);
+        localRide("b", 7.5);
+        syncer.sync(USER, 0L);
+        assertEquals("b", remote.records.get(RideStats.LONGEST_DISTANCE).rideId);
+
+        dao.removeRide(USER, "b");
+        remote.failNextDelete = true;
+        try {
+            syncer.sync(USER, 0L);
+            fail("Expected the delete to fail");
+        } catch (Exception expected) {
+        }
+        assertEquals(List.of("b"), dao.getPendingDeletions(USER));
+        // Still on the server, but not pulled back while the delete is queued
+        syncer.sync(USER, 0L);
+
+        assertNull(dao.getRide("b"));
+        assertTrue(dao.getPendingDeletions(USER).isEmpty());
+        assertFalse(remote.docs.containsKey("b"));
+        assertFalse(remote.routes.containsKey("b"));
+        assertEquals(5.0, remote.totalKm, 1e-9);
+        assertEquals("a", remote.records.get(RideStats.LONGEST_DISTANCE).rideId);
+    }
+
+    @Test
+    public void replayingADeleteDoesNotSubtractTwice() throws Exception {
+        localRide("a", 5.0);
+        localRide("b", 7.5);
+        syncer.sync(USER, 0L);
+        dao.removeRide(USER, "a");
+
+        remote.delete(USER, List.of("a"), dao.getRecords(USER));
+        syncer.sync(USER, 0L);
+
+        assertEquals(7.5, remote.totalKm, 1e-9);
+    }
+
+    @Test
+    public void failedPushLeavesRidesPendingForTheRetry() throws Exception {
+        localRide("a", 5.0);
+        remote.failNextPush = true;
+
+        try {
+            syncer.sync(USER, 0L);
+            fail("Expected the push to fail");
+        } catch (Exception expected) {
+            // WorkManager turns this into Result.retry()
+        }
+        assertEquals(RideEntity.PENDING_UPLOAD, dao.getRide("a").syncState);
+
+        syncer.sync(USER, 0L);
+        assertEquals(RideEntity.SYNCED, dao.getRide("a").syncState);
+        assertEquals(5.0, remote.totalKm, 1e-9);
+    }
+
+    @Test
+    public void pullsOnlyDeltasSinceLastPull() throws Exception {
+        remote.putRemote("r1", 3.0);
+        long lastPull = syncer.sync(USER, 0L);
+        assertNotNull(dao.getRide("r1"));
+
+        dao.rows.clear();
+        remote.putRemote("r2", 4.0);
+        long next = syncer.sync(USER, lastPull);
+
+        assertNull("Already-pulled rides aren't fetched again", dao.getRide("r1"));
+        assertNotNull(dao.getRide("r2"));
+        assertTrue(next > lastPull);
+    }
+
+    @Test
+    public void remoteCopyNeverOverwritesPendingLocalRide() throws Exception {
+        remote.putRemote("a", 99.0);
+        // The rider saves a ride with the same id while the sync is in flight
+        RideEntity[] local = new RideEntity[1];
+        remote.beforePull = () -> local[0] = localRide("a", 5.0);
+
+        syncer.sync(USER, 0L);
+
+        assertSame(local[0], dao.getRide("a"));
+        assertEquals(RideEntity.PENDING_UPLOAD, dao.getRide("a").syncState);
+    }
+
+    @Test
+    public void pushWritesRouteApartFromSummary() throws Exception {
+        localRide("a", 5.0);
+
+        syncer.sync(USER, 0L);
+
+        assertFalse("Summary must not carry the route", remote.docs.get("a").hasRoute());
+        assertArrayEquals(ROUTE, remote.routes.get("a"));
+    }
+
+    @Test
+    public void pulledSummariesDoNotFetchRoutes() throws Exception {
+        localRide("a", 5.0);
+        syncer.sync(USER, 0L);
+        dao.rows.clear();
+        dao.routes.clear();
+
+        syncer.sync(USER, 0L);
+
+        assertNotNull(dao.getRide("a"));
+        assertNull("Routes are only fetched when a ride is opened", dao.getRoute("a"));
+    }
+
+    @Test
+    public void legacyDocumentIsSplitOnPull() throws Exception {
+        remote.putLegacyRemote("old", ROUTE);
+
+        long lastPull = syncer.sync(USER, 0L);
+
+        assertArrayEquals(ROUTE, dao.getRoute("old").routeData);
+        assertArrayEquals(ROUTE, remote.routes.get("old"));
+        assertFalse(remote.docs.get("old").hasRoute());
+
+        // The rewrite shows up once more as a plain summary, and the local route is kept
+        syncer.sync(USER, lastPull);
+        assertArrayEquals(ROUTE, dao.getRoute("old").routeData);
+    }
+
+    @Test
+    public void liveChangeSkipsPendingRideAndReportsUpdateTime() throws Exception {
+        localRide("a", 5.0);
+        remote.putRemote("a", 99.0);
+        remote.putRemote("b", 3.0);
+
+        assertEquals(0L, syncer.applyRemote(USER, remote.docs.get("a")));
+        assertEquals(5.0, dao.getRide("a").distanceKm, 0);
+        assertEquals(remote.clock, syncer.applyRemote(USER, remote.docs.get("b")));
+        assertEquals(3.0, dao.getRide("b").distanceKm, 0);
+    }
+
+    @Test
+    public void remoteRemovalDeletesSummaryAndRoute() throws Exception {
+        localRide("a", 5.0);
+        syncer.sync(USER, 0L);
+
+        syncer.applyRemoteRemoval("a");
+
+        assertNull(dao.getRide("a"));
+        assertNull(dao.getRoute("a"));
+    }
+
+    @Test
+    public void remoteRemovalKeepsPendingRide() {
+        localRide("a", 5.0);
+
+        syncer.applyRemoteRemoval("a");
+
+        assertNotNull(dao.getRide("a"));
+        assertNotNull(dao.getRoute("a"));
+    }
+
+    @Test
+    public void largeHistoryIsPulledInBoundedPages() throws Exception {
+        int total = RideSyncer.PULL_PAGE_SIZE * 3 + 7;
+        for (int i = 0; i < total; i++) {
+            remote.putRemote("r" + i, 1.0);
+        }
+
+        long lastPull = syncer.sync(USER, 0L);
+
+        assertEquals(total, dao.rows.size());
+        assertEquals(RideSyncer.PULL_PAGE_SIZE, remote.largestPage);
+        // Three full pages, the short one, then the empty read that ends the loop
+        assertEquals(5, remote.pagesRead);
+        assertEquals(remote.clock, lastPull);
+    }
+
+    @Test
+    public void pulledRidesAreCountedOnceAndRecordsArePushed() throws Exception {
+        localRide("a", 5.0);
+        remote.putRemote("r1", 3.0);
+
+        long lastPull = syncer.sync(USER, 0L);
+        // The pull brings back "a" with a server time; it must not be counted again
+        remote.putRemote("r2", 4.0);
+        syncer.sync(USER, lastPull);
+        syncer.sync(USER, 0L);
+
+        StatsBucketEntity allTime = dao.getBucket(USER, RideStats.ALL_TIME);
+        assertEquals(3, allTime.rideCount);
+        assertEquals(12.0, allTime.distanceKm, 1e-9);
+        assertEquals("a", remote.records.get(RideStats.LONGEST_DISTANCE).rideId);
+    }
+
+    @Test
+    public void replayAfterALostReplyDoesNotCountTwice() throws Exception {
+        localRide("a", 5.0);
+        remote.loseNextAck = true;
+
+        try {
+            syncer.sync(USER, 0L);
+            fail("Expected the push to fail");
+        } catch (Exception expected) {
+            // Committed on the server, but the device can't know that
+        }
+        assertEquals(RideEntity.PENDING_UPLOAD, dao.getRide("a").syncState);
+
+        syncer.sync(USER, 0L);
+
+        assertEquals(RideEntity.SYNCED, dao.getRide("a").syncState);
+        assertEquals(5.0, remote.totalKm, 1e-9);
+    }
+
+    @Test
+    public void offlineBacklogIsPushedInBatches() throws Exception {
+        int total = RideSyncer.PUSH_BATCH_SIZE * 2 + 3;
+        for (int i = 0; i < total; i++) {
+            localRide("p" + i, 1.0);
+        }
+
+        syncer.sync(USER, 0L);
+
+        assertEquals(3, remote.pushCalls);
+        assertEquals(RideSyncer.PUSH_BATCH_SIZE, remote.largestPush);
+        assertEquals(total, remote.docs.size());
+        assertEquals(total, remote.totalKm, 1e-9);
+        assertTrue(dao.getPendingUploads(USER).isEmpty());
+    }
+
+    @Test
+    public void cellsTravelWithTheSummarySoPulledRidesAreIndexed() throws Exception {
+        localRide("a", 5.0);
+        syncer.sync(USER, 0L);
+        assertNotNull(remote.docs.get("a").getCells());
+
+        // Another device: only the summary comes down, never the route
+        FakeRideDao other = new FakeRideDao();
+        new RideSyncer(other, remote).sync(USER, 0L);
+
+        assertNull(other.getRoute("a"));
+        assertEquals(dao.getCells("a"), other.getCells("a"));
+        assertEquals(Collections.singletonList("a"), other.findRidesNear(USER, 14.605, 121.005, 200));
+    }
+
+    @Test
+    public void nothingToDoIsCheap() throws Exception {
+        assertEquals(42L, syncer.sync(USER, 42L));
+        assertEquals(0, remote.pushCalls);
+    }
+}
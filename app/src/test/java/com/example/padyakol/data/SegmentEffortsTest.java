@@ -0,0 +1,150 @@
+package com.example.padyakol.data;
+
+import com.example.padyakol.route.Route;
+import com.example.padyakol.route.RouteCodec;
+import com.example.padyakol.route.TestRoutes;
+import com.example.padyakol.route.TileGrid;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SegmentEffortsTest {
+
+    private static final String USER = "user-1";
+    private static final long START = 1_735_000_000_000L;
+
+    // Metres east/north of the test origin in Manila
+    private static final double[][] ROAD = {{0, 0}, {1000, 0}, {1000, 800}, {2000, 800}};
+    private static final double[][] SEGMENT = {{500, 0}, {1000, 0}, {1000, 800}, {1500, 800}};
+    private static final double[][] ELSEWHERE = {{5000, 5000}, {7000, 5000}};
+
+    private FakeRideDao rideDao;
+    private FakeSegmentDao segmentDao;
+    private SegmentEfforts efforts;
+
+    @Before
+    public void setUp() {
+        rideDao = new FakeRideDao();
+        segmentDao = new FakeSegmentDao();
+        rideDao.segments = segmentDao;
+        efforts = new SegmentEfforts(segmentDao, rideDao);
+    }
+
+    // Stores a ride like RideRepository.writeRide, without matching it
+    private long[] store(String rideId, Route route) {
+        RideEntity entity = new RideEntity();
+        entity.rideId = rideId;
+        entity.userId = USER;
+        entity.timestamp = route.getTime(route.size() - 1);
+        long[] cells = TileGrid.cellsAlong(route.lats(), route.lngs(), route.size());
+        byte[] routeData = RouteCodec.encode(route.lats(), route.lngs(), route.times(), route.size());
+        rideDao.insertRide(entity, new RouteEntity(rideId, routeData), cells);
+        return cells;
+    }
+
+    private int save(String rideId, Route route) {
+        long[] cells = store(rideId, route);
+        return efforts.matchRide(USER, rideId, RouteCodec.decode(rideDao.getRoute(rideId).routeData), cells);
+    }
+
+    private SegmentEntity segment(double[][] waypoints) {
+        return efforts.createSegment(USER, "Bend", TestRoutes.path(waypoints), START);
+    }
+
+    @Test
+    public void newRidesAreTimedOnTheSegmentsTheyCover() {
+        SegmentEntity bend = segment(SEGMENT);
+
+        assertEquals(1, save("slow", TestRoutes.ride(ROAD, 15.0, START, 5.0, 1L)));
+        assertEquals(1, save("fast", TestRoutes.ride(ROAD, 30.0, START + 86_400_000L, 5.0, 2L)));
+        assertEquals(0, save("other", TestRoutes.ride(ELSEWHERE, 30.0, START, 5.0, 3L)));
+
+        List<SegmentEffortEntity> board = segmentDao.leaderboard(bend.segmentId);
+        assertEquals(2, board.size());
+        assertEquals("fast", board.get(0).rideId);
+        // 1800 m at 30 km/h
+        assertEquals(216, board.get(0).elapsedSeconds, 6);
+        assertEquals("slow", board.get(1).rideId);
+    }
+
+    @Test
+    public void aNewSegmentIsTimedOnPastRides() {
+        store("a", TestRoutes.ride(ROAD, 20.0, START, 5.0, 1L));
+        store("b", TestRoutes.ride(ROAD, 25.0, START + 86_400_000L, 5.0, 2L));
+        store("other", TestRoutes.ride(ELSEWHERE, 20.0, START, 5.0, 3L));
+        // Synced from another device and never opened here
+        store("remote", TestRoutes.ride(ROAD, 40.0, START, 5.0, 4L));
+        rideDao.routes.remove("remote");
+
+        SegmentEntity bend = segment(SEGMENT);
+
+        List<SegmentEffortEntity> board = segmentDao.leaderboard(bend.segmentId);
+        assertEquals(2, board.size());
+        assertEquals("b", board.get(0).rideId);
+        assertEquals("a", board.get(1).rideId);
+        assertEquals(1800.0, bend.distanceMeters, 1.0);
+    }
+
+    @Test
+    public void deletingARideOrSegmentDropsItsEfforts() {
+        SegmentEntity bend = segment(SEGMENT);
+        save("a", TestRoutes.ride(ROAD, 20.0, START, 5.0, 1L));
+        save("b", TestRoutes.ride(ROAD, 25.0, START, 5.0, 2L));
+
+        rideDao.deleteRide("a");
+        assertEquals(1, segmentDao.leaderboard(bend.segmentId).size());
+
+        efforts.deleteSegment(bend.segmentId);
+        assertTrue(segmentDao.efforts.isEmpty());
+        assertEquals(0, save("c", TestRoutes.ride(ROAD, 25.0, START, 5.0, 3L)));
+    }
+
+    @Test
+    public void longRidesQueryTheirCellsInChunks() {
+        // 280 km diagonally, as a multi-day tour would be saved: more cells than fit in one IN (...) list
+        double[][] road = {{0, 0}, {200_000, 200_000}};
+        Route ride = TestRoutes.ride(road, 60.0, START, 0.0, 1L);
+        segment(new double[][]{{150_000, 150_000}, {151_000, 151_000}});
+
+        long[] cells = store("long", ride);
+        assertTrue(cells.length > SegmentEfforts.MAX_QUERY_CELLS);
+        assertEquals(1, efforts.matchRide(USER, "long", ride, cells));
+        assertEquals(2, segmentDao.cellQueries);
+    }
+
+    // With thousands of segments and rides, only the few that share both ends are matched
+    @Test
+    public void pruningKeepsMatchingToAHandfulOfCandidates() {
+        Random random = new Random(17);
+        for (int i = 0; i < 3_000; i++) {
+            double x = (random.nextDouble() - 0.5) * 30_000;
+            double y = (random.nextDouble() - 0.5) * 30_000;
+            segment(new double[][]{{x, y}, {x + (random.nextDouble() - 0.5) * 2_000, y + (random.nextDouble() - 0.5) * 2_000}});
+        }
+        for (int i = 0; i < 2_000; i++) {
+            double x = (random.nextDouble() - 0.5) * 30_000;
+            double y = (random.nextDouble() - 0.5) * 30_000;
+            store("past" + i, TestRoutes.ride(new double[][]{{x, y}, {x + 3_000, y + 1_000}}, 20.0, START, 5.0, i));
+        }
+
+        // A new segment reads the route of each candidate ride to match it
+        rideDao.routeReads = 0;
+        SegmentEntity bend = segment(SEGMENT);
+        assertTrue(segmentDao.leaderboard(bend.segmentId).isEmpty());
+        assertTrue(rideDao.routeReads < 20);
+
+        // A fresh instance has no matchers yet, so it loads one per candidate segment it matches
+        Route ride = TestRoutes.ride(ROAD, 20.0, START, 5.0, 99L);
+        long[] cells = store("new", ride);
+        efforts = new SegmentEfforts(segmentDao, rideDao);
+        segmentDao.segmentsLoaded = 0;
+        efforts.matchRide(USER, "new", ride, cells);
+        assertEquals(1, segmentDao.leaderboard(bend.segmentId).size());
+        assertTrue(segmentDao.segmentsLoaded < 20);
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.padyakol.map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class DiskLruTest {
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("disk-lru").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) for (File file : files) file.delete();
+        dir.delete();
+    }
+
+    private File write(DiskLru index, String name) throws IOException {
+        File file = new File(dir, name);
+        Files.write(file.toPath(), new byte[]{1});
+        if (index != null) index.added(file);
+        return file;
+    }
+
+    @Test
+    public void evictsTheLeastRecentlyReadNotTheOldestWritten() throws IOException {
+        DiskLru index = new DiskLru(dir, 3);
+        File a = write(index, "a");
+        File b = write(index, "b");
+        write(index, "c");
+
+        index.touch(a);
+        write(index, "d");
+
+        assertTrue(a.exists());
+        assertFalse(b.exists());
+        assertEquals(3, dir.listFiles().length);
+    }
+
+    @Test
+    public void picksUpWhatIsAlreadyOnDiskOldestFirst() throws IOException {
+        File old = write(null, "old");
+        File recent = write(null, "recent");
+        old.setLastModified(1_000_000L);
+        recent.setLastModified(2_000_000L);
+        write(null, "half-written.tmp");
+
+        DiskLru index = new DiskLru(dir, 2);
+        assertEquals(2, index.size());
+        write(index, "new");
+
+        assertFalse(old.exists());
+        assertTrue(recent.exists());
+        assertFalse(new File(dir, "half-written.tmp").exists());
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.padyakol.map;
+
+import com.example.padyakol.route.TrackStore;
+import com.google.android.gms.maps.model.LatLng;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RoutePolylineRendererTest {
+
+    // Records every chunk and how many vertices each call pushed to the "map"
+    private static class FakeSurface implements RoutePolylineRenderer.Surface {
+        final List<FakeChunk> chunks = new ArrayList<>();
+        long verticesUploaded = 0;
+
+        @Override
+        public RoutePolylineRenderer.Chunk addChunk(List<LatLng> points) {
+            FakeChunk chunk = new FakeChunk(this);
+            chunk.setPoints(points);
+            chunks.add(chunk);
+            return chunk;
+        }
+    }
+
+    private static class FakeChunk implements RoutePolylineRenderer.Chunk {
+        final FakeSurface surface;
+        List<LatLng> points = new ArrayList<>();
+        boolean removed = false;
+
+        FakeChunk(FakeSurface surface) {
+            this.surface = surface;
+        }
+
+        @Override
+        public void setPoints(List<LatLng> points) {
+            this.points = new ArrayList<>(points);
+            surface.verticesUploaded += points.size();
+        }
+
+        @Override
+        public void remove() {
+            removed = true;
+        }
+    }
+
+    private static LatLng point(int i) {
+        return new LatLng(14.5 + i * 1e-5, 121.0 + i * 1e-5);
+    }
+
+    @Test
+    public void chunksJoinIntoTheOriginalPath() {
+        FakeSurface surface = new FakeSurface();
+        RoutePolylineRenderer renderer = new RoutePolylineRenderer(surface, 10);
+        TrackStore track = new TrackStore();
+        List<LatLng> path = new ArrayList<>();
+        for (int i = 0; i < 95; i++) {
+            LatLng p = point(i);
+            track.append(p.latitude, p.longitude, i * 1_000L, 0f, 0f);
+            path.add(p);
+        }
+        renderer.syncTo(track);
+
+        List<LatLng> drawn = new ArrayList<>();
+        for (FakeChunk chunk : surface.chunks) {
+            // Every chunk after the first repeats the previous chunk's last point
+            int from = drawn.isEmpty() ? 0 : 1;
+            drawn.addAll(chunk.points.subList(from, chunk.points.size()));
+        }
+        assertEquals(path, drawn);
+        assertEquals(95, renderer.getRenderedCount());
+    }
+
+    @Test
+    public void syncOnlyDrawsMissingPoints() {
+        FakeSurface surface = new FakeSurface();
+        RoutePolylineRenderer renderer = new RoutePolylineRenderer(surface, 10);
+        TrackStore track = new TrackStore();
+        for (int i = 0; i < 5; i++) track.append(point(i).latitude, point(i).longitude, i, 0f, 0f);
+        renderer.syncTo(track);
+        long before = surface.verticesUploaded;
+
+        renderer.syncTo(track);
+        assertEquals(before, surface.verticesUploaded);
+    }
+
+    @Test
+    public void clearRemovesEveryChunk() {
+        FakeSurface surface = new FakeSurface();
+        RoutePolylineRenderer renderer = new RoutePolylineRenderer(surface, 4);
+        for (int i = 0; i < 20; i++) renderer.append(point(i));
+
+        renderer.clear();
+        for (FakeChunk chunk : surface.chunks) {
+            assertTrue(chunk.removed);
+        }
+        assertEquals(0, renderer.getRenderedCount());
+    }
+
+    // Benchmark: vertices uploaded per fix must not depend on how long the ride already is
+    @Test
+    public void perUpdateCostStaysFlatAsPathGrows() {
+        int chunkSize = RoutePolylineRenderer.DEFAULT_CHUNK_SIZE;
+        long shortRide = costOfNextUpdates(1_000, 1_000, chunkSize);
+        long longRide = costOfNextUpdates(200_000, 1_000, chunkSize);
+
+        assertEquals(shortRide, longRide);
+        // Averaged over a window, each fix re-uploads about half a chunk at most
+        assertTrue(longRide / 1_000 <= chunkSize);
+    }
+
+    private static long costOfNextUpdates(int existingPoints, int updates, int chunkSize) {
+        FakeSurface surface = new FakeSurface();
+        RoutePolylineRenderer renderer = new RoutePolylineRenderer(surface, chunkSize);
+        // Start the measurement at the same offset inside a chunk for both rides
+        int aligned = existingPoints - existingPoints % (chunkSize - 1);
+        for (int i = 0; i < aligned; i++) renderer.append(point(i));
+
+        long before = surface.verticesUploaded;
+        for (int i = 0; i < updates; i++) renderer.append(point(aligned + i));
+        return surface.verticesUploaded - before;
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.padyakol.route;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class HeatGridTest {
+
+    private static final double[][] ROAD = {{0, 0}, {1000, 0}, {1000, 800}, {2000, 800}};
+
+    // Global bin coordinates at the tile's zoom, as "x/y"
+    private static Set<String> globalBins(List<HeatGrid.TileBins> tiles, int zoom, int shift) {
+        Set<String> result = new HashSet<>();
+        for (HeatGrid.TileBins tile : tiles) {
+            if (tile.zoom != zoom) continue;
+            for (int bin : tile.bins) {
+                long gx = (long) tile.x * HeatGrid.BINS + bin % HeatGrid.BINS;
+                long gy = (long) tile.y * HeatGrid.BINS + bin / HeatGrid.BINS;
+                result.add((gx >> shift) + "/" + (gy >> shift));
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void everyLevelIsTheParentOfTheOneBelow() {
+        Route ride = TestRoutes.ride(ROAD, 20.0, 0L, 6.0, 1L);
+
+        List<HeatGrid.TileBins> tiles = HeatGrid.binsAlong(ride.lats(), ride.lngs(), ride.size());
+
+        for (int zoom = HeatGrid.MIN_ZOOM + 1; zoom <= HeatGrid.MAX_ZOOM; zoom++) {
+            assertEquals(globalBins(tiles, zoom, 1), globalBins(tiles, zoom - 1, 0));
+        }
+        // 2.3 km of road in bins of ~9 m, so a few hundred at the most detailed level
+        int detailed = globalBins(tiles, HeatGrid.MAX_ZOOM, 0).size();
+        assertTrue(detailed > 200 && detailed < 600);
+    }
+
+    @Test
+    public void countsRoundTripThroughTheirPackedForm() {
+        Random random = new Random(4);
+        int[] counts = new int[HeatGrid.BINS * HeatGrid.BINS];
+        for (int i = 0; i < 300; i++) {
+            counts[random.nextInt(counts.length)] = 1 + random.nextInt(500);
+        }
+
+        assertArrayEquals(counts, HeatGrid.unpack(HeatGrid.pack(counts)));
+        assertArrayEquals(new int[counts.length], HeatGrid.unpack(new byte[0]));
+    }
+
+    @Test
+    public void removingEveryRideEmptiesTheTile() {
+        int[] counts = new int[HeatGrid.BINS * HeatGrid.BINS];
+        assertTrue(HeatGrid.add(counts, new int[]{5, 6}, 1));
+        assertTrue(HeatGrid.add(counts, new int[]{6}, 1));
+        assertTrue(HeatGrid.add(counts, new int[]{5, 6}, -1));
+        assertEquals(1, counts[6]);
+
+        assertFalse(HeatGrid.add(counts, new int[]{6, 7}, -1));
+        assertEquals(0, counts[7]);
+    }
+
+    @Test
+    public void deeperZoomsDrawPartOfTheMostDetailedTile() {
+        int[] counts = new int[HeatGrid.BINS * HeatGrid.BINS];
+        counts[10 * HeatGrid.BINS + 20] = 3;
+        int z = HeatGrid.MAX_ZOOM;
+
+        int[] whole = HeatGrid.render(counts, z, 100, 200, 0x2196F3, 0xFF7043);
+        // 4 px per bin
+        assertNotEquals(0, whole[41 * HeatGrid.TILE_PX + 81]);
+        assertEquals(0, whole[41 * HeatGrid.TILE_PX + 85]);
+
+        // One level deeper the top-left quarter is drawn at 8 px per bin; the top-right has nothing
+        assertArrayEquals(new int[]{z, 100, 200}, HeatGrid.sourceTile(z + 1, 200, 400));
+        int[] topLeft = HeatGrid.render(counts, z + 1, 200, 400, 0x2196F3, 0xFF7043);
+        assertNotEquals(0, topLeft[87 * HeatGrid.TILE_PX + 167]);
+        int[] topRight = HeatGrid.render(counts, z + 1, 201, 400, 0x2196F3, 0xFF7043);
+        for (int pixel : topRight) assertEquals(0, pixel);
+
+        assertNull(HeatGrid.sourceTile(HeatGrid.MIN_ZOOM - 1, 0, 0));
+        assertNull(HeatGrid.sourceTile(HeatGrid.MAX_RENDER_ZOOM + 1, 0, 0));
+    }
+
+    @Test
+    public void busierBinsAreHotterAndMoreOpaque() {
+        int once = HeatGrid.colorFor(1, 0x2196F3, 0xFF7043);
+        int often = HeatGrid.colorFor(HeatGrid.SATURATION_RIDES, 0x2196F3, 0xFF7043);
+
+        assertTrue((once >>> 24) < (often >>> 24));
+        assertEquals(0xFF7043, often & 0xFFFFFF);
+    }
+
+    // A long ride lands on every level of the pyramid
+    @Test
+    public void longRideBinsAcrossThePyramid() {
+        double[][] trace = RouteSimplifierTest.cityRide(20_000, 42L);
+        int[] kept = RouteSimplifier.simplify(trace[0], trace[1], trace[0].length, RouteSimplifier.DEFAULT_TOLERANCE_METERS);
+        double[] lats = new double[kept.length];
+        double[] lngs = new double[kept.length];
+        for (int i = 0; i < kept.length; i++) {
+            lats[i] = trace[0][kept[i]];
+            lngs[i] = trace[1][kept[i]];
+        }
+
+        List<HeatGrid.TileBins> tiles = HeatGrid.binsAlong(lats, lngs, kept.length);
+
+        boolean[] levels = new boolean[HeatGrid.MAX_ZOOM + 1];
+        for (HeatGrid.TileBins tile : tiles) levels[tile.zoom] = true;
+        for (int zoom = HeatGrid.MIN_ZOOM; zoom <= HeatGrid.MAX_ZOOM; zoom++) {
+            assertTrue("No tiles at zoom " + zoom, levels[zoom]);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.padyakol.route;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class RouteCodecTest {
+
+    private static final double QUANTUM = 0.5e-5 + 1e-12;
+
+    @Test
+    public void roundTripsCoordinatesWithinQuantization() {
+        double[][] trace = RouteSimplifierTest.cityRide(3_000, 3L);
+        byte[] data = RouteCodec.encode(trace[0], trace[1], null, 3_000);
+        Route route = RouteCodec.decode(data);
+
+        assertEquals(3_000, route.size());
+        assertFalse(route.hasTimes());
+        for (int i = 0; i < route.size(); i++) {
+            assertEquals(trace[0][i], route.getLat(i), QUANTUM);
+            assertEquals(trace[1][i], route.getLng(i), QUANTUM);
+        }
+    }
+
+    @Test
+    public void roundTripsTimestampsExactly() {
+        double[] lats = {14.5995, 14.6001, 14.6010};
+        double[] lngs = {120.9842, 120.9850, -0.0001};
+        long[] times = {1_735_000_000_000L, 1_735_000_001_000L, 1_735_000_000_500L};
+        Route route = RouteCodec.decode(RouteCodec.encode(lats, lngs, times, 3));
+
+        assertTrue(route.hasTimes());
+        assertArrayEquals(times, Arrays.copyOf(route.times(), 3));
+        assertEquals(-0.0001, route.getLng(2), QUANTUM);
+    }
+
+    @Test
+    public void encodesOnlySelectedIndices() {
+        double[] lats = {1, 2, 3, 4};
+        double[] lngs = {10, 20, 30, 40};
+        Route route = RouteCodec.decode(RouteCodec.encodeSelected(lats, lngs, null, new int[]{0, 3}));
+
+        assertEquals(2, route.size());
+        assertEquals(4, route.getLat(1), QUANTUM);
+        assertEquals(40, route.getLng(1), QUANTUM);
+    }
+
+    @Test
+    public void emptyRoute() {
+        Route route = RouteCodec.decode(RouteCodec.encode(new double[0], new double[0], null, 0));
+        assertTrue(route.isEmpty());
+    }
+
+    @Test
+    public void typicalRideIsCompact() {
+        double[][] trace = RouteSimplifierTest.cityRide(10_000, 5L);
+        long[] times = new long[10_000];
+        for (int i = 0; i < times.length; i++) times[i] = 1_735_000_000_000L + i * 1_000L;
+
+        byte[] data = RouteCodec.encode(trace[0], trace[1], times, 10_000);
+        // Two ~2 byte coordinate deltas plus a 2 byte time delta per point
+        assertTrue(data.length < 10_000 * 7);
+    }
+
+    @Test
+    public void zigZagRoundTrips() {
+        long[] values = {0, 1, -1, 63, -64, Long.MAX_VALUE, Long.MIN_VALUE};
+        for (long v : values) {
+            assertEquals(v, RouteCodec.unZigZag(RouteCodec.zigZag(v)));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownVersion() {
+        RouteCodec.decode(new byte[]{9, 0, 0});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTruncatedData() {
+        byte[] data = RouteCodec.encode(new double[]{14.6, 14.7}, new double[]{121, 121.1}, null, 2);
+        RouteCodec.decode(Arrays.copyOf(data, data.length - 2));
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.padyakol.route;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RoutePyramidTest {
+
+    private static Route cityRoute(int n) {
+        double[][] ride = RouteSimplifierTest.cityRide(n, 11L);
+        return new Route(ride[0], ride[1], null, n);
+    }
+
+    @Test
+    public void levelsShrinkDownToTheMinimum() {
+        RoutePyramid pyramid = RoutePyramid.build(cityRoute(20_000), RouteSimplifier.DEFAULT_TOLERANCE_METERS);
+
+        assertEquals(20_000, pyramid.size(0));
+        assertTrue(pyramid.levelCount() > 2);
+        for (int level = 1; level < pyramid.levelCount(); level++) {
+            assertTrue(pyramid.size(level) < pyramid.size(level - 1));
+            assertTrue(pyramid.tolerance(level) > pyramid.tolerance(level - 1));
+        }
+        assertTrue(pyramid.size(pyramid.levelCount() - 1) <= RoutePyramid.MIN_LEVEL_POINTS);
+    }
+
+    @Test
+    public void levelsKeepTheEndpoints() {
+        Route route = cityRoute(5_000);
+        RoutePyramid pyramid = RoutePyramid.build(route, 4.0);
+        for (int level = 0; level < pyramid.levelCount(); level++) {
+            int last = pyramid.size(level) - 1;
+            assertEquals(route.getLat(0), pyramid.lats(level)[0], 0);
+            assertEquals(route.getLng(route.size() - 1), pyramid.lngs(level)[last], 0);
+        }
+    }
+
+    @Test
+    public void zoomingOutPicksCoarserLevels() {
+        RoutePyramid pyramid = RoutePyramid.build(cityRoute(20_000), 4.0);
+
+        int street = pyramid.levelFor(RoutePyramid.metersPerDp(18f, 14.6));
+        int city = pyramid.levelFor(RoutePyramid.metersPerDp(12f, 14.6));
+        int region = pyramid.levelFor(RoutePyramid.metersPerDp(8f, 14.6));
+
+        assertEquals(0, street);
+        assertTrue(city > street);
+        assertTrue(region >= city);
+        assertEquals(pyramid.levelCount() - 1, pyramid.levelFor(Double.MAX_VALUE));
+    }
+
+    @Test
+    public void visibleRunsCoverOnlyTheViewAndStayJoined() {
+        // Straight line west to east, then back again slightly further north
+        double[] lats = new double[200];
+        double[] lngs = new double[200];
+        for (int i = 0; i < 100; i++) {
+            lats[i] = 14.0;
+            lngs[i] = 121.0 + i * 0.01;
+            lats[199 - i] = 14.1;
+            lngs[199 - i] = 121.0 + i * 0.01;
+        }
+        RoutePyramid pyramid = RoutePyramid.build(new Route(lats, lngs, null, 200), 4.0);
+
+        // A box around lng 121.20..121.30 covering both legs
+        List<int[]> runs = pyramid.visibleRuns(0, 13.9, 121.2, 14.2, 121.3);
+
+        assertEquals(2, runs.size());
+        int drawn = 0;
+        for (int[] run : runs) {
+            drawn += run[1] - run[0] + 1;
+            // One point on each side lies outside the box
+            assertTrue(pyramid.lngs(0)[run[0]] < 121.2 || pyramid.lngs(0)[run[0]] > 121.3 || run[0] == 0);
+        }
+        assertTrue("Drew " + drawn + " of 200", drawn < 30);
+
+        assertTrue(pyramid.visibleRuns(0, 0, 0, 1, 1).isEmpty());
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.padyakol.route;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RouteSimplifierTest {
+
+    private static final double TOLERANCE = RouteSimplifier.DEFAULT_TOLERANCE_METERS;
+
+    @Test
+    public void straightLineKeepsOnlyEndpoints() {
+        int n = 500;
+        double[] lats = new double[n];
+        double[] lngs = new double[n];
+        for (int i = 0; i < n; i++) {
+            lats[i] = 14.55 + i * 1e-5;
+            lngs[i] = 121.02;
+        }
+        assertArrayEquals(new int[]{0, n - 1}, RouteSimplifier.simplify(lats, lngs, n, TOLERANCE));
+    }
+
+    @Test
+    public void cornerIsPreserved() {
+        // 100 points north, then 100 points east. The old every-3rd rule could drop the corner.
+        int n = 201;
+        double[] lats = new double[n];
+        double[] lngs = new double[n];
+        for (int i = 0; i <= 100; i++) {
+            lats[i] = 14.55 + i * 1e-5;
+            lngs[i] = 121.02;
+        }
+        for (int i = 101; i < n; i++) {
+            lats[i] = lats[100];
+            lngs[i] = 121.02 + (i - 100) * 1e-5;
+        }
+        assertArrayEquals(new int[]{0, 100, n - 1}, RouteSimplifier.simplify(lats, lngs, n, TOLERANCE));
+    }
+
+    @Test
+    public void tinyInputsAreReturnedAsIs() {
+        assertArrayEquals(new int[]{}, RouteSimplifier.simplify(new double[0], new double[0], 0, TOLERANCE));
+        assertArrayEquals(new int[]{0}, RouteSimplifier.simplify(new double[]{1}, new double[]{2}, 1, TOLERANCE));
+        assertArrayEquals(new int[]{0, 1},
+                RouteSimplifier.simplify(new double[]{1, 1.1}, new double[]{2, 2.1}, 2, TOLERANCE));
+    }
+
+    @Test
+    public void countLimitsTheInput() {
+        double[] lats = {14.55, 14.56, 14.57, 99, 99};
+        double[] lngs = {121.0, 121.0, 121.0, 99, 99};
+        assertArrayEquals(new int[]{0, 2}, RouteSimplifier.simplify(lats, lngs, 3, TOLERANCE));
+    }
+
+    // A recorded-style trace: fidelity is guaranteed and most points go away
+    @Test
+    public void noisyCityRideStaysWithinTolerance() {
+        double[][] trace = cityRide(20_000, 42L);
+        double[] lats = trace[0];
+        double[] lngs = trace[1];
+        int n = lats.length;
+
+        int[] kept = RouteSimplifier.simplify(lats, lngs, n, TOLERANCE);
+
+        assertEquals(0, kept[0]);
+        assertEquals(n - 1, kept[kept.length - 1]);
+        // The old every-3rd-point rule would keep n / 3
+        assertTrue(kept.length < n / 3);
+        assertTrue(maxDeviationMeters(lats, lngs, kept) <= TOLERANCE + 1e-6);
+    }
+
+    @Test
+    public void largerToleranceKeepsFewerPoints() {
+        double[][] trace = cityRide(5_000, 7L);
+        int fine = RouteSimplifier.simplify(trace[0], trace[1], 5_000, 2.0).length;
+        int coarse = RouteSimplifier.simplify(trace[0], trace[1], 5_000, 20.0).length;
+        assertTrue(coarse < fine);
+    }
+
+    @Test
+    public void streamingKeepsTheSameBoundInOnePass() {
+        double[][] trace = cityRide(20_000, 42L);
+        int n = trace[0].length;
+        // The point's index goes in as its time, so the kept indices come back out
+        int[] kept = new int[n];
+        int[] count = {0};
+        RouteSimplifier.Streaming streaming = new RouteSimplifier.Streaming(TOLERANCE, (lat, lng, time) -> kept[count[0]++] = (int) time);
+        for (int i = 0; i < n; i++) {
+            streaming.add(trace[0][i], trace[1][i], i);
+        }
+        streaming.finish();
+        int[] indices = Arrays.copyOf(kept, count[0]);
+
+        assertEquals(0, indices[0]);
+        assertEquals(n - 1, indices[indices.length - 1]);
+        assertTrue(maxDeviationMeters(trace[0], trace[1], indices) <= TOLERANCE + 1e-6);
+        int batch = RouteSimplifier.simplify(trace[0], trace[1], n, TOLERANCE).length;
+        assertTrue(indices.length < batch * 2);
+    }
+
+    // Largest distance from any original point to the simplified segment that replaced it
+    private static double maxDeviationMeters(double[] lats, double[] lngs, int[] kept) {
+        double mPerLng = GeoMath.metersPerDegreeLng(lats[0]);
+        double worst = 0;
+        for (int k = 0; k + 1 < kept.length; k++) {
+            int a = kept[k];
+            int b = kept[k + 1];
+            double ax = (lngs[a] - lngs[0]) * mPerLng, ay = (lats[a] - lats[0]) * GeoMath.METERS_PER_DEGREE;
+            double bx = (lngs[b] - lngs[0]) * mPerLng, by = (lats[b] - lats[0]) * GeoMath.METERS_PER_DEGREE;
+            for (int i = a + 1; i < b; i++) {
+                double px = (lngs[i] - lngs[0]) * mPerLng, py = (lats[i] - lats[0]) * GeoMath.METERS_PER_DEGREE;
+                worst = Math.max(worst, Math.sqrt(GeoMath.segmentDistanceSq(px, py, ax, ay, bx, by)));
+            }
+        }
+        return worst;
+    }
+
+    // 1 Hz fixes at ~20 km/h along blocks with right-angle turns and ~1.5 m GPS jitter
+    public static double[][] cityRide(int n, long seed) {
+        Random random = new Random(seed);
+        double[] lats = new double[n];
+        double[] lngs = new double[n];
+        double x = 0, y = 0;
+        double heading = 0;
+        int nextTurn = 60 + random.nextInt(120);
+        for (int i = 0; i < n; i++) {
+            if (i == nextTurn) {
+                heading += (random.nextBoolean() ? 1 : -1) * Math.PI / 2;
+                nextTurn = i + 60 + random.nextInt(120);
+            }
+            x += Math.cos(heading) * 5.5;
+            y += Math.sin(heading) * 5.5;
+            double nx = x + random.nextGaussian() * 1.5;
+            double ny = y + random.nextGaussian() * 1.5;
+            lats[i] = 14.5995 + ny / GeoMath.METERS_PER_DEGREE;
+            lngs[i] = 120.9842 + nx / GeoMath.metersPerDegreeLng(14.5995);
+        }
+        return new double[][]{lats, lngs};
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.padyakol.route;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RouteSketchTest {
+
+    @Test
+    public void emptyRouteGivesNoPoints() {
+        assertEquals(0, RouteSketch.project(new double[0], new double[0], 0, 100, 100, 4, 1).length);
+    }
+
+    @Test
+    public void singlePointSitsInTheCentre() {
+        float[] xy = RouteSketch.project(new double[]{14.6}, new double[]{121.0}, 1, 100, 60, 4, 1);
+        assertEquals(2, xy.length);
+        assertEquals(50f, xy[0], 1e-3);
+        assertEquals(30f, xy[1], 1e-3);
+    }
+
+    @Test
+    public void staysInsideThePaddedBoxAndKeepsAspect() {
+        // 1 km due east, then 500 m due north
+        double lngStep = 1000 / GeoMath.metersPerDegreeLng(14.6);
+        double latStep = 500 / GeoMath.METERS_PER_DEGREE;
+        double[] lats = {14.6, 14.6, 14.6 + latStep};
+        double[] lngs = {121.0, 121.0 + lngStep, 121.0 + lngStep};
+
+        float[] xy = RouteSketch.project(lats, lngs, 3, 100, 100, 10, 0);
+
+        for (int i = 0; i < xy.length; i++) {
+            assertTrue(xy[i] >= 10 - 1e-3 && xy[i] <= 90 + 1e-3);
+        }
+        // Width fills the box, height is half of it, and north is up
+        assertEquals(80f, xy[2] - xy[0], 0.1);
+        assertEquals(40f, xy[3] - xy[5], 0.1);
+    }
+
+    @Test
+    public void longRideIsBoundedByTheBoxNotItsLength() {
+        double[][] ride = RouteSimplifierTest.cityRide(20_000, 3L);
+        float[] xy = RouteSketch.project(ride[0], ride[1], 20_000, 120, 120, 6, 1.5f);
+
+        assertTrue("Kept " + xy.length / 2 + " points", xy.length / 2 < 2_000);
+        // The end of the ride is always kept
+        float[] all = RouteSketch.project(ride[0], ride[1], 20_000, 120, 120, 6, 0);
+        assertEquals(all[all.length - 2], xy[xy.length - 2], 1e-4);
+        assertEquals(all[all.length - 1], xy[xy.length - 1], 1e-4);
+    }
+}
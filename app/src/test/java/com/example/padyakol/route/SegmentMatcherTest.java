@@ -0,0 +1,109 @@
+package com.example.padyakol.route;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SegmentMatcherTest {
+
+    private static final long START = 1_735_000_000_000L;
+
+    // A road through Manila in metres east/north of TestRoutes.LAT0, LNG0, with a right-angle bend
+    private static final double[][] ROAD = {{0, 0}, {1000, 0}, {1000, 800}, {2000, 800}};
+    // 500 + 800 + 500 m of it, around the bend
+    private static final double[][] SEGMENT = {{500, 0}, {1000, 0}, {1000, 800}, {1500, 800}};
+
+    private static Route join(Route a, Route b) {
+        int n = a.size() + b.size();
+        double[] lats = new double[n];
+        double[] lngs = new double[n];
+        long[] times = new long[n];
+        for (int i = 0; i < n; i++) {
+            Route from = i < a.size() ? a : b;
+            int j = i < a.size() ? i : i - a.size();
+            lats[i] = from.getLat(j);
+            lngs[i] = from.getLng(j);
+            times[i] = from.getTime(j);
+        }
+        return new Route(lats, lngs, times, n);
+    }
+
+    @Test
+    public void noisyRideAlongTheRoadIsTimedOnTheSegment() {
+        SegmentMatcher matcher = new SegmentMatcher(TestRoutes.path(SEGMENT));
+        assertEquals(1800.0, matcher.getLengthMeters(), 1.0);
+
+        // 18 km/h is 5 m/s, so 360 s for the segment
+        SegmentMatcher.Effort effort = matcher.match(TestRoutes.ride(ROAD, 18.0, START, 8.0, 1L));
+
+        assertNotNull(effort);
+        assertEquals(360_000L, effort.getElapsedMillis(), 6_000L);
+        assertEquals(START + 100_000L, effort.getStartTime(), 3_000L);
+    }
+
+    @Test
+    public void cuttingTheCornerDoesNotCount() {
+        double[][] shortcut = {{0, 0}, {700, 0}, {1000, 300}, {1000, 800}, {2000, 800}};
+
+        assertNull(new SegmentMatcher(TestRoutes.path(SEGMENT)).match(TestRoutes.ride(shortcut, 18.0, START, 0.0, 1L)));
+    }
+
+    @Test
+    public void wrongWayOrTurningOffEarlyDoesNotCount() {
+        SegmentMatcher matcher = new SegmentMatcher(TestRoutes.path(SEGMENT));
+        double[][] reverse = {{2000, 800}, {1000, 800}, {1000, 0}, {0, 0}};
+        double[][] turnOff = {{0, 0}, {1000, 0}, {1000, 500}, {1500, 500}};
+
+        assertNull(matcher.match(TestRoutes.ride(reverse, 18.0, START, 0.0, 1L)));
+        assertNull(matcher.match(TestRoutes.ride(turnOff, 18.0, START, 0.0, 1L)));
+    }
+
+    @Test
+    public void fastestLapIsTheEffort() {
+        double[][] circuit = {{0, 0}, {1000, 0}, {1000, 1000}, {0, 1000}, {0, 0}};
+        double[][] segment = {{200, 0}, {1000, 0}, {1000, 600}};
+        Route slowLap = TestRoutes.ride(circuit, 15.0, START, 5.0, 1L);
+        Route fastLap = TestRoutes.ride(circuit, 25.0, slowLap.getTime(slowLap.size() - 1) + 3_000L, 5.0, 2L);
+
+        SegmentMatcher.Effort effort = new SegmentMatcher(TestRoutes.path(segment)).match(join(slowLap, fastLap));
+
+        assertNotNull(effort);
+        // 1400 m at 25 km/h
+        assertEquals(201_600L, effort.getElapsedMillis(), 6_000L);
+        assertTrue(effort.getStartIndex() >= slowLap.size());
+    }
+
+    @Test
+    public void routesWithoutTimesNeverMatch() {
+        assertNull(new SegmentMatcher(TestRoutes.path(SEGMENT)).match(TestRoutes.path(ROAD)));
+    }
+
+    // A long ride against many overlapping segments
+    @Test
+    public void longRideAgainstManySegments() {
+        // 80 km of zigzag road, about 4 h at 20 km/h: ~4800 fixes
+        double[][] road = new double[41][];
+        for (int i = 0; i < road.length; i++) {
+            road[i] = new double[]{i * 1500.0, (i % 2) * 1200.0};
+        }
+        Route ride = TestRoutes.ride(road, 20.0, START, 6.0, 5L);
+
+        Random random = new Random(9);
+        List<SegmentMatcher> matchers = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            int leg = random.nextInt(road.length - 3);
+            matchers.add(new SegmentMatcher(TestRoutes.path(new double[][]{road[leg], road[leg + 1], road[leg + 2]})));
+        }
+
+        int matched = 0;
+        for (SegmentMatcher matcher : matchers) {
+            if (matcher.match(ride) != null) matched++;
+        }
+
+        assertEquals(matchers.size(), matched);
+    }
+}
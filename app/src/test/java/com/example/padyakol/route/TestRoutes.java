@@ -0,0 +1,63 @@
+package com.example.padyakol.route;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Synthetic routes for the tests, laid out in metres east/north of a point in Manila
+public final class TestRoutes {
+
+    public static final double LAT0 = 14.55;
+    public static final double LNG0 = 121.0;
+
+    private TestRoutes() {
+    }
+
+    /**
+     * A recorded ride along the waypoints (metres east/north of LAT0, LNG0) at a steady speed,
+     * one fix every 3 s, each off by up to noiseMeters.
+     */
+    public static Route ride(double[][] waypoints, double speedKmh, long startTime, double noiseMeters, long seed) {
+        Random random = new Random(seed);
+        double step = speedKmh / 3.6 * 3;
+        List<double[]> points = new ArrayList<>();
+        double carried = 0;
+        for (int w = 1; w < waypoints.length; w++) {
+            double dx = waypoints[w][0] - waypoints[w - 1][0];
+            double dy = waypoints[w][1] - waypoints[w - 1][1];
+            double length = Math.hypot(dx, dy);
+            double at = carried;
+            while (at < length) {
+                points.add(new double[]{waypoints[w - 1][0] + dx * at / length, waypoints[w - 1][1] + dy * at / length});
+                at += step;
+            }
+            carried = at - length;
+        }
+        points.add(waypoints[waypoints.length - 1]);
+
+        int n = points.size();
+        double[] lats = new double[n];
+        double[] lngs = new double[n];
+        long[] times = new long[n];
+        for (int i = 0; i < n; i++) {
+            double x = points.get(i)[0] + (random.nextDouble() * 2 - 1) * noiseMeters;
+            double y = points.get(i)[1] + (random.nextDouble() * 2 - 1) * noiseMeters;
+            lats[i] = LAT0 + y / GeoMath.METERS_PER_DEGREE;
+            lngs[i] = LNG0 + x / GeoMath.metersPerDegreeLng(LAT0);
+            times[i] = startTime + i * 3_000L;
+        }
+        return new Route(lats, lngs, times, n);
+    }
+
+    // The waypoints as a segment, without times
+    public static Route path(double[][] waypoints) {
+        int n = waypoints.length;
+        double[] lats = new double[n];
+        double[] lngs = new double[n];
+        for (int i = 0; i < n; i++) {
+            lats[i] = LAT0 + waypoints[i][1] / GeoMath.METERS_PER_DEGREE;
+            lngs[i] = LNG0 + waypoints[i][0] / GeoMath.metersPerDegreeLng(LAT0);
+        }
+        return new Route(lats, lngs, null, n);
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.padyakol.route;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class TileGridTest {
+
+    @Test
+    public void cellIdsAreRowMajor() {
+        long cell = TileGrid.cellOf(14.5995, 120.9842);
+        long east = TileGrid.cellOf(14.5995, 120.9842 + 360.0 / TileGrid.SIZE);
+        long south = TileGrid.cellOf(14.5995 - 0.01, 120.9842);
+
+        assertEquals(cell + 1, east);
+        assertEquals(0, (south - cell) % TileGrid.SIZE);
+        assertTrue(south > cell);
+    }
+
+    @Test
+    public void longSegmentsMarkEveryCellTheyCross() {
+        // Two points ~5 km apart along a parallel: the segment crosses about eight cells
+        double[] lats = {14.6, 14.6};
+        double[] lngs = {121.0, 121.046};
+        long[] cells = TileGrid.cellsAlong(lats, lngs, 2);
+
+        long first = TileGrid.cellOf(14.6, 121.0);
+        long last = TileGrid.cellOf(14.6, 121.046);
+        assertEquals(last - first + 1, cells.length);
+        for (int i = 0; i < cells.length; i++) {
+            assertEquals(first + i, cells[i]);
+        }
+    }
+
+    @Test
+    public void diagonalSegmentsStayConnected() {
+        double[] lats = {14.55, 14.62};
+        double[] lngs = {121.00, 121.05};
+        long[] cells = TileGrid.cellsAlong(lats, lngs, 2);
+
+        // Walking the sorted cells, each one has a 4-connected neighbour in the set
+        for (long cell : cells) {
+            boolean connected = cells.length == 1;
+            for (long other : cells) {
+                long d = Math.abs(other - cell);
+                if (d == 1 || d == TileGrid.SIZE) connected = true;
+            }
+            assertTrue(connected);
+        }
+        assertTrue(Arrays.binarySearch(cells, TileGrid.cellOf(14.585, 121.025)) >= 0);
+    }
+
+    @Test
+    public void boxRangesCoverEachRowOnce() {
+        long[] ranges = TileGrid.rowRanges(14.58, 120.98, 14.60, 121.01);
+
+        assertEquals(0, ranges.length % 2);
+        for (int i = 0; i < ranges.length; i += 2) {
+            assertEquals(TileGrid.cellY(ranges[i]), TileGrid.cellY(ranges[i + 1]));
+            assertTrue(ranges[i] <= ranges[i + 1]);
+            if (i > 0) assertEquals(TileGrid.cellY(ranges[i - 2]) + 1, TileGrid.cellY(ranges[i]));
+        }
+        long inside = TileGrid.cellOf(14.59, 121.0);
+        boolean covered = false;
+        for (int i = 0; i < ranges.length; i += 2) {
+            if (inside >= ranges[i] && inside <= ranges[i + 1]) covered = true;
+        }
+        assertTrue(covered);
+    }
+
+    @Test
+    public void circleTestUsesTheNearestEdgeOfTheCell() {
+        long cell = TileGrid.cellOf(14.6, 121.0);
+        double[] b = TileGrid.bounds(cell);
+        double midLat = (b[0] + b[2]) / 2;
+
+        // 100 m east of the cell's east edge
+        double lng = b[3] + 100 / GeoMath.metersPerDegreeLng(midLat);
+        assertTrue(TileGrid.cellTouchesCircle(cell, midLat, lng, 150));
+        assertFalse(TileGrid.cellTouchesCircle(cell, midLat, lng, 50));
+    }
+
+    @Test
+    public void packedCellsRoundTripCompactly() {
+        double[][] ride = RouteSimplifierTest.cityRide(3600, 11L);
+        long[] cells = TileGrid.cellsAlong(ride[0], ride[1], ride[0].length);
+        byte[] packed = TileGrid.pack(cells);
+
+        assertArrayEquals(cells, TileGrid.unpack(packed));
+        assertTrue(packed.length < cells.length * 3 + 5);
+    }
+}
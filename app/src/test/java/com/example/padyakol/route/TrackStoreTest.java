@@ -0,0 +1,75 @@
+package com.example.padyakol.route;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TrackStoreTest {
+
+    @Test
+    public void appendsAndReadsBackAcrossGrowth() {
+        TrackStore track = new TrackStore(16);
+        long start = 1_735_000_000_000L;
+        for (int i = 0; i < 1_000; i++) {
+            track.append(14.5 + i * 1e-5, 121.0 - i * 1e-5, start + i * 1_000L, i * 0.01f, 3f);
+        }
+
+        assertEquals(1_000, track.size());
+        assertEquals(start, track.getStartTime());
+        assertEquals(14.5 + 999 * 1e-5, track.getLat(999), 0);
+        assertEquals(121.0 - 999 * 1e-5, track.getLng(999), 0);
+        assertEquals(start + 999_000L, track.getTimeMillis(999));
+        assertEquals(9.99f, track.getSpeed(999), 1e-4);
+        assertEquals(3f, track.getAccuracy(999), 0);
+    }
+
+    @Test
+    public void arraysGrabbedBeforeGrowthStayValid() {
+        TrackStore track = new TrackStore(16);
+        for (int i = 0; i < 16; i++) track.append(i, i, i, 0f, 0f);
+        int seen = track.size();
+        double[] lats = track.lats();
+
+        track.append(16, 16, 16, 0f, 0f);
+        assertNotSame(lats, track.lats());
+        for (int i = 0; i < seen; i++) {
+            assertEquals(i, lats[i], 0);
+        }
+    }
+
+    @Test
+    public void feedsSimplifierAndCodecWithoutCopying() {
+        double[][] trace = RouteSimplifierTest.cityRide(2_000, 11L);
+        TrackStore track = new TrackStore();
+        for (int i = 0; i < 2_000; i++) {
+            track.append(trace[0][i], trace[1][i], 1_000_000L + i * 1_000L, 5.5f, 4f);
+        }
+
+        int[] kept = RouteSimplifier.simplify(track.lats(), track.lngs(), track.size(), 4.0);
+        Route route = RouteCodec.decode(RouteCodec.encodeSelected(track, kept));
+
+        assertEquals(kept.length, route.size());
+        assertTrue(route.hasTimes());
+        int last = kept[kept.length - 1];
+        assertEquals(track.getTimeMillis(last), route.getTime(route.size() - 1));
+        assertEquals(track.getLat(last), route.getLat(route.size() - 1), 1e-5);
+    }
+
+    // Memory comparison for an 8-hour ride at one fix per second
+    @Test
+    public void eightHourRideFootprint() {
+        int fixes = 8 * 3600;
+        TrackStore track = new TrackStore();
+        for (int i = 0; i < fixes; i++) track.append(14.5, 121.0, i * 1_000L, 5f, 3f);
+
+        // ArrayList<LatLng>: 4 byte reference + 32 byte LatLng (compressed oops), coordinates only
+        long latLngList = fixes * 36L;
+        // Same five fields boxed per fix: 4 byte reference + 48 byte object
+        long fixObjectList = fixes * 52L;
+        long primitive = track.estimatedBytes();
+
+        // Includes growth slack and is still well under the boxed equivalent, with zero per-fix objects
+        assertTrue(primitive < fixObjectList * 0.75);
+        assertTrue(primitive < latLngList * 1.1);
+    }
+}
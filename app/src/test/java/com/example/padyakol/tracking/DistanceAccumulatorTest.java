@@ -0,0 +1,43 @@
+package com.example.padyakol.tracking;
+
+import com.example.padyakol.route.GeoMath;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DistanceAccumulatorTest {
+
+    private static final double LAT0 = 14.55;
+    private static final double LNG0 = 121.0;
+
+    private static double lat(double northMeters) {
+        return LAT0 + northMeters / GeoMath.METERS_PER_DEGREE;
+    }
+
+    @Test
+    public void jitterBelowTheMinimumStepIsDropped() {
+        DistanceAccumulator distance = new DistanceAccumulator(2.0);
+
+        assertTrue(distance.offer(lat(0), LNG0));
+        assertFalse(distance.offer(lat(1.5), LNG0));
+        assertFalse(distance.offer(lat(-1.0), LNG0));
+        assertTrue(distance.offer(lat(10), LNG0));
+        // Measured from the last accepted fix, not the dropped ones
+        assertEquals(0.010, distance.getDistanceKm(), 1e-6);
+    }
+
+    @Test
+    public void aRecoveredRideCarriesOnFromItsLastFix() {
+        DistanceAccumulator distance = new DistanceAccumulator(2.0);
+        distance.restore(lat(100), LNG0, 5.0);
+
+        assertFalse(distance.offer(lat(101), LNG0));
+        assertTrue(distance.offer(lat(200), LNG0));
+        assertEquals(5.1, distance.getDistanceKm(), 1e-6);
+
+        distance.reset();
+        assertTrue(distance.offer(lat(0), LNG0));
+        assertEquals(0.0, distance.getDistanceKm(), 0.0);
+    }
+}
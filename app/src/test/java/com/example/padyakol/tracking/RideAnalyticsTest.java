@@ -0,0 +1,117 @@
+package com.example.padyakol.tracking;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class RideAnalyticsTest {
+
+    private static final long START = 1_735_000_000_000L;
+
+    // Fixes every 3 s at a steady speed, starting from the given time and distance
+    private static long ride(RideAnalytics analytics, long time, double km, double speedKmh, int fixes) {
+        double stepKm = speedKmh * 3 / 3600.0;
+        for (int i = 0; i < fixes; i++) {
+            time += 3_000L;
+            km += stepKm;
+            analytics.onFix(time, km);
+        }
+        return time;
+    }
+
+    @Test
+    public void steadyRideHasEvenSplitsAndNoStoppedTime() {
+        RideAnalytics analytics = new RideAnalytics();
+        analytics.onFix(START, 0.0);
+        // 24 km/h for 10.5 minutes = 4.2 km
+        ride(analytics, START, 0.0, 24.0, 210);
+
+        assertArrayEquals(new int[]{150, 150, 150, 150}, analytics.getSplitSeconds());
+        assertEquals(630L, analytics.getMovingSeconds());
+        assertEquals(24.0, analytics.getMaxSpeedKmh(), 1e-6);
+        int[] histogram = analytics.getSpeedHistogram();
+        assertEquals(630, histogram[24 / RideAnalytics.HISTOGRAM_BIN_KMH]);
+    }
+
+    @Test
+    public void stopsCountAsElapsedButNotMovingTime() {
+        RideAnalytics analytics = new RideAnalytics();
+        analytics.onFix(START, 0.0);
+        long time = ride(analytics, START, 0.0, 24.0, 75);
+        double km = 24.0 * 225 / 3600.0;
+        // Two minutes at a red light, then on again
+        time += 120_000L;
+        analytics.onFix(time, km + 0.001);
+        ride(analytics, time, km + 0.001, 24.0, 100);
+
+        assertEquals(525L, analytics.getMovingSeconds());
+        int[] histogram = analytics.getSpeedHistogram();
+        int total = 0;
+        for (int seconds : histogram) total += seconds;
+        assertEquals(525, total);
+        // The stop lands inside the second kilometre and makes it the slow one
+        int[] splits = analytics.getSplitSeconds();
+        assertEquals(150, splits[0]);
+        assertEquals(150 + 120, splits[1], 1);
+        assertEquals(150, splits[2]);
+    }
+
+    @Test
+    public void oneJumpyFixDoesNotSetTheMaxSpeed() {
+        RideAnalytics analytics = new RideAnalytics();
+        analytics.onFix(START, 0.0);
+        long time = ride(analytics, START, 0.0, 18.0, 50);
+        double km = 18.0 * 150 / 3600.0;
+        // A 100 m jump in 3 s reads as 120 km/h on its own
+        analytics.onFix(time + 3_000L, km + 0.1);
+        ride(analytics, time + 3_000L, km + 0.1, 18.0, 50);
+
+        assertTrue(analytics.getMaxSpeedKmh() < 40.0);
+    }
+
+    @Test
+    public void longSegmentsCrossSeveralMarks() {
+        RideAnalytics analytics = new RideAnalytics();
+        analytics.onFix(START, 0.0);
+        // GPS came back after 10 minutes, 2.5 km further on
+        analytics.onFix(START + 600_000L, 2.5);
+
+        assertArrayEquals(new int[]{240, 240}, analytics.getSplitSeconds());
+    }
+
+    @Test
+    public void packedValuesRoundTrip() {
+        int[] values = {0, 1, 127, 128, 300, 16_383, 16_384, 3_600_000};
+        byte[] packed = RideAnalytics.pack(values);
+
+        assertArrayEquals(values, RideAnalytics.unpack(packed));
+        // Typical split times take two bytes each
+        assertEquals(2 * 5, RideAnalytics.pack(new int[]{180, 200, 240, 300, 420}).length);
+    }
+
+    @Test
+    public void journalReplayRebuildsTheSameAnalytics() throws IOException {
+        File file = File.createTempFile("ride_journal", ".bin");
+        file.deleteOnExit();
+        RideAnalytics live = new RideAnalytics();
+        try (RideJournal journal = RideJournal.create(file, START)) {
+            double km = 0.0;
+            for (int i = 0; i < 600; i++) {
+                long time = START + i * 3_000L;
+                km += (i % 100 < 80 ? 22.0 : 0.0) * 3 / 3600.0;
+                journal.append(14.5, 121.0, time, 6f, 3f, km);
+                live.onFix(time, km);
+            }
+        }
+
+        RideAnalytics replayed = RideJournal.replay(file).getAnalytics();
+
+        assertArrayEquals(live.getSplitSeconds(), replayed.getSplitSeconds());
+        assertArrayEquals(live.getSpeedHistogram(), replayed.getSpeedHistogram());
+        assertEquals(live.getMovingSeconds(), replayed.getMovingSeconds());
+        assertEquals(live.getMaxSpeedKmh(), replayed.getMaxSpeedKmh(), 0.0);
+    }
+}
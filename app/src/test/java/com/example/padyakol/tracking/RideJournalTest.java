@@ -0,0 +1,118 @@
+package com.example.padyakol.tracking;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.*;
+
+public class RideJournalTest {
+
+    private static final long START = 1_735_000_000_000L;
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("ride_journal", ".bin");
+        file.deleteOnExit();
+    }
+
+    private void writeFixes(int count) throws IOException {
+        try (RideJournal journal = RideJournal.create(file, START)) {
+            for (int i = 0; i < count; i++) {
+                journal.append(14.5 + i * 1e-5, 121.0 + i * 1e-5, START + i * 1_000L, 5f, 3f, i * 0.01);
+            }
+        }
+    }
+
+    @Test
+    public void replaysEveryRecord() throws IOException {
+        writeFixes(1_000);
+        RideJournal.Recovered recovered = RideJournal.replay(file);
+
+        assertNotNull(recovered);
+        assertTrue(recovered.hasCleanEnd());
+        assertEquals(START, recovered.getStartTime());
+        assertEquals(1_000, recovered.getRecordCount());
+        assertEquals(9.99, recovered.getDistanceKm(), 1e-9);
+        assertEquals(14.5 + 999 * 1e-5, recovered.getTrack().getLat(999), 0);
+        assertEquals(START + 999_000L, recovered.getEndTime());
+    }
+
+    @Test
+    public void unflushedBatchIsNotVisibleButFlushedOnesAre() throws IOException {
+        RideJournal journal = RideJournal.create(file, START);
+        for (int i = 0; i < RideJournal.FLUSH_EVERY_RECORDS + 1; i++) {
+            journal.append(14.5, 121.0, START + i, 0f, 0f, 0.0);
+        }
+        // Simulates a kill: nothing closed, the last record is still in the buffer
+        RideJournal.Recovered recovered = RideJournal.replay(file);
+        assertEquals(RideJournal.FLUSH_EVERY_RECORDS, recovered.getRecordCount());
+        journal.close();
+    }
+
+    @Test
+    public void truncatedTailIsDropped() throws IOException {
+        writeFixes(10);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - RideJournal.RECORD_BYTES / 2);
+        }
+
+        RideJournal.Recovered recovered = RideJournal.replay(file);
+        assertEquals(9, recovered.getRecordCount());
+        assertFalse(recovered.hasCleanEnd());
+        assertEquals(0.08, recovered.getDistanceKm(), 1e-9);
+    }
+
+    @Test
+    public void corruptTailIsDropped() throws IOException {
+        writeFixes(300);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            // Flip a byte inside record 290
+            long offset = RideJournal.HEADER_BYTES + 290L * RideJournal.RECORD_BYTES + 5;
+            raf.seek(offset);
+            int b = raf.read();
+            raf.seek(offset);
+            raf.write(b ^ 0xFF);
+        }
+
+        RideJournal.Recovered recovered = RideJournal.replay(file);
+        assertEquals(290, recovered.getRecordCount());
+        assertFalse(recovered.hasCleanEnd());
+    }
+
+    @Test
+    public void reopenContinuesAfterTheLastValidRecord() throws IOException {
+        writeFixes(10);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+
+        RideJournal.Recovered recovered = RideJournal.replay(file);
+        try (RideJournal journal = RideJournal.reopen(file, recovered)) {
+            journal.append(15.0, 122.0, START + 60_000L, 0f, 0f, 1.5);
+        }
+
+        RideJournal.Recovered again = RideJournal.replay(file);
+        assertTrue(again.hasCleanEnd());
+        assertEquals(10, again.getRecordCount());
+        assertEquals(15.0, again.getTrack().getLat(9), 0);
+        assertEquals(1.5, again.getDistanceKm(), 0);
+    }
+
+    @Test
+    public void missingOrHeaderlessJournalReplaysAsNull() throws IOException {
+        assertTrue(file.delete());
+        assertNull(RideJournal.replay(file));
+        assertFalse(RideJournal.exists(file));
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.write(new byte[RideJournal.HEADER_BYTES]);
+        }
+        assertNull(RideJournal.replay(file));
+    }
+}
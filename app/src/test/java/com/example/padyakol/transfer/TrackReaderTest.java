@@ -0,0 +1,149 @@
+package com.example.padyakol.transfer;
+
+import com.example.padyakol.route.Route;
+import com.example.padyakol.route.RouteCodec;
+import com.example.padyakol.route.TestRoutes;
+
+import org.junit.Test;
+import org.kxml2.io.KXmlParser;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TrackReaderTest {
+
+    private static final long START = 1_735_000_000_000L;
+
+    // Everything the reader reports, one string per call
+    private static final class Recorder implements TrackReader.Listener {
+        final List<String> events = new ArrayList<>();
+        final List<double[]> points = new ArrayList<>();
+        final List<Long> times = new ArrayList<>();
+
+        @Override
+        public void onTrackStart() {
+            events.add("start");
+        }
+
+        @Override
+        public void onPoint(double lat, double lng, long time) {
+            events.add("point");
+            points.add(new double[]{lat, lng});
+            times.add(time);
+        }
+
+        @Override
+        public void onTrackEnd() {
+            events.add("end");
+        }
+    }
+
+    private static Recorder read(String xml, TrackFormat expected) throws Exception {
+        XmlPullParser parser = new KXmlParser();
+        parser.setInput(new StringReader(xml));
+        Recorder recorder = new Recorder();
+        assertEquals(expected, TrackReader.read(parser, recorder));
+        return recorder;
+    }
+
+    @Test
+    public void readsGpxTracksWithPrefixesAndZoneOffsets() throws Exception {
+        String gpx = "<?xml version=\"1.0\"?>\n"
+                + "<gpx:gpx xmlns:gpx=\"http://www.topografix.com/GPX/1/1\" version=\"1.1\">"
+                + "<gpx:metadata><gpx:name>Export</gpx:name></gpx:metadata>"
+                + "<gpx:trk><gpx:name>Morning &amp; back</gpx:name><gpx:trkseg>"
+                + "<gpx:trkpt lat=\"14.55\" lon=\"121.0\"><gpx:ele>12</gpx:ele><gpx:time>2024-12-24T08:26:40+08:00</gpx:time></gpx:trkpt>"
+                + "<gpx:trkpt lon=\"121.0\"><gpx:time>2024-12-24T00:26:41Z</gpx:time></gpx:trkpt>"
+                + "<gpx:trkpt lat=\"14.551\" lon=\"121.001\"><gpx:name>not the track</gpx:name>"
+                + "<gpx:time>2024-12-24T00:26:43.5Z</gpx:time></gpx:trkpt>"
+                + "</gpx:trkseg></gpx:trk>"
+                + "<gpx:trk><gpx:trkseg><gpx:trkpt lat=\"-33.9\" lon=\"18.4\"/></gpx:trkseg></gpx:trk>"
+                + "</gpx:gpx>";
+
+        Recorder recorder = read(gpx, TrackFormat.GPX);
+
+        assertEquals(List.of("start", "point", "point", "end", "start", "point", "end"), recorder.events);
+        long t0 = Instant.parse("2024-12-24T00:26:40Z").toEpochMilli();
+        assertEquals(t0, (long) recorder.times.get(0));
+        assertEquals(t0 + 3_500L, (long) recorder.times.get(1));
+        assertEquals(TrackReader.NO_TIME, (long) recorder.times.get(2));
+        assertEquals(-33.9, recorder.points.get(2)[0], 0.0);
+    }
+
+    @Test
+    public void readsTcxActivitiesSkippingPointsWithoutAPosition() throws Exception {
+        String tcx = "<TrainingCenterDatabase xmlns=\"http://www.garmin.com/xmlschemas/TrainingCenterDatabase/v2\">"
+                + "<Activities><Activity Sport=\"Biking\"><Id>2024-12-24T00:26:40Z</Id><Lap><Track>"
+                + "<Trackpoint><Time>2024-12-24T00:26:40Z</Time><Position><LatitudeDegrees>14.55</LatitudeDegrees>"
+                + "<LongitudeDegrees>121.0</LongitudeDegrees></Position></Trackpoint>"
+                + "<Trackpoint><Time>2024-12-24T00:26:41Z</Time><HeartRateBpm><Value>120</Value></HeartRateBpm></Trackpoint>"
+                + "<Trackpoint><Time>2024-12-24T00:26:42Z</Time><Position><LatitudeDegrees>14.551</LatitudeDegrees>"
+                + "<LongitudeDegrees>121.001</LongitudeDegrees></Position><DistanceMeters>150</DistanceMeters></Trackpoint>"
+                + "</Track></Lap></Activity></Activities></TrainingCenterDatabase>";
+
+        Recorder recorder = read(tcx, TrackFormat.TCX);
+
+        assertEquals(List.of("start", "point", "point", "end"), recorder.events);
+        assertEquals(Instant.parse("2024-12-24T00:26:42Z").toEpochMilli(), (long) recorder.times.get(1));
+        assertEquals(121.001, recorder.points.get(1)[1], 0.0);
+    }
+
+    @Test(expected = XmlPullParserException.class)
+    public void otherDocumentsAreRejected() throws Exception {
+        read("<html><body/></html>", TrackFormat.GPX);
+    }
+
+    @Test
+    public void writtenFilesReadBackAsTheStoredRoute() throws Exception {
+        double[][] road = {{0, 0}, {1000, 0}, {1000, 800}, {-400, 1500}};
+        Route stored = RouteCodec.decode(encode(TestRoutes.ride(road, 20.0, START + 250L, 5.0, 3L)));
+        Route untimed = RouteCodec.decode(encode(TestRoutes.path(road)));
+
+        for (TrackFormat format : TrackFormat.values()) {
+            for (Route route : List.of(stored, untimed)) {
+                StringWriter out = new StringWriter();
+                TrackWriter.write(out, format, "Ride <1>", START, 600, 3000.0, route);
+                Recorder recorder = read(out.toString(), format);
+
+                assertEquals(route.size(), recorder.points.size());
+                for (int i = 0; i < route.size(); i++) {
+                    assertEquals(route.getLat(i), recorder.points.get(i)[0], 0.0);
+                    assertEquals(route.getLng(i), recorder.points.get(i)[1], 0.0);
+                    long expected = route.hasTimes() ? route.getTime(i) : TrackReader.NO_TIME;
+                    assertEquals(expected, (long) recorder.times.get(i));
+                }
+                assertEquals("end", recorder.events.get(recorder.events.size() - 1));
+            }
+        }
+    }
+
+    @Test
+    public void timestampsAgreeWithJavaTime() {
+        Random random = new Random(4);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 10_000; i++) {
+            long millis = (long) (random.nextDouble() * 8_000_000_000_000L) - 1_000_000_000_000L;
+            if (i % 2 == 0) millis -= millis % 1000;
+            text.setLength(0);
+            TrackTime.format(millis, text);
+            assertEquals(Instant.ofEpochMilli(millis).toString(), text.toString());
+            assertEquals(millis, TrackTime.parse(text.toString()));
+        }
+        assertEquals(Instant.parse("2024-03-05T06:12:33Z").toEpochMilli(), TrackTime.parse("2024-03-05T14:12:33+0800"));
+        assertEquals(Instant.parse("2024-03-05T06:12:33Z").toEpochMilli(), TrackTime.parse(" 2024-03-05T06:12:33 "));
+        assertEquals(TrackReader.NO_TIME, TrackTime.parse("yesterday"));
+        assertEquals(TrackReader.NO_TIME, TrackTime.parse("2024-03-05T06:12:33Q"));
+    }
+
+    private static byte[] encode(Route route) {
+        return RouteCodec.encode(route.lats(), route.lngs(), route.times(), route.size());
+    }
+}
@@ -0,0 +1,31 @@
+// JMH benchmarks for the ride-processing hot paths in :core, on synthetic GPS traces.
+//   ./gradlew :benchmark:jmh                                  everything, results in build/results/jmh
+//   ./gradlew :benchmark:jmh -Pjmh.includes=RouteSimplifier   one class
+plugins {
+    `java-library`
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+dependencies {
+    jmhImplementation(project(":core"))
+    // The XmlPullParser Android would provide
+    jmhImplementation(libs.kxml2)
+}
+
+jmh {
+    jmhVersion.set(libs.versions.jmh.get())
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    timeOnIteration.set("2s")
+    warmup.set("2s")
+    // The 500k-point traces and their GPX files are held in memory
+    jvmArgs.set(listOf("-Xmx2g"))
+    resultFormat.set("JSON")
+    (project.findProperty("jmh.includes") as String?)?.let { includes.set(listOf(it)) }
+}
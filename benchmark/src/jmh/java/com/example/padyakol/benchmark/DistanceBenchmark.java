@@ -0,0 +1,61 @@
+package com.example.padyakol.benchmark;
+
+import com.example.padyakol.route.Route;
+import com.example.padyakol.route.TrackStore;
+import com.example.padyakol.tracking.DistanceAccumulator;
+import com.example.padyakol.tracking.RideAnalytics;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-fix work on the tracking thread, over a whole ride: the distance with its jitter filter,
+ * and that plus the TrackStore append and RideAnalytics that TrackingEngine does for each
+ * accepted fix. Divide by the points for the cost of one fix.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DistanceBenchmark {
+
+    @Param({"1000", "10000", "100000", "500000"})
+    public int points;
+
+    private Route ride;
+
+    @Setup
+    public void setUp() {
+        ride = SyntheticTraces.ride(points);
+    }
+
+    @Benchmark
+    public double accumulate() {
+        DistanceAccumulator distance = new DistanceAccumulator(2.0);
+        for (int i = 0; i < ride.size(); i++) {
+            distance.offer(ride.getLat(i), ride.getLng(i));
+        }
+        return distance.getDistanceKm();
+    }
+
+    @Benchmark
+    public TrackStore trackingPipeline() {
+        DistanceAccumulator distance = new DistanceAccumulator(2.0);
+        TrackStore track = new TrackStore();
+        RideAnalytics analytics = new RideAnalytics();
+        for (int i = 0; i < ride.size(); i++) {
+            if (distance.offer(ride.getLat(i), ride.getLng(i))) {
+                track.append(ride.getLat(i), ride.getLng(i), ride.getTime(i), 5f, 4f);
+                analytics.onFix(ride.getTime(i), distance.getDistanceKm());
+            }
+        }
+        return track;
+    }
+}
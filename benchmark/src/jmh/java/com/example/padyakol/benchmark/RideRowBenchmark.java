@@ -0,0 +1,62 @@
+package com.example.padyakol.benchmark;
+
+import com.example.padyakol.adapters.RideRowText;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formatting travel log rows that aren't in RideRowFactory's cache yet, as on the first page of
+ * the list or after a sync brings in a season of rides.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RideRowBenchmark {
+
+    @Param({"50", "1000"})
+    public int rows;
+
+    private long[] timestamps;
+    private double[] distances;
+    private long[] durations;
+    private double[] speeds;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(SyntheticTraces.SEED);
+        timestamps = new long[rows];
+        distances = new double[rows];
+        durations = new long[rows];
+        speeds = new double[rows];
+        for (int i = 0; i < rows; i++) {
+            timestamps[i] = SyntheticTraces.START_TIME - i * 86_400_000L + random.nextInt(43_200_000);
+            durations[i] = 600 + random.nextInt(4 * 3600);
+            speeds[i] = 12 + random.nextDouble() * 15;
+            distances[i] = speeds[i] * durations[i] / 3600.0;
+        }
+    }
+
+    @Benchmark
+    public void formatRows(Blackhole blackhole) {
+        // A fresh factory starts with fresh formatters
+        RideRowText text = new RideRowText();
+        for (int i = 0; i < rows; i++) {
+            blackhole.consume(text.date(timestamps[i]));
+            blackhole.consume(text.time(timestamps[i]));
+            blackhole.consume(text.distance(distances[i]));
+            blackhole.consume(text.duration(durations[i]));
+            blackhole.consume(text.speed(speeds[i]));
+        }
+    }
+}
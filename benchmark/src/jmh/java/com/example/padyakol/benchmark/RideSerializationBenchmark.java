@@ -0,0 +1,106 @@
+package com.example.padyakol.benchmark;
+
+import com.example.padyakol.route.Route;
+import com.example.padyakol.route.RouteCodec;
+import com.example.padyakol.transfer.TrackReader;
+import com.example.padyakol.transfer.TrackWriter;
+
+import org.kxml2.io.KXmlParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.xmlpull.v1.XmlPullParser;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A ride's route to and from its stored form: the RouteCodec blob that goes into the database and
+ * the Ride document, and GPX files for import and export. The rest of the Firestore document is a
+ * handful of numbers and needs the Firestore SDK, so it isn't measured here.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RideSerializationBenchmark {
+
+    @Param({"1000", "10000", "100000", "500000"})
+    public int points;
+
+    private Route ride;
+    private byte[] blob;
+    private byte[] gpx;
+
+    @Setup
+    public void setUp() {
+        ride = SyntheticTraces.ride(points);
+        blob = RouteCodec.encode(ride.lats(), ride.lngs(), ride.times(), ride.size());
+        gpx = SyntheticTraces.gpx(ride);
+    }
+
+    @Benchmark
+    public byte[] encodeRoute() {
+        return RouteCodec.encode(ride.lats(), ride.lngs(), ride.times(), ride.size());
+    }
+
+    @Benchmark
+    public Route decodeRoute() {
+        return RouteCodec.decode(blob);
+    }
+
+    @Benchmark
+    public void writeGpx(Blackhole blackhole) throws Exception {
+        Writer out = new OutputStreamWriter(new BlackholeOutputStream(blackhole), StandardCharsets.UTF_8);
+        TrackWriter.writeGpx(out, "Synthetic ride", ride.getTime(0), ride);
+        out.flush();
+    }
+
+    @Benchmark
+    public void readGpx(Blackhole blackhole) throws Exception {
+        XmlPullParser parser = new KXmlParser();
+        parser.setInput(new ByteArrayInputStream(gpx), "UTF-8");
+        TrackReader.read(parser, new TrackReader.Listener() {
+            @Override
+            public void onTrackStart() {
+            }
+
+            @Override
+            public void onPoint(double lat, double lng, long time) {
+                blackhole.consume(time);
+            }
+
+            @Override
+            public void onTrackEnd() {
+            }
+        });
+    }
+
+    // Keeps nothing, so only the writing is measured
+    private static final class BlackholeOutputStream extends OutputStream {
+        private final Blackhole blackhole;
+
+        BlackholeOutputStream(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void write(int b) {
+            blackhole.consume(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            blackhole.consume(len);
+        }
+    }
+}
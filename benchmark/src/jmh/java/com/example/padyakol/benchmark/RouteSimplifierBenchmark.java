@@ -0,0 +1,73 @@
+package com.example.padyakol.benchmark;
+
+import com.example.padyakol.route.Route;
+import com.example.padyakol.route.RouteCodec;
+import com.example.padyakol.route.RouteSimplifier;
+import com.example.padyakol.route.TileGrid;
+import com.example.padyakol.route.TrackStore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Route decimation as a ride is saved: Douglas-Peucker over the recorded track, the one-pass
+ * version imports use, and the whole save path of RideRepository.writeRide (simplify, encode the
+ * kept points, index their cells).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RouteSimplifierBenchmark {
+
+    @Param({"1000", "10000", "100000", "500000"})
+    public int points;
+
+    private Route ride;
+    private TrackStore track;
+
+    @Setup
+    public void setUp() {
+        ride = SyntheticTraces.ride(points);
+        track = new TrackStore(points);
+        for (int i = 0; i < ride.size(); i++) {
+            track.append(ride.getLat(i), ride.getLng(i), ride.getTime(i), 5f, 4f);
+        }
+    }
+
+    @Benchmark
+    public int[] simplify() {
+        return RouteSimplifier.simplify(ride.lats(), ride.lngs(), ride.size(), RouteSimplifier.DEFAULT_TOLERANCE_METERS);
+    }
+
+    @Benchmark
+    public void simplifyStreaming(Blackhole blackhole) {
+        RouteSimplifier.Streaming streaming = new RouteSimplifier.Streaming(RouteSimplifier.DEFAULT_TOLERANCE_METERS,
+                (lat, lng, time) -> blackhole.consume(time));
+        for (int i = 0; i < ride.size(); i++) {
+            streaming.add(ride.getLat(i), ride.getLng(i), ride.getTime(i));
+        }
+        streaming.finish();
+    }
+
+    @Benchmark
+    public void saveRoute(Blackhole blackhole) {
+        int[] kept = RouteSimplifier.simplify(track.lats(), track.lngs(), track.size(), RouteSimplifier.DEFAULT_TOLERANCE_METERS);
+        double[] keptLats = new double[kept.length];
+        double[] keptLngs = new double[kept.length];
+        for (int i = 0; i < kept.length; i++) {
+            keptLats[i] = track.getLat(kept[i]);
+            keptLngs[i] = track.getLng(kept[i]);
+        }
+        blackhole.consume(RouteCodec.encodeSelected(track, kept));
+        blackhole.consume(TileGrid.cellsAlong(keptLats, keptLngs, kept.length));
+    }
+}
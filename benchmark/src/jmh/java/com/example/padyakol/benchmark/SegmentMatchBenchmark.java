@@ -0,0 +1,155 @@
+package com.example.padyakol.benchmark;
+
+import com.example.padyakol.route.Route;
+import com.example.padyakol.route.SegmentMatcher;
+import com.example.padyakol.route.TileGrid;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Segment matching as SegmentEfforts runs it: one matcher against one ride, a new ride against
+ * every saved segment, and a new segment against every stored ride. The pruned versions narrow the
+ * candidates through the cell index first, as SegmentEfforts does; the Room tables it reads
+ * (segment_cells, ride_cells) live in :app, so here they are maps from cell to owner with the same
+ * keys. The unpruned versions match everything, the cost pruning saves.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SegmentMatchBenchmark {
+
+    // An hour at one fix a second
+    private static final int RIDE_POINTS = 3600;
+
+    @Param({"1000", "5000"})
+    public int segments;
+
+    @Param({"2000"})
+    public int rides;
+
+    private Route[] storedRides;
+    private Route[] segmentPaths;
+    private SegmentMatcher[] matchers;
+    // segment_cells: endpoint cell to the segments starting (bit 1) or finishing (bit 2) near it
+    private final Map<Long, List<int[]>> endpointCells = new HashMap<>();
+    // ride_cells: cell to the rides that passed through it
+    private final Map<Long, List<Integer>> rideCells = new HashMap<>();
+
+    private Route newRide;
+    private long[] newRideCells;
+    private Route newSegment;
+    private SegmentMatcher coveredMatcher;
+
+    @Setup
+    public void setUp() {
+        storedRides = new Route[rides];
+        for (int r = 0; r < rides; r++) {
+            storedRides[r] = SyntheticTraces.ride(RIDE_POINTS, SyntheticTraces.SEED + r);
+            for (long cell : TileGrid.cellsAlong(storedRides[r].lats(), storedRides[r].lngs(), RIDE_POINTS)) {
+                rideCells.computeIfAbsent(cell, k -> new ArrayList<>()).add(r);
+            }
+        }
+
+        // Segments are stretches of the rider's own rides, a few hundred metres of road
+        Random random = new Random(SyntheticTraces.SEED);
+        segmentPaths = new Route[segments];
+        matchers = new SegmentMatcher[segments];
+        for (int s = 0; s < segments; s++) {
+            segmentPaths[s] = stretch(storedRides[random.nextInt(rides)], random);
+            matchers[s] = new SegmentMatcher(segmentPaths[s]);
+            indexEndpoint(s, 1, segmentPaths[s], 0);
+            indexEndpoint(s, 2, segmentPaths[s], segmentPaths[s].size() - 1);
+        }
+
+        newRide = SyntheticTraces.ride(RIDE_POINTS, SyntheticTraces.SEED - 1);
+        newRideCells = TileGrid.cellsAlong(newRide.lats(), newRide.lngs(), RIDE_POINTS);
+        newSegment = stretch(storedRides[0], random);
+        coveredMatcher = new SegmentMatcher(stretch(newRide, random));
+    }
+
+    private static Route stretch(Route ride, Random random) {
+        int length = 20 + random.nextInt(60);
+        int from = random.nextInt(ride.size() - length);
+        return new Route(Arrays.copyOfRange(ride.lats(), from, from + length),
+                Arrays.copyOfRange(ride.lngs(), from, from + length), null, length);
+    }
+
+    private void indexEndpoint(int segment, int bit, Route path, int vertex) {
+        for (long cell : TileGrid.cellsNear(path.getLat(vertex), path.getLng(vertex), SegmentMatcher.ENDPOINT_RADIUS_METERS)) {
+            endpointCells.computeIfAbsent(cell, k -> new ArrayList<>()).add(new int[]{segment, bit});
+        }
+    }
+
+    @Benchmark
+    public SegmentMatcher.Effort matchCovered() {
+        return coveredMatcher.match(newRide);
+    }
+
+    // SegmentEfforts.matchRide: only segments whose both ends the ride came near
+    @Benchmark
+    public int matchRidePruned() {
+        Map<Integer, Integer> endsHit = new HashMap<>();
+        for (long cell : newRideCells) {
+            List<int[]> ends = endpointCells.get(cell);
+            if (ends == null) continue;
+            for (int[] end : ends) endsHit.merge(end[0], end[1], (a, b) -> a | b);
+        }
+        int matched = 0;
+        for (Map.Entry<Integer, Integer> entry : endsHit.entrySet()) {
+            if (entry.getValue() == 3 && matchers[entry.getKey()].match(newRide) != null) matched++;
+        }
+        return matched;
+    }
+
+    @Benchmark
+    public int matchRideUnpruned() {
+        int matched = 0;
+        for (SegmentMatcher matcher : matchers) {
+            if (matcher.match(newRide) != null) matched++;
+        }
+        return matched;
+    }
+
+    // SegmentEfforts.createSegment: only rides that passed near both ends
+    @Benchmark
+    public void createSegmentPruned(Blackhole blackhole) {
+        SegmentMatcher matcher = new SegmentMatcher(newSegment);
+        int last = newSegment.size() - 1;
+        Set<Integer> candidates = ridesNear(newSegment.getLat(0), newSegment.getLng(0));
+        candidates.retainAll(ridesNear(newSegment.getLat(last), newSegment.getLng(last)));
+        for (int r : candidates) blackhole.consume(matcher.match(storedRides[r]));
+    }
+
+    @Benchmark
+    public void createSegmentUnpruned(Blackhole blackhole) {
+        SegmentMatcher matcher = new SegmentMatcher(newSegment);
+        for (Route ride : storedRides) blackhole.consume(matcher.match(ride));
+    }
+
+    private Set<Integer> ridesNear(double lat, double lng) {
+        Set<Integer> near = new LinkedHashSet<>();
+        for (long cell : TileGrid.cellsNear(lat, lng, SegmentMatcher.ENDPOINT_RADIUS_METERS)) {
+            List<Integer> passed = rideCells.get(cell);
+            if (passed != null) near.addAll(passed);
+        }
+        return near;
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.padyakol.benchmark;
+
+import com.example.padyakol.route.GeoMath;
+import com.example.padyakol.route.Route;
+import com.example.padyakol.route.RouteCodec;
+import com.example.padyakol.route.RouteSimplifier;
+import com.example.padyakol.route.TileGrid;
+import com.example.padyakol.tracking.RideAnalytics;
+import com.example.padyakol.transfer.TrackReader;
+
+import org.kxml2.io.KXmlParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import org.xmlpull.v1.XmlPullParser;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Importing a corpus of long GPX files from disk, the way RideImporter reads each one: streamed
+ * through the parser into the simplifier, the route encoder, the cell collector and the analytics,
+ * so only a file's kept points are ever held. The database writes that follow are left out; they
+ * need Room and the app.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TrackImportBenchmark {
+
+    private static final int FILES = 12;
+    // ~2 h at one fix a second: about 600 KB of GPX each
+    private static final int POINTS_PER_FILE = 7_200;
+
+    private File dir;
+    private File[] files;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("track-corpus").toFile();
+        files = new File[FILES];
+        for (int f = 0; f < FILES; f++) {
+            Route ride = SyntheticTraces.ride(POINTS_PER_FILE, SyntheticTraces.SEED + f);
+            files[f] = new File(dir, "ride" + f + ".gpx");
+            Files.write(files[f].toPath(), SyntheticTraces.gpx(ride));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (File file : files) file.delete();
+        dir.delete();
+    }
+
+    // Reported per file
+    @Benchmark
+    @OperationsPerInvocation(FILES)
+    public void importCorpus(Blackhole blackhole) throws Exception {
+        for (File file : files) {
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(file.toPath()))) {
+                XmlPullParser parser = new KXmlParser();
+                parser.setInput(in, null);
+                ImportedTrack track = new ImportedTrack();
+                TrackReader.read(parser, track);
+                blackhole.consume(track.route);
+                blackhole.consume(track.cells);
+                blackhole.consume(track.analytics.getMovingSeconds());
+            }
+        }
+    }
+
+    // The per-point work of RideImporter's TrackBuilder, for timed tracks
+    private static final class ImportedTrack implements TrackReader.Listener {
+        private RouteSimplifier.Streaming simplifier;
+        private RouteCodec.Builder builder;
+        private TileGrid.CellCollector collector;
+        RideAnalytics analytics;
+        byte[] route;
+        long[] cells;
+        private int count;
+        private double lastLat, lastLng, distanceMeters;
+
+        @Override
+        public void onTrackStart() {
+            simplifier = new RouteSimplifier.Streaming(RouteSimplifier.DEFAULT_TOLERANCE_METERS, this::keep);
+            builder = new RouteCodec.Builder(true);
+            collector = new TileGrid.CellCollector();
+            analytics = new RideAnalytics();
+            count = 0;
+            distanceMeters = 0;
+        }
+
+        @Override
+        public void onPoint(double lat, double lng, long time) {
+            if (count > 0) distanceMeters += GeoMath.distanceMeters(lastLat, lastLng, lat, lng);
+            analytics.onFix(time, distanceMeters / 1000.0);
+            lastLat = lat;
+            lastLng = lng;
+            count++;
+            simplifier.add(lat, lng, time);
+        }
+
+        private void keep(double lat, double lng, long time) {
+            builder.add(lat, lng, time);
+            collector.add(lat, lng);
+        }
+
+        @Override
+        public void onTrackEnd() {
+            simplifier.finish();
+            route = builder.build();
+            cells = collector.cells();
+        }
+    }
+}
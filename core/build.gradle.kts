@@ -0,0 +1,15 @@
+// Ride processing with no Android dependencies: route encoding and simplification, the spatial
+// grids, ride analytics, the crash journal and track files. Unit-tested from :app, measured by :benchmark.
+plugins {
+    `java-library`
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+dependencies {
+    // XmlPullParser is part of Android; on a plain JVM the user of TrackReader brings kxml2
+    compileOnly(libs.kxml2)
+}
@@ -0,0 +1,45 @@
+package com.example.padyakol.adapters;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * The text of a travel log row, from the ride's numbers. {@link RideRowFactory} builds rows with
+ * it; it lives apart from the factory so the benchmarks can run it without Android or Firestore.
+ * Keeps one set of formatters, so an instance must only be used from one thread.
+ */
+public final class RideRowText {
+
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("MMM dd, yyyy", Locale.ENGLISH);
+    private final SimpleDateFormat timeFormat = new SimpleDateFormat("hh:mm a", Locale.ENGLISH);
+    private final Date date = new Date();
+
+    public String date(long timestamp) {
+        date.setTime(timestamp);
+        return dateFormat.format(date);
+    }
+
+    public String time(long timestamp) {
+        date.setTime(timestamp);
+        return timeFormat.format(date);
+    }
+
+    public String distance(double distanceKm) {
+        return String.format(Locale.US, "%.2f km", distanceKm);
+    }
+
+    // No unit, for space
+    public String speed(double avgSpeedKmh) {
+        return String.format(Locale.US, "%.1f", avgSpeedKmh);
+    }
+
+    public String duration(long durationSeconds) {
+        long hours = durationSeconds / 3600;
+        long minutes = (durationSeconds % 3600) / 60;
+        if (hours > 0) {
+            return String.format(Locale.US, "%dh %02dm", hours, minutes);
+        }
+        return String.format(Locale.US, "%d mins", minutes);
+    }
+}
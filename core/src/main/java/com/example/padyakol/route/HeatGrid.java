@@ -0,0 +1,190 @@
+package com.example.padyakol.route;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Ride density in map tiles, one pyramid level per zoom from {@link #MIN_ZOOM} to {@link #MAX_ZOOM}.
+ *
+ * Each tile is a {@link #BINS} x {@link #BINS} grid counting the rides that passed through each
+ * bin. A ride's bins are walked exactly at every level, so a parent bin counts a ride once however
+ * many of its children the ride crossed, and adding or removing a ride only touches its own tiles.
+ * Map zooms above MAX_ZOOM are drawn from part of a MAX_ZOOM tile.
+ */
+public final class HeatGrid {
+
+    public static final int MIN_ZOOM = 6;
+    public static final int MAX_ZOOM = 16;
+    // Past this a bin is wider than the screen is useful for
+    public static final int MAX_RENDER_ZOOM = MAX_ZOOM + 4;
+
+    static final int BIN_BITS = 6;
+    public static final int BINS = 1 << BIN_BITS;
+    public static final int TILE_PX = 256;
+
+    // Rides through a bin at which it is drawn at full heat
+    static final int SATURATION_RIDES = 20;
+
+    private HeatGrid() {}
+
+    /** The bins a route passes through in one tile, as indices {@code row * BINS + column}, sorted. */
+    public static final class TileBins {
+        public final int zoom;
+        public final int x;
+        public final int y;
+        public final int[] bins;
+
+        TileBins(int zoom, int x, int y, int[] bins) {
+            this.zoom = zoom;
+            this.x = x;
+            this.y = y;
+            this.bins = bins;
+        }
+    }
+
+    // Every tile of every level the route passes through; a 30 km ride touches a few hundred
+    public static List<TileBins> binsAlong(double[] lats, double[] lngs, int count) {
+        List<TileBins> result = new ArrayList<>();
+        for (int zoom = MIN_ZOOM; zoom <= MAX_ZOOM; zoom++) {
+            long size = 1L << (zoom + BIN_BITS);
+            long tilesPerSide = size >> BIN_BITS;
+            long[] cells = TileGrid.cellsAlong(lats, lngs, count, zoom + BIN_BITS);
+            // Cells come sorted row by row across the whole map, so each tile's bins are regrouped
+            long[] keys = new long[cells.length];
+            for (int i = 0; i < cells.length; i++) {
+                long bx = cells[i] % size;
+                long by = cells[i] / size;
+                long tile = (by >> BIN_BITS) * tilesPerSide + (bx >> BIN_BITS);
+                keys[i] = tile << (2 * BIN_BITS) | (by & (BINS - 1)) << BIN_BITS | (bx & (BINS - 1));
+            }
+            Arrays.sort(keys);
+            int start = 0;
+            while (start < keys.length) {
+                long tile = keys[start] >>> (2 * BIN_BITS);
+                int end = start;
+                while (end < keys.length && keys[end] >>> (2 * BIN_BITS) == tile) end++;
+                int[] bins = new int[end - start];
+                for (int i = start; i < end; i++) {
+                    bins[i - start] = (int) (keys[i] & (BINS * BINS - 1));
+                }
+                result.add(new TileBins(zoom, (int) (tile % tilesPerSide), (int) (tile / tilesPerSide), bins));
+                start = end;
+            }
+        }
+        return result;
+    }
+
+    // Adds delta to each listed bin; counts never go below zero. Returns whether any bin is left non-zero.
+    public static boolean add(int[] counts, int[] bins, int delta) {
+        for (int bin : bins) {
+            counts[bin] = Math.max(0, counts[bin] + delta);
+        }
+        for (int c : counts) {
+            if (c != 0) return true;
+        }
+        return false;
+    }
+
+    // --- Storage ---
+
+    // Non-zero bins as varint (index delta, count) pairs: a tile crossed by a few rides is a few hundred bytes
+    public static byte[] pack(int[] counts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        int previous = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) continue;
+            writeVarint(out, i - previous);
+            writeVarint(out, counts[i]);
+            previous = i;
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int v) {
+        while ((v & ~0x7F) != 0) {
+            out.write((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.write(v);
+    }
+
+    // All BINS * BINS counts, zeros included
+    public static int[] unpack(byte[] packed) {
+        int[] counts = new int[BINS * BINS];
+        if (packed == null) return counts;
+        int index = 0;
+        boolean readingIndex = true;
+        int value = 0;
+        int shift = 0;
+        for (byte b : packed) {
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) != 0) {
+                shift += 7;
+                continue;
+            }
+            if (readingIndex) {
+                index += value;
+            } else {
+                counts[index] = value;
+            }
+            readingIndex = !readingIndex;
+            value = 0;
+            shift = 0;
+        }
+        return counts;
+    }
+
+    // --- Drawing ---
+
+    // The stored tile a map tile is drawn from: {zoom, x, y}, or null outside the pyramid
+    public static int[] sourceTile(int zoom, int x, int y) {
+        if (zoom < MIN_ZOOM || zoom > MAX_RENDER_ZOOM) return null;
+        if (zoom <= MAX_ZOOM) return new int[]{zoom, x, y};
+        int shift = zoom - MAX_ZOOM;
+        return new int[]{MAX_ZOOM, x >> shift, y >> shift};
+    }
+
+    /**
+     * ARGB pixels of the TILE_PX square map tile at (zoom, x, y), drawn from the counts of its
+     * {@link #sourceTile}. Empty bins are transparent; busier ones go from coolColor towards hotColor.
+     */
+    public static int[] render(int[] counts, int zoom, int x, int y, int coolColor, int hotColor) {
+        int shift = Math.max(0, zoom - MAX_ZOOM);
+        int span = BINS >> shift;
+        int offsetX = (x & ((1 << shift) - 1)) * span;
+        int offsetY = (y & ((1 << shift) - 1)) * span;
+        int binPx = TILE_PX / span;
+
+        int[] pixels = new int[TILE_PX * TILE_PX];
+        int[] palette = new int[SATURATION_RIDES + 1];
+        for (int row = 0; row < span; row++) {
+            for (int col = 0; col < span; col++) {
+                int count = counts[(offsetY + row) * BINS + offsetX + col];
+                if (count == 0) continue;
+                int level = Math.min(count, SATURATION_RIDES);
+                if (palette[level] == 0) palette[level] = colorFor(level, coolColor, hotColor);
+                int color = palette[level];
+                for (int py = row * binPx; py < (row + 1) * binPx; py++) {
+                    Arrays.fill(pixels, py * TILE_PX + col * binPx, py * TILE_PX + (col + 1) * binPx, color);
+                }
+            }
+        }
+        return pixels;
+    }
+
+    // Log scale, so a road ridden once still shows next to the daily commute
+    static int colorFor(int count, int coolColor, int hotColor) {
+        double t = Math.log1p(count) / Math.log1p(SATURATION_RIDES);
+        int alpha = (int) Math.round(255 * (0.45 + 0.55 * t));
+        int r = mix(coolColor >> 16 & 0xFF, hotColor >> 16 & 0xFF, t);
+        int g = mix(coolColor >> 8 & 0xFF, hotColor >> 8 & 0xFF, t);
+        int b = mix(coolColor & 0xFF, hotColor & 0xFF, t);
+        return alpha << 24 | r << 16 | g << 8 | b;
+    }
+
+    private static int mix(int from, int to, double t) {
+        return (int) Math.round(from + (to - from) * t);
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.padyakol.route;
+
+/**
+ * Decoded route geometry held in parallel primitive arrays. Timestamps are optional.
+ */
+public final class Route {
+
+    private final double[] lats;
+    private final double[] lngs;
+    private final long[] times;
+    private final int size;
+
+    public Route(double[] lats, double[] lngs, long[] times, int size) {
+        this.lats = lats;
+        this.lngs = lngs;
+        this.times = times;
+        this.size = size;
+    }
+
+    public int size() { return size; }
+    public boolean isEmpty() { return size == 0; }
+    public boolean hasTimes() { return times != null; }
+
+    public double getLat(int i) { return lats[i]; }
+    public double getLng(int i) { return lngs[i]; }
+    public long getTime(int i) { return times != null ? times[i] : 0L; }
+
+    // Backing arrays, valid up to size(). Don't modify them.
+    public double[] lats() { return lats; }
+    public double[] lngs() { return lngs; }
+    public long[] times() { return times; }
+}
@@ -0,0 +1,178 @@
+package com.example.padyakol.route;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Compact binary encoding for ride routes, stored as a single Firestore Blob.
+ *
+ * Layout (version 1):
+ *   version byte, flags byte, varint point count, then for every point the zig-zag varint
+ *   deltas of lat and lng quantized to 1e-5 degrees (about 1 m), followed by the zig-zag
+ *   varint time delta in milliseconds when FLAG_TIMES is set. The first point is delta'd
+ *   against zero.
+ *
+ * A typical 1 Hz ride comes out at 4-6 bytes per point, against ~50 for a GeoPoint map entry.
+ */
+public final class RouteCodec {
+
+    public static final int VERSION = 1;
+
+    static final int FLAG_TIMES = 1;
+    private static final double SCALE = 1e5;
+
+    private RouteCodec() {}
+
+    public static byte[] encode(double[] lats, double[] lngs, long[] times, int count) {
+        return encode(lats, lngs, times, null, count);
+    }
+
+    // Encodes only the given indices, e.g. the output of RouteSimplifier, without copying
+    public static byte[] encodeSelected(double[] lats, double[] lngs, long[] times, int[] indices) {
+        return encode(lats, lngs, times, indices, indices.length);
+    }
+
+    // Encodes the given indices of a recorded track, timestamps included
+    public static byte[] encodeSelected(TrackStore track, int[] indices) {
+        return encode(track.lats(), track.lngs(), null, track.timeOffsets(), track.getStartTime(),
+                indices, indices.length);
+    }
+
+    private static byte[] encode(double[] lats, double[] lngs, long[] times, int[] indices, int count) {
+        return encode(lats, lngs, times, null, 0L, indices, count);
+    }
+
+    // Times come either as absolute millis (times) or as offsets from timeBase (timeOffsets)
+    private static byte[] encode(double[] lats, double[] lngs, long[] times, int[] timeOffsets, long timeBase,
+                                 int[] indices, int count) {
+        boolean hasTimes = times != null || timeOffsets != null;
+        Builder builder = new Builder(hasTimes, count);
+        for (int k = 0; k < count; k++) {
+            int i = indices != null ? indices[k] : k;
+            long time = !hasTimes ? 0L : times != null ? times[i] : timeBase + timeOffsets[i];
+            builder.add(lats[i], lngs[i], time);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Encodes points as they arrive, e.g. from a file being parsed, without holding them as
+     * coordinates: only the encoded bytes grow, at 4-6 per point.
+     */
+    public static final class Builder {
+        private final boolean hasTimes;
+        private final ByteArrayOutputStream body;
+        private int count;
+        private long prevLat, prevLng, prevTime;
+
+        public Builder(boolean hasTimes) {
+            this(hasTimes, 256);
+        }
+
+        Builder(boolean hasTimes, int expectedCount) {
+            this.hasTimes = hasTimes;
+            body = new ByteArrayOutputStream(8 + expectedCount * (hasTimes ? 8 : 5));
+        }
+
+        // time is ignored without timestamps
+        public void add(double lat, double lng, long time) {
+            long qLat = Math.round(lat * SCALE);
+            long qLng = Math.round(lng * SCALE);
+            writeVarint(body, zigZag(qLat - prevLat));
+            writeVarint(body, zigZag(qLng - prevLng));
+            prevLat = qLat;
+            prevLng = qLng;
+            if (hasTimes) {
+                writeVarint(body, zigZag(time - prevTime));
+                prevTime = time;
+            }
+            count++;
+        }
+
+        public int size() {
+            return count;
+        }
+
+        public byte[] build() {
+            // The count goes first but is only known now, so the points are copied in behind it
+            byte[] points = body.toByteArray();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(points.length + 8);
+            out.write(VERSION);
+            out.write(hasTimes ? FLAG_TIMES : 0);
+            writeVarint(out, count);
+            out.write(points, 0, points.length);
+            return out.toByteArray();
+        }
+    }
+
+    public static Route decode(byte[] data) {
+        Reader in = new Reader(data);
+        int version = in.readByte();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported route version " + version);
+        }
+        int flags = in.readByte();
+        long count = in.readVarint();
+        // Every point takes at least two bytes, which bounds the count of a valid blob
+        if (count < 0 || count > (data.length - in.pos) / 2) {
+            throw new IllegalArgumentException("Corrupt route: bad point count " + count);
+        }
+
+        int n = (int) count;
+        double[] lats = new double[n];
+        double[] lngs = new double[n];
+        long[] times = (flags & FLAG_TIMES) != 0 ? new long[n] : null;
+
+        long lat = 0, lng = 0, time = 0;
+        for (int i = 0; i < n; i++) {
+            lat += unZigZag(in.readVarint());
+            lng += unZigZag(in.readVarint());
+            lats[i] = lat / SCALE;
+            lngs[i] = lng / SCALE;
+            if (times != null) {
+                time += unZigZag(in.readVarint());
+                times[i] = time;
+            }
+        }
+        return new Route(lats, lngs, times, n);
+    }
+
+    static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static class Reader {
+        final byte[] data;
+        int pos = 0;
+
+        Reader(byte[] data) {
+            this.data = data;
+        }
+
+        int readByte() {
+            if (pos >= data.length) throw new IllegalArgumentException("Corrupt route: truncated");
+            return data[pos++] & 0xFF;
+        }
+
+        long readVarint() {
+            long result = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return result;
+            }
+            throw new IllegalArgumentException("Corrupt route: varint too long");
+        }
+    }
+}
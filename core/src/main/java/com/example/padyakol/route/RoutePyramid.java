@@ -0,0 +1,119 @@
+package com.example.padyakol.route;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A route at several resolutions, built once per ride. Level 0 is the route as stored; each level
+ * after it is simplified with twice the previous tolerance, until a level is small enough to draw
+ * the whole ride at any zoom. Levels are built from each other, so a level's real error can reach
+ * the sum of the tolerances so far, which is under twice its own.
+ */
+public final class RoutePyramid {
+
+    // Coarsest level stops here; a few dozen points draws a whole ride at city zoom
+    public static final int MIN_LEVEL_POINTS = 64;
+
+    // Web Mercator ground resolution at zoom 0 on the equator, in metres per dp
+    private static final double METERS_PER_DP_ZOOM_0 = 156_543.03392;
+
+    private final double[][] lats;
+    private final double[][] lngs;
+    private final double[] tolerances;
+
+    private RoutePyramid(double[][] lats, double[][] lngs, double[] tolerances) {
+        this.lats = lats;
+        this.lngs = lngs;
+        this.tolerances = tolerances;
+    }
+
+    public static RoutePyramid build(Route route, double baseToleranceMeters) {
+        List<double[]> levelLats = new ArrayList<>();
+        List<double[]> levelLngs = new ArrayList<>();
+        List<Double> levelTolerances = new ArrayList<>();
+
+        double[] curLats = Arrays.copyOf(route.lats(), route.size());
+        double[] curLngs = Arrays.copyOf(route.lngs(), route.size());
+        levelLats.add(curLats);
+        levelLngs.add(curLngs);
+        levelTolerances.add(0.0);
+
+        double tolerance = baseToleranceMeters;
+        while (curLats.length > MIN_LEVEL_POINTS) {
+            int[] kept = RouteSimplifier.simplify(curLats, curLngs, curLats.length, tolerance);
+            if (kept.length == curLats.length) {
+                // Nothing dropped at this tolerance; try a coarser one before giving up on a level
+                tolerance *= 2;
+                continue;
+            }
+            double[] nextLats = new double[kept.length];
+            double[] nextLngs = new double[kept.length];
+            for (int i = 0; i < kept.length; i++) {
+                nextLats[i] = curLats[kept[i]];
+                nextLngs[i] = curLngs[kept[i]];
+            }
+            curLats = nextLats;
+            curLngs = nextLngs;
+            levelLats.add(curLats);
+            levelLngs.add(curLngs);
+            levelTolerances.add(tolerance);
+            tolerance *= 2;
+        }
+
+        double[] tolerancesArray = new double[levelTolerances.size()];
+        for (int i = 0; i < tolerancesArray.length; i++) tolerancesArray[i] = levelTolerances.get(i);
+        return new RoutePyramid(levelLats.toArray(new double[0][]), levelLngs.toArray(new double[0][]), tolerancesArray);
+    }
+
+    public int levelCount() { return lats.length; }
+    public int size(int level) { return lats[level].length; }
+    public double[] lats(int level) { return lats[level]; }
+    public double[] lngs(int level) { return lngs[level]; }
+    public double tolerance(int level) { return tolerances[level]; }
+
+    // Map ground resolution at a camera zoom, in metres per dp
+    public static double metersPerDp(float zoom, double latitude) {
+        return METERS_PER_DP_ZOOM_0 * Math.cos(Math.toRadians(latitude)) / Math.pow(2, zoom);
+    }
+
+    // Coarsest level whose error stays under about one dp on screen
+    public int levelFor(double metersPerDp) {
+        int level = 0;
+        for (int i = 1; i < tolerances.length; i++) {
+            if (2 * tolerances[i] <= metersPerDp) level = i;
+        }
+        return level;
+    }
+
+    /**
+     * Index ranges of the level that cross the given box, as {start, end} pairs with end inclusive.
+     * Each range keeps one point on either side of the box so lines leave the screen naturally.
+     */
+    public List<int[]> visibleRuns(int level, double south, double west, double north, double east) {
+        double[] la = lats[level];
+        double[] ln = lngs[level];
+        List<int[]> runs = new ArrayList<>();
+        int n = la.length;
+        if (n == 0) return runs;
+        if (n == 1) {
+            if (la[0] >= south && la[0] <= north && ln[0] >= west && ln[0] <= east) runs.add(new int[]{0, 0});
+            return runs;
+        }
+
+        int start = -1;
+        for (int i = 0; i < n - 1; i++) {
+            // Conservative: a segment counts if its bounding box touches the view
+            boolean visible = Math.max(la[i], la[i + 1]) >= south && Math.min(la[i], la[i + 1]) <= north
+                    && Math.max(ln[i], ln[i + 1]) >= west && Math.min(ln[i], ln[i + 1]) <= east;
+            if (visible && start < 0) {
+                start = i;
+            } else if (!visible && start >= 0) {
+                runs.add(new int[]{start, i});
+                start = -1;
+            }
+        }
+        if (start >= 0) runs.add(new int[]{start, n - 1});
+        return runs;
+    }
+}
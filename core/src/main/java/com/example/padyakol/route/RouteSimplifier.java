@@ -0,0 +1,163 @@
+package com.example.padyakol.route;
+
+/**
+ * Error-bounded route simplification (Douglas-Peucker) over primitive coordinate arrays.
+ * Every dropped point lies within {@code toleranceMeters} of the simplified line, so corners
+ * survive and straight stretches collapse to their endpoints.
+ * Pure computation with no Android dependencies; callers run it off the main thread.
+ */
+public final class RouteSimplifier {
+
+    public static final double DEFAULT_TOLERANCE_METERS = 4.0;
+
+    private RouteSimplifier() {}
+
+    /**
+     * Returns the indices (ascending) of the points to keep. The first and last points are
+     * always kept.
+     */
+    public static int[] simplify(double[] lats, double[] lngs, int count, double toleranceMeters) {
+        if (count <= 2) {
+            int[] all = new int[count];
+            for (int i = 0; i < count; i++) all[i] = i;
+            return all;
+        }
+
+        // Project onto a local plane in metres. Fine for anything a bike covers in a day.
+        double[] xs = new double[count];
+        double[] ys = new double[count];
+        double lat0 = lats[0];
+        double lng0 = lngs[0];
+        double mPerLng = GeoMath.metersPerDegreeLng(lat0);
+        for (int i = 0; i < count; i++) {
+            xs[i] = (lngs[i] - lng0) * mPerLng;
+            ys[i] = (lats[i] - lat0) * GeoMath.METERS_PER_DEGREE;
+        }
+
+        boolean[] keep = new boolean[count];
+        keep[0] = true;
+        keep[count - 1] = true;
+        int kept = 2;
+        double tolSq = toleranceMeters * toleranceMeters;
+
+        // Explicit stack instead of recursion; a long ride would otherwise risk a StackOverflowError
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = count - 1;
+
+        while (top > 0) {
+            int last = stack[--top];
+            int first = stack[--top];
+
+            double maxSq = -1;
+            int index = -1;
+            for (int i = first + 1; i < last; i++) {
+                double d = GeoMath.segmentDistanceSq(xs[i], ys[i], xs[first], ys[first], xs[last], ys[last]);
+                if (d > maxSq) {
+                    maxSq = d;
+                    index = i;
+                }
+            }
+
+            if (index != -1 && maxSq > tolSq) {
+                keep[index] = true;
+                kept++;
+                if (top + 4 > stack.length) {
+                    int[] grown = new int[stack.length * 2];
+                    System.arraycopy(stack, 0, grown, 0, top);
+                    stack = grown;
+                }
+                stack[top++] = first;
+                stack[top++] = index;
+                stack[top++] = index;
+                stack[top++] = last;
+            }
+        }
+
+        int[] result = new int[kept];
+        int j = 0;
+        for (int i = 0; i < count; i++) {
+            if (keep[i]) result[j++] = i;
+        }
+        return result;
+    }
+
+    /**
+     * One-pass simplification for points that arrive one at a time, e.g. from a file being parsed,
+     * holding at most {@link #MAX_WINDOW} of them. The newest point extends the current line as
+     * long as every point since the last kept one stays within the tolerance of it; otherwise the
+     * point before it is kept and starts the next line. Same error bound as {@link #simplify},
+     * usually with a few more points kept.
+     */
+    public static final class Streaming {
+
+        public interface Sink {
+            void onPoint(double lat, double lng, long time);
+        }
+
+        static final int MAX_WINDOW = 64;
+
+        private final double tolSq;
+        private final Sink sink;
+        private final double[] windowLats = new double[MAX_WINDOW];
+        private final double[] windowLngs = new double[MAX_WINDOW];
+        private final long[] windowTimes = new long[MAX_WINDOW];
+        private final double[] windowXs = new double[MAX_WINDOW];
+        private final double[] windowYs = new double[MAX_WINDOW];
+        private int buffered;
+
+        private boolean started;
+        private double lat0, lng0, mPerLng;
+        private double anchorX, anchorY;
+
+        public Streaming(double toleranceMeters, Sink sink) {
+            this.tolSq = toleranceMeters * toleranceMeters;
+            this.sink = sink;
+        }
+
+        public void add(double lat, double lng, long time) {
+            if (!started) {
+                // Local plane around the first point, as in simplify()
+                started = true;
+                lat0 = lat;
+                lng0 = lng;
+                mPerLng = GeoMath.metersPerDegreeLng(lat);
+                sink.onPoint(lat, lng, time);
+                return;
+            }
+            double x = (lng - lng0) * mPerLng;
+            double y = (lat - lat0) * GeoMath.METERS_PER_DEGREE;
+            // A full window is flushed the same way; its last point already fits the line, so the bound holds
+            if (buffered == MAX_WINDOW || !fits(x, y)) {
+                int last = buffered - 1;
+                sink.onPoint(windowLats[last], windowLngs[last], windowTimes[last]);
+                anchorX = windowXs[last];
+                anchorY = windowYs[last];
+                buffered = 0;
+            }
+            windowLats[buffered] = lat;
+            windowLngs[buffered] = lng;
+            windowTimes[buffered] = time;
+            windowXs[buffered] = x;
+            windowYs[buffered] = y;
+            buffered++;
+        }
+
+        private boolean fits(double x, double y) {
+            for (int i = 0; i < buffered; i++) {
+                if (GeoMath.segmentDistanceSq(windowXs[i], windowYs[i], anchorX, anchorY, x, y) > tolSq) return false;
+            }
+            return true;
+        }
+
+        // Keeps the last point
+        public void finish() {
+            if (buffered > 0) {
+                int last = buffered - 1;
+                sink.onPoint(windowLats[last], windowLngs[last], windowTimes[last]);
+                buffered = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.padyakol.route;
+
+import java.util.Arrays;
+
+/**
+ * Projects a route into a small pixel box, e.g. for list thumbnails. Equirectangular around the
+ * route's middle latitude, aspect ratio kept, centred. Points closer than minStepPx to the last kept
+ * one are dropped, so the output size depends on the box rather than on the ride's length.
+ */
+public final class RouteSketch {
+
+    private RouteSketch() {}
+
+    /** @return x/y pairs in pixels, y pointing down; empty for an empty route */
+    public static float[] project(double[] lats, double[] lngs, int count,
+                                  float width, float height, float padding, float minStepPx) {
+        if (count == 0) return new float[0];
+
+        double minLat = lats[0], maxLat = lats[0], minLng = lngs[0], maxLng = lngs[0];
+        for (int i = 1; i < count; i++) {
+            minLat = Math.min(minLat, lats[i]);
+            maxLat = Math.max(maxLat, lats[i]);
+            minLng = Math.min(minLng, lngs[i]);
+            maxLng = Math.max(maxLng, lngs[i]);
+        }
+
+        // Work in metres so east-west and north-south are scaled alike
+        double lngScale = GeoMath.metersPerDegreeLng((minLat + maxLat) / 2);
+        double spanX = (maxLng - minLng) * lngScale;
+        double spanY = (maxLat - minLat) * GeoMath.METERS_PER_DEGREE;
+        double boxW = width - 2 * padding;
+        double boxH = height - 2 * padding;
+        double span = Math.max(spanX / boxW, spanY / boxH);
+        double pxPerMeter = span > 0 ? 1.0 / span : 0;
+        double offsetX = padding + (boxW - spanX * pxPerMeter) / 2;
+        double offsetY = padding + (boxH - spanY * pxPerMeter) / 2;
+
+        float[] out = new float[count * 2];
+        int n = 0;
+        float minStepSq = minStepPx * minStepPx;
+        for (int i = 0; i < count; i++) {
+            float x = (float) (offsetX + (lngs[i] - minLng) * lngScale * pxPerMeter);
+            float y = (float) (offsetY + (maxLat - lats[i]) * GeoMath.METERS_PER_DEGREE * pxPerMeter);
+            boolean last = i == count - 1;
+            if (n > 0 && !last) {
+                float dx = x - out[n - 2];
+                float dy = y - out[n - 1];
+                if (dx * dx + dy * dy < minStepSq) continue;
+            }
+            out[n++] = x;
+            out[n++] = y;
+        }
+        return n == out.length ? out : Arrays.copyOf(out, n);
+    }
+}
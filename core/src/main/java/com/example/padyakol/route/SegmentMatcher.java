@@ -0,0 +1,192 @@
+package com.example.padyakol.route;
+
+/**
+ * Finds where a ride covered a segment, a stretch of road the rider marked, and how long it took.
+ *
+ * A ride matches when it passes close to the segment's start, follows it within a corridor the
+ * whole way, and reaches its finish. Following is checked in both directions, ride points against
+ * the segment and segment vertices against the ride, so cutting a corner doesn't count. The walk
+ * keeps a cursor along the segment, so one attempt is linear in the points of both.
+ *
+ * Build one per segment and reuse it; the segment's projection is precomputed.
+ */
+public final class SegmentMatcher {
+
+    // GPS error plus the 10 m the saved routes may be simplified by
+    public static final double ENDPOINT_RADIUS_METERS = 30.0;
+    static final double CORRIDOR_METERS = 40.0;
+
+    public static final class Effort {
+        private final int startIndex;
+        private final int endIndex;
+        private final long startTime;
+        private final long elapsedMillis;
+
+        Effort(int startIndex, int endIndex, long startTime, long elapsedMillis) {
+            this.startIndex = startIndex;
+            this.endIndex = endIndex;
+            this.startTime = startTime;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        // Ride point indices at the start and finish
+        public int getStartIndex() { return startIndex; }
+        public int getEndIndex() { return endIndex; }
+        public long getStartTime() { return startTime; }
+        public long getElapsedMillis() { return elapsedMillis; }
+    }
+
+    private final double originLat;
+    private final double originLng;
+    private final double metersPerDegLng;
+    // Segment vertices in metres from the start, and the distance along it to each
+    private final double[] xs;
+    private final double[] ys;
+    private final double[] along;
+    private final int size;
+
+    public SegmentMatcher(Route segment) {
+        if (segment.size() < 2) throw new IllegalArgumentException("A segment needs two points");
+        size = segment.size();
+        originLat = segment.getLat(0);
+        originLng = segment.getLng(0);
+        metersPerDegLng = GeoMath.metersPerDegreeLng(originLat);
+        xs = new double[size];
+        ys = new double[size];
+        along = new double[size];
+        for (int i = 0; i < size; i++) {
+            xs[i] = x(segment.getLng(i));
+            ys[i] = y(segment.getLat(i));
+            if (i > 0) along[i] = along[i - 1] + Math.hypot(xs[i] - xs[i - 1], ys[i] - ys[i - 1]);
+        }
+    }
+
+    private double x(double lng) {
+        return (lng - originLng) * metersPerDegLng;
+    }
+
+    private double y(double lat) {
+        return (lat - originLat) * GeoMath.METERS_PER_DEGREE;
+    }
+
+    public double getLengthMeters() {
+        return along[size - 1];
+    }
+
+    /**
+     * The fastest time the ride covered the segment, or null if it never did.
+     * Rides without timestamps (legacy routes) never match.
+     */
+    public Effort match(Route ride) {
+        int n = ride.size();
+        if (n < 2 || !ride.hasTimes()) return null;
+        double radiusSq = ENDPOINT_RADIUS_METERS * ENDPOINT_RADIUS_METERS;
+        double[] lats = ride.lats();
+        double[] lngs = ride.lngs();
+
+        Effort best = null;
+        int i = 0;
+        while (i < n) {
+            if (distanceSq(lats[i], lngs[i], 0) > radiusSq) {
+                i++;
+                continue;
+            }
+            // Start from the closest point of this pass by the start, the later one on ties
+            int start = i;
+            double startDist = distanceSq(lats[i], lngs[i], 0);
+            while (i + 1 < n && distanceSq(lats[i + 1], lngs[i + 1], 0) <= radiusSq) {
+                i++;
+                double d = distanceSq(lats[i], lngs[i], 0);
+                if (d <= startDist) {
+                    start = i;
+                    startDist = d;
+                }
+            }
+
+            int end = follow(ride, start);
+            if (end >= 0) {
+                long elapsed = ride.getTime(end) - ride.getTime(start);
+                if (best == null || elapsed < best.getElapsedMillis()) {
+                    best = new Effort(start, end, ride.getTime(start), elapsed);
+                }
+                // Laps: look for the next pass by the start after this effort
+                i = end;
+            }
+            i++;
+        }
+        return best;
+    }
+
+    private double distanceSq(double lat, double lng, int vertex) {
+        double dx = x(lng) - xs[vertex];
+        double dy = y(lat) - ys[vertex];
+        return dx * dx + dy * dy;
+    }
+
+    // Ride index where it reaches the finish having followed the segment from start, or -1
+    private int follow(Route ride, int start) {
+        double corridorSq = CORRIDOR_METERS * CORRIDOR_METERS;
+        double radiusSq = ENDPOINT_RADIUS_METERS * ENDPOINT_RADIUS_METERS;
+        double length = getLengthMeters();
+        double[] lats = ride.lats();
+        double[] lngs = ride.lngs();
+
+        int edge = 0;
+        double prevX = x(lngs[start]);
+        double prevY = y(lats[start]);
+        double progress = progress(prevX, prevY, 0);
+        int finish = -1;
+        double finishDist = Double.MAX_VALUE;
+        for (int j = start + 1; j < ride.size(); j++) {
+            double px = x(lngs[j]);
+            double py = y(lats[j]);
+
+            // Nearest edge ahead of the cursor, looking no further than this ride step could have gone
+            double reach = progress + Math.hypot(px - prevX, py - prevY) + 2 * CORRIDOR_METERS;
+            int bestEdge = edge;
+            double bestSq = Double.MAX_VALUE;
+            for (int e = edge; e < size - 1 && along[e] <= reach; e++) {
+                double d = GeoMath.segmentDistanceSq(px, py, xs[e], ys[e], xs[e + 1], ys[e + 1]);
+                if (d < bestSq) {
+                    bestSq = d;
+                    bestEdge = e;
+                }
+            }
+            if (bestSq > corridorSq) {
+                // Left the segment: fine once the finish has been reached, otherwise no match
+                return finish;
+            }
+            // Segment vertices skipped over must lie along this ride step, or the ride cut a corner
+            for (int v = edge + 1; v <= bestEdge; v++) {
+                if (GeoMath.segmentDistanceSq(xs[v], ys[v], prevX, prevY, px, py) > corridorSq) return finish;
+            }
+            edge = bestEdge;
+            progress = progress(px, py, edge);
+
+            double endDx = px - xs[size - 1];
+            double endDy = py - ys[size - 1];
+            double endSq = endDx * endDx + endDy * endDy;
+            if (endSq <= radiusSq && progress >= length - ENDPOINT_RADIUS_METERS) {
+                if (endSq < finishDist) {
+                    finish = j;
+                    finishDist = endSq;
+                }
+            } else if (finish >= 0) {
+                return finish;
+            }
+            prevX = px;
+            prevY = py;
+        }
+        return finish;
+    }
+
+    // Distance along the segment to the point's projection onto the given edge
+    private double progress(double px, double py, int edge) {
+        double dx = xs[edge + 1] - xs[edge];
+        double dy = ys[edge + 1] - ys[edge];
+        double length = along[edge + 1] - along[edge];
+        if (length == 0) return along[edge];
+        double t = ((px - xs[edge]) * dx + (py - ys[edge]) * dy) / length;
+        return along[edge] + Math.max(0, Math.min(length, t));
+    }
+}
@@ -0,0 +1,271 @@
+package com.example.padyakol.route;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+ * Fixed grid of Web Mercator tiles at {@link #ZOOM}, used to index which cells a ride passes through.
+ *
+ * Cells are numbered row-major, {@code y * 2^ZOOM + x}, so each row of a bounding box is one
+ * contiguous id range and a box query is a handful of range scans on the cell index. At zoom 16 a
+ * cell is about 600 m across near the equator (less further north), and a 30 km ride touches ~80.
+ */
+public final class TileGrid {
+
+    public static final int ZOOM = 16;
+    static final int SIZE = 1 << ZOOM;
+    // Web Mercator stops here; fixes beyond it are clamped onto the edge rows
+    private static final double MAX_LAT = 85.05112878;
+
+    private TileGrid() {}
+
+    public static long cellOf(double lat, double lng) {
+        return cellId(tileX(lng), tileY(lat));
+    }
+
+    static long cellId(int x, int y) {
+        return (long) y * SIZE + x;
+    }
+
+    static int cellX(long cell) { return (int) (cell % SIZE); }
+    static int cellY(long cell) { return (int) (cell / SIZE); }
+
+    private static int tileX(double lng) {
+        return clampTile((int) Math.floor(tileXExact(lng)));
+    }
+
+    private static int tileY(double lat) {
+        return clampTile((int) Math.floor(tileYExact(lat)));
+    }
+
+    private static double tileXExact(double lng) {
+        return tileXExact(lng, SIZE);
+    }
+
+    private static double tileYExact(double lat) {
+        return tileYExact(lat, SIZE);
+    }
+
+    private static double tileXExact(double lng, long size) {
+        return (lng + 180.0) / 360.0 * size;
+    }
+
+    private static double tileYExact(double lat, long size) {
+        double phi = Math.toRadians(Math.max(-MAX_LAT, Math.min(MAX_LAT, lat)));
+        return (1.0 - Math.log(Math.tan(phi) + 1.0 / Math.cos(phi)) / Math.PI) / 2.0 * size;
+    }
+
+    private static int clampTile(int t) {
+        return Math.max(0, Math.min(SIZE - 1, t));
+    }
+
+    // Edges of a cell in degrees: {south, west, north, east}
+    static double[] bounds(long cell) {
+        int x = cellX(cell);
+        int y = cellY(cell);
+        return new double[]{tileLat(y + 1), tileLng(x), tileLat(y), tileLng(x + 1)};
+    }
+
+    private static double tileLng(int x) {
+        return (double) x / SIZE * 360.0 - 180.0;
+    }
+
+    private static double tileLat(int y) {
+        return Math.toDegrees(Math.atan(Math.sinh(Math.PI * (1.0 - 2.0 * y / SIZE))));
+    }
+
+    /**
+     * Every cell the route's points or the segments between them pass through, sorted and unique.
+     * Simplified routes have long straight segments, so the segments are walked cell by cell rather
+     * than only looking at the points.
+     */
+    public static long[] cellsAlong(double[] lats, double[] lngs, int count) {
+        return cellsAlong(lats, lngs, count, ZOOM);
+    }
+
+    /**
+     * The same at another zoom, numbered {@code y * 2^zoom + x}; zooms up to 30 fit in a long.
+     * The walk is exact, so the cells at zoom z - 1 are the parents of the cells at zoom z.
+     */
+    public static long[] cellsAlong(double[] lats, double[] lngs, int count, int zoom) {
+        CellCollector collector = new CellCollector(zoom, Math.max(16, count * 2));
+        for (int i = 0; i < count; i++) {
+            collector.add(lats[i], lngs[i]);
+        }
+        return collector.cells();
+    }
+
+    /**
+     * {@link #cellsAlong} for points that arrive one at a time; holds only the cells, which for a
+     * ride are a small fraction of its points.
+     */
+    public static final class CellCollector {
+        private final long size;
+        private long[] cells;
+        private int n;
+        private boolean started;
+        private double x0, y0;
+
+        public CellCollector() {
+            this(ZOOM, 64);
+        }
+
+        CellCollector(int zoom, int capacity) {
+            size = 1L << zoom;
+            cells = new long[capacity];
+        }
+
+        public void add(double lat, double lng) {
+            double x1 = tileXExact(lng, size);
+            double y1 = tileYExact(lat, size);
+            if (!started) {
+                started = true;
+                append(clampedId(Math.floor(x1), Math.floor(y1), size));
+                x0 = x1;
+                y0 = y1;
+                return;
+            }
+
+            // Amanatides-Woo: step into whichever neighbouring cell the segment reaches first
+            long cx = (long) Math.floor(x0);
+            long cy = (long) Math.floor(y0);
+            long endX = (long) Math.floor(x1);
+            long endY = (long) Math.floor(y1);
+            double dx = x1 - x0;
+            double dy = y1 - y0;
+            int stepX = dx > 0 ? 1 : -1;
+            int stepY = dy > 0 ? 1 : -1;
+            double tDeltaX = dx != 0 ? Math.abs(1.0 / dx) : Double.POSITIVE_INFINITY;
+            double tDeltaY = dy != 0 ? Math.abs(1.0 / dy) : Double.POSITIVE_INFINITY;
+            double tMaxX = dx != 0 ? ((dx > 0 ? cx + 1 - x0 : x0 - cx) * tDeltaX) : Double.POSITIVE_INFINITY;
+            double tMaxY = dy != 0 ? ((dy > 0 ? cy + 1 - y0 : y0 - cy) * tDeltaY) : Double.POSITIVE_INFINITY;
+            while (cx != endX || cy != endY) {
+                if (tMaxX < tMaxY) {
+                    if (tMaxX > 1.0) break;
+                    cx += stepX;
+                    tMaxX += tDeltaX;
+                } else {
+                    if (tMaxY > 1.0) break;
+                    cy += stepY;
+                    tMaxY += tDeltaY;
+                }
+                append(clampedId(cx, cy, size));
+            }
+            append(clampedId(endX, endY, size));
+
+            x0 = x1;
+            y0 = y1;
+        }
+
+        private void append(long cell) {
+            // Consecutive points mostly stay in the same cell
+            if (n > 0 && cells[n - 1] == cell) return;
+            if (n == cells.length) cells = Arrays.copyOf(cells, n * 2);
+            cells[n++] = cell;
+        }
+
+        // Sorted and unique
+        public long[] cells() {
+            long[] sorted = Arrays.copyOf(cells, n);
+            Arrays.sort(sorted);
+            int unique = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                if (unique == 0 || sorted[i] != sorted[unique - 1]) sorted[unique++] = sorted[i];
+            }
+            return Arrays.copyOf(sorted, unique);
+        }
+    }
+
+    private static long clampedId(double x, double y, long size) {
+        long cx = Math.max(0, Math.min(size - 1, (long) x));
+        long cy = Math.max(0, Math.min(size - 1, (long) y));
+        return cy * size + cx;
+    }
+
+    /**
+     * The cells covering a bounding box as {@code [from, to]} id pairs, one per tile row.
+     * Boxes crossing the antimeridian aren't split; callers pass west <= east.
+     */
+    public static long[] rowRanges(double south, double west, double north, double east) {
+        int x0 = tileX(west);
+        int x1 = tileX(east);
+        int yTop = tileY(north);
+        int yBottom = tileY(south);
+        long[] ranges = new long[(yBottom - yTop + 1) * 2];
+        int i = 0;
+        for (int y = yTop; y <= yBottom; y++) {
+            ranges[i++] = cellId(x0, y);
+            ranges[i++] = cellId(x1, y);
+        }
+        return ranges;
+    }
+
+    // Bounding box of a circle as {south, west, north, east}
+    public static double[] circleBounds(double lat, double lng, double radiusMeters) {
+        double dLat = radiusMeters / GeoMath.METERS_PER_DEGREE;
+        double dLng = radiusMeters / Math.max(1.0, GeoMath.metersPerDegreeLng(lat));
+        return new double[]{lat - dLat, lng - dLng, lat + dLat, lng + dLng};
+    }
+
+    // Whether any part of the cell lies within radiusMeters of the point
+    public static boolean cellTouchesCircle(long cell, double lat, double lng, double radiusMeters) {
+        double[] b = bounds(cell);
+        double nearestLat = Math.max(b[0], Math.min(b[2], lat));
+        double nearestLng = Math.max(b[1], Math.min(b[3], lng));
+        return GeoMath.distanceMeters(lat, lng, nearestLat, nearestLng) <= radiusMeters;
+    }
+
+    // Every cell that comes within radiusMeters of the point, sorted; one to four for small radii
+    public static long[] cellsNear(double lat, double lng, double radiusMeters) {
+        double[] box = circleBounds(lat, lng, radiusMeters);
+        long[] ranges = rowRanges(box[0], box[1], box[2], box[3]);
+        long[] cells = new long[16];
+        int n = 0;
+        for (int i = 0; i < ranges.length; i += 2) {
+            for (long cell = ranges[i]; cell <= ranges[i + 1]; cell++) {
+                if (!cellTouchesCircle(cell, lat, lng, radiusMeters)) continue;
+                if (n == cells.length) cells = Arrays.copyOf(cells, n * 2);
+                cells[n++] = cell;
+            }
+        }
+        return Arrays.copyOf(cells, n);
+    }
+
+    // --- Storage ---
+
+    // Sorted cells as varint deltas. A ride's cells are close together, so most take one to three bytes.
+    public static byte[] pack(long[] sortedCells) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(sortedCells.length * 2 + 4);
+        long previous = 0;
+        for (long cell : sortedCells) {
+            long v = cell - previous;
+            previous = cell;
+            while ((v & ~0x7FL) != 0) {
+                out.write((int) ((v & 0x7F) | 0x80));
+                v >>>= 7;
+            }
+            out.write((int) v);
+        }
+        return out.toByteArray();
+    }
+
+    public static long[] unpack(byte[] packed) {
+        long[] cells = new long[packed.length];
+        int count = 0;
+        long previous = 0;
+        long value = 0;
+        int shift = 0;
+        for (byte b : packed) {
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) != 0) {
+                shift += 7;
+            } else {
+                previous += value;
+                cells[count++] = previous;
+                value = 0;
+                shift = 0;
+            }
+        }
+        return Arrays.copyOf(cells, count);
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.padyakol.route;
+
+/**
+ * Growable, primitive-backed store for the fixes of one ride.
+ *
+ * Columns are parallel arrays (lat/lng as double, time as int millis since the first fix,
+ * speed and accuracy as float), so appending and iterating allocate nothing and the live
+ * renderer, the simplifier and the save path can all read the same arrays without copying.
+ * That is 28 bytes per fix; an ArrayList of LatLng needs ~36 bytes per fix for the coordinates
+ * alone, plus an object for the GC to track on every fix.
+ *
+ * One writer thread, any number of readers: readers call {@link #size()} first and only touch
+ * indices below it. Growing replaces the arrays, but the old ones stay valid for those indices.
+ */
+public final class TrackStore {
+
+    private static final int DEFAULT_CAPACITY = 1024;
+    public static final int BYTES_PER_POINT = 8 + 8 + 4 + 4 + 4;
+
+    private double[] lats;
+    private double[] lngs;
+    private int[] times;
+    private float[] speeds;
+    private float[] accuracies;
+    private long startTime = 0L;
+    private volatile int size = 0;
+
+    public TrackStore() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public TrackStore(int initialCapacity) {
+        int capacity = Math.max(16, initialCapacity);
+        lats = new double[capacity];
+        lngs = new double[capacity];
+        times = new int[capacity];
+        speeds = new float[capacity];
+        accuracies = new float[capacity];
+    }
+
+    public void append(double lat, double lng, long timeMillis, float speed, float accuracy) {
+        int n = size;
+        if (n == 0) {
+            startTime = timeMillis;
+        }
+        if (n == lats.length) {
+            grow();
+        }
+        lats[n] = lat;
+        lngs[n] = lng;
+        // An int of millis covers ~24 days, far beyond any ride
+        times[n] = (int) (timeMillis - startTime);
+        speeds[n] = speed;
+        accuracies[n] = accuracy;
+        // Volatile write publishes the row to readers
+        size = n + 1;
+    }
+
+    private void grow() {
+        int capacity = lats.length + (lats.length >> 1);
+        lats = java.util.Arrays.copyOf(lats, capacity);
+        lngs = java.util.Arrays.copyOf(lngs, capacity);
+        times = java.util.Arrays.copyOf(times, capacity);
+        speeds = java.util.Arrays.copyOf(speeds, capacity);
+        accuracies = java.util.Arrays.copyOf(accuracies, capacity);
+    }
+
+    public int size() { return size; }
+    public boolean isEmpty() { return size == 0; }
+
+    public double getLat(int i) { return lats[i]; }
+    public double getLng(int i) { return lngs[i]; }
+    public long getTimeMillis(int i) { return startTime + times[i]; }
+    public float getSpeed(int i) { return speeds[i]; }
+    public float getAccuracy(int i) { return accuracies[i]; }
+    public long getStartTime() { return startTime; }
+
+    // Backing arrays, valid up to size(). Read size() before calling these, and don't modify them.
+    public double[] lats() { return lats; }
+    public double[] lngs() { return lngs; }
+    public int[] timeOffsets() { return times; }
+
+    // Heap used by the columns, for comparing against boxed storage
+    public long estimatedBytes() {
+        return (long) lats.length * BYTES_PER_POINT;
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.padyakol.tracking;
+
+import com.example.padyakol.route.GeoMath;
+
+/**
+ * The ride's distance, one fix at a time. Fixes closer than the minimum step to the last accepted
+ * one are GPS jitter and are dropped, so standing at a light doesn't add distance. Distances are
+ * {@link GeoMath#distanceMeters}, the same as imported rides and segment lengths use.
+ * Not thread safe; the tracking thread owns it.
+ */
+public final class DistanceAccumulator {
+
+    private final double minStepMeters;
+    private boolean hasLast;
+    private double lastLat;
+    private double lastLng;
+    private double distanceKm;
+
+    public DistanceAccumulator(double minStepMeters) {
+        this.minStepMeters = minStepMeters;
+    }
+
+    // Returns whether the fix was accepted; the first one always is
+    public boolean offer(double lat, double lng) {
+        if (hasLast) {
+            double meters = GeoMath.distanceMeters(lastLat, lastLng, lat, lng);
+            if (meters <= minStepMeters) return false;
+            distanceKm += meters / 1000.0;
+        }
+        hasLast = true;
+        lastLat = lat;
+        lastLng = lng;
+        return true;
+    }
+
+    public double getDistanceKm() {
+        return distanceKm;
+    }
+
+    // Carries on from a ride recovered from its journal
+    public void restore(double lat, double lng, double distanceKm) {
+        hasLast = true;
+        lastLat = lat;
+        lastLng = lng;
+        this.distanceKm = distanceKm;
+    }
+
+    public void reset() {
+        hasLast = false;
+        distanceKm = 0.0;
+    }
+}
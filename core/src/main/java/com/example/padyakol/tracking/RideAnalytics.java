@@ -0,0 +1,152 @@
+package com.example.padyakol.tracking;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+ * Ride statistics built up one fix at a time on the tracking thread, so nothing has to walk the
+ * route once the ride is over. Each fix costs O(1): the cumulative distance already computed by
+ * the engine is all it needs besides the fix time.
+ *
+ * Speeds are taken from the distance between fixes rather than the GPS speed, so they agree with
+ * the ride's distance. Not thread safe.
+ */
+public final class RideAnalytics {
+
+    // Slower than this between two fixes counts as stopped: traffic lights, walking the bike
+    static final double MOVING_THRESHOLD_KMH = 3.0;
+    // Max speed is taken over the last few segments, so one jumpy fix can't set it
+    static final int MAX_SPEED_WINDOW = 5;
+    // Moving time per 5 km/h band; the last band is open-ended
+    public static final int HISTOGRAM_BIN_KMH = 5;
+    public static final int HISTOGRAM_BINS = 10;
+
+    private long lastTime = -1L;
+    private double lastDistanceKm;
+
+    private long movingMillis;
+    private final long[] histogramMillis = new long[HISTOGRAM_BINS];
+
+    // Ring of the latest segments for the smoothed max speed
+    private final double[] windowKm = new double[MAX_SPEED_WINDOW];
+    private final long[] windowMillis = new long[MAX_SPEED_WINDOW];
+    private int windowNext;
+    private int windowCount;
+    private double windowKmSum;
+    private long windowMillisSum;
+    private double maxSpeedKmh;
+
+    // Whole-kilometre splits so far, as seconds per kilometre
+    private int[] splits = new int[16];
+    private int splitCount;
+    private double lastSplitTime;
+
+    /**
+     * @param timeMillis fix time
+     * @param distanceKm ride distance up to and including this fix
+     */
+    public void onFix(long timeMillis, double distanceKm) {
+        if (lastTime < 0) {
+            lastTime = timeMillis;
+            lastDistanceKm = distanceKm;
+            lastSplitTime = timeMillis;
+            return;
+        }
+        long dt = timeMillis - lastTime;
+        double dKm = distanceKm - lastDistanceKm;
+        if (dt <= 0) {
+            // Out-of-order or duplicate timestamp: keep the distance, there is no time to spread it over
+            lastDistanceKm = distanceKm;
+            return;
+        }
+
+        double speedKmh = dKm / (dt / 3_600_000.0);
+        if (speedKmh >= MOVING_THRESHOLD_KMH) {
+            movingMillis += dt;
+            int bin = Math.min((int) (speedKmh / HISTOGRAM_BIN_KMH), HISTOGRAM_BINS - 1);
+            histogramMillis[bin] += dt;
+        }
+
+        if (windowCount == MAX_SPEED_WINDOW) {
+            windowKmSum -= windowKm[windowNext];
+            windowMillisSum -= windowMillis[windowNext];
+        } else {
+            windowCount++;
+        }
+        windowKm[windowNext] = dKm;
+        windowMillis[windowNext] = dt;
+        windowKmSum += dKm;
+        windowMillisSum += dt;
+        windowNext = (windowNext + 1) % MAX_SPEED_WINDOW;
+        if (windowCount == MAX_SPEED_WINDOW) {
+            maxSpeedKmh = Math.max(maxSpeedKmh, windowKmSum / (windowMillisSum / 3_600_000.0));
+        }
+
+        // A long segment can cross more than one kilometre mark; each is placed by interpolation
+        double nextMarkKm = splitCount + 1;
+        while (distanceKm >= nextMarkKm) {
+            double markTime = lastTime + (nextMarkKm - lastDistanceKm) / dKm * dt;
+            appendSplit((int) Math.round((markTime - lastSplitTime) / 1000.0));
+            lastSplitTime = markTime;
+            nextMarkKm = splitCount + 1;
+        }
+
+        lastTime = timeMillis;
+        lastDistanceKm = distanceKm;
+    }
+
+    private void appendSplit(int seconds) {
+        if (splitCount == splits.length) splits = Arrays.copyOf(splits, splitCount * 2);
+        splits[splitCount++] = seconds;
+    }
+
+    // Smoothed over MAX_SPEED_WINDOW segments; 0 for rides shorter than that
+    public double getMaxSpeedKmh() { return maxSpeedKmh; }
+
+    public long getMovingSeconds() { return movingMillis / 1000; }
+
+    public int[] getSplitSeconds() { return Arrays.copyOf(splits, splitCount); }
+
+    // Seconds spent moving in each HISTOGRAM_BIN_KMH band
+    public int[] getSpeedHistogram() {
+        int[] seconds = new int[HISTOGRAM_BINS];
+        for (int i = 0; i < HISTOGRAM_BINS; i++) {
+            seconds[i] = (int) (histogramMillis[i] / 1000);
+        }
+        return seconds;
+    }
+
+    // --- Storage ---
+
+    // Small non-negative ints as unsigned LEB128 varints: a split or histogram entry is usually two bytes
+    public static byte[] pack(int[] values) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(values.length * 2);
+        for (int value : values) {
+            int v = Math.max(0, value);
+            while ((v & ~0x7F) != 0) {
+                out.write((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            out.write(v);
+        }
+        return out.toByteArray();
+    }
+
+    public static int[] unpack(byte[] packed) {
+        int[] values = new int[packed.length];
+        int count = 0;
+        int value = 0;
+        int shift = 0;
+        for (byte b : packed) {
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) != 0) {
+                shift += 7;
+            } else {
+                values[count++] = value;
+                value = 0;
+                shift = 0;
+            }
+        }
+        return Arrays.copyOf(values, count);
+    }
+}
@@ -0,0 +1,218 @@
+package com.example.padyakol.tracking;
+
+import com.example.padyakol.route.TrackStore;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only on-disk log of the fixes of the ride being recorded, so a ride survives the
+ * process being killed.
+ *
+ * File layout: a 16 byte header (magic, version, ride start time) followed by fixed-size
+ * records of lat, lng, time, speed, accuracy, cumulative distance and a CRC32 of the record.
+ * Records are written in small batches and fsync'd at periodic checkpoints; replay stops at the
+ * first short or corrupt record, which is what a crash mid-write leaves behind.
+ *
+ * Not thread safe. The tracking thread is the only writer.
+ */
+public final class RideJournal implements Closeable {
+
+    private static final int MAGIC = 0x50444A31; // "PDJ1"
+    private static final int VERSION = 1;
+    static final int HEADER_BYTES = 16;
+    static final int RECORD_BYTES = 8 + 8 + 8 + 4 + 4 + 8 + 4;
+
+    // Handed to the OS every few fixes (enough to survive a process kill) ...
+    static final int FLUSH_EVERY_RECORDS = 4;
+    // ... and forced to storage less often (to survive a power loss)
+    static final int SYNC_EVERY_RECORDS = 64;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(RECORD_BYTES * FLUSH_EVERY_RECORDS);
+    private final CRC32 crc = new CRC32();
+    private int unsynced = 0;
+
+    private RideJournal(RandomAccessFile file) {
+        this.file = file;
+        this.channel = file.getChannel();
+    }
+
+    // Starts a new journal, replacing any previous one
+    public static RideJournal create(File path, long startTime) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(path, "rw");
+        file.setLength(0);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).putInt(VERSION).putLong(startTime).flip();
+        file.getChannel().write(header);
+        file.getChannel().force(false);
+        return new RideJournal(file);
+    }
+
+    // Continues a replayed journal, dropping whatever invalid tail it had
+    public static RideJournal reopen(File path, Recovered recovered) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(path, "rw");
+        long validLength = HEADER_BYTES + (long) recovered.getRecordCount() * RECORD_BYTES;
+        file.setLength(validLength);
+        file.seek(validLength);
+        return new RideJournal(file);
+    }
+
+    public void append(double lat, double lng, long timeMillis, float speed, float accuracy, double distanceKm)
+            throws IOException {
+        int start = buffer.position();
+        buffer.putDouble(lat).putDouble(lng).putLong(timeMillis)
+                .putFloat(speed).putFloat(accuracy).putDouble(distanceKm);
+        crc.reset();
+        crc.update(buffer.array(), start, RECORD_BYTES - 4);
+        buffer.putInt((int) crc.getValue());
+
+        if (!buffer.hasRemaining()) {
+            flush();
+        }
+        if (++unsynced >= SYNC_EVERY_RECORDS) {
+            checkpoint();
+        }
+    }
+
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    public void checkpoint() throws IOException {
+        flush();
+        channel.force(false);
+        unsynced = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            checkpoint();
+        } finally {
+            file.close();
+        }
+    }
+
+    public static boolean exists(File path) {
+        return path.length() >= HEADER_BYTES;
+    }
+
+    public static void delete(File path) {
+        //noinspection ResultOfMethodCallIgnored
+        path.delete();
+    }
+
+    /**
+     * Reads back every intact record. Returns null if there is no usable journal.
+     */
+    public static Recovered replay(File path) throws IOException {
+        if (!exists(path)) return null;
+
+        try (RandomAccessFile file = new RandomAccessFile(path, "r")) {
+            FileChannel channel = file.getChannel();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            readFully(channel, header);
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) return null;
+            long startTime = header.getLong();
+
+            long available = (channel.size() - HEADER_BYTES) / RECORD_BYTES;
+            TrackStore track = new TrackStore((int) Math.min(available, Integer.MAX_VALUE - 8));
+            double distanceKm = 0.0;
+            boolean cleanEnd = true;
+            // Rebuilt during the same pass, so a resumed ride keeps its splits and moving time
+            RideAnalytics analytics = new RideAnalytics();
+
+            ByteBuffer chunk = ByteBuffer.allocate(RECORD_BYTES * 256);
+            CRC32 crc = new CRC32();
+            boolean done = false;
+            while (!done) {
+                chunk.clear();
+                int read = 0;
+                while (chunk.hasRemaining()) {
+                    int n = channel.read(chunk);
+                    if (n < 0) break;
+                    read += n;
+                }
+                chunk.flip();
+                if (read == 0) break;
+
+                while (chunk.remaining() >= RECORD_BYTES) {
+                    int start = chunk.position();
+                    crc.reset();
+                    crc.update(chunk.array(), start, RECORD_BYTES - 4);
+                    double lat = chunk.getDouble();
+                    double lng = chunk.getDouble();
+                    long time = chunk.getLong();
+                    float speed = chunk.getFloat();
+                    float accuracy = chunk.getFloat();
+                    double distance = chunk.getDouble();
+                    if (chunk.getInt() != (int) crc.getValue()) {
+                        cleanEnd = false;
+                        done = true;
+                        break;
+                    }
+                    track.append(lat, lng, time, speed, accuracy);
+                    analytics.onFix(time, distance);
+                    distanceKm = distance;
+                }
+                if (!done && chunk.hasRemaining()) {
+                    // A partial record can only be the torn last write
+                    cleanEnd = false;
+                    done = true;
+                }
+                if (read < chunk.capacity()) done = true;
+            }
+            return new Recovered(startTime, track, distanceKm, analytics, cleanEnd);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) throw new EOFException("Journal header truncated");
+        }
+    }
+
+    public static final class Recovered {
+        private final long startTime;
+        private final TrackStore track;
+        private final double distanceKm;
+        private final RideAnalytics analytics;
+        private final boolean cleanEnd;
+
+        Recovered(long startTime, TrackStore track, double distanceKm, RideAnalytics analytics, boolean cleanEnd) {
+            this.startTime = startTime;
+            this.track = track;
+            this.distanceKm = distanceKm;
+            this.analytics = analytics;
+            this.cleanEnd = cleanEnd;
+        }
+
+        public long getStartTime() { return startTime; }
+        public TrackStore getTrack() { return track; }
+        public double getDistanceKm() { return distanceKm; }
+        // Fed every replayed fix; recording can carry on feeding it
+        public RideAnalytics getAnalytics() { return analytics; }
+        public int getRecordCount() { return track.size(); }
+
+        // False if a torn or corrupt tail was dropped
+        public boolean hasCleanEnd() { return cleanEnd; }
+
+        // Last fix time, or the start time if nothing was recorded
+        public long getEndTime() {
+            return track.isEmpty() ? startTime : track.getTimeMillis(track.size() - 1);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.padyakol.transfer;
+
+/** Track files other apps and devices read and write. */
+public enum TrackFormat {
+    GPX("gpx", "application/gpx+xml"),
+    TCX("tcx", "application/vnd.garmin.tcx+xml");
+
+    public final String extension;
+    public final String mimeType;
+
+    TrackFormat(String extension, String mimeType) {
+        this.extension = extension;
+        this.mimeType = mimeType;
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.padyakol.transfer;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+
+/**
+ * Reads GPX and TCX tracks off a pull parser, handing each point to a {@link Listener} as it is
+ * parsed. Nothing is kept per point, so a file of any length is read in the same memory; what the
+ * listener keeps is up to it.
+ *
+ * GPX tracks are {@code <trk>}s of {@code <trkpt lat lon>} with an optional {@code <time>}. TCX
+ * tracks are {@code <Activity>}s or {@code <Course>}s of {@code <Trackpoint>}s; those without a
+ * {@code <Position>} (paused, or heart rate only) are skipped. Element names are matched without
+ * their namespace prefix, so the parser may or may not process namespaces. Track names aren't
+ * read: rides have none.
+ */
+public final class TrackReader {
+
+    public static final long NO_TIME = Long.MIN_VALUE;
+
+    public interface Listener {
+        void onTrackStart();
+
+        // time is NO_TIME when the point has none
+        void onPoint(double lat, double lng, long time);
+
+        void onTrackEnd();
+    }
+
+    private TrackReader() {}
+
+    /**
+     * Reads the document to its end. Fails on anything that isn't GPX or TCX, and on malformed
+     * XML; tracks already passed to the listener by then stay passed.
+     */
+    public static TrackFormat read(XmlPullParser parser, Listener listener) throws XmlPullParserException, IOException {
+        int event = parser.getEventType();
+        while (event != XmlPullParser.START_TAG) {
+            if (event == XmlPullParser.END_DOCUMENT) throw new XmlPullParserException("Empty track file");
+            event = parser.next();
+        }
+        String root = localName(parser.getName());
+        if (root.equals("gpx")) {
+            readGpx(parser, listener);
+            return TrackFormat.GPX;
+        }
+        if (root.equals("TrainingCenterDatabase")) {
+            readTcx(parser, listener);
+            return TrackFormat.TCX;
+        }
+        throw new XmlPullParserException("Not a GPX or TCX file: <" + root + ">");
+    }
+
+    private static void readGpx(XmlPullParser parser, Listener listener) throws XmlPullParserException, IOException {
+        boolean inTrack = false;
+        boolean inPoint = false;
+        double lat = 0, lng = 0;
+        long time = NO_TIME;
+
+        for (int event = parser.next(); event != XmlPullParser.END_DOCUMENT; event = parser.next()) {
+            if (event == XmlPullParser.START_TAG) {
+                String name = localName(parser.getName());
+                if (name.equals("trk")) {
+                    inTrack = true;
+                    listener.onTrackStart();
+                } else if (inTrack && name.equals("trkpt")) {
+                    lat = parseCoordinate(parser.getAttributeValue(null, "lat"), 90);
+                    lng = parseCoordinate(parser.getAttributeValue(null, "lon"), 180);
+                    time = NO_TIME;
+                    inPoint = true;
+                } else if (inPoint && name.equals("time")) {
+                    time = TrackTime.parse(parser.nextText());
+                }
+            } else if (event == XmlPullParser.END_TAG) {
+                String name = localName(parser.getName());
+                if (inPoint && name.equals("trkpt")) {
+                    inPoint = false;
+                    if (!Double.isNaN(lat) && !Double.isNaN(lng)) listener.onPoint(lat, lng, time);
+                } else if (inTrack && name.equals("trk")) {
+                    inTrack = false;
+                    listener.onTrackEnd();
+                }
+            }
+        }
+    }
+
+    private static void readTcx(XmlPullParser parser, Listener listener) throws XmlPullParserException, IOException {
+        boolean inTrack = false;
+        boolean inPoint = false;
+        double lat = Double.NaN, lng = Double.NaN;
+        long time = NO_TIME;
+
+        for (int event = parser.next(); event != XmlPullParser.END_DOCUMENT; event = parser.next()) {
+            if (event == XmlPullParser.START_TAG) {
+                String name = localName(parser.getName());
+                if (name.equals("Activity") || name.equals("Course")) {
+                    inTrack = true;
+                    listener.onTrackStart();
+                } else if (inTrack && name.equals("Trackpoint")) {
+                    lat = Double.NaN;
+                    lng = Double.NaN;
+                    time = NO_TIME;
+                    inPoint = true;
+                } else if (inPoint && name.equals("Time")) {
+                    time = TrackTime.parse(parser.nextText());
+                } else if (inPoint && name.equals("LatitudeDegrees")) {
+                    lat = parseCoordinate(parser.nextText(), 90);
+                } else if (inPoint && name.equals("LongitudeDegrees")) {
+                    lng = parseCoordinate(parser.nextText(), 180);
+                }
+            } else if (event == XmlPullParser.END_TAG) {
+                String name = localName(parser.getName());
+                if (inPoint && name.equals("Trackpoint")) {
+                    inPoint = false;
+                    if (!Double.isNaN(lat) && !Double.isNaN(lng)) listener.onPoint(lat, lng, time);
+                } else if (inTrack && (name.equals("Activity") || name.equals("Course"))) {
+                    inTrack = false;
+                    listener.onTrackEnd();
+                }
+            }
+        }
+    }
+
+    // NaN for a missing, malformed or out-of-range value, so the point is dropped rather than the file
+    private static double parseCoordinate(String text, double limit) {
+        if (text == null) return Double.NaN;
+        try {
+            double value = Double.parseDouble(text.trim());
+            return Math.abs(value) <= limit ? value : Double.NaN;
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    private static String localName(String name) {
+        int colon = name.indexOf(':');
+        return colon < 0 ? name : name.substring(colon + 1);
+    }
+}
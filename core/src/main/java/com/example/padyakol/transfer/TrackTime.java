@@ -0,0 +1,120 @@
+package com.example.padyakol.transfer;
+
+/**
+ * ISO 8601 timestamps as GPX and TCX use them, e.g. 2024-03-05T06:12:33Z or
+ * 2024-03-05T14:12:33.250+08:00. Parsed by hand: a long track has one per point, and
+ * java.time would allocate several objects for each.
+ */
+final class TrackTime {
+
+    private TrackTime() {}
+
+    // Millis since the epoch, or TrackReader.NO_TIME when the text isn't a timestamp. No zone is taken as UTC.
+    static long parse(String text) {
+        String s = text.trim();
+        int n = s.length();
+        if (n < 19 || s.charAt(4) != '-' || s.charAt(7) != '-' || (s.charAt(10) != 'T' && s.charAt(10) != ' ')
+                || s.charAt(13) != ':' || s.charAt(16) != ':') {
+            return TrackReader.NO_TIME;
+        }
+        int year = digits(s, 0, 4);
+        int month = digits(s, 5, 2);
+        int day = digits(s, 8, 2);
+        int hour = digits(s, 11, 2);
+        int minute = digits(s, 14, 2);
+        int second = digits(s, 17, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31 || hour < 0 || hour > 23
+                || minute < 0 || minute > 59 || second < 0 || second > 60) {
+            return TrackReader.NO_TIME;
+        }
+
+        int pos = 19;
+        long millis = 0;
+        if (pos < n && (s.charAt(pos) == '.' || s.charAt(pos) == ',')) {
+            pos++;
+            int scale = 100;
+            int start = pos;
+            while (pos < n && Character.isDigit(s.charAt(pos))) {
+                millis += (s.charAt(pos) - '0') * scale;
+                scale /= 10;
+                pos++;
+            }
+            if (pos == start) return TrackReader.NO_TIME;
+        }
+
+        long offsetMinutes = 0;
+        if (pos < n) {
+            char zone = s.charAt(pos);
+            if (zone == 'Z' || zone == 'z') {
+                pos++;
+            } else if (zone == '+' || zone == '-') {
+                int hh = pos + 3 <= n ? digits(s, pos + 1, 2) : -1;
+                int mmAt = pos + 3 < n && s.charAt(pos + 3) == ':' ? pos + 4 : pos + 3;
+                int mm = mmAt == n ? 0 : mmAt + 2 <= n ? digits(s, mmAt, 2) : -1;
+                if (hh < 0 || mm < 0) return TrackReader.NO_TIME;
+                offsetMinutes = (zone == '+' ? 1 : -1) * (hh * 60L + mm);
+                pos = mmAt == n ? n : mmAt + 2;
+            }
+            if (pos != n) return TrackReader.NO_TIME;
+        }
+
+        long days = daysFromCivil(year, month, day);
+        long seconds = days * 86_400L + hour * 3_600L + minute * 60L + second - offsetMinutes * 60L;
+        return seconds * 1_000L + millis;
+    }
+
+    private static int digits(String s, int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    // UTC, with milliseconds only when there are any
+    static void format(long timeMillis, StringBuilder out) {
+        long seconds = Math.floorDiv(timeMillis, 1_000L);
+        int millis = (int) Math.floorMod(timeMillis, 1_000L);
+        long days = Math.floorDiv(seconds, 86_400L);
+        int secondOfDay = (int) Math.floorMod(seconds, 86_400L);
+
+        // Inverse of daysFromCivil
+        long z = days + 719_468;
+        long era = Math.floorDiv(z, 146_097);
+        long doe = z - era * 146_097;
+        long yoe = (doe - doe / 1_460 + doe / 36_524 - doe / 146_096) / 365;
+        long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        long mp = (5 * doy + 2) / 153;
+        int day = (int) (doy - (153 * mp + 2) / 5 + 1);
+        int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        long year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+
+        pad(out, year, 4).append('-');
+        pad(out, month, 2).append('-');
+        pad(out, day, 2).append('T');
+        pad(out, secondOfDay / 3_600, 2).append(':');
+        pad(out, secondOfDay / 60 % 60, 2).append(':');
+        pad(out, secondOfDay % 60, 2);
+        if (millis != 0) pad(out.append('.'), millis, 3);
+        out.append('Z');
+    }
+
+    private static StringBuilder pad(StringBuilder out, long value, int width) {
+        for (long limit = 10; width > 1; width--, limit *= 10) {
+            if (value < limit) out.append('0');
+        }
+        return out.append(value);
+    }
+
+    // Days since 1970-01-01 in the proleptic Gregorian calendar (H. Hinnant's algorithm)
+    private static long daysFromCivil(long year, int month, int day) {
+        year -= month <= 2 ? 1 : 0;
+        long era = Math.floorDiv(year, 400);
+        long yoe = year - era * 400;
+        long doy = (153L * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146_097 + doe - 719_468;
+    }
+}
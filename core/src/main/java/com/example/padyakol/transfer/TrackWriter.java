@@ -0,0 +1,134 @@
+package com.example.padyakol.transfer;
+
+import com.example.padyakol.route.GeoMath;
+import com.example.padyakol.route.Route;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes one ride as a GPX or TCX document, point by point into the given writer, so nothing
+ * the size of the file is built in memory. Callers buffer the writer and close it.
+ *
+ * Coordinates are written with the five decimals routes are stored with, so reading a file back
+ * gives the same route. Routes saved without timestamps have no {@code <time>}/{@code <Time>}
+ * on their points rather than made-up ones.
+ */
+public final class TrackWriter {
+
+    private static final String CREATOR = "PadyakOL";
+
+    private TrackWriter() {}
+
+    public static void write(Writer out, TrackFormat format, String name, long startTime, long durationSeconds,
+                             double distanceMeters, Route route) throws IOException {
+        if (format == TrackFormat.GPX) {
+            writeGpx(out, name, startTime, route);
+        } else {
+            writeTcx(out, startTime, durationSeconds, distanceMeters, route);
+        }
+    }
+
+    public static void writeGpx(Writer out, String name, long startTime, Route route) throws IOException {
+        StringBuilder line = new StringBuilder(128);
+        line.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<gpx version=\"1.1\" creator=\"").append(CREATOR)
+                .append("\" xmlns=\"http://www.topografix.com/GPX/1/1\">\n")
+                .append(" <metadata><time>");
+        TrackTime.format(startTime, line);
+        line.append("</time></metadata>\n <trk>\n  <name>");
+        escape(name, line);
+        line.append("</name>\n  <type>cycling</type>\n  <trkseg>\n");
+        flush(line, out);
+
+        for (int i = 0; i < route.size(); i++) {
+            line.append("   <trkpt lat=\"");
+            appendCoordinate(route.getLat(i), line);
+            line.append("\" lon=\"");
+            appendCoordinate(route.getLng(i), line);
+            if (route.hasTimes()) {
+                line.append("\"><time>");
+                TrackTime.format(route.getTime(i), line);
+                line.append("</time></trkpt>\n");
+            } else {
+                line.append("\"/>\n");
+            }
+            flush(line, out);
+        }
+
+        out.write("  </trkseg>\n </trk>\n</gpx>\n");
+    }
+
+    // One activity with a single lap; TCX has no name for activities, its Id is the start time
+    public static void writeTcx(Writer out, long startTime, long durationSeconds, double distanceMeters,
+                                Route route) throws IOException {
+        StringBuilder line = new StringBuilder(192);
+        line.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<TrainingCenterDatabase xmlns=\"http://www.garmin.com/xmlschemas/TrainingCenterDatabase/v2\">\n")
+                .append(" <Activities>\n  <Activity Sport=\"Biking\">\n   <Id>");
+        TrackTime.format(startTime, line);
+        line.append("</Id>\n   <Lap StartTime=\"");
+        TrackTime.format(startTime, line);
+        line.append("\">\n    <TotalTimeSeconds>").append(durationSeconds)
+                .append("</TotalTimeSeconds>\n    <DistanceMeters>").append(Math.round(distanceMeters))
+                .append("</DistanceMeters>\n    <Calories>0</Calories>\n    <Intensity>Active</Intensity>\n")
+                .append("    <TriggerMethod>Manual</TriggerMethod>\n    <Track>\n");
+        flush(line, out);
+
+        double cumulative = 0;
+        for (int i = 0; i < route.size(); i++) {
+            if (i > 0) {
+                cumulative += GeoMath.distanceMeters(route.getLat(i - 1), route.getLng(i - 1), route.getLat(i), route.getLng(i));
+            }
+            line.append("     <Trackpoint>");
+            if (route.hasTimes()) {
+                line.append("<Time>");
+                TrackTime.format(route.getTime(i), line);
+                line.append("</Time>");
+            }
+            line.append("<Position><LatitudeDegrees>");
+            appendCoordinate(route.getLat(i), line);
+            line.append("</LatitudeDegrees><LongitudeDegrees>");
+            appendCoordinate(route.getLng(i), line);
+            line.append("</LongitudeDegrees></Position><DistanceMeters>").append(Math.round(cumulative * 10) / 10.0)
+                    .append("</DistanceMeters></Trackpoint>\n");
+            flush(line, out);
+        }
+
+        out.write("    </Track>\n   </Lap>\n  </Activity>\n </Activities>\n</TrainingCenterDatabase>\n");
+    }
+
+    // Fixed five decimals without String.format, which is slow enough to show on a long track
+    static void appendCoordinate(double degrees, StringBuilder out) {
+        long q = Math.round(degrees * 1e5);
+        if (q < 0) {
+            out.append('-');
+            q = -q;
+        }
+        out.append(q / 100_000).append('.');
+        long fraction = q % 100_000;
+        for (long limit = 10_000; limit > 1 && fraction < limit; limit /= 10) {
+            out.append('0');
+        }
+        out.append(fraction);
+    }
+
+    private static void escape(String text, StringBuilder out) {
+        if (text == null) return;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '&': out.append("&amp;"); break;
+                case '<': out.append("&lt;"); break;
+                case '>': out.append("&gt;"); break;
+                case '"': out.append("&quot;"); break;
+                default: out.append(c);
+            }
+        }
+    }
+
+    private static void flush(StringBuilder line, Writer out) throws IOException {
+        out.append(line);
+        line.setLength(0);
+    }
+}
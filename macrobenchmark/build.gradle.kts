@@ -0,0 +1,45 @@
+// Startup and travel log benchmarks on a device, and the journeys the baseline profile is generated from.
+//   ./gradlew :macrobenchmark:connectedBenchmarkReleaseAndroidTest   measure
+//   ./gradlew :app:generateBaselineProfile                           regenerate the profile
+// The device has to be signed in to the app once beforehand; the journeys start past the login screen.
+plugins {
+    alias(libs.plugins.android.test)
+    alias(libs.plugins.baselineprofile)
+}
+
+android {
+    namespace = "com.example.padyakol.macrobenchmark"
+    compileSdk = 36
+
+    defaultConfig {
+        // Profile collection without root needs API 28
+        minSdk = 28
+        targetSdk = 36
+
+        testInstrumentationRunner = "androidx.test.runner.AndroidJUnitRunner"
+    }
+
+    targetProjectPath = ":app"
+
+    compileOptions {
+        sourceCompatibility = JavaVersion.VERSION_11
+        targetCompatibility = JavaVersion.VERSION_11
+    }
+}
+
+baselineProfile {
+    useConnectedDevices = true
+}
+
+dependencies {
+    implementation(libs.ext.junit)
+    implementation(libs.uiautomator)
+    implementation(libs.benchmark.macro.junit4)
+}
+
+// Only the minified, profiled build is worth measuring
+androidComponents {
+    beforeVariants(selector().all()) {
+        it.enable = it.buildType == "benchmarkRelease" || it.buildType == "nonMinifiedRelease"
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.padyakol.macrobenchmark;
+
+import androidx.benchmark.macro.MacrobenchmarkScope;
+import androidx.benchmark.macro.junit4.BaselineProfileRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.function.Consumer;
+
+import kotlin.Unit;
+
+/**
+ * Collects the baseline profile from the journeys StartupBenchmark and TravelLogBenchmark measure.
+ * Run through {@code ./gradlew :app:generateBaselineProfile}, which copies the result into :app.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BaselineProfileGenerator {
+
+    private static final int MAX_ITERATIONS = 15;
+    private static final int STABLE_ITERATIONS = 3;
+
+    @Rule
+    public BaselineProfileRule baselineProfileRule = new BaselineProfileRule();
+
+    // Also written out as a startup profile, which R8 can use to put these classes in the primary dex
+    @Test
+    public void startup() {
+        collect(true, scope -> {
+            scope.pressHome();
+            Journeys.startToMap(scope);
+        });
+    }
+
+    @Test
+    public void travelLog() {
+        collect(false, scope -> {
+            scope.pressHome();
+            Journeys.startToMap(scope);
+            Journeys.openTravelLog(scope);
+            Journeys.scrollTravelLog(scope);
+        });
+    }
+
+    private void collect(boolean includeInStartupProfile, Consumer<MacrobenchmarkScope> journey) {
+        baselineProfileRule.collect(
+                Journeys.PACKAGE,
+                MAX_ITERATIONS,
+                STABLE_ITERATIONS,
+                null,
+                includeInStartupProfile,
+                false,
+                rule -> true,
+                scope -> {
+                    journey.accept(scope);
+                    return Unit.INSTANCE;
+                });
+    }
+}
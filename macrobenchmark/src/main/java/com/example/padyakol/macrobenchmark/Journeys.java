@@ -0,0 +1,57 @@
+package com.example.padyakol.macrobenchmark;
+
+import androidx.benchmark.macro.MacrobenchmarkScope;
+import androidx.test.uiautomator.By;
+import androidx.test.uiautomator.Direction;
+import androidx.test.uiautomator.UiDevice;
+import androidx.test.uiautomator.UiObject2;
+import androidx.test.uiautomator.Until;
+
+/**
+ * The user journeys shared by the benchmarks and the baseline profile generator. They assume the
+ * device is already signed in, so the launcher goes straight on to the home map.
+ */
+final class Journeys {
+
+    static final String PACKAGE = "com.example.padyakol";
+    // Must match TravelLogFragment.FIRST_PAINT_SECTION
+    static final String TRAVEL_LOG_FIRST_PAINT = "TravelLogFirstPaint";
+
+    private static final long TIMEOUT_MS = 10_000;
+
+    private Journeys() {
+    }
+
+    // From the launcher icon to the home map; LoginActivity forwards without drawing
+    static void startToMap(MacrobenchmarkScope scope) {
+        scope.startActivityAndWait();
+        waitFor(scope.getDevice(), "map");
+    }
+
+    static void openTravelLog(MacrobenchmarkScope scope) {
+        UiDevice device = scope.getDevice();
+        waitFor(device, "nav_log").click();
+        waitFor(device, "recyclerTravelLog");
+        device.waitForIdle();
+    }
+
+    // Down the list and back up again, so rows are bound on the way down and rebound on the way up
+    static void scrollTravelLog(MacrobenchmarkScope scope) {
+        UiDevice device = scope.getDevice();
+        UiObject2 list = waitFor(device, "recyclerTravelLog");
+        // Keeps the fling clear of the gesture navigation area
+        list.setGestureMargin(device.getDisplayWidth() / 5);
+        list.fling(Direction.DOWN);
+        device.waitForIdle();
+        list.fling(Direction.UP);
+        device.waitForIdle();
+    }
+
+    private static UiObject2 waitFor(UiDevice device, String id) {
+        UiObject2 view = device.wait(Until.findObject(By.res(PACKAGE, id)), TIMEOUT_MS);
+        if (view == null) {
+            throw new IllegalStateException("No " + id + " on screen; is the device signed in to the app?");
+        }
+        return view;
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.padyakol.macrobenchmark;
+
+import androidx.benchmark.macro.BaselineProfileMode;
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.FrameTimingMetric;
+import androidx.benchmark.macro.StartupMode;
+import androidx.benchmark.macro.TraceSectionMetric;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Collections;
+
+import kotlin.Unit;
+
+/**
+ * The travel log after a cold start: how long until its first page of rides is on screen, and how
+ * smoothly it then scrolls.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TravelLogBenchmark {
+
+    private static final int ITERATIONS = 10;
+
+    @Rule
+    public MacrobenchmarkRule benchmarkRule = new MacrobenchmarkRule();
+
+    // From the fragment creating its view to the first frame with rows (TravelLogFragment's trace section)
+    @Test
+    public void firstPaint() {
+        benchmarkRule.measureRepeated(
+                Journeys.PACKAGE,
+                Collections.singletonList(new TraceSectionMetric(Journeys.TRAVEL_LOG_FIRST_PAINT)),
+                new CompilationMode.Partial(BaselineProfileMode.Require, 0),
+                StartupMode.COLD,
+                ITERATIONS,
+                scope -> {
+                    scope.pressHome();
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    Journeys.startToMap(scope);
+                    Journeys.openTravelLog(scope);
+                    return Unit.INSTANCE;
+                });
+    }
+
+    @Test
+    public void scroll() {
+        benchmarkRule.measureRepeated(
+                Journeys.PACKAGE,
+                Collections.singletonList(new FrameTimingMetric()),
+                new CompilationMode.Partial(BaselineProfileMode.Require, 0),
+                StartupMode.WARM,
+                ITERATIONS,
+                scope -> {
+                    scope.pressHome();
+                    Journeys.startToMap(scope);
+                    Journeys.openTravelLog(scope);
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    Journeys.scrollTravelLog(scope);
+                    return Unit.INSTANCE;
+                });
+    }
+}
@@ -21,4 +21,7 @@ dependencyResolutionManagement {
 
 rootProject.name = "PadyakOL"
 include(":app")
+include(":core")
+include(":benchmark")
+include(":macrobenchmark")
  
\ No newline at end of file